@@ -147,6 +147,23 @@ public class IndexKeyRange
         return new IndexKeyRange(indexRowType, lo, true, null, false, IndexKind.SPATIAL);
     }
 
+    /**
+     * Describes the keys of a spatial index in order of increasing distance from the point given by lo,
+     * nearest first. Unlike around, which orders by distance in z-order, this is the true distance, so
+     * the first k keys are the k nearest neighbors of the point.
+     *
+     * @param indexRowType The row type of index keys.
+     * @param lo           The point, preceded by values of any leading index columns.
+     * @return IndexKeyRange covering the keys in order of distance from lo.
+     */
+    public static IndexKeyRange nearest(IndexRowType indexRowType,
+                                        IndexBound lo)
+    {
+        IndexKeyRange keyRange = around(indexRowType, lo);
+        keyRange.nearest = true;
+        return keyRange;
+    }
+
     /**
      * Describes all keys in the index starting at or after lo, depending on loInclusive.
      * This is used only in lexicographic scans.
@@ -219,6 +236,11 @@ public class IndexKeyRange
         return indexKind == IndexKind.SPATIAL;
     }
 
+    public boolean nearest()
+    {
+        return nearest;
+    }
+
     public IndexKeyRange resetLo(IndexBound newLo)
     {
         IndexKeyRange restart = new IndexKeyRange(this);
@@ -267,6 +289,7 @@ public class IndexKeyRange
         this.hi = indexKeyRange.hi;
         this.hiInclusive = indexKeyRange.hiInclusive;
         this.indexKind = indexKeyRange.indexKind;
+        this.nearest = indexKeyRange.nearest;
     }
 
     private static int boundColumns(IndexRowType indexRowType, IndexBound lo, IndexBound hi)
@@ -331,6 +354,7 @@ public class IndexKeyRange
     private IndexBound hi;
     private boolean hiInclusive;
     private final IndexKind indexKind;
+    private boolean nearest;
 
     // A CONVENTIONAL (SQL Layer) index scan normally allows a range for only the last specified part of the bound. E.g.,
     // (1, 10, 800) - (1, 10, 888) is legal, but (1, 10, 800) - (1, 20, 888) is not, because there are two ranges,
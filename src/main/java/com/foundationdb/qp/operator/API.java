@@ -50,6 +50,16 @@ public class API
         return new Aggregate_Partial(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
     }
 
+    public static Operator aggregate_Hash(Operator inputOperator,
+                                          RowType rowType,
+                                          int inputsIndex,
+                                          List<? extends TAggregator> aggregatorFactories,
+                                          List<? extends TInstance> aggregatorTypes,
+                                          List<Object> options)
+    {
+        return new Aggregate_Hash(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
+    }
+
     // Project
 
     public static Operator project_DefaultTest(Operator inputOperator,
@@ -179,6 +189,16 @@ public class API
                                                TableRowType outputRowType,
                                                InputPreservationOption flag,
                                                int inputBindingPosition)
+    {
+        return branchLookup_Nested(group, inputRowType, outputRowType, flag, inputBindingPosition, 1);
+    }
+
+    public static Operator branchLookup_Nested(Group group,
+                                               RowType inputRowType,
+                                               TableRowType outputRowType,
+                                               InputPreservationOption flag,
+                                               int inputBindingPosition,
+                                               int lookaheadQuantum)
     {
         return branchLookup_Nested(group,
                                    inputRowType, 
@@ -187,7 +207,7 @@ public class API
                                    branchOutputRowTypes(outputRowType),
                                    flag,
                                    inputBindingPosition,
-                                   1);
+                                   lookaheadQuantum);
     }
 
     public static Operator branchLookup_Nested(Group group,
@@ -498,6 +518,15 @@ public class API
         return new Sort_InsertionLimited(inputOperator, sortType, ordering, sortOption, limit);
     }
 
+    public static Operator sort_HeapLimited(Operator inputOperator,
+                                            RowType sortType,
+                                            Ordering ordering,
+                                            SortOption sortOption,
+                                            int limit)
+    {
+        return new Sort_HeapLimited(inputOperator, sortType, ordering, sortOption, limit);
+    }
+
     public static Operator sort_General(Operator inputOperator,
                                         RowType sortType,
                                         Ordering ordering,
@@ -558,6 +587,13 @@ public class API
     {
         return new UnionAll_Default(input1, input1RowType, input2, input2RowType, openBoth);
     }
+
+    // Gather
+
+    public static Operator gather_Parallel(List<Operator> partitions, RowType rowType, boolean ordered, int queueSize)
+    {
+        return new Gather_Parallel(partitions, rowType, ordered, queueSize);
+    }
     
     // Intersect
     
@@ -666,6 +702,46 @@ public class API
                                      collators);
     }
 
+    // Using_HashTable
+
+    public static Operator using_HashTable(Operator hashInput,
+                                           RowType hashedRowType,
+                                           int[] keyFields,
+                                           int tableBindingPosition,
+                                           Operator joinedInput)
+    {
+        return new Using_HashTable(hashInput,
+                                   hashedRowType,
+                                   keyFields,
+                                   tableBindingPosition,
+                                   joinedInput,
+                                   null);
+    }
+
+    public static Operator using_HashTable(Operator hashInput,
+                                           RowType hashedRowType,
+                                           int[] keyFields,
+                                           int tableBindingPosition,
+                                           Operator joinedInput,
+                                           List<AkCollator> collators)
+    {
+        return new Using_HashTable(hashInput,
+                                   hashedRowType,
+                                   keyFields,
+                                   tableBindingPosition,
+                                   joinedInput,
+                                   collators);
+    }
+
+    // HashTableLookup_Default
+
+    public static Operator hashTableLookup_Default(RowType hashedRowType,
+                                                   List<? extends TPreparedExpression> probeExpressions,
+                                                   int tableBindingPosition)
+    {
+        return new HashTableLookup_Default(hashedRowType, probeExpressions, tableBindingPosition);
+    }
+
     // Select_BloomFilter
 
     public static Operator select_BloomFilterTest(Operator input,
@@ -796,7 +872,7 @@ public class API
 
     public static Cursor cursor(Operator root, QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new ChainedCursor(context, root.cursor(context, bindingsCursor));
+        return new TopLevelCursor(context, Operator.inputCursor(root, context, bindingsCursor));
     }
 
     public static Cursor cursor(Operator root, QueryContext context, QueryBindings bindings)
@@ -957,4 +1033,19 @@ public class API
         private final List<AkCollator> collators = new ArrayList<>();
     }
 
+    // Returned by cursor(), so that a query's caller can read its rows
+    // a batch at a time whatever the root operator.
+    private static class TopLevelCursor extends ChainedCursor implements BatchCursor
+    {
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            RowBatch.fill(input, batch);
+        }
+
+        TopLevelCursor(QueryContext context, Cursor input)
+        {
+            super(context, input);
+        }
+    }
 }
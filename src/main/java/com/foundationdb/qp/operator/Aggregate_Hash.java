@@ -0,0 +1,656 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.qp.util.RowSpillFile;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+
+ <h1>Overview</h1>
+
+ Aggregate_Hash aggregates rows by their GROUP BY columns using a hash
+ table of groups. Unlike Aggregate_Partial, the input does not need to
+ be ordered, so no sort is needed ahead of it.
+
+ <h1>Arguments</h1>
+
+ The same as Aggregate_Partial, except that there must be at least
+ one GROUP BY field.
+
+ <ul>
+
+ <li><b>input:</b> the input operator
+
+ <li><b>inputsIndex:</b> the first index of the input rows that
+ represents an input; indexes before this are GROUP BY
+ fields. Required: <i>0 < inputsIndex <= input.rowType().nFields()</i>
+
+ <li><b>aggregatorFactories:</b> the aggregators, one per input.
+
+ <li><b>aggregatorTypes:</b> the result type of each aggregator.
+
+ <li><b>options:</b> an option for each aggregator, such as the
+ GROUP_CONCAT separator.
+
+ </ul>
+
+ <h1>Behavior</h1>
+
+ Each input row of type <i>input.rowType()</i> is applied to the
+ aggregators of the group having its GROUP BY values, creating the
+ group when it is first seen. String GROUP BY fields are compared using
+ their collation. NULL GROUP BY values form a group of their own. Once
+ the input is exhausted, one row is output for each group.
+
+ <h1>Output</h1>
+
+ All rows of types other than <i>input.rowType()</i> are passed through
+ as they are encountered. After that come the aggregated rows, in no
+ particular order. If there are no input rows, there is no output.
+
+ <h1>Assumptions</h1>
+
+ Each aggregator's state is the same as its result. That is, an
+ aggregation can be resumed by starting with the output value of an
+ earlier partial aggregation (which is the case for all the
+ aggregators that the optimizer generates).
+
+ <h1>Performance</h1>
+
+ A hash and a lookup for each input row. The input is read once,
+ unless groups overflow memory.
+
+ <h1>Memory requirements</h1>
+
+ One row per group, up to the limit given by the
+ <code>fdbsql.hash_aggregate.memory</code> property. Beyond that, the
+ groups in one partition of the table are written to a temporary file
+ under <code>fdbsql.tmp_dir</code>, along with any subsequent input
+ rows for that partition. Spilled partitions are aggregated one at a
+ time after the groups that stayed in memory have been output, and may
+ themselves be repartitioned.
+
+ */
+
+final class Aggregate_Hash extends Operator
+{
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        inputOperator.findDerivedTypes(derivedTypes);
+        derivedTypes.add(outputType);
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return outputType;
+    }
+
+    // Aggregate_Hash interface
+
+    public Aggregate_Hash(Operator inputOperator,
+                          RowType inputRowType,
+                          int inputsIndex,
+                          List<? extends TAggregator> aggregatorFactories,
+                          List<? extends TInstance> aggregatorTypes,
+                          List<Object> options)
+    {
+        ArgumentValidation.notNull("inputOperator", inputOperator);
+        ArgumentValidation.notNull("inputRowType", inputRowType);
+        ArgumentValidation.isBetween("inputsIndex", 1, inputsIndex, inputRowType.nFields() + 1);
+        ArgumentValidation.notNull("aggregatorFactories", aggregatorFactories);
+        ArgumentValidation.notNull("aggregatorTypes", aggregatorTypes);
+        if (aggregatorTypes.size() != aggregatorFactories.size())
+            throw new IllegalArgumentException("aggregators and aggregator types mismatch in size");
+        if (inputsIndex + aggregatorFactories.size() != inputRowType.nFields()) {
+            throw new IllegalArgumentException(
+                    String.format("inputsIndex(=%d) + aggregatorNames.size(=%d) != inputRowType.nFields(=%d)",
+                                  inputsIndex, aggregatorFactories.size(), inputRowType.nFields()));
+        }
+        this.inputOperator = inputOperator;
+        this.inputRowType = inputRowType;
+        this.inputsIndex = inputsIndex;
+        this.outputType = inputRowType.schema().newAggregateType(inputRowType, inputsIndex, aggregatorTypes);
+        this.pAggrs = aggregatorFactories;
+        this.pAggrTypes = aggregatorTypes;
+        this.options = options;
+        this.collators = new AkCollator[inputsIndex];
+        for (int i = 0; i < inputsIndex; i++) {
+            TInstance type = inputRowType.typeAt(i);
+            if (type.typeClass() instanceof TString) {
+                collators[i] = TString.getCollator(type);
+            }
+        }
+    }
+
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(GROUP BY %d fields, then: %s)", getClass().getSimpleName(), inputsIndex, pAggrs);
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Hash open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Aggregate_Hash next");
+    private static final Logger LOG = LoggerFactory.getLogger(Aggregate_Hash.class);
+    static final String MEMORY_PROPERTY = "fdbsql.hash_aggregate.memory";
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    // Each level of repartitioning uses the next PARTITION_BITS of the hash.
+    private static final int MAX_SPILL_LEVEL = 4;
+
+    // Object state
+
+    private final Operator inputOperator;
+    private final RowType inputRowType;
+    private final AggregatedRowType outputType;
+    private final int inputsIndex;
+    private final List<? extends TInstance> pAggrTypes;
+    private final List<? extends TAggregator> pAggrs;
+    private final List<Object> options;
+    private final AkCollator[] collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        for (TAggregator agg : pAggrs)
+            atts.put(Label.AGGREGATORS, PrimitiveExplainer.getInstance(agg.displayName().toUpperCase()));
+        atts.put(Label.GROUPING_OPTION, PrimitiveExplainer.getInstance(inputsIndex));
+        atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
+        atts.put(Label.INPUT_TYPE, inputRowType.getExplainer(context));
+        atts.put(Label.OUTPUT_TYPE, outputType.getExplainer(context));
+        return new CompoundExplainer(Type.AGGREGATE, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                memoryBudget = Long.parseLong(context.getServiceManager().getConfigurationService()
+                                              .getProperty(MEMORY_PROPERTY));
+                input.open();
+                table = new GroupTable(context, memoryBudget, 0);
+                inputDone = false;
+                active = true;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row output = null;
+                if (active) {
+                    if (!inputDone) {
+                        Row row;
+                        while ((row = input.next()) != null) {
+                            if (!row.rowType().equals(inputRowType)) {
+                                output = row; // pass through
+                                break;
+                            }
+                            table.input(row);
+                        }
+                        if (row == null) {
+                            inputDone = true;
+                            groups = table.groups();
+                        }
+                    }
+                    if (output == null) {
+                        output = nextGroup();
+                        if (output == null) {
+                            close();
+                        }
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Aggregate_Hash: yield {}", output);
+                }
+                return output;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (active) {
+                input.close();
+                if (table != null) {
+                    table.close();
+                    table = null;
+                }
+                for (GroupTable.Partition partition : spilled) {
+                    partition.deleteFiles();
+                }
+                spilled.clear();
+                groups = null;
+                active = false;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            destroyed = true;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return !destroyed && !active;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !destroyed && active;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return destroyed;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+        }
+
+        // For use by this class
+
+        private Row nextGroup()
+        {
+            while (true) {
+                if (groups.hasNext()) {
+                    return groups.next();
+                }
+                // Everything that stayed in memory is done; move on
+                // to the next partition that did not.
+                spilled.addAll(table.takeSpilled());
+                table.close();
+                table = null;
+                if (spilled.isEmpty()) {
+                    return null;
+                }
+                GroupTable.Partition partition = spilled.removeFirst();
+                table = partition.reload(memoryBudget);
+                groups = table.groups();
+            }
+        }
+
+        // Object state
+
+        private long memoryBudget;
+        private GroupTable table;
+        private Iterator<Row> groups;
+        private final Deque<GroupTable.Partition> spilled = new ArrayDeque<>();
+        private boolean inputDone, active, destroyed;
+    }
+
+    /** The groups of one pass over (some of) the input. */
+    private class GroupTable
+    {
+        GroupTable(QueryContext context, long memoryBudget, int level)
+        {
+            this.context = context;
+            this.memoryBudget = memoryBudget;
+            this.level = level;
+            this.partitions = new Partition[PARTITIONS];
+            for (int i = 0; i < PARTITIONS; i++) {
+                partitions[i] = new Partition();
+            }
+        }
+
+        /** Aggregate an input row. */
+        void input(Row row)
+        {
+            GroupKey key = new GroupKey(row);
+            Partition partition = partitions[partition(key.hash)];
+            if (partition.inputFile != null) {
+                partition.inputFile.write(row);
+                return;
+            }
+            ValuesHolderRow group = partition.groups.get(key);
+            if (group == null) {
+                group = new ValuesHolderRow(outputType);
+                for (int i = 0; i < inputsIndex; i++) {
+                    ValueTargets.copyFrom(row.value(i), group.valueAt(i));
+                }
+                partition.add(new GroupKey(group), group, HashTable.estimateSize(row));
+            }
+            for (int i = 0; i < pAggrs.size(); i++) {
+                int field = inputsIndex + i;
+                pAggrs.get(i).input(inputRowType.typeAt(field), row.value(field),
+                                    pAggrTypes.get(i), group.valueAt(field), options.get(i));
+            }
+            if (memoryUsed > memoryBudget) {
+                spill();
+            }
+        }
+
+        /** Restore a group written out by {@link #spill}. */
+        void restore(Row partial)
+        {
+            GroupKey key = new GroupKey(partial);
+            Partition partition = partitions[partition(key.hash)];
+            if (partition.partialFile != null) {
+                partition.partialFile.write(partial);
+                return;
+            }
+            ValuesHolderRow group = new ValuesHolderRow(outputType);
+            for (int i = 0; i < outputType.nFields(); i++) {
+                ValueSource value = partial.value(i);
+                // A null state means no input was seen.
+                if ((i < inputsIndex) || !value.isNull()) {
+                    ValueTargets.copyFrom(value, group.valueAt(i));
+                }
+            }
+            GroupKey groupKey = new GroupKey(group);
+            assert !partition.groups.containsKey(groupKey) : partial;
+            partition.add(groupKey, group, HashTable.estimateSize(partial));
+            if (memoryUsed > memoryBudget) {
+                spill();
+            }
+        }
+
+        /** The finished groups that are in memory. */
+        Iterator<Row> groups()
+        {
+            return new Iterator<Row>() {
+                @Override
+                public boolean hasNext()
+                {
+                    while (!current.hasNext()) {
+                        if (++index >= PARTITIONS) {
+                            return false;
+                        }
+                        current = partitions[index].groups.values().iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public Row next()
+                {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ValuesHolderRow group = current.next();
+                    for (int i = 0; i < pAggrs.size(); i++) {
+                        Value state = group.valueAt(inputsIndex + i);
+                        if (!state.hasAnyValue()) {
+                            pAggrs.get(i).emptyValue(state);
+                        }
+                    }
+                    return group;
+                }
+
+                @Override
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                private int index = -1;
+                private Iterator<ValuesHolderRow> current = Collections.<ValuesHolderRow>emptyList().iterator();
+            };
+        }
+
+        /** Hand over the spilled partitions, which are no longer this table's to delete. */
+        List<Partition> takeSpilled()
+        {
+            List<Partition> result = new ArrayList<>();
+            for (int i = 0; i < PARTITIONS; i++) {
+                if (partitions[i].inputFile != null) {
+                    result.add(partitions[i]);
+                    partitions[i] = new Partition();
+                }
+            }
+            return result;
+        }
+
+        void close()
+        {
+            for (Partition partition : partitions) {
+                partition.groups.clear();
+                partition.deleteFiles();
+            }
+            memoryUsed = 0;
+        }
+
+        private int partition(int hash)
+        {
+            return (hash >>> (32 - PARTITION_BITS * (level + 1))) & (PARTITIONS - 1);
+        }
+
+        private void spill()
+        {
+            if (level >= MAX_SPILL_LEVEL) {
+                // Out of hash bits to split on: just let it grow.
+                return;
+            }
+            while (memoryUsed > memoryBudget) {
+                Partition largest = null;
+                for (Partition partition : partitions) {
+                    if ((partition.inputFile == null) &&
+                        ((largest == null) || (partition.memory > largest.memory))) {
+                        largest = partition;
+                    }
+                }
+                if ((largest == null) || (largest.memory == 0)) {
+                    break;
+                }
+                largest.partialFile = new RowSpillFile(context, outputType, "aggregate");
+                largest.inputFile = new RowSpillFile(context, inputRowType, "aggregate");
+                for (ValuesHolderRow group : largest.groups.values()) {
+                    for (int i = inputsIndex; i < outputType.nFields(); i++) {
+                        if (!group.valueAt(i).hasAnyValue()) {
+                            group.valueAt(i).putNull();
+                        }
+                    }
+                    largest.partialFile.write(group);
+                }
+                memoryUsed -= largest.memory;
+                largest.memory = 0;
+                largest.groups.clear();
+                LOG.debug("Spilled aggregate partition to {}", largest.partialFile);
+            }
+        }
+
+        private final QueryContext context;
+        private final long memoryBudget;
+        private final int level;
+        private final Partition[] partitions;
+        private long memoryUsed;
+
+        class Partition
+        {
+            void add(GroupKey key, ValuesHolderRow group, long size)
+            {
+                groups.put(key, group);
+                memory += size;
+                memoryUsed += size;
+            }
+
+            /** Aggregate this spilled partition into a new table. */
+            GroupTable reload(long memoryBudget)
+            {
+                GroupTable table = new GroupTable(context, memoryBudget, level + 1);
+                try {
+                    Row row;
+                    partialFile.startReading();
+                    while ((row = partialFile.read()) != null) {
+                        table.restore(row);
+                    }
+                    inputFile.startReading();
+                    while ((row = inputFile.read()) != null) {
+                        table.input(row);
+                    }
+                }
+                catch (RuntimeException ex) {
+                    table.close();
+                    throw ex;
+                }
+                finally {
+                    deleteFiles();
+                }
+                return table;
+            }
+
+            void deleteFiles()
+            {
+                if (partialFile != null) {
+                    partialFile.delete();
+                    partialFile = null;
+                }
+                if (inputFile != null) {
+                    inputFile.delete();
+                    inputFile = null;
+                }
+            }
+
+            final Map<GroupKey, ValuesHolderRow> groups = new LinkedHashMap<>();
+            long memory;
+            RowSpillFile partialFile, inputFile;
+        }
+    }
+
+    private class GroupKey
+    {
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey)obj;
+            if (hash != other.hash) {
+                return false;
+            }
+            for (int i = 0; i < inputsIndex; i++) {
+                ValueSource value = row.value(i);
+                ValueSource otherValue = other.row.value(i);
+                if (value.isNull() || otherValue.isNull()) {
+                    if (value.isNull() != otherValue.isNull()) {
+                        return false;
+                    }
+                    continue;
+                }
+                int c;
+                if (collators[i] != null) {
+                    c = collators[i].compare(value, otherValue);
+                }
+                else {
+                    TInstance type = inputRowType.typeAt(i);
+                    c = TClass.compare(type, value, type, otherValue);
+                }
+                if (c != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        GroupKey(Row row)
+        {
+            this.row = row;
+            int h = 0;
+            for (int i = 0; i < inputsIndex; i++) {
+                h = h * 31 + ValueSources.hash(row.value(i), collators[i]);
+            }
+            h ^= (h >>> 20) ^ (h >>> 12);
+            this.hash = h ^ (h >>> 7) ^ (h >>> 4);
+        }
+
+        private final Row row;
+        private final int hash;
+    }
+}
@@ -278,7 +278,7 @@ final class Aggregate_Partial extends Operator
 
     // nested classes
 
-    private class AggregateCursor extends OperatorCursor
+    private class AggregateCursor extends OperatorCursor implements BatchCursor
     {
 
         // Cursor interface
@@ -291,6 +291,7 @@ final class Aggregate_Partial extends Operator
                     throw new IllegalStateException("can't open cursor: already open");
                 inputCursor.open();
                 cursorState = CursorState.OPENING;
+                resetInputBatch();
             } finally {
                 TAP_OPEN.out();
             }
@@ -304,54 +305,37 @@ final class Aggregate_Partial extends Operator
             try {
                 // CursorLifecycle.checkIdleOrActive(this);
                 checkQueryCancelation();
-                if (cursorState == CursorState.CLOSED)
-                    throw new IllegalStateException("cursor not open");
-                if (cursorState == CursorState.CLOSING) {
-                    close();
-                    if (LOG_EXECUTION) {
-                        LOG.debug("Aggregate_Partial null");
-                    }
-                    return null;
+                return nextOutput();
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
                 }
+            }
+        }
 
-                assert cursorState == CursorState.OPENING || cursorState == CursorState.RUNNING : cursorState;
-                while (true) {
-                    Row input = nextInput();
-                    Row output;
-                    if (input == null) {
-                        if (everSawInput) {
-                            cursorState = CursorState.CLOSING;
-                            output = createOutput();
-                        }
-                        else if (noGroupBy()) {
-                            cursorState = CursorState.CLOSING;
-                            output = createEmptyOutput();
-                        }
-                        else {
-                            close();
-                            output = null;
-                        }
-                        if (LOG_EXECUTION) {
-                            LOG.debug("Aggregate_Partial: yield {}", output);
-                        }
-                        return output;
-                    }
-                    if (!input.rowType().equals(inputRowType)) {
-                        if (LOG_EXECUTION) {
-                            LOG.debug("Aggregate_Partial: yield {}", input);
-                        }
-                        return input; // pass through
+        @Override
+        public void nextBatch(RowBatch batch) {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                if (inputBatch == null) {
+                    inputBatch = new RowBatch(batch.capacity());
+                }
+                batch.clear();
+                while (!batch.isFull()) {
+                    Row output = nextOutput();
+                    if (output == null) {
+                        batch.setEnd();
+                        break;
                     }
-                    everSawInput = true;
-                    if (outputNeeded(input)) {
-                        saveInput(input); // save this input for the next time this method is invoked
-                        output = createOutput();
-                        if (LOG_EXECUTION) {
-                            LOG.debug("Aggregate_Partial: yield {}", output);
-                        }
-                        return output;
+                    batch.add(output);
+                    if (output.rowType() != outputType) {
+                        // A row passed through from the input is only valid until
+                        // the input batch is refilled.
+                        break;
                     }
-                    aggregate(input);
                 }
             } finally {
                 if (TAP_NEXT_ENABLED) {
@@ -365,6 +349,7 @@ final class Aggregate_Partial extends Operator
             CursorLifecycle.checkIdleOrActive(this);
             if (cursorState != CursorState.CLOSED) {
                 holder = null;
+                resetInputBatch();
                 inputCursor.close();
                 cursorState = CursorState.CLOSED;
             }
@@ -420,6 +405,58 @@ final class Aggregate_Partial extends Operator
 
         // for use in this class
 
+        private Row nextOutput() {
+            if (cursorState == CursorState.CLOSED)
+                throw new IllegalStateException("cursor not open");
+            if (cursorState == CursorState.CLOSING) {
+                close();
+                if (LOG_EXECUTION) {
+                    LOG.debug("Aggregate_Partial null");
+                }
+                return null;
+            }
+
+            assert cursorState == CursorState.OPENING || cursorState == CursorState.RUNNING : cursorState;
+            while (true) {
+                Row input = nextInput();
+                Row output;
+                if (input == null) {
+                    if (everSawInput) {
+                        cursorState = CursorState.CLOSING;
+                        output = createOutput();
+                    }
+                    else if (noGroupBy()) {
+                        cursorState = CursorState.CLOSING;
+                        output = createEmptyOutput();
+                    }
+                    else {
+                        close();
+                        output = null;
+                    }
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Partial: yield {}", output);
+                    }
+                    return output;
+                }
+                if (!input.rowType().equals(inputRowType)) {
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Partial: yield {}", input);
+                    }
+                    return input; // pass through
+                }
+                everSawInput = true;
+                if (outputNeeded(input)) {
+                    saveInput(input); // save this input for the next time this method is invoked
+                    output = createOutput();
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Aggregate_Partial: yield {}", output);
+                    }
+                    return output;
+                }
+                aggregate(input);
+            }
+        }
+
         private void aggregate(Row input) {
             for (int i=0; i < pAggrs.size(); ++i) {
                 TAggregator aggregator = pAggrs.get(i);
@@ -500,12 +537,29 @@ final class Aggregate_Partial extends Operator
                 result = holder;
                 holder = null;
             }
+            else if (inputBatch != null) {
+                while (inputPosition >= inputBatch.size()) {
+                    if (inputBatch.isEnd()) {
+                        return null;
+                    }
+                    RowBatch.fill(inputCursor, inputBatch);
+                    inputPosition = 0;
+                }
+                result = inputBatch.get(inputPosition++);
+            }
             else {
                 result = inputCursor.next();
             }
             return result;
         }
 
+        private void resetInputBatch() {
+            if (inputBatch != null) {
+                inputBatch.clear();
+                inputPosition = 0;
+            }
+        }
+
         private void saveInput(Row input) {
             assert holder == null : holder;
             assert cursorState == CursorState.OPENING : cursorState;
@@ -520,7 +574,7 @@ final class Aggregate_Partial extends Operator
 
         private AggregateCursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
             super(context);
-            this.inputCursor = inputOperator.cursor(context, bindingsCursor);
+            this.inputCursor = inputCursor(inputOperator, context, bindingsCursor);
             keyValues = new ArrayList<>(inputsIndex);
             for (int i = 0; i < inputsIndex; ++i) {
                 keyValues.add(new Value(outputType.typeAt(i)));
@@ -540,6 +594,9 @@ final class Aggregate_Partial extends Operator
         private final List<Value> keyValues;
         private final List<Value> pAggrsStates;
         private Row holder;
+        // Only once nextBatch has been called.
+        private RowBatch inputBatch;
+        private int inputPosition;
         private CursorState cursorState = CursorState.CLOSED;
         private boolean everSawInput = false;
     }
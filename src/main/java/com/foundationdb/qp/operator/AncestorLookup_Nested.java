@@ -455,7 +455,7 @@ class AncestorLookup_Nested extends Operator
             hKeys = new HKey[ancestors.size()];
             cursors = new GroupCursor[hKeys.length];
             for (int i = 0; i < cursors.length; i++) {
-                cursors[i] = adapter.newGroupCursor(group);
+                cursors[i] = adapter.newLookaheadGroupCursor(group);
             }
         }
 
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+/**
+ * A {@link Cursor} that can also deliver its rows a batch at a time.
+ * <p/>
+ * Within one scan, use either <code>next</code> or <code>nextBatch</code>,
+ * not both. The rows of a batch stay valid until the next call to
+ * <code>nextBatch</code>, as a row from <code>next</code> does until the
+ * next call to <code>next</code>.
+ * <p/>
+ * Input that is not a <code>BatchCursor</code> can still be read a batch at
+ * a time with {@link RowBatch#fill}.
+ */
+public interface BatchCursor extends Cursor
+{
+    /**
+     * Replace the contents of <code>batch</code> with up to its capacity of
+     * the next rows. The batch is marked as the end once there are no more,
+     * after which this is not called again until the cursor is reopened. A
+     * batch may have no rows without being the end, if they were all
+     * filtered out.
+     */
+    void nextBatch(RowBatch batch);
+}
@@ -163,7 +163,7 @@ public class BranchLookup_Default extends Operator
     @Override
     public Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -550,7 +550,7 @@ public class BranchLookup_Nested extends Operator
 
         // BranchCursor interface
         public BranchCursor(StoreAdapter adapter) {
-            this.cursor = adapter.newGroupCursor(group);
+            this.cursor = adapter.newLookaheadGroupCursor(group);
             this.hKey = adapter.newHKey(outputRowTypes.get(0).hKey());
         }
 
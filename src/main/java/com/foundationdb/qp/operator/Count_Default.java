@@ -93,7 +93,7 @@ class Count_Default extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -17,12 +17,16 @@
 
 package com.foundationdb.qp.operator;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.foundationdb.ais.model.ForeignKey;
+import com.foundationdb.ais.model.Table;
 import com.foundationdb.qp.exec.UpdatePlannable;
 import com.foundationdb.qp.exec.UpdateResult;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.explain.Attributes;
 import com.foundationdb.server.explain.CompoundExplainer;
 import com.foundationdb.server.explain.ExplainContext;
@@ -78,11 +82,13 @@ import org.slf4j.LoggerFactory;
 
  Deletion assumes the data store needs to alter the underlying storage
  system, including any system change log. This requires multiple IOs
- per operation.
+ per operation. Rows are passed to the adapter in batches of up to
+ DELETE_BATCH_SIZE, which lets the store check or cascade foreign keys
+ and maintain group indexes once per batch.
 
  <h1>Memory Requirements</h1>
 
- Each row is individually processed.
+ One batch of rows.
 
  */
 
@@ -118,7 +124,7 @@ class Delete_Default implements UpdatePlannable {
     @Override
     public UpdateResult run(QueryContext context, QueryBindings bindings) {
         QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor)).run();
+        return new Execution(context, Operator.inputCursor(inputOperator, context, bindingsCursor)).run();
     }
 
     @Override
@@ -136,7 +142,26 @@ class Delete_Default implements UpdatePlannable {
         return Collections.singletonList(inputOperator);
     }
 
+    /** Whether later input rows can be read before deleting one of
+     * this type. Not when its table references itself, since deleting
+     * a row can then delete or change another row of the same table.
+     */
+    static boolean canDeleteAhead(RowType rowType) {
+        if (!rowType.hasTable()) {
+            return true;
+        }
+        Table table = rowType.table();
+        for (ForeignKey foreignKey : table.getForeignKeys()) {
+            if ((foreignKey.getReferencingTable() == table) &&
+                (foreignKey.getReferencedTable() == table)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private final Operator inputOperator;
+    static final int DELETE_BATCH_SIZE = 1024;
     private static final InOutTap DELETE_TAP = Tap.createTimer("operator: Delete_Default");
     private static final Logger LOG = LoggerFactory.getLogger(Delete_Default.class);
 
@@ -152,6 +177,7 @@ class Delete_Default implements UpdatePlannable {
             }
             try {
                 input.openTopLevel();
+                List<Row> batch = new ArrayList<>();
                 Row oldRow;
                 while ((oldRow = input.next()) != null) {
                     checkQueryCancelation();
@@ -159,9 +185,14 @@ class Delete_Default implements UpdatePlannable {
                         LOG.debug("Delete_Default: deleting {}", oldRow);
                     }
                     ++seen;
-                    adapter().deleteRow(oldRow, false);
+                    batch.add(oldRow);
                     ++modified;
+                    if ((batch.size() >= DELETE_BATCH_SIZE) ||
+                        !canDeleteAhead(oldRow.rowType())) {
+                        deleteBatch(batch);
+                    }
                 }
+                deleteBatch(batch);
             } finally {
                 if (input != null) {
                     input.destroy();
@@ -173,6 +204,17 @@ class Delete_Default implements UpdatePlannable {
             return new StandardUpdateResult(seen, modified);
         }
 
+        private void deleteBatch(List<Row> batch)
+        {
+            if (batch.size() == 1) {
+                adapter().deleteRow(batch.get(0), false);
+            }
+            else if (!batch.isEmpty()) {
+                adapter().deleteRows(batch);
+            }
+            batch.clear();
+        }
+
         protected Execution(QueryContext queryContext, Cursor input)
         {
             super(queryContext);
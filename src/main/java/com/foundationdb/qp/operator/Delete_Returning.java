@@ -16,6 +16,7 @@
  */
 package com.foundationdb.qp.operator;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -47,7 +48,11 @@ method to be removed from the table.
 <h1>Behaviour</h1>
 
 Rows supplied by the input operator are deleted from the underlying
-data store through the StoreAdapter interface.
+data store through the StoreAdapter interface. Up to
+Delete_Default.DELETE_BATCH_SIZE input rows are read ahead and deleted
+together, and then returned one at a time. Rows are deleted one at a
+time when deleting one may delete or change others: when cascading the
+delete within the group, or when the table references itself.
 
 <h1>Output</h1>
 
@@ -72,11 +77,12 @@ isn't implemented for all operators.
 
 Deletion assumes the data store needs to alter the underlying storage
 system, including any system change log. This requires multiple IOs
-per operation.
+per operation. Deleting rows in batches lets the store check or
+cascade foreign keys and maintain group indexes once per batch.
 
 <h1>Memory Requirements</h1>
 
-Each row is individually processed.
+One batch of rows.
 
 */
 
@@ -85,7 +91,7 @@ public class Delete_Returning extends Operator {
 
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -152,15 +158,15 @@ public class Delete_Returning extends Operator {
                     CursorLifecycle.checkIdleOrActive(this);
                 }
                 checkQueryCancelation();
-                
-                Row inputRow;
-                if ((inputRow = input.next()) != null) {
-                    adapter().deleteRow(inputRow, cascadeDelete);
-                    if (LOG_EXECUTION) {
-                        LOG.debug("Delete_Returning: deleting {}", inputRow);
-                    }
+
+                if (batchPosition >= batch.size()) {
+                    deleteBatch();
+                }
+                Row inputRow = null;
+                if (batchPosition < batch.size()) {
+                    inputRow = batch.get(batchPosition++);
                 }
-                return inputRow; 
+                return inputRow;
             } finally {
                 if (TAP_NEXT_ENABLED) {
                     TAP_NEXT.out();
@@ -174,6 +180,8 @@ public class Delete_Returning extends Operator {
             CursorLifecycle.checkIdleOrActive(this);
             if (!idle) {
                 input.close();
+                batch.clear();
+                batchPosition = 0;
                 idle = true;
             }
         }
@@ -203,10 +211,40 @@ public class Delete_Returning extends Operator {
         {
             super(context, input);
         }
+
+        // For use by this class
+
+        /** Read the next batch of input rows and delete them all. */
+        private void deleteBatch()
+        {
+            batch.clear();
+            batchPosition = 0;
+            Row inputRow;
+            while ((batch.size() < Delete_Default.DELETE_BATCH_SIZE) &&
+                   ((inputRow = input.next()) != null)) {
+                batch.add(inputRow);
+                if (LOG_EXECUTION) {
+                    LOG.debug("Delete_Returning: deleting {}", inputRow);
+                }
+                // Deleting this row may delete or change some of the
+                // following input rows.
+                if (cascadeDelete || !Delete_Default.canDeleteAhead(inputRow.rowType())) {
+                    break;
+                }
+            }
+            if (batch.size() == 1) {
+                adapter().deleteRow(batch.get(0), cascadeDelete);
+            }
+            else if (!batch.isEmpty()) {
+                adapter().deleteRows(batch);
+            }
+        }
     
         // Object state
     
         private boolean idle = true;
+        private final List<Row> batch = new ArrayList<>();
+        private int batchPosition;
     }
     
 }
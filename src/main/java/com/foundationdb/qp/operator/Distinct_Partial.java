@@ -100,7 +100,7 @@ class Distinct_Partial extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
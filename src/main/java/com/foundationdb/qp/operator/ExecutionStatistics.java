@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.explain.Label;
+import com.foundationdb.server.explain.PrimitiveExplainer;
+import com.foundationdb.server.explain.Type;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics for each operator of a query, collected while it runs for
+ * <code>EXPLAIN ANALYZE</code>.
+ * <p/>
+ * While a query context has these, {@link Operator#inputCursor} wraps
+ * every operator's cursor to count its opens, rows, time and reads from
+ * storage. Each operator's figures are summed over all of its cursors,
+ * e.g. the inner side of a nested loop is opened once per outer row.
+ */
+public class ExecutionStatistics
+{
+    /** The statistics for <code>operator</code>, or <code>null</code>
+     * if it never had a cursor.
+     */
+    public OperatorStatistics get(Operator operator)
+    {
+        return statistics.get(operator);
+    }
+
+    /**
+     * Run <code>plan</code> to the end, collecting statistics for its
+     * operators, and return the number of rows it produced.
+     */
+    public long run(Operator plan, QueryContext context, QueryBindings bindings)
+    {
+        ExecutionStatistics outer = context.getExecutionStatistics();
+        context.setExecutionStatistics(this);
+        Cursor cursor = null;
+        long nrows = 0;
+        try {
+            cursor = API.cursor(plan, context, bindings);
+            cursor.openTopLevel();
+            Row row;
+            while ((row = cursor.next()) != null) {
+                // Read every field, as a client would, so that lazily
+                // evaluated expressions are run, timed and can fail.
+                int nfields = row.rowType().nFields();
+                for (int i = 0; i < nfields; i++) {
+                    row.value(i);
+                }
+                nrows++;
+            }
+        }
+        finally {
+            if (cursor != null) {
+                cursor.destroy();
+            }
+            context.setExecutionStatistics(outer);
+        }
+        return nrows;
+    }
+
+    /**
+     * Add the statistics for <code>plan</code> and its inputs to the
+     * extra info of <code>explainContext</code>, so that they appear in
+     * its explainer alongside the optimizer's estimates.
+     */
+    public void explain(Operator plan, ExplainContext explainContext)
+    {
+        OperatorStatistics operatorStatistics = statistics.get(plan);
+        List<Operator> inputs = plan.getInputOperators();
+        if (operatorStatistics != null) {
+            CompoundExplainer info = explainContext.getExtraInfo(plan);
+            if (info == null) {
+                info = new CompoundExplainer(Type.EXTRA_INFO);
+                explainContext.putExtraInfo(plan, info);
+            }
+            // Reads are counted where they happen, not also by the
+            // operators above.
+            long rowsIn = 0;
+            long rowsRead = operatorStatistics.getRowsRead();
+            for (Operator input : inputs) {
+                OperatorStatistics inputStatistics = statistics.get(input);
+                if (inputStatistics != null) {
+                    rowsIn += inputStatistics.getRowsOut();
+                    rowsRead -= inputStatistics.getRowsRead();
+                }
+            }
+            if (!inputs.isEmpty()) {
+                info.addAttribute(Label.ROWS_IN, PrimitiveExplainer.getInstance(rowsIn));
+            }
+            info.addAttribute(Label.ROWS_OUT, PrimitiveExplainer.getInstance(operatorStatistics.getRowsOut()));
+            info.addAttribute(Label.OPEN_CALLS, PrimitiveExplainer.getInstance(operatorStatistics.getOpens()));
+            info.addAttribute(Label.NEXT_CALLS, PrimitiveExplainer.getInstance(operatorStatistics.getNexts()));
+            info.addAttribute(Label.ELAPSED_TIME, PrimitiveExplainer.getInstance(operatorStatistics.getElapsedNanos() / 1.0e6));
+            info.addAttribute(Label.STORAGE_READS, PrimitiveExplainer.getInstance(rowsRead));
+            if (operatorStatistics.getFilterProbes() > 0) {
+                info.addAttribute(Label.FILTER_PROBES, PrimitiveExplainer.getInstance(operatorStatistics.getFilterProbes()));
+                info.addAttribute(Label.FILTER_PASSES, PrimitiveExplainer.getInstance(operatorStatistics.getFilterPasses()));
+                info.addAttribute(Label.FILTER_FALSE_POSITIVES, PrimitiveExplainer.getInstance(operatorStatistics.getFilterFalsePositives()));
+            }
+        }
+        for (Operator input : inputs) {
+            explain(input, explainContext);
+        }
+    }
+
+    // For use by this package
+
+    Cursor instrument(Operator operator, Cursor cursor, QueryContext context)
+    {
+        OperatorStatistics operatorStatistics = statistics.get(operator);
+        if (operatorStatistics == null) {
+            operatorStatistics = new OperatorStatistics();
+            statistics.put(operator, operatorStatistics);
+        }
+        return new StatisticsCursor(context, cursor, operatorStatistics);
+    }
+
+    // Object state
+
+    private final Map<Operator,OperatorStatistics> statistics = new HashMap<>();
+}
@@ -95,7 +95,7 @@ class Filter_Default extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -132,7 +132,7 @@ class Filter_Default extends Operator
 
     // Inner classes
 
-    private class Execution extends ChainedCursor
+    private class Execution extends ChainedCursor implements BatchCursor
     {
         // Cursor interface
 
@@ -180,6 +180,42 @@ class Filter_Default extends Operator
             }
         }
 
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                if (closed) {
+                    batch.clear();
+                    batch.setEnd();
+                    return;
+                }
+                RowBatch.fill(input, batch);
+                int n = batch.beginSelection();
+                for (int i = 0; i < n; i++) {
+                    if (keepTypes.contains(batch.get(i).rowType())) {
+                        batch.select(i);
+                    }
+                }
+                if (batch.isEnd()) {
+                    close();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Filter_Default: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
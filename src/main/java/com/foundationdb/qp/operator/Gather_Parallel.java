@@ -0,0 +1,476 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.error.AkibanInternalException;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.service.ServiceManager;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.transaction.TransactionService;
+import com.foundationdb.server.service.transaction.TransactionService.CloseableTransaction;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ <h1>Overview</h1>
+
+ Gather_Parallel runs each of a number of partition plans in a thread of its own and
+ returns the rows they produce.
+
+ <h1>Arguments</h1>
+
+ <ul>
+
+ <li><b>List<Operator> partitions:</b> Plans for the partitions, typically scans of
+ consecutive ranges of the same index.
+
+ <li><b>RowType rowType:</b> Type of the rows produced by every partition.
+
+ <li><b>boolean ordered:</b> Whether the order of the partitions must be preserved.
+
+ <li><b>int queueSize:</b> Number of rows each partition can get ahead of the consumer.
+
+ </ul>
+
+ <h1>Behavior</h1>
+
+ When opened in a transaction of the statement's own (auto-commit), every partition is
+ started on a worker thread, each with its own session, transaction and adapter. Workers
+ hand their rows to this cursor through bounded queues.
+
+ If ordered, all the rows of the first partition are returned, then all of the second,
+ and so on. So if the partitions are in key order, so is the output. Otherwise, rows
+ are returned in the order they arrive from any partition.
+
+ Closing the cursor stops the workers and waits for them to finish.
+
+ Otherwise, within a longer transaction, the partitions are read one after another in
+ that transaction, so that they see its changes and its snapshot.
+
+ <h1>Output</h1>
+
+ The rows of all the partitions.
+
+ <h1>Assumptions</h1>
+
+ The partition plans do not depend on bindings and only read.
+
+ When run in parallel, the partitions read in transactions of their own. They see what
+ was committed when they started. The statement's own transaction has no changes of its
+ own to miss, since it only began for the statement.
+
+ <h1>Performance</h1>
+
+ The partitions are read concurrently. When ordered, a later partition can only get
+ <code>queueSize</code> rows ahead, so the benefit is mostly in what is done to the rows
+ before they are returned.
+
+ <h1>Memory Requirements</h1>
+
+ Up to <code>queueSize</code> rows per partition.
+
+ */
+
+class Gather_Parallel extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s%s)", getClass().getSimpleName(), ordered ? "ordered, " : "", partitions);
+    }
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return rowType;
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        for (Operator partition : partitions) {
+            partition.findDerivedTypes(derivedTypes);
+        }
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return partitions;
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return toString();
+    }
+
+    // Gather_Parallel interface
+
+    public Gather_Parallel(List<Operator> partitions, RowType rowType, boolean ordered, int queueSize)
+    {
+        ArgumentValidation.notEmpty("partitions", partitions);
+        ArgumentValidation.notNull("rowType", rowType);
+        ArgumentValidation.isGT("queueSize", queueSize, 0);
+        this.partitions = new ArrayList<>(partitions);
+        this.rowType = rowType;
+        this.ordered = ordered;
+        this.queueSize = queueSize;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Gather_Parallel open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Gather_Parallel next");
+    private static final Logger LOG = LoggerFactory.getLogger(Gather_Parallel.class);
+    private static final String THREAD_NAME_PREFIX = "gather-parallel-";
+    private static final long POLL_MILLIS = 100;
+    // Marks the end of a partition's rows in its queue.
+    private static final Object END = new Object();
+    // Not bounded: an ordered gather needs all of its partitions running at once.
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, THREAD_NAME_PREFIX + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    // Object state
+
+    private final List<Operator> partitions;
+    private final RowType rowType;
+    private final boolean ordered;
+    private final int queueSize;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        for (Operator partition : partitions) {
+            atts.put(Label.INPUT_OPERATOR, partition.getExplainer(context));
+        }
+        atts.put(Label.OUTPUT_TYPE, rowType.getExplainer(context));
+        atts.put(Label.ORDERING, PrimitiveExplainer.getInstance(ordered ? "ORDERED" : "UNORDERED"));
+        if (context.hasExtraInfo(this))
+            atts.putAll(context.getExtraInfo(this).get());
+        return new CompoundExplainer(Type.EXCHANGE, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends LeafCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                current = 0;
+                if (!context.isTransactionLocal()) {
+                    // Workers could not see the transaction's changes.
+                    serial = true;
+                    return;
+                }
+                ServiceManager serviceManager = context.getServiceManager();
+                int nqueues = ordered ? partitions.size() : 1;
+                queues = new ArrayList<>(nqueues);
+                for (int i = 0; i < nqueues; i++) {
+                    queues.add(new ArrayBlockingQueue<Object>(queueSize * partitions.size() / nqueues));
+                }
+                workers = new ArrayList<>(partitions.size());
+                for (int i = 0; i < partitions.size(); i++) {
+                    Worker worker = new Worker(partitions.get(i), queues.get(ordered ? i : 0),
+                                               serviceManager, context.getStore());
+                    workers.add(worker);
+                    worker.future = WORKERS.submit(worker);
+                }
+                finished = 0;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                if (serial) {
+                    return nextSerial();
+                }
+                Row row = null;
+                while ((workers != null) && (finished < workers.size())) {
+                    Object next = take(queues.get(ordered ? current : 0));
+                    if (next == END) {
+                        finished++;
+                        if (ordered) {
+                            current++;
+                        }
+                        continue;
+                    }
+                    if (next instanceof Worker) {
+                        Throwable error = ((Worker)next).error;
+                        close();
+                        if (error instanceof RuntimeException) {
+                            throw (RuntimeException)error;
+                        }
+                        throw new AkibanInternalException("Parallel partition failed", error);
+                    }
+                    row = (Row)next;
+                    break;
+                }
+                if ((row == null) && (workers != null)) {
+                    close();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Gather_Parallel: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            if (serial) {
+                if (partitionCursor != null) {
+                    closePartition();
+                }
+                serial = false;
+            }
+            if (workers != null) {
+                for (Worker worker : workers) {
+                    worker.stopped = true;
+                }
+                for (Worker worker : workers) {
+                    try {
+                        worker.future.get();
+                    }
+                    catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    catch (ExecutionException ex) {
+                        LOG.debug("Parallel partition failed", ex);
+                    }
+                }
+                workers = null;
+                queues = null;
+            }
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            destroyed = true;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return !destroyed && !serial && (workers == null);
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !destroyed && (serial || (workers != null));
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return destroyed;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context, bindingsCursor);
+        }
+
+        // For use by this class
+
+        /** Read each partition in turn in this cursor's own context. */
+        private Row nextSerial()
+        {
+            while (current < partitions.size()) {
+                if (partitionCursor == null) {
+                    partitionCursor = API.cursor(partitions.get(current), context, bindings);
+                    partitionCursor.openTopLevel();
+                }
+                Row row = partitionCursor.next();
+                if (row != null) {
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Gather_Parallel: yield {}", row);
+                    }
+                    return row;
+                }
+                closePartition();
+                current++;
+            }
+            close();
+            return null;
+        }
+
+        private void closePartition()
+        {
+            partitionCursor.closeTopLevel();
+            partitionCursor.destroy();
+            partitionCursor = null;
+        }
+
+        private Object take(BlockingQueue<Object> queue)
+        {
+            try {
+                while (true) {
+                    checkQueryCancelation();
+                    Object next = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (next != null) {
+                        return next;
+                    }
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new AkibanInternalException("Interrupted waiting for parallel partition", ex);
+            }
+        }
+
+        // Object state
+
+        private List<BlockingQueue<Object>> queues;
+        private List<Worker> workers;
+        private int current, finished;
+        private boolean serial;
+        private Cursor partitionCursor;
+        private boolean destroyed = false;
+    }
+
+    private static class Worker implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try {
+                TransactionService transactionService = serviceManager.getServiceByClass(TransactionService.class);
+                try (Session session = serviceManager.getSessionService().createSession();
+                     CloseableTransaction txn = transactionService.beginCloseableTransaction(session)) {
+                    StoreAdapter adapter = store.getUnderlyingStore().createAdapter(session, store.schema());
+                    QueryContext context = new SimpleQueryContext(adapter, serviceManager);
+                    Cursor cursor = API.cursor(partition, context, context.createBindings());
+                    cursor.openTopLevel();
+                    try {
+                        Row row;
+                        while (!stopped && ((row = cursor.next()) != null)) {
+                            put(row);
+                        }
+                    }
+                    finally {
+                        cursor.closeTopLevel();
+                        cursor.destroy();
+                    }
+                    txn.commit();
+                }
+                put(END);
+            }
+            catch (Throwable ex) {
+                error = ex;
+                put(this);
+            }
+        }
+
+        Worker(Operator partition, BlockingQueue<Object> queue, ServiceManager serviceManager, StoreAdapter store)
+        {
+            this.partition = partition;
+            this.queue = queue;
+            this.serviceManager = serviceManager;
+            this.store = store;
+        }
+
+        private void put(Object next)
+        {
+            try {
+                while (!stopped) {
+                    if (queue.offer(next, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private final Operator partition;
+        private final BlockingQueue<Object> queue;
+        private final ServiceManager serviceManager;
+        private final StoreAdapter store;
+        private volatile boolean stopped;
+        private volatile Throwable error;
+        private Future<?> future;
+    }
+}
@@ -133,10 +133,10 @@ class GroupLookup_Default extends Operator
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
         if (lookaheadQuantum <= 1) {
-            return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+            return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
         }
         else {
-            return new LookaheadExecution(context, inputOperator.cursor(context, bindingsCursor), lookaheadQuantum);
+            return new LookaheadExecution(context, inputCursor(inputOperator, context, bindingsCursor), lookaheadQuantum);
         }
     }
 
@@ -802,7 +802,7 @@ class GroupLookup_Default extends Operator
                 for (int i = 0; i < nindex; i++) {
                     int index = j * nindex + i;
                     if (i != keepInputCursorIndex)
-                        this.cursors[index] = adapter().newGroupCursor(group);
+                        this.cursors[index] = adapter().newLookaheadGroupCursor(group);
                     if (i == branchCursorIndex)
                         this.lookupHKeys[index] = adapter().newHKey(inputRowType.hKey());
                 }
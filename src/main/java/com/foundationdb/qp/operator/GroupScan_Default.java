@@ -127,7 +127,7 @@ class GroupScan_Default extends Operator
 
     // Inner classes
 
-    private static class Execution extends LeafCursor implements Rebindable
+    private static class Execution extends LeafCursor implements Rebindable, BatchCursor
     {
 
         // Cursor interface
@@ -167,6 +167,35 @@ class GroupScan_Default extends Operator
             }
         }
 
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                batch.clear();
+                // Each row from the group cursor is a new object.
+                while (!batch.isFull()) {
+                    Row row = cursor.next();
+                    if (row == null) {
+                        batch.setEnd();
+                        close();
+                        break;
+                    }
+                    batch.add(row);
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("GroupScan_Default: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
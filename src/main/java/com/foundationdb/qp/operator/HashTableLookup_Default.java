@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ <h1>Overview</h1>
+
+ HashTableLookup_Default returns the rows of a hash table, loaded by Using_HashTable, whose key
+ matches the values of some expressions.
+
+ <h1>Arguments</h1>
+
+ <li><b>RowType hashedRowType:</b> Type of rows in the hash table.
+ <li><b>List<TPreparedExpression> probeExpressions:</b> Expressions computing the key to look up,
+ one for each key field of the hash table. Typically these reference the outer row of a join
+ through the query bindings.
+ <li><b>int tableBindingPosition:</b> Position in the query context of the hash table.
+
+ <h1>Behavior</h1>
+
+ When opened, the expressions are evaluated and the matching rows are found in the hash table.
+ If any expression is null, there are no matches.
+
+ <h1>Output</h1>
+
+ The matching rows, in the order they were loaded.
+
+ <h1>Assumptions</h1>
+
+ The types of the expressions can be compared without casting to the types of the key fields.
+
+ <h1>Performance</h1>
+
+ HashTableLookup_Default does no IO, unless the hash table was too big for memory and the
+ partition containing the key must be read back from a temporary file.
+
+ <h1>Memory Requirements</h1>
+
+ None, beyond the hash table itself.
+ */
+
+class HashTableLookup_Default extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s)", getClass().getSimpleName(), probeExpressions);
+    }
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return hashedRowType;
+    }
+
+    // HashTableLookup_Default interface
+
+    public HashTableLookup_Default(RowType hashedRowType,
+                                   List<? extends TPreparedExpression> probeExpressions,
+                                   int tableBindingPosition)
+    {
+        ArgumentValidation.notNull("hashedRowType", hashedRowType);
+        ArgumentValidation.notEmpty("probeExpressions", probeExpressions);
+        ArgumentValidation.isGTE("tableBindingPosition", tableBindingPosition, 0);
+        this.hashedRowType = hashedRowType;
+        this.probeExpressions = probeExpressions;
+        this.tableBindingPosition = tableBindingPosition;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: HashTableLookup_Default open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: HashTableLookup_Default next");
+    private static final Logger LOG = LoggerFactory.getLogger(HashTableLookup_Default.class);
+
+    // Object state
+
+    private final RowType hashedRowType;
+    private final List<? extends TPreparedExpression> probeExpressions;
+    private final int tableBindingPosition;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(tableBindingPosition));
+        for (TPreparedExpression expression : probeExpressions) {
+            atts.put(Label.EXPRESSIONS, expression.getExplainer(context));
+        }
+        if (context.hasExtraInfo(this))
+            atts.putAll(context.getExtraInfo(this).get());
+        return new CompoundExplainer(Type.HASH_TABLE, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends LeafCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                for (int i = 0; i < evalExprs.size(); i++) {
+                    TEvaluatableExpression evalExpr = evalExprs.get(i);
+                    evalExpr.with(context);
+                    evalExpr.with(bindings);
+                    evalExpr.evaluate();
+                    probeValues[i] = evalExpr.resultValue();
+                }
+                matches = bindings.getHashTable(tableBindingPosition).matchRows(probeValues, probeTypes).iterator();
+                idle = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                Row row = null;
+                if (!idle && matches.hasNext()) {
+                    row = matches.next();
+                }
+                else {
+                    setIdle();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("HashTableLookup_Default: yield {}", row);
+                }
+                return row;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            setIdle();
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            evalExprs = null;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return !isDestroyed() && idle;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return !isDestroyed() && !idle;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return (evalExprs == null);
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
+        {
+            super(context, bindingsCursor);
+            evalExprs = ProjectedRow.createTEvaluatableExpressions(probeExpressions);
+            probeValues = new ValueSource[probeExpressions.size()];
+            probeTypes = new TInstance[probeExpressions.size()];
+            for (int i = 0; i < probeTypes.length; i++) {
+                probeTypes[i] = probeExpressions.get(i).resultType();
+            }
+        }
+
+        // For use by this class
+
+        private void setIdle()
+        {
+            idle = true;
+            matches = null;
+            for (int i = 0; i < probeValues.length; i++) {
+                probeValues[i] = null;
+            }
+        }
+
+        // Object state
+
+        private boolean idle = true;
+        private List<TEvaluatableExpression> evalExprs;
+        private final ValueSource[] probeValues;
+        private final TInstance[] probeTypes;
+        private Iterator<Row> matches;
+    }
+}
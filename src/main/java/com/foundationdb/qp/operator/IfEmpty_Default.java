@@ -286,7 +286,7 @@ class IfEmpty_Default extends Operator
 
         Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
         {
-            super(context, inputOperator.cursor(context, bindingsCursor));
+            super(context, inputCursor(inputOperator, context, bindingsCursor));
             this.pEvaluations = new ArrayList<>(pExpressions.size());
             for (TPreparedExpression outerJoinRowExpressions : pExpressions) {
                 TEvaluatableExpression eval = outerJoinRowExpressions.build();
@@ -284,7 +284,7 @@ class IndexScan_Default extends Operator
 
     // Inner classes
 
-    private class Execution extends LeafCursor
+    private class Execution extends LeafCursor implements BatchCursor
     {
         // Cursor interface
 
@@ -322,6 +322,36 @@ class IndexScan_Default extends Operator
             }
         }
 
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                batch.clear();
+                // Each row from the store cursor is a new object, so it
+                // stays valid as the next ones are read.
+                while (!batch.isFull()) {
+                    Row row = cursor.next();
+                    if (row == null) {
+                        batch.setEnd();
+                        close();
+                        break;
+                    }
+                    batch.add(row);
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("IndexScan: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void jump(Row row, ColumnSelector columnSelector)
         {
@@ -19,6 +19,8 @@ package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.exec.UpdatePlannable;
 import com.foundationdb.qp.exec.UpdateResult;
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.explain.std.DUIOperatorExplainer;
@@ -29,6 +31,7 @@ import com.foundationdb.util.tap.Tap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -67,13 +70,13 @@ import java.util.List;
 
  <h1>Performance</h1>
 
- Insert may be slow because because indexes are also updated. Insert
- may be able to be improved in performance by batching the index
- updates, but there is no current API to so.
+ Insert may be slow because because indexes are also updated. Rows are
+ passed to the adapter in batches of up to WRITE_BATCH_SIZE, which lets
+ the store check foreign keys and maintain group indexes once per batch.
 
  <h1>Memory Requirements</h1>
 
- None.
+ One batch of rows.
 
  */
 
@@ -86,7 +89,7 @@ class Insert_Default implements UpdatePlannable {
     @Override
     public UpdateResult run(QueryContext context, QueryBindings bindings) {
         QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor)).run();
+        return new Execution(context, Operator.inputCursor(inputOperator, context, bindingsCursor)).run();
     }
 
     @Override
@@ -115,6 +118,7 @@ class Insert_Default implements UpdatePlannable {
     }
 
     private final Operator inputOperator;
+    static final int WRITE_BATCH_SIZE = 1024;
     private static final InOutTap INSERT_TAP = Tap.createTimer("operator: Insert_Default");
     private static final Logger LOG = LoggerFactory.getLogger(Insert_Default.class);
 
@@ -139,18 +143,27 @@ class Insert_Default implements UpdatePlannable {
             }
             try {
                 input.openTopLevel();
+                List<Row> batch = new ArrayList<>();
                 Row row;
                 while ((row = input.next()) != null) {
                     // LOG.warn("About to insert {}: {}", row.rowType().table(), row);
                     checkQueryCancelation();
                     ++seen;
                     context.checkConstraints(row);
-                    adapter().writeRow(row);
+                    // Held until the batch is written.
+                    if (row instanceof ProjectedRow) {
+                        row = new ImmutableRow((ProjectedRow)row);
+                    }
+                    batch.add(row);
                     ++modified;
                     if (LOG_EXECUTION && LOG.isDebugEnabled()) {
                         LOG.debug("Insert_Default: inserting {}", row);
                     }
+                    if (batch.size() >= WRITE_BATCH_SIZE) {
+                        writeBatch(batch);
+                    }
                 }
+                writeBatch(batch);
             } finally {
                 if (input != null) {
                     input.destroy();
@@ -162,6 +175,17 @@ class Insert_Default implements UpdatePlannable {
             return new StandardUpdateResult(seen, modified);
         }
 
+        private void writeBatch(List<Row> batch)
+        {
+            if (batch.size() == 1) {
+                adapter().writeRow(batch.get(0));
+            }
+            else if (!batch.isEmpty()) {
+                adapter().writeRows(batch);
+            }
+            batch.clear();
+        }
+
         protected Execution(QueryContext queryContext, Cursor input)
         {
             super(queryContext);
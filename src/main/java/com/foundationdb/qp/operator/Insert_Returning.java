@@ -16,9 +16,12 @@
  */
 package com.foundationdb.qp.operator;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.explain.Attributes;
 import com.foundationdb.server.explain.CompoundExplainer;
@@ -50,8 +53,12 @@ table. In practice, this is currently done via
 <i>PersistitAdapater#insertRow</i>, which invokes
 <i>PersistitStore#insertRow</i>
 
-As next is called, each row is inserted as a side effect of pulling
-rows through the InsertReturning operator. Rows are returned unchanged. 
+As next is called, rows are inserted as a side effect of pulling
+rows through the InsertReturning operator. Up to
+Insert_Default.WRITE_BATCH_SIZE input rows are read ahead and
+written together, and then returned one at a time. Rows are returned
+unchanged, except that projected rows are copied so that they do not
+depend on the input's current evaluation.
 
 <h1>Output</h1>
 
@@ -69,13 +76,13 @@ Insertion assumes the data store needs to alter the underlying storage
 system, including any system change log. This requires multiple IOs
 per operation.
 
-Insert may be slow because because indexes are also updated. Insert
-may be able to be improved in performance by batching the index
-updates, but there is no current API to so.
+Insert may be slow because because indexes are also updated. Writing
+rows in batches lets the store check foreign keys and maintain group
+indexes once per batch.
 
 <h1>Memory Requirements</h1>
 
-None.
+One batch of rows.
 
 */
 
@@ -83,7 +90,7 @@ public class Insert_Returning extends Operator {
 
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -152,19 +159,15 @@ public class Insert_Returning extends Operator {
                     CursorLifecycle.checkIdleOrActive(this);
                 }
                 checkQueryCancelation();
-                
-                Row inputRow;
-                if ((inputRow = input.next()) != null) {
-                    // TODO: Perform constraint check for insert here
-                    // Needs to be moved to Constraint Check operator. 
-                    context.checkConstraints(inputRow);
-                    // Do the real work of inserting the row
-                    adapter().writeRow(inputRow);
-                    if (LOG_EXECUTION) {
-                        LOG.debug("Insert_Returning: inserting {}", inputRow);
-                    }
+
+                if (batchPosition >= batch.size()) {
+                    writeBatch();
+                }
+                Row inputRow = null;
+                if (batchPosition < batch.size()) {
+                    inputRow = batch.get(batchPosition++);
                 }
-                return inputRow; 
+                return inputRow;
             } finally {
                 if (TAP_NEXT_ENABLED) {
                     TAP_NEXT.out();
@@ -178,6 +181,8 @@ public class Insert_Returning extends Operator {
             CursorLifecycle.checkIdleOrActive(this);
             if (!idle) {
                 input.close();
+                batch.clear();
+                batchPosition = 0;
                 idle = true;
             }
         }
@@ -207,9 +212,42 @@ public class Insert_Returning extends Operator {
         {
             super(context, input);
         }
+
+        // For use by this class
+
+        /** Read the next batch of input rows and write them all. */
+        private void writeBatch()
+        {
+            batch.clear();
+            batchPosition = 0;
+            Row inputRow;
+            while ((batch.size() < Insert_Default.WRITE_BATCH_SIZE) &&
+                   ((inputRow = input.next()) != null)) {
+                // TODO: Perform constraint check for insert here
+                // Needs to be moved to Constraint Check operator. 
+                context.checkConstraints(inputRow);
+                // Held until the batch is written and returned.
+                if (inputRow instanceof ProjectedRow) {
+                    inputRow = new ImmutableRow((ProjectedRow)inputRow);
+                }
+                batch.add(inputRow);
+                if (LOG_EXECUTION) {
+                    LOG.debug("Insert_Returning: inserting {}", inputRow);
+                }
+            }
+            // Do the real work of inserting the rows
+            if (batch.size() == 1) {
+                adapter().writeRow(batch.get(0));
+            }
+            else if (!batch.isEmpty()) {
+                adapter().writeRows(batch);
+            }
+        }
     
         // Object state
 
         private boolean idle = true;
+        private final List<Row> batch = new ArrayList<>();
+        private int batchPosition;
     }
 }
@@ -436,8 +436,8 @@ class Intersect_Ordered extends Operator
             super(context);
             MultipleQueryBindingsCursor multiple = new MultipleQueryBindingsCursor(bindingsCursor);
             this.bindingsCursor = multiple;
-            this.leftInput = left.cursor(context, multiple.newCursor());
-            this.rightInput = right.cursor(context, multiple.newCursor());
+            this.leftInput = inputCursor(left, context, multiple.newCursor());
+            this.rightInput = inputCursor(right, context, multiple.newCursor());
         }
 
         // For use by this class
@@ -85,7 +85,7 @@ final class Limit_Default extends Operator
 
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     // Plannable interface
@@ -180,7 +180,7 @@ final class Limit_Default extends Operator
 
     // internal classes
 
-    private class Execution extends ChainedCursor {
+    private class Execution extends ChainedCursor implements BatchCursor {
 
         // Cursor interface
 
@@ -281,6 +281,58 @@ final class Limit_Default extends Operator
             }
         }
 
+        @Override
+        public void nextBatch(RowBatch batch) {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            int capacity = batch.capacity();
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                // Never ask the input for more rows than are skipped or returned.
+                while (skipLeft > 0) {
+                    batch.clear();
+                    batch.setCapacity(Math.min(skipLeft, capacity));
+                    RowBatch.fill(input, batch);
+                    skipLeft -= batch.size();
+                    if (batch.isEnd()) {
+                        skipLeft = 0;
+                        limitLeft = -1;
+                    }
+                }
+                batch.clear();
+                if (limitLeft <= 0) {
+                    batch.setEnd();
+                    close();
+                }
+                else {
+                    batch.setCapacity(Math.min(limitLeft, capacity));
+                    RowBatch.fill(input, batch);
+                    limitLeft -= batch.size();
+                    if (batch.isEnd()) {
+                        limitLeft = -1;
+                        close();
+                    }
+                    else if (limitLeft == 0) {
+                        // Left open until the caller closes it, like
+                        // next() does, since the input's rows are still in use.
+                        batch.setEnd();
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Limit_Default: yield {}", batch);
+                }
+            } finally {
+                batch.setCapacity(capacity);
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
@@ -96,9 +96,9 @@ class Map_NestedLoops extends Operator
         if (!pipeline)
             return new Execution(context, bindingsCursor); // Old-style
         else {
-            Cursor outerCursor = outerInputOperator.cursor(context, bindingsCursor);
+            Cursor outerCursor = inputCursor(outerInputOperator, context, bindingsCursor);
             QueryBindingsCursor toBindings = new RowToBindingsCursor(outerCursor, inputBindingPosition, depth);
-            Cursor innerCursor = innerInputOperator.cursor(context, toBindings);
+            Cursor innerCursor = inputCursor(innerInputOperator, context, toBindings);
             return new CollapseBindingsCursor(context, innerCursor, depth);
         }
     }
@@ -509,10 +509,10 @@ class Map_NestedLoops extends Operator
         Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
         {
             super(context);
-            this.outerInput = outerInputOperator.cursor(context, bindingsCursor);
+            this.outerInput = inputCursor(outerInputOperator, context, bindingsCursor);
             // For now, the inside sees whatever bindings the outside currently has.
             this.innerBindingsCursor = new SingletonQueryBindingsCursor(null);
-            this.innerInput = innerInputOperator.cursor(context, innerBindingsCursor);
+            this.innerInput = inputCursor(innerInputOperator, context, innerBindingsCursor);
         }
 
         // For use by this class
@@ -89,6 +89,22 @@ public abstract class Operator implements Plannable
 
     // For use by subclasses
 
+    /**
+     * Get a cursor for <code>operator</code>, an input of this one or the
+     * root of a plan. Operators get their inputs' cursors this way so that
+     * each can be counted when the query's {@link ExecutionStatistics}
+     * are being collected.
+     */
+    protected static Cursor inputCursor(Operator operator, QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        Cursor cursor = operator.cursor(context, bindingsCursor);
+        ExecutionStatistics statistics = context.getExecutionStatistics();
+        if (statistics != null) {
+            cursor = statistics.instrument(operator, cursor, context);
+        }
+        return cursor;
+    }
+
     protected int ordinal(Table table)
     {
         return table.getOrdinal();
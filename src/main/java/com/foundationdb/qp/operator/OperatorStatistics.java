@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+/** What the cursors of one operator did while its query ran. */
+public class OperatorStatistics
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("rows = %d, opens = %d, nexts = %d, time = %d ns, reads = %d",
+                             rowsOut, opens, nexts, elapsedNanos, rowsRead);
+    }
+
+    // OperatorStatistics interface
+
+    /** The number of times a cursor was opened. */
+    public long getOpens()
+    {
+        return opens;
+    }
+
+    /** The number of calls for a row or a batch of rows. */
+    public long getNexts()
+    {
+        return nexts;
+    }
+
+    public long getRowsOut()
+    {
+        return rowsOut;
+    }
+
+    /** Time spent in the cursors, including in those of the inputs. */
+    public long getElapsedNanos()
+    {
+        return elapsedNanos;
+    }
+
+    /** Rows read from storage, including by the inputs. */
+    public long getRowsRead()
+    {
+        return rowsRead;
+    }
+
+    /** Rows checked against a Bloom filter. */
+    public long getFilterProbes()
+    {
+        return filterProbes;
+    }
+
+    /** Rows that the Bloom filter let through. */
+    public long getFilterPasses()
+    {
+        return filterPasses;
+    }
+
+    /** Rows that the Bloom filter let through but that had no match. */
+    public long getFilterFalsePositives()
+    {
+        return filterFalsePositives;
+    }
+
+    void opened(long nanos, long reads)
+    {
+        opens++;
+        elapsedNanos += nanos;
+        rowsRead += reads;
+    }
+
+    void nexted(long rows, long nanos, long reads)
+    {
+        nexts++;
+        rowsOut += rows;
+        elapsedNanos += nanos;
+        rowsRead += reads;
+    }
+
+    void closed(long nanos, long reads)
+    {
+        elapsedNanos += nanos;
+        rowsRead += reads;
+    }
+
+    void filterProbed(boolean passed)
+    {
+        filterProbes++;
+        if (passed) {
+            filterPasses++;
+        }
+    }
+
+    void filterFalsePositive()
+    {
+        filterFalsePositives++;
+    }
+
+    // Object state
+
+    private long opens, nexts, rowsOut, elapsedNanos, rowsRead;
+    private long filterProbes, filterPasses, filterFalsePositives;
+}
@@ -89,7 +89,7 @@ class Project_Default extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -183,7 +183,7 @@ class Project_Default extends Operator
 
     // Inner classes
 
-    private class Execution extends ChainedCursor
+    private class Execution extends ChainedCursor implements BatchCursor
     {
         // Cursor interface
         
@@ -234,6 +234,42 @@ class Project_Default extends Operator
             }
         }
 
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                if (idle) {
+                    batch.clear();
+                    batch.setEnd();
+                    return;
+                }
+                RowBatch.fill(input, batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    Row inputRow = batch.get(i);
+                    if (inputRow.rowType() == rowType) {
+                        batch.set(i, new ProjectedRow(projectType, inputRow, context, bindings, batchEvalExpr(i), tInstances));
+                    }
+                }
+                if (batch.isEnd()) {
+                    close();
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Project_Default: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
@@ -250,6 +286,7 @@ class Project_Default extends Operator
             close();
             input.destroy();
             pEvalExpr = null;
+            batchEvalExprs = null;
         }
 
         @Override
@@ -282,8 +319,27 @@ class Project_Default extends Operator
                 pEvalExpr = null;
         }
 
+        // For use by this class
+
+        // A ProjectedRow evaluates its expressions when its fields are
+        // read, so each row of a batch needs evaluatables of its own.
+        private List<TEvaluatableExpression> batchEvalExpr(int i)
+        {
+            if (pExpressions == null) {
+                return null;
+            }
+            if (batchEvalExprs == null) {
+                batchEvalExprs = new ArrayList<>();
+            }
+            while (batchEvalExprs.size() <= i) {
+                batchEvalExprs.add(ProjectedRow.createTEvaluatableExpressions(pExpressions));
+            }
+            return batchEvalExprs.get(i);
+        }
+
         // Object state
         private boolean idle = true;
         private List<TEvaluatableExpression> pEvalExpr = null;
+        private List<List<TEvaluatableExpression>> batchEvalExprs = null;
     }
 }
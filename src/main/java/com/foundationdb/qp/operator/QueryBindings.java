@@ -20,6 +20,7 @@ package com.foundationdb.qp.operator;
 import com.foundationdb.qp.row.HKey;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.qp.util.HashTable;
 import com.foundationdb.util.BloomFilter;
 
 /** The bindings associated with the execution of a query.
@@ -78,6 +79,21 @@ public interface QueryBindings
      */
     public void setBloomFilter(int index, BloomFilter filter);
 
+    /**
+     * Gets the hash table bound to the given index.
+     * @param index the index to look up
+     * @return the hash table at that index
+     * @throws BindingNotSetException if the given index wasn't set
+     */
+    public HashTable getHashTable(int index);
+
+    /**
+     * Bind a hash table to the given index.
+     * @param index the index to set
+     * @param hashTable the hash table to assign
+     */
+    public void setHashTable(int index, HashTable hashTable);
+
     /**
      * Clear all bindings.
      */
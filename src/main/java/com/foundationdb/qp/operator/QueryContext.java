@@ -125,8 +125,20 @@ public interface QueryContext
     /** Does this context commit periodically? */
     public boolean isTransactionPeriodicallyCommit();
 
+    /** Is the transaction one begun just for this statement, which
+     * has therefore made no changes before it? */
+    public boolean isTransactionLocal();
+
     /**
      * Create a new empty set of bindings.
      */
     public QueryBindings createBindings();
+
+    /**
+     * Get the statistics being collected for the operators of the
+     * query, for <code>EXPLAIN ANALYZE</code>, or <code>null</code>.
+     */
+    public ExecutionStatistics getExecutionStatistics();
+
+    public void setExecutionStatistics(ExecutionStatistics executionStatistics);
 }
@@ -27,6 +27,7 @@ public abstract class QueryContextBase implements QueryContext
     // startTimeMsec is used to control query timeouts.
     private final long startTimeMsec = System.currentTimeMillis();
     private long queryTimeoutMsec = Long.MAX_VALUE;
+    private ExecutionStatistics executionStatistics;
 
     /* QueryContext interface */
 
@@ -82,8 +83,23 @@ public abstract class QueryContextBase implements QueryContext
         return false;
     }
 
+    @Override
+    public boolean isTransactionLocal() {
+        return false;
+    }
+
     @Override
     public QueryBindings createBindings() {
         return new SparseArrayQueryBindings();
     }
+
+    @Override
+    public ExecutionStatistics getExecutionStatistics() {
+        return executionStatistics;
+    }
+
+    @Override
+    public void setExecutionStatistics(ExecutionStatistics executionStatistics) {
+        this.executionStatistics = executionStatistics;
+    }
 }
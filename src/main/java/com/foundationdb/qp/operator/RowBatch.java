@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of rows, passed between cursors by
+ * {@link BatchCursor#nextBatch}.
+ * <p/>
+ * A selection vector holds the positions of the rows still in the batch,
+ * so that filtering a batch does not move the rows. The methods here
+ * that take an index <code>i</code> are in terms of the selected rows.
+ * To filter:
+ * <pre>
+ * int n = batch.beginSelection();
+ * for (int i = 0; i < n; i++) {
+ *     if (keep(batch.get(i))) {
+ *         batch.select(i);
+ *     }
+ * }
+ * </pre>
+ */
+public class RowBatch
+{
+    public static final int DEFAULT_CAPACITY = 64;
+
+    public RowBatch()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RowBatch(int capacity)
+    {
+        this.rows = new Row[capacity];
+        this.selection = new int[capacity];
+        this.capacity = capacity;
+    }
+
+    /** Fill <code>batch</code> from <code>cursor</code>. If it is not a
+     * {@link BatchCursor}, a row at a time: then the batch only ever holds
+     * one row, since a cursor's row need not stay valid after it is asked
+     * for the next.
+     */
+    public static void fill(RowCursor cursor, RowBatch batch)
+    {
+        if (cursor instanceof BatchCursor) {
+            ((BatchCursor)cursor).nextBatch(batch);
+        }
+        else {
+            batch.clear();
+            Row row = cursor.next();
+            if (row == null) {
+                batch.setEnd();
+            }
+            else {
+                batch.add(row);
+            }
+        }
+    }
+
+    /** The number of rows to put in the batch when filling it. */
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    /** Change the number of rows to put in the batch, e.g. to read no
+     * further than a limit. Rows already in the batch are kept.
+     */
+    public void setCapacity(int capacity)
+    {
+        if (capacity > rows.length) {
+            rows = Arrays.copyOf(rows, capacity);
+            selection = Arrays.copyOf(selection, capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /** Remove all rows and the end mark. */
+    public void clear()
+    {
+        Arrays.fill(rows, 0, size, null);
+        size = 0;
+        selected = 0;
+        end = false;
+    }
+
+    public void add(Row row)
+    {
+        assert (size < capacity) : size;
+        selection[selected++] = size;
+        rows[size++] = row;
+    }
+
+    public boolean isFull()
+    {
+        return size >= capacity;
+    }
+
+    /** Whether no rows are selected. */
+    public boolean isEmpty()
+    {
+        return selected == 0;
+    }
+
+    /** The number of selected rows. */
+    public int size()
+    {
+        return selected;
+    }
+
+    /** The <code>i</code>th selected row. */
+    public Row get(int i)
+    {
+        return rows[selection[i]];
+    }
+
+    /** Replace the <code>i</code>th selected row. */
+    public void set(int i, Row row)
+    {
+        rows[selection[i]] = row;
+    }
+
+    /** Start choosing again which of the rows are selected, in the same
+     * order. Returns the number that were selected, which {@link #get} can
+     * still see until they are passed to {@link #select}.
+     */
+    public int beginSelection()
+    {
+        int n = selected;
+        selected = 0;
+        return n;
+    }
+
+    /** Keep the <code>i</code>th of the rows selected before
+     * {@link #beginSelection}. Must be called with increasing <code>i</code>.
+     */
+    public void select(int i)
+    {
+        assert (i >= selected) : i;
+        selection[selected++] = selection[i];
+    }
+
+    /** Keep only the first <code>n</code> selected rows. */
+    public void truncate(int n)
+    {
+        if (n < selected) {
+            selected = n;
+        }
+    }
+
+    /** Whether there are no more rows after these. */
+    public boolean isEnd()
+    {
+        return end;
+    }
+
+    public void setEnd()
+    {
+        end = true;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder("[");
+        for (int i = 0; i < selected; i++) {
+            if (i > 0) {
+                str.append(", ");
+            }
+            str.append(get(i));
+        }
+        str.append(']');
+        if (end) {
+            str.append(" end");
+        }
+        return str.toString();
+    }
+
+    // Object state
+
+    private Row[] rows;
+    private int[] selection;
+    private int capacity, size, selected;
+    private boolean end;
+}
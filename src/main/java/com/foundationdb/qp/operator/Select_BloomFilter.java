@@ -27,6 +27,8 @@ import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.BloomFilter;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,6 +77,8 @@ import java.util.*;
  * <h1>Performance</h1>
  * <p/>
  * This operator should generate very little IO activity, although bloom filters are probabilistic.
+ * Probes, passes and false positives (passes that onPositive did not confirm) are counted by the filter
+ * and by taps, and for EXPLAIN ANALYZE in the operator's statistics.
  * <p/>
  * <h1>Memory Requirements</h1>
  * <p/>
@@ -109,10 +113,10 @@ class Select_BloomFilter extends Operator
         }
         else {
             assert (tFields != null);
-            Cursor inputCursor = input.cursor(context, bindingsCursor);
-            QueryBindingsCursor toBindings = new FilterBindingsCursor(context, inputCursor, bindingPosition, depth, tFields, newExpressionsAdapter);
-            Cursor checkCursor = onPositive.cursor(context, toBindings);
-            return new RecoverRowsCursor(context, checkCursor, bindingPosition, depth);
+            Cursor inputCursor = inputCursor(input, context, bindingsCursor);
+            FilterBindingsCursor toBindings = new FilterBindingsCursor(context, inputCursor, bindingPosition, depth, tFields, newExpressionsAdapter);
+            Cursor checkCursor = inputCursor(onPositive, context, toBindings);
+            return new RecoverRowsCursor(context, checkCursor, bindingPosition, depth, toBindings);
         }
     }
 
@@ -166,6 +170,9 @@ class Select_BloomFilter extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Select_BloomFilter open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Select_BloomFilter next");
     private static final InOutTap TAP_CHECK = OPERATOR_TAP.createSubsidiaryTap("operator: Select_BloomFilter check");
+    private static final PointTap TAP_PROBE = Tap.createCount("operator: Select_BloomFilter probe");
+    private static final PointTap TAP_PASS = Tap.createCount("operator: Select_BloomFilter pass");
+    private static final PointTap TAP_FALSE_POSITIVE = Tap.createCount("operator: Select_BloomFilter false positive");
     private static final Logger LOG = LoggerFactory.getLogger(Select_BloomFilter.class);
 
     // Object state
@@ -190,11 +197,40 @@ class Select_BloomFilter extends Operator
         return new CompoundExplainer(Type.BLOOM_FILTER, atts);
     }
 
+    // The statistics for this operator, if being collected for EXPLAIN ANALYZE.
+    private OperatorStatistics statistics(QueryContext context)
+    {
+        ExecutionStatistics executionStatistics = context.getExecutionStatistics();
+        return (executionStatistics == null) ? null : executionStatistics.get(this);
+    }
+
+    private static boolean probe(BloomFilter filter, long hash, OperatorStatistics statistics)
+    {
+        TAP_PROBE.hit();
+        boolean passed = filter.maybePresent(hash);
+        if (passed) {
+            TAP_PASS.hit();
+        }
+        if (statistics != null) {
+            statistics.filterProbed(passed);
+        }
+        return passed;
+    }
+
+    private static void falsePositive(BloomFilter filter, OperatorStatistics statistics)
+    {
+        TAP_FALSE_POSITIVE.hit();
+        filter.falsePositive();
+        if (statistics != null) {
+            statistics.filterFalsePositive();
+        }
+    }
+
     // Inner classes
 
     private interface ExpressionAdapter<EXPR,EVAL> {
         EVAL evaluate(EXPR expression, QueryContext contex);
-        int hash(StoreAdapter adapter, EVAL evaluation, Row row, AkCollator collator);
+        long hash(StoreAdapter adapter, EVAL evaluation, Row row, AkCollator collator);
     }
 
     private static ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> newExpressionsAdapter
@@ -207,10 +243,10 @@ class Select_BloomFilter extends Operator
         }
 
         @Override
-        public int hash(StoreAdapter adapter, TEvaluatableExpression evaluation, Row row, AkCollator collator) {
+        public long hash(StoreAdapter adapter, TEvaluatableExpression evaluation, Row row, AkCollator collator) {
             evaluation.with(row);
             evaluation.evaluate();
-            return ValueSources.hash(evaluation.resultValue(), collator);
+            return ValueSources.hash64(evaluation.resultValue(), collator);
         }
     };
 
@@ -226,6 +262,7 @@ class Select_BloomFilter extends Operator
                 CursorLifecycle.checkIdle(this);
                 filter = bindings.getBloomFilter(bindingPosition);
                 bindings.setBloomFilter(bindingPosition, null);
+                statistics = statistics(context);
                 inputCursor.open();
                 idle = false;
             } finally {
@@ -248,7 +285,10 @@ class Select_BloomFilter extends Operator
                     row = inputCursor.next();
                     if (row == null) {
                         close();
-                    } else if (!filter.maybePresent(hashProjectedRow(row)) || !rowReallyHasMatch(row)) {
+                    } else if (!probe(filter, hashProjectedRow(row), statistics)) {
+                        row = null;
+                    } else if (!rowReallyHasMatch(row)) {
+                        falsePositive(filter, statistics);
                         row = null;
                     }
                 } while (!idle && row == null);
@@ -331,9 +371,9 @@ class Select_BloomFilter extends Operator
                               List<? extends EXPR> expressions, ExpressionAdapter<EXPR,E> adapter)
         {
             super(context);
-            this.inputCursor = input.cursor(context, bindingsCursor);
+            this.inputCursor = inputCursor(input, context, bindingsCursor);
             this.onPositiveBindingsCursor = new SingletonQueryBindingsCursor(null);
-            this.onPositiveCursor = onPositive.cursor(context, onPositiveBindingsCursor);
+            this.onPositiveCursor = inputCursor(onPositive, context, onPositiveBindingsCursor);
             this.adapter = adapter;
             for (EXPR field : expressions) {
                 E eval = adapter.evaluate(field, context);
@@ -343,12 +383,12 @@ class Select_BloomFilter extends Operator
 
         // For use by this class
 
-        private int hashProjectedRow(Row row)
+        private long hashProjectedRow(Row row)
         {
-            int hash = 0;
+            long hash = 0;
             for (int f = 0; f < fieldEvals.size(); f++) {
                 E fieldEval = fieldEvals.get(f);
-                hash = hash ^ adapter.hash(adapter(), fieldEval, row, collator(f));
+                hash = BloomFilter.combine(hash, adapter.hash(adapter(), fieldEval, row, collator(f)));
             }
             return hash;
         }
@@ -387,6 +427,7 @@ class Select_BloomFilter extends Operator
         private final SingletonQueryBindingsCursor onPositiveBindingsCursor;
         private QueryBindings bindings;
         private BloomFilter filter;
+        private OperatorStatistics statistics;
         private final List<E> fieldEvals = new ArrayList<>();
         private final ExpressionAdapter<?, E> adapter;
         private boolean idle = true;
@@ -396,6 +437,7 @@ class Select_BloomFilter extends Operator
     // Turn input rows that match the filter into bindings for the onPositive plan.
     private class FilterBindingsCursor extends Map_NestedLoops.RowToBindingsCursor
     {
+        private final QueryContext context;
         private final StoreAdapter storeAdapter;
         private final List<TEvaluatableExpression> fieldEvals = new ArrayList<>();
         private final ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> expressionAdapter;
@@ -404,6 +446,7 @@ class Select_BloomFilter extends Operator
                                     int bindingPosition, int depth,
                                     List<? extends TPreparedExpression> expressions, ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> expressionAdapter) {
             super(input, bindingPosition, depth);
+            this.context = context;
             this.storeAdapter = context.getStore();
             this.expressionAdapter = expressionAdapter;
             for (TPreparedExpression field : expressions) {
@@ -414,13 +457,14 @@ class Select_BloomFilter extends Operator
 
         @Override
         protected Row nextInputRow() {
-            BloomFilter filter = baseBindings.getBloomFilter(bindingPosition);
+            filter = baseBindings.getBloomFilter(bindingPosition);
+            statistics = statistics(context);
             while (true) {
                 Row row = input.next();
                 if (row == null) {
                     return row;
                 }
-                if (filter.maybePresent(hashProjectedRow(row))) {
+                if (probe(filter, hashProjectedRow(row), statistics)) {
                     if (ExecutionBase.LOG_EXECUTION) {
                         LOG.debug("Select_BloomFilter: candidate {}", row);
                     }
@@ -429,15 +473,25 @@ class Select_BloomFilter extends Operator
             }
         }
 
-        private int hashProjectedRow(Row row)
+        // Called when a row that passed the filter had no match.
+        void falsePositive() {
+            if (filter != null) {
+                Select_BloomFilter.falsePositive(filter, statistics);
+            }
+        }
+
+        private long hashProjectedRow(Row row)
         {
-            int hash = 0;
+            long hash = 0;
             for (int f = 0; f < fieldEvals.size(); f++) {
                 TEvaluatableExpression fieldEval = fieldEvals.get(f);
-                hash = hash ^ expressionAdapter.hash(storeAdapter, fieldEval, row, collator(f));
+                hash = BloomFilter.combine(hash, expressionAdapter.hash(storeAdapter, fieldEval, row, collator(f)));
             }
             return hash;
         }
+
+        private BloomFilter filter;
+        private OperatorStatistics statistics;
     }
 
     // If any context at our depth has a non-empty rowset from
@@ -445,10 +499,13 @@ class Select_BloomFilter extends Operator
     private static class RecoverRowsCursor extends Map_NestedLoops.CollapseBindingsCursor
     {
         private final int bindingPosition;
+        private final FilterBindingsCursor filterBindings;
 
-        public RecoverRowsCursor(QueryContext context, Cursor input, int bindingPosition, int depth) {
+        public RecoverRowsCursor(QueryContext context, Cursor input, int bindingPosition, int depth,
+                                 FilterBindingsCursor filterBindings) {
             super(context, input, depth);
             this.bindingPosition = bindingPosition;
+            this.filterBindings = filterBindings;
         }
 
         @Override
@@ -483,6 +540,7 @@ class Select_BloomFilter extends Operator
                         row = bindings.getRow(bindingPosition);
                         break;
                     }
+                    filterBindings.falsePositive();
                 }
                 if (LOG_EXECUTION) {
                     LOG.debug("Select_BloomFilter: yield {}", row);
@@ -101,7 +101,7 @@ class Select_HKeyOrdered extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
 
     @Override
@@ -158,7 +158,7 @@ class Select_HKeyOrdered extends Operator
 
     // Inner classes
 
-    private class Execution extends ChainedCursor
+    private class Execution extends ChainedCursor implements BatchCursor
     {
         // Cursor interface
 
@@ -191,27 +191,10 @@ class Select_HKeyOrdered extends Operator
                 Row row = null;
                 Row inputRow = input.next();
                 while (row == null && inputRow != null) {
-                    if (inputRow.rowType() == predicateRowType) {
-                        pEvaluation.with(inputRow);
-                        pEvaluation.evaluate();
-                        if (pEvaluation.resultValue().getBoolean(false)) {
-                            // New row of predicateRowType
-                            if (groupScanInput) {
-                                selectedRow = inputRow;
-                            }
-                            row = inputRow;
-                        }
-                    } else if (predicateRowType.ancestorOf(inputRow.rowType())) {
-                        // Row's type is a descendent of predicateRowType.
-                        if (selectedRow != null && selectedRow.ancestorOf(inputRow)) {
-                            row = inputRow;
-                        } else {
-                            selectedRow = null;
-                        }
-                    } else {
+                    if (select(inputRow)) {
                         row = inputRow;
                     }
-                    if (row == null) {
+                    else {
                         inputRow = input.next();
                     }
                 }
@@ -226,6 +209,34 @@ class Select_HKeyOrdered extends Operator
             }
         }
 
+        @Override
+        public void nextBatch(RowBatch batch)
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                RowBatch.fill(input, batch);
+                int n = batch.beginSelection();
+                for (int i = 0; i < n; i++) {
+                    if (select(batch.get(i))) {
+                        batch.select(i);
+                    }
+                }
+                if (LOG_EXECUTION) {
+                    LOG.debug("Select_HKeyOrdered: yield {}", batch);
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
         @Override
         public void close()
         {
@@ -266,6 +277,34 @@ class Select_HKeyOrdered extends Operator
             this.pEvaluation = pPredicate.build();
         }
 
+        // For use by this class
+
+        private boolean select(Row inputRow)
+        {
+            if (inputRow.rowType() == predicateRowType) {
+                pEvaluation.with(inputRow);
+                pEvaluation.evaluate();
+                if (pEvaluation.resultValue().getBoolean(false)) {
+                    // New row of predicateRowType
+                    if (groupScanInput) {
+                        selectedRow = inputRow;
+                    }
+                    return true;
+                }
+                return false;
+            } else if (predicateRowType.ancestorOf(inputRow.rowType())) {
+                // Row's type is a descendent of predicateRowType.
+                if (selectedRow != null && selectedRow.ancestorOf(inputRow)) {
+                    return true;
+                } else {
+                    selectedRow = null;
+                    return false;
+                }
+            } else {
+                return true;
+            }
+        }
+
         // Object state
 
         private Row selectedRow; // The last input row with type = predicateRowType.
@@ -0,0 +1,522 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.ImmutableRow;
+import com.foundationdb.qp.row.ProjectedRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.PersistitKeyValueTarget;
+import com.foundationdb.server.error.StorageKeySizeExceededException;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.explain.std.SortOperatorExplainer;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.exception.KeyTooLongException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ <h1>Overview</h1>
+
+ Sort_HeapLimited provides the first N rows of an input stream after sorting, like Sort_InsertionLimited, but
+ is meant for larger N, such as the offset plus limit of a deep page.
+
+ <h1>Arguments</h1>
+
+ <li><b>Operator inputOperator:</b> Operator providing the input stream.
+ <li><b>RowType sortType:</b> Type of rows to be sorted.
+ <li><b>API.Ordering ordering:</b> Specification of ordering, comprising a list of expressions and ascending/descending
+ specifications.
+ <li><b>API.SortOption sortOption:</b> Specifies whether duplicates should be kept (PRESERVE_DUPLICATES) or eliminated
+ (SUPPRESS_DUPLICATES)
+ <li><b>int limit:</b> Number of rows to keep.
+
+ <h1>Behavior</h1>
+
+ The sort expressions of each row are encoded, one at a time, into a single byte string that compares in the
+ order specified, as for Sort_General. The best limit rows are kept in a binary heap with the worst at its root.
+ As soon as the encoded part of a row's key is worse than the root's, the row is dropped, without evaluating the
+ rest of its expressions or copying anything. When the input stream has been consumed, the heap is sorted in
+ place and the rows are emitted in order.
+
+ <h1>Output</h1>
+
+ The first limit rows, according to the ordering specification. Rows that sort the same are output in the order
+ they arrived. The output rows may contain duplicates if and only if PRESERVE_DUPLICATE behavior was selected.
+
+ <h1>Assumptions</h1>
+
+ All input rows are of type sortType.
+
+ <h1>Performance</h1>
+
+ Sort_HeapLimited does no IO. Rows that do not make the cut, which is most of them once the heap is full, cost
+ a comparison of encoded bytes. Rows that do cost O(log(limit)) comparisons.
+
+ <h1>Memory Requirements</h1>
+
+ Up to limit rows are kept in memory, each with its encoded key.
+
+ */
+
+class Sort_HeapLimited extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s, %d%s)", getClass().getSimpleName(), sortType, limit,
+                             preserveDuplicates ? "" : ", SUPPRESS_DUPLICATES");
+    }
+
+    // Operator interface
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
+    }
+
+    @Override
+    public RowType rowType()
+    {
+        return sortType;
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        inputOperator.findDerivedTypes(derivedTypes);
+        derivedTypes.add(sortType);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return describePlan(inputOperator);
+    }
+
+    // Sort_HeapLimited interface
+
+    public Sort_HeapLimited(Operator inputOperator,
+                            RowType sortType,
+                            API.Ordering ordering,
+                            API.SortOption sortOption,
+                            int limit)
+    {
+        ArgumentValidation.notNull("sortType", sortType);
+        ArgumentValidation.isGT("ordering.columns()", ordering.sortColumns(), 0);
+        ArgumentValidation.isGTE("limit", limit, 0);
+        this.inputOperator = inputOperator;
+        this.sortType = sortType;
+        this.ordering = ordering;
+        this.preserveDuplicates = sortOption == API.SortOption.PRESERVE_DUPLICATES;
+        this.sortOption = sortOption;
+        this.limit = limit;
+    }
+
+    // Class state
+    
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_HeapLimited open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_HeapLimited next");
+    private static final Logger LOG = LoggerFactory.getLogger(Sort_HeapLimited.class);
+    private static final int INITIAL_HEAP_SIZE = 1024;
+
+    // Object state
+    private final API.SortOption sortOption;
+    private final Operator inputOperator;
+    private final RowType sortType;
+    private final API.Ordering ordering;
+    private final boolean preserveDuplicates;
+    private final int limit;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        CompoundExplainer ex = new SortOperatorExplainer(getName(), sortOption, sortType, inputOperator, ordering, context);
+        ex.addAttribute(Label.LIMIT, PrimitiveExplainer.getInstance(limit));
+        return ex;
+    }
+
+    // Inner classes
+
+    private enum State { CLOSED, FILLING, EMPTYING, DESTROYED }
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                CursorLifecycle.checkIdle(this);
+                if(limit == 0) {
+                    LOG.debug("Sort_HeapLimited: limit 0, closing");
+                    close();
+                } else {
+                    input.open();
+                    state = State.FILLING;
+                    for (TEvaluatableExpression eval : tEvaluations) {
+                        eval.with(context);
+                        eval.with(bindings);
+                    }
+                    heap = new Entry[Math.min(limit, INITIAL_HEAP_SIZE)];
+                    heapSize = 0;
+                    if (!preserveDuplicates) {
+                        keys = new HashSet<>();
+                    }
+                }
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                checkQueryCancelation();
+                switch (state) {
+                case FILLING:
+                    {
+                        int label = 0;
+                        Row row;
+                        while ((row = input.next()) != null) {
+                            assert row.rowType() == sortType : row;
+                            if (encode(row)) {
+                                insert(row, label++);
+                            }
+                        }
+                        // Repeatedly move the worst to the end, leaving best first.
+                        for (int n = heapSize - 1; n > 0; n--) {
+                            swap(0, n);
+                            siftDown(0, n);
+                        }
+                        position = 0;
+                        state = State.EMPTYING;
+                    }
+                    /* falls through */
+                case EMPTYING:
+                    Row output;
+                    if (position < heapSize) {
+                        Entry entry = heap[position];
+                        heap[position++] = null;
+                        output = entry.row;
+                    }
+                    else {
+                        close();
+                        output = null;
+                    }
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Sort_HeapLimited: yield {}", output);
+                    }
+                    return output;
+                case DESTROYED:
+                    assert false;
+                    // Fall through
+                case CLOSED:
+                default:
+                    if (LOG_EXECUTION) {
+                        LOG.debug("Sort_HeapLimited: yield null");
+                    }
+                    return null;
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            CursorLifecycle.checkIdleOrActive(this);
+            input.close();
+            heap = null;
+            heapSize = 0;
+            keys = null;
+            state = State.CLOSED;
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            state = State.DESTROYED;
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return state == State.CLOSED;
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return state == State.FILLING || state == State.EMPTYING;
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return state == State.DESTROYED;
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+            int nsort = ordering.sortColumns();
+            tEvaluations = new ArrayList<>(nsort);
+            tInstances = new TInstance[nsort];
+            for (int i = 0; i < nsort; ++i) {
+                TEvaluatableExpression evaluation = ordering.expression(i).build();
+                tEvaluations.add(evaluation);
+                tInstances[i] = ordering.type(i);
+            }
+            key = new Key((Persistit)null);
+            keyTarget = new PersistitKeyValueTarget(getName());
+            keyTarget.attach(key);
+        }
+
+        // For use by this class
+
+        /**
+         * Encode the sort key of <code>row</code> into <code>encoded</code>, stopping early
+         * and returning <code>false</code> if the row cannot make it into a full heap.
+         */
+        private boolean encode(Row row)
+        {
+            byte[] worst = (heapSize == limit) ? heap[0].key : null;
+            encodedLength = 0;
+            key.clear();
+            for (int i = 0; i < tEvaluations.size(); i++) {
+                TEvaluatableExpression evaluation = tEvaluations.get(i);
+                evaluation.with(row);
+                evaluation.evaluate();
+                int start = key.getEncodedSize();
+                appendToKey(evaluation.resultValue(), i);
+                int end = key.getEncodedSize();
+                ensureEncoded(end);
+                byte[] bytes = key.getEncodedBytes();
+                if (ordering.ascending(i)) {
+                    System.arraycopy(bytes, start, encoded, start, end - start);
+                }
+                else {
+                    for (int j = start; j < end; j++) {
+                        encoded[j] = (byte)~bytes[j];
+                    }
+                }
+                encodedLength = end;
+                if (worst != null) {
+                    // Segments are self-delimiting, so a difference in this one decides.
+                    int c = compareRange(encoded, worst, start, end);
+                    if (c > 0) {
+                        return false;
+                    }
+                    else if (c < 0) {
+                        worst = null;
+                    }
+                }
+            }
+            // Equal to the worst: it arrived first, so it stays.
+            return (worst == null);
+        }
+
+        private void appendToKey(ValueSource source, int i)
+        {
+            int size = key.getEncodedSize();
+            while (true) {
+                try {
+                    if (source.isNull()) {
+                        keyTarget.putNull();
+                    }
+                    else {
+                        tInstances[i].writeCollating(source, keyTarget);
+                    }
+                    return;
+                }
+                catch (KeyTooLongException | StorageKeySizeExceededException e) {
+                    if (key.getMaximumSize() == Key.MAX_KEY_LENGTH_UPPER_BOUND) {
+                        throw e;
+                    }
+                    key.setMaximumSize(Math.min(key.getMaximumSize() * 2, Key.MAX_KEY_LENGTH_UPPER_BOUND));
+                    key.setEncodedSize(size);
+                }
+            }
+        }
+
+        private void ensureEncoded(int length)
+        {
+            if (encoded.length < length) {
+                encoded = Arrays.copyOf(encoded, Math.max(length, encoded.length * 2));
+            }
+        }
+
+        private void insert(Row row, int label)
+        {
+            byte[] entryKey = Arrays.copyOf(encoded, encodedLength);
+            if (!preserveDuplicates && !keys.add(ByteBuffer.wrap(entryKey))) {
+                return;
+            }
+            // Make sure the Row we save doesn't depend on bindings that may change.
+            if (row instanceof ProjectedRow) {
+                row = new ImmutableRow((ProjectedRow)row);
+            }
+            Entry entry = new Entry(entryKey, label, row);
+            if (heapSize < limit) {
+                if (heapSize == heap.length) {
+                    heap = Arrays.copyOf(heap, (int)Math.min((long)limit, heap.length * 2L));
+                }
+                heap[heapSize] = entry;
+                siftUp(heapSize++);
+            }
+            else {
+                if (!preserveDuplicates) {
+                    keys.remove(ByteBuffer.wrap(heap[0].key));
+                }
+                heap[0] = entry;
+                siftDown(0, heapSize);
+            }
+        }
+
+        private void siftUp(int i)
+        {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (compare(heap[i], heap[parent]) <= 0) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int n)
+        {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if ((left < n) && (compare(heap[left], heap[largest]) > 0)) {
+                    largest = left;
+                }
+                if ((right < n) && (compare(heap[right], heap[largest]) > 0)) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    break;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int i, int j)
+        {
+            Entry temp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = temp;
+        }
+
+        // Object state
+
+        private final List<TEvaluatableExpression> tEvaluations;
+        private final TInstance[] tInstances;
+        private final Key key;
+        private final PersistitKeyValueTarget keyTarget;
+        private byte[] encoded = new byte[64];
+        private int encodedLength;
+        private State state = State.CLOSED;
+        // Max-heap on the sort order: the root is the row to be dropped next.
+        private Entry[] heap;
+        private int heapSize;
+        private Set<ByteBuffer> keys;
+        private int position;
+    }
+
+    private static int compare(Entry e1, Entry e2)
+    {
+        int c = compareRange(e1.key, e2.key, 0, Math.min(e1.key.length, e2.key.length));
+        if (c == 0) {
+            c = e1.key.length - e2.key.length;
+        }
+        if (c == 0) {
+            c = e1.index - e2.index;
+        }
+        return c;
+    }
+
+    /** Unsigned comparison of <code>b1</code> and <code>b2</code> from <code>start</code> to <code>end</code>,
+     * treating a shorter array as ending in low bytes. */
+    private static int compareRange(byte[] b1, byte[] b2, int start, int end)
+    {
+        for (int i = start; i < end; i++) {
+            if (i >= b2.length) {
+                return +1;
+            }
+            int c = (b1[i] & 0xFF) - (b2[i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    // Sortable row, with its encoded sort key and arrival order to break ties.
+    private static class Entry
+    {
+        Entry(byte[] key, int index, Row row)
+        {
+            this.key = key;
+            this.index = index;
+            this.row = row;
+        }
+
+        final byte[] key;
+        final int index;
+        final Row row;
+    }
+}
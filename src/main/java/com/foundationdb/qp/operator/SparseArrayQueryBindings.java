@@ -22,6 +22,7 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.qp.util.HashTable;
 import com.foundationdb.util.BloomFilter;
 import com.foundationdb.util.SparseArray;
 
@@ -149,6 +150,24 @@ public class SparseArrayQueryBindings implements QueryBindings
         bindings.set(index, filter);
     }
 
+    @Override
+    public HashTable getHashTable(int index) {
+        if (bindings.isDefined(index)) {
+            return (HashTable)bindings.get(index);
+        }
+        else if (parent != null) {
+            return parent.getHashTable(index);
+        }
+        else {
+            throw new BindingNotSetException(index);
+        }
+    }
+
+    @Override
+    public void setHashTable(int index, HashTable hashTable) {
+        bindings.set(index, hashTable);
+    }
+
     @Override
     public void clear() {
         bindings.clear();
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+
+/** Wraps the cursor of an operator to count what it does. */
+class StatisticsCursor extends ChainedCursor implements BatchCursor
+{
+    // Cursor interface
+
+    @Override
+    public void open()
+    {
+        long start = System.nanoTime();
+        long reads = store.getRowsRead();
+        try {
+            input.open();
+        } finally {
+            statistics.opened(System.nanoTime() - start, store.getRowsRead() - reads);
+        }
+    }
+
+    @Override
+    public Row next()
+    {
+        long start = System.nanoTime();
+        long reads = store.getRowsRead();
+        Row row = null;
+        try {
+            row = input.next();
+        } finally {
+            statistics.nexted((row == null) ? 0 : 1,
+                              System.nanoTime() - start, store.getRowsRead() - reads);
+        }
+        return row;
+    }
+
+    @Override
+    public void nextBatch(RowBatch batch)
+    {
+        long start = System.nanoTime();
+        long reads = store.getRowsRead();
+        try {
+            RowBatch.fill(input, batch);
+        } finally {
+            statistics.nexted(batch.size(),
+                              System.nanoTime() - start, store.getRowsRead() - reads);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        long start = System.nanoTime();
+        long reads = store.getRowsRead();
+        try {
+            input.close();
+        } finally {
+            statistics.closed(System.nanoTime() - start, store.getRowsRead() - reads);
+        }
+    }
+
+    // StatisticsCursor interface
+
+    StatisticsCursor(QueryContext context, Cursor input, OperatorStatistics statistics)
+    {
+        super(context, input);
+        this.statistics = statistics;
+        this.store = context.getStore();
+    }
+
+    // Object state
+
+    private final OperatorStatistics statistics;
+    private final StoreAdapter store;
+}
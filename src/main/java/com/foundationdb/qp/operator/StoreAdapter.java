@@ -47,6 +47,7 @@ import com.foundationdb.server.store.Store;
 import com.foundationdb.util.tap.InOutTap;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class StoreAdapter implements KeyCreator
@@ -59,6 +60,11 @@ public abstract class StoreAdapter implements KeyCreator
         return newGroupCursor(group);
     }
 
+    /** A cursor that will be opened some time before it is read, to look ahead. */
+    public GroupCursor newLookaheadGroupCursor(Group group) {
+        return newGroupCursor(group);
+    }
+
     public abstract RowCursor newIndexCursor(QueryContext context,
                                              Index index,
                                              IndexKeyRange keyRange,
@@ -80,9 +86,23 @@ public abstract class StoreAdapter implements KeyCreator
     }
 
     public abstract void writeRow (Row newRow, TableIndex[] tableIndexes, Collection<GroupIndex> groupIndexes);
+
+    /** Write several rows, which may be done more efficiently than one at a time. */
+    public void writeRows(List<? extends Row> newRows) {
+        for (Row newRow : newRows) {
+            writeRow(newRow);
+        }
+    }
     
     public abstract void deleteRow (Row oldRow, boolean cascadeDelete);
 
+    /** Delete several rows, which may be done more efficiently than one at a time. */
+    public void deleteRows(List<? extends Row> oldRows) {
+        for (Row oldRow : oldRows) {
+            deleteRow(oldRow, false);
+        }
+    }
+
     public abstract Sorter createSorter(QueryContext context,
                                         QueryBindings bindings,
                                         RowCursor input,
@@ -148,6 +168,15 @@ public abstract class StoreAdapter implements KeyCreator
         return id;
     }
 
+    /** Count a row read from storage, for {@link ExecutionStatistics}. */
+    public void rowRead() {
+        rowsRead++;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
     public enum AdapterType {
         STORE_ADAPTER,
         MEMORY_ADAPTER
@@ -178,4 +207,5 @@ public abstract class StoreAdapter implements KeyCreator
     private final Session session;
     private final ConfigurationService config;
     private final long id = idCounter.incrementAndGet();
+    private long rowsRead;
 }
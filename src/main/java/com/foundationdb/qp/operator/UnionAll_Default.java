@@ -253,7 +253,7 @@ final class UnionAll_Default extends UnionBase {
             this.bindingsCursor = multiple;
             cursors = new Cursor[getInputSize()];
             for (int i = 0; i < cursors.length; i++) {
-                cursors[i] = operator(i).cursor(context, multiple.newCursor());
+                cursors[i] = inputCursor(operator(i), context, multiple.newCursor());
             }
         }
 
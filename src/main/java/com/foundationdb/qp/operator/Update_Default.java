@@ -111,7 +111,7 @@ class Update_Default implements UpdatePlannable {
     @Override
     public UpdateResult run(QueryContext context, QueryBindings bindings) {
         QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor)).run();
+        return new Execution(context, Operator.inputCursor(inputOperator, context, bindingsCursor)).run();
     }
 
     // Plannable interface
@@ -95,7 +95,7 @@ public class Update_Returning extends Operator {
 
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(inputOperator, context, bindingsCursor));
     }
     
     public Update_Returning (Operator inputOperator, UpdateFunction updateFunction) {
@@ -49,7 +49,7 @@ import java.util.Set;
  * <p/>
  * When a Using_BloomFilter cursor is opened, all rows from the filterInput operator will be consumed and used to
  * load a bloom filter. The bloom filter will be set up to accomodate up to estimatedRowCount rows. If this number
- * is exceeded, the filter will be grown and the filterInput will be scanned a second time.
+ * is exceeded, the filter grows as it is loaded, keeping the same error rate.
  * <p/>
  * Besides loading the bloom filter, all operations on a Using_BloomFilter cursor are delegated to the streamInput's
  * cursor.
@@ -64,12 +64,13 @@ import java.util.Set;
  * <p/>
  * <h1>Performance</h1>
  * <p/>
- * The filterInput stream will be consumed completely each time this operator's cursor is opened. It may be consumed
- * twice if estimatedRowCount is too low.
+ * The filterInput stream will be consumed completely each time this operator's cursor is opened.
  * <p/>
  * <h1>Memory Requirements</h1>
  * <p/>
- * The bloom filter uses memory proportional to the number of rows scanned from filterInput, typically 2-4 bytes.
+ * The bloom filter uses memory proportional to the number of rows scanned from filterInput, about 3 bytes per row,
+ * rounded up to a 64 byte block. If estimatedRowCount is too low, the filter grows by adding larger layers, and
+ * uses up to twice that.
  */
 
 class Using_BloomFilter extends Operator
@@ -95,7 +96,7 @@ class Using_BloomFilter extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, streamInput.cursor(context, bindingsCursor));
+        return new Execution(context, inputCursor(streamInput, context, bindingsCursor));
     }
 
     @Override
@@ -146,7 +147,7 @@ class Using_BloomFilter extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Using_BloomFilter open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Using_BloomFilter next");
     private static final Logger LOG = LoggerFactory.getLogger(Using_BloomFilter.class);
-    private static final double ERROR_RATE = 0.0001; // Bloom filter will use 19.17 bits per key
+    private static final double ERROR_RATE = 0.0001; // Bloom filter will use about 25 bits per key
 
     // Object state
 
@@ -162,6 +163,7 @@ class Using_BloomFilter extends Operator
         Attributes atts = new Attributes();
         atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
         atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(filterBindingPosition));
+        atts.put(Label.ESTIMATED_COUNT, PrimitiveExplainer.getInstance(estimatedRowCount));
         atts.put(Label.INPUT_OPERATOR, filterInput.getExplainer(context));
         atts.put(Label.INPUT_OPERATOR, streamInput.getExplainer(context));
         return new CompoundExplainer(Type.BLOOM_FILTER, atts);
@@ -227,34 +229,24 @@ class Using_BloomFilter extends Operator
         private BloomFilter loadBloomFilter()
         {
             BloomFilter filter = new BloomFilter(estimatedRowCount, ERROR_RATE);
-            long rows = loadBloomFilter(filter);
-            if (rows > estimatedRowCount) {
-                // Do it again, but size the filter based on the actual row count
-                filter = new BloomFilter(rows, ERROR_RATE);
-                loadBloomFilter(filter);
-            }
-            return filter;
-        }
-
-        private long loadBloomFilter(BloomFilter filter)
-        {
             int fields = filterRowType.nFields();
-            int rows = 0;
             QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
-            Cursor loadCursor = filterInput.cursor(context, bindingsCursor);
+            Cursor loadCursor = inputCursor(filterInput, context, bindingsCursor);
             loadCursor.openTopLevel();
             Row row;
             while ((row = loadCursor.next()) != null) {
-                int h = 0;
+                long h = 0;
                 for (int f = 0; f < fields; f++) {
                     ValueSource valueSource = row.value(f);
-                    h = h ^ ValueSources.hash(valueSource, collator(f));
+                    h = BloomFilter.combine(h, ValueSources.hash64(valueSource, collator(f)));
                 }
                 filter.add(h);
-                rows++;
             }
             loadCursor.destroy();
-            return rows;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Using_BloomFilter: loaded {}, estimated {} rows", filter, estimatedRowCount);
+            }
+            return filter;
         }
 
     }
@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h1>Overview</h1>
+ * <p/>
+ * Using_HashTable loads a hash table for use by HashTableLookup_Default. Together they implement a
+ * hash join: this operator is the build side and the lookup, typically the inner input of a
+ * Map_NestedLoops, is the probe side.
+ * <p/>
+ * <h1>Arguments</h1>
+ * <p/>
+ * <li><b>Operator hashInput:</b></li> Stream of rows used to load the hash table
+ * <li><b>RowType hashedRowType:</b></li> Type of rows from hashInput
+ * <li><b>int[] keyFields:</b></li> Fields of hashedRowType that make up the hash key
+ * <li><b>int tableBindingPosition:</b></li> Position in the query context that will contain the hash table
+ * <li><b>Operator joinedInput: </b></li> Stream of rows that use the hash table
+ * <li><b>List<AkCollator> collators:</b></li> Collators for the key fields, or null
+ * <p/>
+ * <h1>Behavior</h1>
+ * <p/>
+ * When a Using_HashTable cursor is opened, all rows from the hashInput operator will be consumed and
+ * copied into a hash table keyed on keyFields. Rows with a null key field are discarded, since they
+ * cannot match.
+ * <p/>
+ * Besides loading the hash table, all operations on a Using_HashTable cursor are delegated to the
+ * joinedInput's cursor.
+ * <p/>
+ * <h1>Output</h1>
+ * <p/>
+ * Output from the joinedInput cursor is passed on.
+ * <p/>
+ * <h1>Assumptions</h1>
+ * <p/>
+ * None.
+ * <p/>
+ * <h1>Performance</h1>
+ * <p/>
+ * The hashInput stream will be consumed completely each time this operator's cursor is opened.
+ * <p/>
+ * <h1>Memory Requirements</h1>
+ * <p/>
+ * All rows of hashInput are held in memory, up to the limit given by the
+ * <code>fdbsql.hash_join.memory</code> property. Beyond that, partitions of the table are written to
+ * temporary files under <code>fdbsql.tmp_dir</code> and read back when probed.
+ */
+
+class Using_HashTable extends Operator
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName();
+    }
+
+    // Operator interface
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes)
+    {
+        hashInput.findDerivedTypes(derivedTypes);
+        joinedInput.findDerivedTypes(derivedTypes);
+    }
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        return new Execution(context, inputCursor(joinedInput, context, bindingsCursor));
+    }
+
+    @Override
+    public List<Operator> getInputOperators()
+    {
+        return Arrays.asList(hashInput, joinedInput);
+    }
+
+    @Override
+    public String describePlan()
+    {
+        return String.format("%s\n%s", describePlan(hashInput), describePlan(joinedInput));
+    }
+
+    // Using_HashTable interface
+
+    public Using_HashTable(Operator hashInput,
+                           RowType hashedRowType,
+                           int[] keyFields,
+                           int tableBindingPosition,
+                           Operator joinedInput,
+                           List<AkCollator> collators)
+    {
+        ArgumentValidation.notNull("hashInput", hashInput);
+        ArgumentValidation.notNull("hashedRowType", hashedRowType);
+        ArgumentValidation.notNull("keyFields", keyFields);
+        ArgumentValidation.isGT("keyFields length", keyFields.length, 0);
+        for (int keyField : keyFields) {
+            ArgumentValidation.isBetween("keyField", 0, keyField, hashedRowType.nFields());
+        }
+        ArgumentValidation.isGTE("tableBindingPosition", tableBindingPosition, 0);
+        ArgumentValidation.notNull("joinedInput", joinedInput);
+        if (collators != null)
+            ArgumentValidation.isEQ("collators length", collators.size(), keyFields.length);
+        this.hashInput = hashInput;
+        this.hashedRowType = hashedRowType;
+        this.keyFields = keyFields;
+        this.tableBindingPosition = tableBindingPosition;
+        this.joinedInput = joinedInput;
+        this.collators = collators;
+    }
+
+    // Class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable next");
+    private static final Logger LOG = LoggerFactory.getLogger(Using_HashTable.class);
+    static final String MEMORY_PROPERTY = "fdbsql.hash_join.memory";
+
+    // Object state
+
+    private final Operator hashInput;
+    private final RowType hashedRowType;
+    private final int[] keyFields;
+    private final int tableBindingPosition;
+    private final Operator joinedInput;
+    private final List<AkCollator> collators;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context) {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(tableBindingPosition));
+        for (int keyField : keyFields) {
+            atts.put(Label.POSITION, PrimitiveExplainer.getInstance(keyField));
+        }
+        atts.put(Label.INPUT_OPERATOR, hashInput.getExplainer(context));
+        atts.put(Label.INPUT_OPERATOR, joinedInput.getExplainer(context));
+        return new CompoundExplainer(Type.HASH_TABLE, atts);
+    }
+
+    // Inner classes
+
+    private class Execution extends ChainedCursor
+    {
+        // Cursor interface
+
+        @Override
+        public void open()
+        {
+            TAP_OPEN.in();
+            try {
+                hashTable = loadHashTable();
+                bindings.setHashTable(tableBindingPosition, hashTable);
+                input.open();
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                Row output = input.next();
+                if (LOG_EXECUTION) {
+                    LOG.debug("Using_HashTable: yield {}", output);
+                }
+                return output;
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            super.close();
+            releaseHashTable();
+        }
+
+        @Override
+        public void destroy()
+        {
+            close();
+            input.destroy();
+            if (bindings != null) {
+                bindings.setHashTable(tableBindingPosition, null);
+            }
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, Cursor input)
+        {
+            super(context, input);
+        }
+
+        // For use by this class
+
+        private HashTable loadHashTable()
+        {
+            long memory = Long.parseLong(context.getServiceManager().getConfigurationService()
+                                         .getProperty(MEMORY_PROPERTY));
+            HashTable table = new HashTable(context, hashedRowType, keyFields, collators, memory);
+            QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
+            Cursor loadCursor = inputCursor(hashInput, context, bindingsCursor);
+            try {
+                loadCursor.openTopLevel();
+                Row row;
+                while ((row = loadCursor.next()) != null) {
+                    table.add(row);
+                }
+            }
+            catch (RuntimeException ex) {
+                table.close();
+                throw ex;
+            }
+            finally {
+                loadCursor.destroy();
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Using_HashTable: loaded {} rows, {} partitions spilled",
+                          table.rowCount(), table.spilledPartitions());
+            }
+            return table;
+        }
+
+        private void releaseHashTable()
+        {
+            if (hashTable != null) {
+                hashTable.close();
+                hashTable = null;
+            }
+        }
+
+        // Object state
+
+        private HashTable hashTable;
+    }
+}
@@ -36,6 +36,7 @@ import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.tree.KeyCreator;
 import com.foundationdb.server.service.tree.TreeService;
+import com.foundationdb.server.store.PersistitReadAhead;
 import com.foundationdb.server.store.PersistitStore;
 import com.foundationdb.server.store.Store;
 import com.foundationdb.util.tap.InOutTap;
@@ -49,7 +50,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class PersistitAdapter extends StoreAdapter implements KeyCreator
 {
@@ -58,10 +61,21 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
 
     @Override
     public GroupCursor newGroupCursor(Group group)
+    {
+        return newGroupCursor(group, false);
+    }
+
+    @Override
+    public GroupCursor newLookaheadGroupCursor(Group group)
+    {
+        return newGroupCursor(group, true);
+    }
+
+    private GroupCursor newGroupCursor(Group group, boolean readAhead)
     {
         GroupCursor cursor;
         try {
-            cursor = new PersistitGroupCursor(this, group);
+            cursor = new PersistitGroupCursor(this, group, readAhead);
         } catch (PersistitException e) {
             handlePersistitException(e);
             throw new AssertionError();
@@ -74,6 +88,7 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
                                     IndexScanSelector selector, boolean openAllSubCursors)
     {
         return new PersistitIndexCursor(context,
+                                        this,
                                         schema.indexRowType(index),
                                         keyRange,
                                         ordering,
@@ -131,6 +146,20 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
         }
     }
 
+    @Override
+    public void writeRows(List<? extends Row> newRows) {
+        try {
+            List<RowData> rowDatas = new ArrayList<>(newRows.size());
+            for (Row newRow : newRows) {
+                rowDatas.add(rowData(newRow.rowType().table().rowDef(), newRow, rowDataCreator()));
+            }
+            store.writeRows(getSession(), rowDatas);
+        } catch (InvalidOperationException e) {
+            rollbackIfNeeded(e);
+            throw e;
+        }
+    }
+
     @Override
     public void deleteRow (Row oldRow, boolean cascadeDelete) {
         RowDef rowDef = oldRow.rowType().table().rowDef();
@@ -143,6 +172,27 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
         }
     }
 
+    @Override
+    public void deleteRows(List<? extends Row> oldRows) {
+        try {
+            int start = 0;
+            while (start < oldRows.size()) {
+                RowDef rowDef = oldRows.get(start).rowType().table().rowDef();
+                List<RowData> rowDatas = new ArrayList<>();
+                int end = start;
+                while ((end < oldRows.size()) && (oldRows.get(end).rowType().table().rowDef() == rowDef)) {
+                    rowDatas.add(rowData(rowDef, oldRows.get(end), rowDataCreator()));
+                    end++;
+                }
+                store.deleteRows(getSession(), rowDef, rowDatas);
+                start = end;
+            }
+        } catch (InvalidOperationException e) {
+            rollbackIfNeeded(e);
+            throw e;
+        }
+    }
+
     @Override
     public long rowCount(Session session, RowType tableType) {
         RowDef rowDef = tableType.table().rowDef();
@@ -210,6 +260,18 @@ public class PersistitAdapter extends StoreAdapter implements KeyCreator
         return new Key(store.getDb());
     }
 
+    /**
+     * Have the pages for the traversal <code>exchange</code> is about to
+     * do read in the background, if that is enabled.
+     */
+    public void readAhead(Exchange exchange, Key.Direction direction)
+    {
+        PersistitReadAhead readAhead = store.getReadAhead();
+        if (readAhead != null) {
+            readAhead.readAhead(exchange.getTree(), exchange.getKey(), direction);
+        }
+    }
+
     public void handlePersistitException(PersistitException e)
     {
         handlePersistitException(getSession(), e);
@@ -66,6 +66,9 @@ class PersistitGroupCursor implements GroupCursor
             groupScan =
                 hKey == null ? new FullScan() :
                 hKeyDeep ? new HKeyAndDescendentsScan(hKey) : new HKeyWithoutDescendentsScan(hKey);
+            if (readAhead && (hKey != null)) {
+                adapter.readAhead(exchange, Key.GTEQ);
+            }
             idle = false;
         } catch (PersistitException e) {
             adapter.handlePersistitException(e);
@@ -85,6 +88,7 @@ class PersistitGroupCursor implements GroupCursor
                 if (next) {
                     row = adapter.newGroupRow();
                     row.copyFromExchange(exchange);
+                    adapter.rowRead();
                 }
             }
             if (LOG.isDebugEnabled()) {
@@ -143,11 +147,12 @@ class PersistitGroupCursor implements GroupCursor
 
     // For use by this package
 
-    PersistitGroupCursor(PersistitAdapter adapter, Group group)
+    PersistitGroupCursor(PersistitAdapter adapter, Group group, boolean readAhead)
         throws PersistitException
     {
         this.adapter = adapter;
         this.group = group;
+        this.readAhead = readAhead;
         this.controllingHKey = adapter.newKey();
         this.idle = true;
     }
@@ -173,6 +178,7 @@ class PersistitGroupCursor implements GroupCursor
 
     private final PersistitAdapter adapter;
     private final Group group;
+    private final boolean readAhead;
     private Exchange exchange;
     private Key controllingHKey;
     private PersistitHKey hKey;
@@ -111,6 +111,7 @@ class PersistitIndexCursor implements BindingsAwareCursor
     // For use by this package
 
     PersistitIndexCursor(QueryContext context,
+                         PersistitAdapter adapter,
                          IndexRowType indexRowType,
                          IndexKeyRange keyRange,
                          API.Ordering ordering,
@@ -124,7 +125,8 @@ class PersistitIndexCursor implements BindingsAwareCursor
         this.isTableIndex = indexRowType.index().isTableIndex();
         this.selector = selector;
         this.idle = true;
-        this.rowState = context.getStore().createIterationHelper(indexRowType);
+        // Lookahead cursors are the ones asked to open everything up front.
+        this.rowState = new PersistitIterationHelper(adapter, indexRowType, openAllSubCursors);
         this.indexCursor = IndexCursor.create(context, keyRange, ordering, rowState,  openAllSubCursors);
     }
 
@@ -34,6 +34,7 @@ public class PersistitIterationHelper implements IterationHelper
     {
         PersistitIndexRow row = adapter.takeIndexRow(indexRowType);
         row.copyFrom(exchange);
+        adapter.rowRead();
         return row;
     }
 
@@ -99,19 +100,29 @@ public class PersistitIterationHelper implements IterationHelper
 
     @Override
     public void preload(Direction dir, boolean deep) {
+        if (readAhead) {
+            adapter.readAhead(exchange, dir);
+        }
     }
 
     // PersistitIterationHelper interface
 
     public PersistitIterationHelper(PersistitAdapter adapter, IndexRowType indexRowType)
+    {
+        this(adapter, indexRowType, false);
+    }
+
+    public PersistitIterationHelper(PersistitAdapter adapter, IndexRowType indexRowType, boolean readAhead)
     {
         this.adapter = adapter;
         this.indexRowType = indexRowType.physicalRowType(); // In case we have a spatial index
+        this.readAhead = readAhead;
     }
 
     // Object state
 
     private final PersistitAdapter adapter;
     private final IndexRowType indexRowType;
+    private final boolean readAhead;
     private Exchange exchange;
 }
@@ -134,7 +134,9 @@ public abstract class IndexCursor implements BindingsAwareCursor
         return
             keyRange != null && keyRange.spatial()
             ? keyRange.hi() == null
-                ? IndexCursorSpatial_NearPoint.create(context, iterationHelper, keyRange)
+                ? keyRange.nearest()
+                    ? IndexCursorSpatial_NearestNeighbors.create(context, iterationHelper, keyRange)
+                    : IndexCursorSpatial_NearPoint.create(context, iterationHelper, keyRange)
                 : IndexCursorSpatial_InBox.create(context, iterationHelper, keyRange, openAllSubCursors)
             : ordering.allAscending() || ordering.allDescending()
                 ? (keyRange != null && keyRange.lexicographic()
@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.server.types.value.ValueRecord;
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.InternalIndexTypes;
+import com.foundationdb.server.api.dml.IndexRowPrefixSelector;
+import com.foundationdb.server.geophile.SpaceLatLon;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.TBigDecimal;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// An IndexCursorSpatial_NearestNeighbors yields points in order of their true distance from a given point.
+// It is a best-first search over the z-order decomposition of the space. The queue holds both regions (z-values),
+// ranked by the distance from the query point to the nearest point of the region, and index rows, ranked by the
+// distance to the row's point. A region is expanded by scanning its z interval: if it contains more than
+// REGION_SCAN_LIMIT rows, it is replaced by its two halves, otherwise by its rows. No unexpanded region can hold
+// a point nearer than its rank, so when a row reaches the head of the queue, it is the nearest remaining row.
+// Rows are therefore yielded incrementally, and the scan does no more work than needed to prove the k nearest
+// neighbors when consumed through a limit of k.
+
+class IndexCursorSpatial_NearestNeighbors extends IndexCursor
+{
+    @Override
+    public void open()
+    {
+        super.open();
+        // iterationHelper.closeIteration() closes the PersistitIndexCursor, releasing its Exchange.
+        // Regions are scanned using the Exchange of regionRowState.
+        iterationHelper.closeIteration();
+        ValueRecord loExpressions = keyRange.lo().boundExpressions(context, bindings);
+        BigDecimal lat = TBigDecimal.getWrapper(loExpressions.value(latColumn), latInstance).asBigDecimal();
+        BigDecimal lon = TBigDecimal.getWrapper(loExpressions.value(lonColumn), lonInstance).asBigDecimal();
+        // Validates the point
+        space.shuffle(lat, lon);
+        queryLat = SpaceLatLon.scaleLat(lat);
+        queryLon = SpaceLatLon.scaleLon(lon);
+        equalityValues = new ValueSource[latColumn];
+        for (int f = 0; f < latColumn; f++) {
+            equalityValues[f] = loExpressions.value(f);
+        }
+        queue.clear();
+        queue.add(new Entry(0L, ROOT, null));
+    }
+
+    @Override
+    public Row next()
+    {
+        super.next();
+        Row next = null;
+        while (next == null && isActive()) {
+            Entry entry = queue.poll();
+            if (entry == null) {
+                close();
+            } else if (entry.row != null) {
+                next = entry.row;
+            } else {
+                expand(entry.z);
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public void close()
+    {
+        if (isActive()) {
+            super.close();
+            queue.clear();
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (!isDestroyed()) {
+            close();
+            super.destroy();
+        }
+    }
+
+    // IndexCursorSpatial_NearestNeighbors interface
+
+    public static IndexCursorSpatial_NearestNeighbors create(QueryContext context,
+                                                             IterationHelper iterationHelper,
+                                                             IndexKeyRange keyRange)
+    {
+        return new IndexCursorSpatial_NearestNeighbors(context, iterationHelper, keyRange);
+    }
+
+    // For use by this class
+
+    private IndexCursorSpatial_NearestNeighbors(QueryContext context,
+                                                IterationHelper iterationHelper,
+                                                IndexKeyRange keyRange)
+    {
+        super(context, iterationHelper);
+        assert keyRange.spatial();
+        this.keyRange = keyRange;
+        this.physicalIndexRowType = keyRange.indexRowType().physicalRowType();
+        Index index = keyRange.indexRowType().index();
+        this.space = (SpaceLatLon) index.space();
+        this.latColumn = index.firstSpatialArgument();
+        this.lonColumn = latColumn + 1;
+        this.latInstance = index.getAllColumns().get(latColumn).getColumn().getType();
+        this.lonInstance = index.getAllColumns().get(lonColumn).getColumn().getType();
+        // The index column selector needs to select all the columns before the z column, and the z column itself.
+        this.indexColumnSelector = new IndexRowPrefixSelector(latColumn + 1);
+        this.zOrdering = new API.Ordering();
+        for (int f = 0; f < physicalIndexRowType.nFields(); f++) {
+            zOrdering.append(new TPreparedField(physicalIndexRowType.typeAt(f), f), true);
+        }
+        this.regionRowState = adapter.createIterationHelper(keyRange.indexRowType());
+    }
+
+    private void expand(long z)
+    {
+        List<Row> rows = new ArrayList<>();
+        boolean split = false;
+        IndexCursorUnidirectional<ValueSource> regionCursor =
+            new IndexCursorUnidirectional<>(context,
+                                            regionRowState,
+                                            regionKeyRange(z),
+                                            zOrdering,
+                                            ValueSortKeyAdapter.INSTANCE);
+        try {
+            regionCursor.rebind(bindings);
+            regionCursor.open();
+            Row row;
+            while (!split && (row = regionCursor.next()) != null) {
+                rows.add(row);
+                // A point can't be split, so all of its rows are taken.
+                split = rows.size() > REGION_SCAN_LIMIT && !space.isPoint(z);
+            }
+        } finally {
+            regionCursor.close();
+            regionCursor.destroy();
+        }
+        if (split) {
+            long left = space.leftChild(z);
+            long right = space.rightChild(z);
+            queue.add(new Entry(space.distanceSquared(queryLat, queryLon, left), left, null));
+            queue.add(new Entry(space.distanceSquared(queryLat, queryLon, right), right, null));
+        } else {
+            for (Row row : rows) {
+                long zRow = row.value(latColumn).getInt64();
+                queue.add(new Entry(space.distanceSquared(queryLat, queryLon, zRow), zRow, row));
+            }
+        }
+    }
+
+    private IndexKeyRange regionKeyRange(long z)
+    {
+        int indexRowFields = physicalIndexRowType.nFields();
+        SpatialIndexValueRecord zLoRow = new SpatialIndexValueRecord(indexRowFields);
+        SpatialIndexValueRecord zHiRow = new SpatialIndexValueRecord(indexRowFields);
+        // Take care of any equality restrictions before the spatial fields
+        for (int f = 0; f < latColumn; f++) {
+            zLoRow.value(f, equalityValues[f]);
+            zHiRow.value(f, equalityValues[f]);
+        }
+        Value loValue = new Value(InternalIndexTypes.LONG.instance(false));
+        Value hiValue = new Value(InternalIndexTypes.LONG.instance(false));
+        loValue.putInt64(space.zLo(z));
+        hiValue.putInt64(space.zHi(z));
+        zLoRow.value(latColumn, loValue);
+        zHiRow.value(latColumn, hiValue);
+        return IndexKeyRange.bounded(physicalIndexRowType,
+                                     new IndexBound(zLoRow, indexColumnSelector), true,
+                                     new IndexBound(zHiRow, indexColumnSelector), true);
+    }
+
+    // Class state
+
+    // The z-value covering the entire space.
+    private static final long ROOT = 0L;
+    // Maximum number of rows read from a region before splitting it.
+    static final int REGION_SCAN_LIMIT = 32;
+    private static final Comparator<Entry> BY_DISTANCE =
+        new Comparator<Entry>()
+        {
+            @Override
+            public int compare(Entry x, Entry y)
+            {
+                return Long.compare(x.distance, y.distance);
+            }
+        };
+
+    // Object state
+
+    private final IndexKeyRange keyRange;
+    private final IndexRowType physicalIndexRowType;
+    private final SpaceLatLon space;
+    private final int latColumn;
+    private final int lonColumn;
+    private final TInstance latInstance;
+    private final TInstance lonInstance;
+    private final IndexRowPrefixSelector indexColumnSelector;
+    private final API.Ordering zOrdering;
+    private final IterationHelper regionRowState;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(11, BY_DISTANCE);
+    private long queryLat;
+    private long queryLon;
+    private ValueSource[] equalityValues;
+
+    // Inner classes
+
+    // A region to be expanded (row == null), or a row to be yielded.
+    private static class Entry
+    {
+        Entry(long distance, long z, Row row)
+        {
+            this.distance = distance;
+            this.z = z;
+            this.row = row;
+        }
+
+        final long distance;
+        final long z;
+        final Row row;
+    }
+}
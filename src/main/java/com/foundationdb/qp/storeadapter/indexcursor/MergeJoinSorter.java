@@ -23,12 +23,12 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
 import com.fasterxml.sort.IterableSorterException;
-import com.fasterxml.sort.IteratingSorter;
 import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.API.Ordering;
 import com.foundationdb.qp.operator.CursorLifecycle;
@@ -42,11 +42,9 @@ import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.PersistitValueValueSource;
 import com.foundationdb.server.PersistitValueValueTarget;
 import com.foundationdb.server.api.dml.ColumnSelector;
-import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.error.MergeSortIOException;
 import com.foundationdb.server.error.StorageKeySizeExceededException;
 import com.foundationdb.server.types.TInstance;
-import com.foundationdb.server.types.common.types.TString;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.util.tap.InOutTap;
 import com.persistit.Key;
@@ -57,11 +55,7 @@ import com.persistit.exception.ConversionException;
 import com.persistit.exception.KeyTooLongException;
 
 import com.fasterxml.sort.DataReader;
-import com.fasterxml.sort.DataReaderFactory;
 import com.fasterxml.sort.DataWriter;
-import com.fasterxml.sort.DataWriterFactory;
-import com.fasterxml.sort.SortConfig;
-import com.fasterxml.sort.TempFileProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,13 +67,21 @@ import org.slf4j.LoggerFactory;
  *
  * <h1>Behavior</h1>
  *
- * The rows of the input stream are written into a memory pool (40MB as a default). When (if) the memory pool is filled,
- * the pool is written to disk, then emptied and rows are written again to the memory pool. When the final row is written
- * to the disk files are merged in an n-way merge sort. The default is 16 way sort. When all of the temp files are merged
- * into one file, the rows are read from the file in sorted order. 
+ * Each row is encoded as a single byte string key, the sort columns with descending segments inverted, plus the
+ * row value. These are first copied into a {@link SortBuffer}. If the whole input fits, the buffer is sorted in
+ * place and the rows are decoded from it in order.
+ *
+ * Otherwise the full buffer (40MB as a default) is sorted in place, written to disk as the first run and
+ * released. The rest of the input fills buffers that share the same memory, each sorted and written out as
+ * a run when full. The runs are then merged with a loser tree, 16 at a time, and the last pass is streamed
+ * to the output.
  * 
  * If the initial input stream does not produce enough data to overflow the memory pool, no disk files will be produced. 
  *
+ * With <code>fdbsql.sort.parallelism</code> above one, the memory after the first run is split into that many
+ * buffers, and each full buffer is sorted and written out by a pool thread while the next one is filled.
+ * Earlier merge passes also run in parallel.
+ *
  * <h1>Performance</h1>
  *
  * The MergeJoinSorter generates IO dependent upon the size of the input stream. 
@@ -92,11 +94,13 @@ import org.slf4j.LoggerFactory;
  * <h1>Memory Requirements</h1>
  *
  * The MergeJoinSorter allocates a single memory buffer for each instance to perform an initial sort,
- * defaulting to 40MB in size. 
+ * defaulting to 40MB in size. That buffer is released before any others are created, so the buffers
+ * in use never add up to more than that.
 */
 
 public class MergeJoinSorter implements Sorter {
     private static final Logger LOG = LoggerFactory.getLogger(MergeJoinSorter.class);
+    public static final String PARALLELISM_PROPERTY = "fdbsql.sort.parallelism";
 
     private QueryContext context;
     private QueryBindings bindings;
@@ -107,10 +111,11 @@ public class MergeJoinSorter implements Sorter {
 
     private final SorterAdapter<?, ?, ?> sorterAdapter;
     private final List<Integer> orderChanges;
-    private IteratingSorter<SortKey> iteratingSorter;
-    private Iterator<SortKey> sortIterator;
+    private final boolean[] segmentAscending;
+    private SortBuffer sortBuffer;
+    private ParallelRunSorter runSorter;
+    private ParallelRunSorter.Merge runMerge;
     private Key sortKey;
-    private Comparator<SortKey> compare;
     private API.SortOption sortOption;
     
     public MergeJoinSorter (QueryContext context,
@@ -135,17 +140,18 @@ public class MergeJoinSorter implements Sorter {
         sorterAdapter.init(rowType, this.ordering, this.sortKey, null, this.context, this.bindings, sortOption);
         // Explicitly use input ordering to avoid appended field
         this.orderChanges = new ArrayList<>();
-        List<Comparator<KeyState>> comparators = new ArrayList<>();
+        List<Boolean> ascending = new ArrayList<>();
         for(int i = 0; i < ordering.sortColumns(); ++i) {
-            Comparator<KeyState> c = ordering.ascending(i) ? ASC_COMPARATOR : DESC_COMPARATOR;
             if(i == 0 || ordering.ascending(i-1) != ordering.ascending(i)) {
                 orderChanges.add(i);
-                comparators.add(c);
+                ascending.add(ordering.ascending(i));
             }
         }
         this.orderChanges.add(ordering.sortColumns());
-        this.compare = new KeySortCompare(comparators);
-        
+        this.segmentAscending = new boolean[ascending.size()];
+        for(int i = 0; i < segmentAscending.length; ++i) {
+            segmentAscending[i] = ascending.get(i);
+        }
     }
 
     @Override
@@ -160,33 +166,87 @@ public class MergeJoinSorter implements Sorter {
 
     @Override
     public void close() {
-        if(iteratingSorter != null) {
-            iteratingSorter.close();
-            iteratingSorter = null;
-            sortIterator = null;
+        if(sortBuffer != null) {
+            sortBuffer.release();
+            sortBuffer = null;
+        }
+        if(runMerge != null) {
+            runMerge.close();
+            runMerge = null;
+        }
+        if(runSorter != null) {
+            runSorter.close();
+            runSorter = null;
         }
     }
     
+    /*
+     * Sort in memory if the input fits. Otherwise that first buffer is sorted
+     * where it is, written out as the first run and released, and the rest of
+     * the input fills buffers of an equal share of the memory, each sorted and
+     * written out as a run on another thread while the next is filled. With
+     * no parallelism, that is one buffer of all the memory at a time, so an
+     * overflowing sort never holds more than the memory limit.
+     */
     private void loadTree() throws IOException {
-        iteratingSorter = new IteratingSorter<>(getSortConfig(new MergeTempFileProvider(context)),
-                                                new KeyReaderFactory(),
-                                                new KeyWriterFactory(),
-                                                compare);
-        sortIterator = iteratingSorter.sort(new KeyReadCursor(input));
+        int parallelism = getParallelism();
+        KeyReadCursor reader = new KeyReadCursor(input);
+        SortBuffer buffer = new SortBuffer(getMaxMemory());
+        if(reader.fillBuffer(buffer)) {
+            sortBuffer = buffer;
+            sortBuffer.sort();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("MergeJoinSorter: sorted {} rows in memory", sortBuffer.size());
+            }
+            return;
+        }
+        runSorter = new ParallelRunSorter(parallelism, getMaxMemory(),
+                                          getTmpDirectory(), getTmpPrefix(),
+                                          sortOption == API.SortOption.SUPPRESS_DUPLICATES);
+        runSorter.addFirstRun(buffer);
+        buffer = runSorter.buffer();
+        while(!reader.fillBuffer(buffer)) {
+            runSorter.addRun(buffer);
+            buffer = runSorter.buffer();
+        }
+        runSorter.addRun(buffer);
+        runMerge = runSorter.merge();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("MergeJoinSorter: merging {} runs of {} rows", runSorter.runCount(), reader.rowCount());
+        }
     }
     
     private RowCursor cursor() {
-        return new KeyFinalCursor(sortIterator, rowType, sortOption, compare);
+        if(sortBuffer != null) {
+            return new BufferFinalCursor(sortBuffer, rowType, sortOption);
+        }
+        return new MergeFinalCursor(runMerge, rowType, sortOption);
     }
 
     public KeyReadCursor readCursor() { 
         return new KeyReadCursor(input); 
     }
     
-    private SortConfig getSortConfig (MergeTempFileProvider tmpFileProvider) {
-        long maxMemory = Long.parseLong(context.getServiceManager().getConfigurationService().getProperty("fdbsql.sort.memory"));
-        return new SortConfig().withTempFileProvider(tmpFileProvider).withMaxMemoryUsage(maxMemory);
+    private long getMaxMemory() {
+        return Long.parseLong(context.getServiceManager().getConfigurationService().getProperty("fdbsql.sort.memory"));
     }
+
+    private int getParallelism() {
+        int parallelism = Integer.parseInt(context.getServiceManager().getConfigurationService().getProperty(PARALLELISM_PROPERTY));
+        if(parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        return parallelism;
+    }
+
+    private File getTmpDirectory() {
+        return new File(context.getServiceManager().getConfigurationService().getProperty("fdbsql.tmp_dir"));
+    }
+
+    private String getTmpPrefix() {
+        return "sort-" + context.getSessionId() + "-";
+    }
+
     /*
      * Base class for reading/writing bytes - 
      * KeyState[] is list of key segments broken by ASC/DESC ordering
@@ -220,16 +280,6 @@ public class MergeJoinSorter implements Sorter {
         }
     }
 
-    private class KeyReaderFactory extends DataReaderFactory<SortKey> {
-
-        @Override
-        public DataReader<SortKey> constructReader(InputStream arg0)
-                throws IOException {
-            return new KeyReader(arg0);
-        }
-        
-    }
-    
     /*
      * Class to reak keys from the sorter (i.e. from disk)
      * back into memory for processing. 
@@ -313,28 +363,33 @@ public class MergeJoinSorter implements Sorter {
     /*
      * Class to read rows from the input cursor to the Sort, 
      * converting them to SortKey elements for the Sorter. 
+     * Each row is encoded into the reused key bytes and value,
+     * and copied from there into a SortBuffer or a SortKey.
      */
     public class KeyReadCursor extends DataReader<SortKey> {
         
         private int rowCount = 0;
         private int rowFields;
         private TInstance tFieldTypes[];
-        private AkCollator collators[];
         private PersistitValueValueTarget valueTarget;
         private RowCursor input;
+        private byte[] keyBytes = new byte[INITIAL_KEY_BYTES];
+        private int keyLength;
+        private Value convertValue;
+        private SortBuffer buffer;
+        private int bufferPosition;
+        private boolean pending = false;
         boolean done = false;
         
         public KeyReadCursor (RowCursor input) {
             this.rowFields = rowType.nFields();
             this.tFieldTypes = new TInstance[rowFields];
-            this.collators = new AkCollator[rowFields];
             for (int i = 0; i < rowFields; i++) {
                 tFieldTypes[i] = rowType.typeAt(i);
-                if (tFieldTypes[i] != null && tFieldTypes[i].typeClass() instanceof TString) {
-                    collators[i] = TString.getCollator(tFieldTypes[i]);
-                }
             }
             valueTarget = new PersistitValueValueTarget();
+            convertValue = new Value((Persistit)null, Value.INITIAL_SIZE, Value.DEFAULT_MAXIMUM_SIZE);
+            valueTarget.attach(convertValue);
             this.input = input;
         }
         
@@ -350,6 +405,17 @@ public class MergeJoinSorter implements Sorter {
 
         @Override
         public SortKey readNext() {
+            if(buffer != null) {
+                if(bufferPosition < buffer.size()) {
+                    return bufferedKey(bufferPosition++);
+                }
+                buffer.release();
+                buffer = null;
+            }
+            if(pending) {
+                pending = false;
+                return currentKey();
+            }
             SortKey sortKey = null;
             if(done) {
                 return sortKey;
@@ -361,8 +427,8 @@ public class MergeJoinSorter implements Sorter {
                 context.checkQueryCancelation();
     
                 if (row != null) {
-                    ++rowCount;
-                    sortKey = new SortKey (createKey(row, rowCount), createValue(row));
+                    encodeRow(row);
+                    sortKey = currentKey();
                 } else {
                     done = true;
                 }
@@ -371,13 +437,81 @@ public class MergeJoinSorter implements Sorter {
             }
             return sortKey;
         }
-        
-        private List<KeyState> createKey(Row row, int rowCount) {
-            KeyState[] states = new KeyState[orderChanges.size() - 1];
-            for(int i = 0; i < states.length; ++i) {
+
+        /**
+         * Read input rows into <code>buffer</code> until it is full or the input is exhausted.
+         * Returns <code>true</code> if all of the input fit. Otherwise, the row that did not
+         * fit goes first into the buffer passed to the next call.
+         */
+        public boolean fillBuffer(SortBuffer buffer) {
+            if(pending) {
+                // Left over from the last buffer; always fits an empty one.
+                buffer.add(keyBytes, keyLength, convertValue.getEncodedBytes(), convertValue.getEncodedSize());
+                pending = false;
+            }
+            while(true) {
+                loadTap.in();
+                try {
+                    Row row = input.next();
+                    context.checkQueryCancelation();
+                    if(row == null) {
+                        done = true;
+                        return true;
+                    }
+                    encodeRow(row);
+                    if(!buffer.add(keyBytes, keyLength, convertValue.getEncodedBytes(), convertValue.getEncodedSize())) {
+                        // Keep the row that did not fit for readNext().
+                        pending = true;
+                        return false;
+                    }
+                } finally {
+                    loadTap.out();
+                }
+            }
+        }
+
+        /** Return the rows of a filled <code>buffer</code> from readNext() ahead of the rest of the input. */
+        public KeyReadCursor drainBuffer(SortBuffer buffer) {
+            this.buffer = buffer;
+            this.bufferPosition = 0;
+            return this;
+        }
+
+        private void encodeRow(Row row) {
+            ++rowCount;
+            encodeKey(row, rowCount);
+            encodeValue(row);
+        }
+
+        private SortKey currentKey() {
+            KeyState state = new KeyState(Arrays.copyOf(keyBytes, keyLength));
+            return new SortKey(Collections.singletonList(state), new Value(convertValue));
+        }
+
+        private SortKey bufferedKey(int i) {
+            byte[] bytes = new byte[buffer.keyLength(i)];
+            buffer.getKey(i, bytes, 0);
+            int size = buffer.valueLength(i);
+            Value value = new Value((Persistit)null);
+            value.setMaximumSize(size);
+            value.ensureFit(size);
+            buffer.getValue(i, value.getEncodedBytes(), 0);
+            value.setEncodedSize(size);
+            return new SortKey(Collections.singletonList(new KeyState(bytes)), value);
+        }
+
+        /*
+         * Concatenate the encoded segments, inverting the bytes of descending ones.
+         * Key segments are self-delimiting, so the whole compares the same as
+         * comparing segment by segment.
+         */
+        private void encodeKey(Row row, int rowCount) {
+            keyLength = 0;
+            int nsegments = orderChanges.size() - 1;
+            for(int i = 0; i < nsegments; ++i) {
                 int startOffset = orderChanges.get(i);
                 int endOffset = orderChanges.get(i + 1);
-                boolean isLast = i == states.length - 1;
+                boolean isLast = i == nsegments - 1;
                 // Loop for key growth
                 while(true) {
                     try {
@@ -393,47 +527,25 @@ public class MergeJoinSorter implements Sorter {
                         enlargeKey(sortKey);
                     }
                 }
-                states[i] = new KeyState(sortKey);
-            }
-            return Arrays.asList(states);
-        }
-
-        private static final int SIZE_GRANULARITY = 256;
-        private Value createValue(Row row)
-        {
-            // Do a rough calculation of size of the row data
-            int size = 0;
-            for (int i = 0; i < rowFields; i++) {
-                if (tFieldTypes[i] == null) {
-                    size += 1;
-                } else if (tFieldTypes[i].typeClass().hasFixedSerializationSize()) {
-                    size += tFieldTypes[i].typeClass().fixedSerializationSize() + 2;
+                int size = sortKey.getEncodedSize();
+                if(keyLength + size > keyBytes.length) {
+                    keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, keyLength + size));
+                }
+                byte[] bytes = sortKey.getEncodedBytes();
+                if(segmentAscending[i]) {
+                    System.arraycopy(bytes, 0, keyBytes, keyLength, size);
                 } else {
-                    ValueSource src = row.value(i);
-                    if (!src.isNull()) {
-                        switch (TInstance.underlyingType(src.getType())) {
-                        case STRING:
-                            size += AkCollator.getString(src, collators[i]).length() * 2 + 3;
-                            break;
-                        case BYTES:
-                            size += src.getBytes().length;
-                            break;
-                        default:
-                            throw new IllegalArgumentException("Unexpected UnderlyingType: " + src.getType());
-                        }
-                    } else {
-                        size += 1;
+                    for(int j = 0; j < size; ++j) {
+                        keyBytes[keyLength + j] = (byte)~bytes[j];
                     }
                 }
+                keyLength += size;
             }
-            size = ((size  + SIZE_GRANULARITY - 1) / SIZE_GRANULARITY) * SIZE_GRANULARITY;
-            
-            // Create a new conversion value 
-            Value convertValue =  new Value ((Persistit)null, 
-                        Math.max(size, Value.INITIAL_SIZE), 
-                        Math.max(size, Value.DEFAULT_MAXIMUM_SIZE));
-            valueTarget.attach(convertValue);            
-            // Covert the row to the Value for storage in the SortKey
+        }
+
+        private void encodeValue(Row row)
+        {
+            // Covert the row into the reused Value, which keeps any growth
             while(true) {
                 try {
                     convertValue.clear();
@@ -451,9 +563,6 @@ public class MergeJoinSorter implements Sorter {
                     enlargeValue(convertValue);
                 }
             }
-            // reset some more un-needed internal state. But this requires 
-            // making a copy of the internal data, again. 
-            return new Value(convertValue);
         }
         
         private void enlargeValue (Value value) {
@@ -475,15 +584,6 @@ public class MergeJoinSorter implements Sorter {
         }
     }
     
-    private class KeyWriterFactory extends DataWriterFactory<SortKey> {
-
-        @Override
-        public DataWriter<SortKey> constructWriter(OutputStream arg0)
-                throws IOException {
-            return new KeyWriter(arg0);
-        }
-    }
-    
     public static class KeyWriter extends DataWriter<SortKey> {
         private OutputStream os;
         private ByteBuffer length;
@@ -524,31 +624,6 @@ public class MergeJoinSorter implements Sorter {
         }
     }
 
-    /*
-     * Class to provide temporary file names for inserting the 
-     * overflow buffers to disk. Implemented to the MergeJoin sort interface
-     */
-    public class MergeTempFileProvider implements TempFileProvider {
-        
-        private final File directory;
-        private final String prefix;
-        private final String suffix;
-        public MergeTempFileProvider (QueryContext context) {
-            directory = new File (context.getServiceManager().getConfigurationService().getProperty("fdbsql.tmp_dir"));
-            suffix = ".tmp";
-            String tmpPrefix;
-            tmpPrefix = "sort-" +  context.getSessionId() + "-";
-            prefix = tmpPrefix;
-        }
-
-        @Override
-        public File provide() throws IOException {
-            File f = File.createTempFile(prefix, suffix, directory);
-            f.deleteOnExit();
-            return f;
-        }
-    }
-    
     /*
      * Class to create a cursor which reads the final sorted output
      * from the file, returning each sorted item as a Row. 
@@ -611,17 +686,7 @@ public class MergeJoinSorter implements Sorter {
         }
         
         private Row createRow (SortKey key) {
-            ValuesHolderRow rowCopy = new ValuesHolderRow(rowType);
-            valueSource.attach(key.rowValue);
-            for(int i = 0 ; i < rowType.nFields(); ++i) {
-                valueSource.getReady(rowType.typeAt(i));
-                if (valueSource.isNull()) {
-                    rowCopy.valueAt(i).putNull();
-                } else {
-                    rowType.typeAt(i).writeCanonical(valueSource, rowCopy.valueAt(i));
-                }
-            }
-            return rowCopy;
+            return MergeJoinSorter.createRow(rowType, valueSource, key.rowValue);
         }
         @Override
         public void close() {
@@ -659,38 +724,212 @@ public class MergeJoinSorter implements Sorter {
     }
     
     /*
-     * Comparison function, implemented for MergeSort to compare
-     * the KeyState lists generated by the KeyReadCursor
+     * Class to create a cursor which reads the sorted rows
+     * directly from a SortBuffer that held all of the input.
      */
-    public static class KeySortCompare implements Comparator<SortKey> {
-        private final Comparator<KeyState>[] comparators;
+    public static class BufferFinalCursor implements RowCursor {
+        private boolean isIdle = true;
+        private boolean isDestroyed = false;
+
+        private final SortBuffer buffer;
+        private final RowType rowType;
+        private final API.SortOption sortOption;
+        private final PersistitValueValueSource valueSource;
+        private final Value value;
+        private int position = 0;
+        private int lastPosition = -1;
+
+        public BufferFinalCursor(SortBuffer buffer, RowType rowType, API.SortOption sortOption) {
+            this.buffer = buffer;
+            this.rowType = rowType;
+            this.sortOption = sortOption;
+            valueSource = new PersistitValueValueSource();
+            value = new Value((Persistit)null);
+        }
+
+        @Override
+        public void open() {
+            CursorLifecycle.checkIdle(this);
+            isIdle = false;
+        }
 
-        @SuppressWarnings("unchecked")
-        private KeySortCompare (List<Comparator<KeyState>> comparators) {
-            this.comparators = comparators.toArray(new Comparator[comparators.size()]);
+        @Override
+        public Row next() {
+            CursorLifecycle.checkIdleOrActive(this);
+            while (position < buffer.size()) {
+                int i = position++;
+                if (sortOption == API.SortOption.SUPPRESS_DUPLICATES &&
+                    lastPosition >= 0 && buffer.compareKeys(lastPosition, i) == 0) {
+                    continue;
+                }
+                lastPosition = i;
+                int size = buffer.valueLength(i);
+                if (size > value.getMaximumSize()) {
+                    value.setMaximumSize(size);
+                }
+                value.ensureFit(size);
+                buffer.getValue(i, value.getEncodedBytes(), 0);
+                value.setEncodedSize(size);
+                return createRow(rowType, valueSource, value);
+            }
+            return null;
         }
 
         @Override
-        public int compare(SortKey o1, SortKey o2) {
-            int val = 0;
-            for (int i = 0; (i < comparators.length) && (val == 0); ++i) {
-                val = comparators[i].compare(o1.sortKeys.get(i), o2.sortKeys.get(i));
+        public void close() {
+            CursorLifecycle.checkIdleOrActive(this);
+            if(!isIdle) {
+                isIdle = true;
+                // buffer released by MergeJoinSorter
             }
-            return val;
+        }
+
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector) {
+            throw new UnsupportedOperationException();            
+        }
+
+        @Override
+        public void destroy() {
+            isDestroyed = true;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return !isDestroyed && isIdle;
+        }
+
+        @Override
+        public boolean isActive() {
+            return !isDestroyed && !isIdle;
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return isDestroyed;
         }
     }
 
-    private static final Comparator<KeyState> ASC_COMPARATOR = new Comparator<KeyState>() {
+    /*
+     * Class to create a cursor which reads the sorted rows
+     * from the final merge of the runs of a ParallelRunSorter.
+     */
+    public static class MergeFinalCursor implements RowCursor {
+        private boolean isIdle = true;
+        private boolean isDestroyed = false;
+
+        private final ParallelRunSorter.Merge merge;
+        private final RowType rowType;
+        private final API.SortOption sortOption;
+        private final PersistitValueValueSource valueSource;
+        private final Value value;
+        private byte[] lastKey = new byte[0];
+        private int lastKeyLength = -1;
+
+        public MergeFinalCursor(ParallelRunSorter.Merge merge, RowType rowType, API.SortOption sortOption) {
+            this.merge = merge;
+            this.rowType = rowType;
+            this.sortOption = sortOption;
+            valueSource = new PersistitValueValueSource();
+            value = new Value((Persistit)null);
+        }
+
         @Override
-        public int compare(KeyState k1, KeyState k2) {
-            return k1.compareTo(k2);
+        public void open() {
+            CursorLifecycle.checkIdle(this);
+            isIdle = false;
         }
-    };
 
-    private static final Comparator<KeyState> DESC_COMPARATOR = new Comparator<KeyState>() {
         @Override
-        public int compare(KeyState k1, KeyState k2) {
-            return k2.compareTo(k1);
+        public Row next() {
+            CursorLifecycle.checkIdleOrActive(this);
+            try {
+                while (merge.next()) {
+                    if (sortOption == API.SortOption.SUPPRESS_DUPLICATES && !newKey()) {
+                        continue;
+                    }
+                    int size = merge.valueLength();
+                    if (size > value.getMaximumSize()) {
+                        value.setMaximumSize(size);
+                    }
+                    value.ensureFit(size);
+                    System.arraycopy(merge.value(), 0, value.getEncodedBytes(), 0, size);
+                    value.setEncodedSize(size);
+                    return createRow(rowType, valueSource, value);
+                }
+            } catch (IOException e) {
+                throw new MergeSortIOException(e);
+            }
+            return null;
         }
-    };
+
+        /*
+         * Runs are free of duplicates, but the same key
+         * can still come from more than one of them. 
+         */
+        private boolean newKey() {
+            byte[] key = merge.key();
+            int keyLength = merge.keyLength();
+            if (lastKeyLength >= 0 &&
+                SortBuffer.compare(lastKey, 0, lastKeyLength, key, 0, keyLength) == 0) {
+                return false;
+            }
+            if (lastKey.length < keyLength) {
+                lastKey = new byte[keyLength];
+            }
+            System.arraycopy(key, 0, lastKey, 0, keyLength);
+            lastKeyLength = keyLength;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            CursorLifecycle.checkIdleOrActive(this);
+            if(!isIdle) {
+                isIdle = true;
+                // merge closed by MergeJoinSorter
+            }
+        }
+
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector) {
+            throw new UnsupportedOperationException();            
+        }
+
+        @Override
+        public void destroy() {
+            isDestroyed = true;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return !isDestroyed && isIdle;
+        }
+
+        @Override
+        public boolean isActive() {
+            return !isDestroyed && !isIdle;
+        }
+
+        @Override
+        public boolean isDestroyed() {
+            return isDestroyed;
+        }
+    }
+
+    private static Row createRow(RowType rowType, PersistitValueValueSource valueSource, Value rowValue) {
+        ValuesHolderRow rowCopy = new ValuesHolderRow(rowType);
+        valueSource.attach(rowValue);
+        for(int i = 0 ; i < rowType.nFields(); ++i) {
+            valueSource.getReady(rowType.typeAt(i));
+            if (valueSource.isNull()) {
+                rowCopy.valueAt(i).putNull();
+            } else {
+                rowType.typeAt(i).writeCanonical(valueSource, rowCopy.valueAt(i));
+            }
+        }
+        return rowCopy;
+    }
+
+    private static final int INITIAL_KEY_BYTES = 256;
 }
@@ -0,0 +1,699 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * External sort of (key, value) byte string entries that uses several threads.
+ * <p/>
+ * The caller may start with a buffer of its own, which is written out as a
+ * run by {@link #addFirstRun} before any others are created. It then fills
+ * {@link SortBuffer}s obtained from {@link #buffer} and hands them back with
+ * {@link #addRun}. Each full buffer is sorted and written to a
+ * temporary file as a sorted run by a pool task while the caller goes on filling
+ * the next one. At most <code>parallelism</code> buffers exist at once, each
+ * getting an equal share of the memory limit, so the caller blocks when all of
+ * them are being sorted.
+ * <p/>
+ * {@link #merge} then merges the runs with a loser tree, {@link #FAN_IN} at a time.
+ * Passes before the last merge disjoint groups of runs in parallel into new runs.
+ * The last pass is returned as a {@link Merge} stream, with each of its runs
+ * read ahead a block at a time by the pool.
+ * <p/>
+ * Run file entries use the {@link SortBuffer#write} layout. The work is done by
+ * a fork-join pool shared by all sorts with the same parallelism.
+ */
+public class ParallelRunSorter
+{
+    public static final int FAN_IN = 16;
+
+    public ParallelRunSorter(int parallelism, long memoryLimit,
+                             File directory, String prefix,
+                             boolean suppressDuplicates)
+    {
+        this.parallelism = parallelism;
+        this.bufferMemory = Math.max(memoryLimit / parallelism, 1);
+        this.blockSize = (int)Math.max(MIN_BLOCK_SIZE,
+                                       Math.min(MAX_BLOCK_SIZE, memoryLimit / (parallelism * FAN_IN * 2)));
+        this.directory = directory;
+        this.prefix = prefix;
+        this.suppressDuplicates = suppressDuplicates;
+    }
+
+    /** Get an empty buffer, waiting for one to be written out if need be. */
+    public SortBuffer buffer() throws IOException
+    {
+        SortBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (buffersCreated < parallelism) {
+                buffersCreated++;
+                buffer = new SortBuffer(bufferMemory);
+            }
+            else {
+                try {
+                    buffer = freeBuffers.take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Sort <code>buffer</code>, which did not come from {@link #buffer}, and
+     * write it out as a run on the calling thread, then release it. This
+     * keeps it from being held alongside the buffers that come after it.
+     */
+    public void addFirstRun(SortBuffer buffer) throws IOException
+    {
+        try {
+            buffer.sort();
+            pendingRuns.add(new CompletedRun(writeRun(buffer)));
+        }
+        finally {
+            buffer.release();
+        }
+    }
+
+    /** Sort <code>buffer</code> and write it out as a run in the background. */
+    public void addRun(final SortBuffer buffer)
+    {
+        if (buffer.isEmpty()) {
+            freeBuffers.add(buffer);
+            return;
+        }
+        pendingRuns.add(pool().submit(new Callable<Run>() {
+            @Override
+            public Run call() throws IOException {
+                try {
+                    buffer.sort();
+                    return writeRun(buffer);
+                }
+                finally {
+                    buffer.clear();
+                    freeBuffers.add(buffer);
+                }
+            }
+        }));
+    }
+
+    /** Wait for all runs and merge them down to a single stream. */
+    public Merge merge() throws IOException
+    {
+        List<Run> runs = awaitAll(pendingRuns);
+        pendingRuns.clear();
+        this.runs = runs;
+        releaseBuffers();
+        while (runs.size() > FAN_IN) {
+            List<Future<Run>> merges = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += FAN_IN) {
+                final List<Run> group = runs.subList(i, Math.min(i + FAN_IN, runs.size()));
+                merges.add(pool().submit(new Callable<Run>() {
+                    @Override
+                    public Run call() throws IOException {
+                        return mergeRuns(group);
+                    }
+                }));
+            }
+            List<Run> merged = awaitAll(merges);
+            for (Run run : runs) {
+                run.delete();
+            }
+            runs = merged;
+            this.runs = runs;
+        }
+        return new Merge(runs, pool(), blockSize);
+    }
+
+    public int runCount()
+    {
+        return (runs != null) ? runs.size() : pendingRuns.size();
+    }
+
+    /** Stop any background work and delete all runs. */
+    public void close()
+    {
+        try {
+            for (Run run : awaitAll(pendingRuns)) {
+                run.delete();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // Runs that were written have been deleted.
+        }
+        pendingRuns.clear();
+        if (runs != null) {
+            for (Run run : runs) {
+                run.delete();
+            }
+            runs = null;
+        }
+        releaseBuffers();
+    }
+
+    /** A stream of entries merged from several runs, in key order. */
+    public static class Merge
+    {
+        /** Advance to the next entry, returning <code>false</code> at the end. */
+        public boolean next() throws IOException
+        {
+            if (started) {
+                int winner = tree[0];
+                readers[winner].advance();
+                replay(winner);
+            }
+            started = true;
+            return !readers[tree[0]].atEnd;
+        }
+
+        public byte[] key()
+        {
+            return readers[tree[0]].key;
+        }
+
+        public int keyLength()
+        {
+            return readers[tree[0]].keyLength;
+        }
+
+        public byte[] value()
+        {
+            return readers[tree[0]].value;
+        }
+
+        public int valueLength()
+        {
+            return readers[tree[0]].valueLength;
+        }
+
+        public void close()
+        {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+
+        // For use by this class
+
+        private Merge(List<Run> runs, ExecutorService pool, int blockSize) throws IOException
+        {
+            int k = Math.max(runs.size(), 1);
+            readers = new RunReader[k];
+            try {
+                for (int i = 0; i < k; i++) {
+                    readers[i] = (i < runs.size()) ? new RunReader(runs.get(i), pool, blockSize) : new RunReader();
+                }
+            }
+            catch (IOException e) {
+                close();
+                throw e;
+            }
+            for (RunReader reader : readers) {
+                reader.advance();
+            }
+            tree = new int[k];
+            tree[0] = (k == 1) ? 0 : build(1);
+        }
+
+        // The readers are the leaves k .. 2k-1 of a complete binary tree whose
+        // internal nodes 1 .. k-1 hold the loser of the match played there.
+        private int build(int node)
+        {
+            int k = readers.length;
+            if (node >= k) {
+                return node - k;
+            }
+            int left = build(2 * node);
+            int right = build(2 * node + 1);
+            if (beats(right, left)) {
+                tree[node] = left;
+                return right;
+            }
+            else {
+                tree[node] = right;
+                return left;
+            }
+        }
+
+        private void replay(int winner)
+        {
+            for (int node = (winner + readers.length) / 2; node > 0; node /= 2) {
+                if (beats(tree[node], winner)) {
+                    int loser = winner;
+                    winner = tree[node];
+                    tree[node] = loser;
+                }
+            }
+            tree[0] = winner;
+        }
+
+        /** Whether <code>i</code> comes before <code>j</code>. Ties go to the earlier run. */
+        private boolean beats(int i, int j)
+        {
+            RunReader ri = readers[i], rj = readers[j];
+            if (ri.atEnd || rj.atEnd) {
+                return !ri.atEnd;
+            }
+            int c = SortBuffer.compare(ri.key, 0, ri.keyLength, rj.key, 0, rj.keyLength);
+            return (c < 0) || ((c == 0) && (i < j));
+        }
+
+        private final RunReader[] readers;
+        private final int[] tree;
+        private boolean started;
+    }
+
+    // For use by this class
+
+    private ExecutorService pool()
+    {
+        if (pool == null) {
+            pool = sharedPool(parallelism);
+        }
+        return pool;
+    }
+
+    private static synchronized ExecutorService sharedPool(int parallelism)
+    {
+        ForkJoinPool pool = sharedPools.get(parallelism);
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+            sharedPools.put(parallelism, pool);
+        }
+        return pool;
+    }
+
+    private void releaseBuffers()
+    {
+        SortBuffer buffer;
+        while ((buffer = freeBuffers.poll()) != null) {
+            buffer.release();
+        }
+    }
+
+    private Run writeRun(SortBuffer buffer) throws IOException
+    {
+        Run run = new Run(File.createTempFile(prefix, ".tmp", directory));
+        try (DataOutputStream output = openRun(run)) {
+            int last = -1;
+            for (int i = 0; i < buffer.size(); i++) {
+                if (suppressDuplicates && (last >= 0) && (buffer.compareKeys(last, i) == 0)) {
+                    continue;
+                }
+                buffer.write(i, output);
+                run.count++;
+                last = i;
+            }
+        }
+        catch (IOException e) {
+            run.delete();
+            throw e;
+        }
+        return run;
+    }
+
+    private Run mergeRuns(List<Run> group) throws IOException
+    {
+        Run run = new Run(File.createTempFile(prefix, ".tmp", directory));
+        Merge merge = null;
+        try (DataOutputStream output = openRun(run)) {
+            // Intermediate passes are already parallel; no read ahead.
+            merge = new Merge(group, null, blockSize);
+            byte[] lastKey = new byte[0];
+            int lastLength = -1;
+            while (merge.next()) {
+                byte[] key = merge.key();
+                int keyLength = merge.keyLength();
+                if (suppressDuplicates) {
+                    if ((lastLength >= 0) &&
+                        (SortBuffer.compare(lastKey, 0, lastLength, key, 0, keyLength) == 0)) {
+                        continue;
+                    }
+                    if (lastKey.length < keyLength) {
+                        lastKey = new byte[keyLength];
+                    }
+                    System.arraycopy(key, 0, lastKey, 0, keyLength);
+                    lastLength = keyLength;
+                }
+                output.writeInt(keyLength);
+                output.write(key, 0, keyLength);
+                output.writeInt(merge.valueLength());
+                output.write(merge.value(), 0, merge.valueLength());
+                run.count++;
+            }
+        }
+        catch (IOException e) {
+            run.delete();
+            throw e;
+        }
+        finally {
+            if (merge != null) {
+                merge.close();
+            }
+        }
+        return run;
+    }
+
+    private DataOutputStream openRun(Run run) throws IOException
+    {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file), blockSize));
+    }
+
+    /** Wait for all of <code>futures</code>. If any failed, delete the others' runs and throw. */
+    private static List<Run> awaitAll(List<Future<Run>> futures) throws IOException
+    {
+        List<Run> runs = new ArrayList<>(futures.size());
+        IOException ioFailure = null;
+        RuntimeException failure = null;
+        for (Future<Run> future : futures) {
+            try {
+                runs.add(await(future));
+            }
+            catch (IOException e) {
+                ioFailure = e;
+            }
+            catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        if ((ioFailure != null) || (failure != null)) {
+            for (Run run : runs) {
+                run.delete();
+            }
+            if (ioFailure != null) {
+                throw ioFailure;
+            }
+            throw failure;
+        }
+        return runs;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // Inner classes
+
+    private static class Run
+    {
+        Run(File file)
+        {
+            this.file = file;
+        }
+
+        void delete()
+        {
+            file.delete();
+        }
+
+        final File file;
+        long count;
+    }
+
+    /** A run written on the calling thread, for the list of pending runs. */
+    private static class CompletedRun implements Future<Run>
+    {
+        CompletedRun(Run run)
+        {
+            this.run = run;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return true;
+        }
+
+        @Override
+        public Run get()
+        {
+            return run;
+        }
+
+        @Override
+        public Run get(long timeout, TimeUnit unit)
+        {
+            return run;
+        }
+
+        private final Run run;
+    }
+
+    private static class RunReader
+    {
+        /** A reader with no entries. */
+        RunReader()
+        {
+            this.input = null;
+            this.remaining = 0;
+        }
+
+        RunReader(Run run, ExecutorService pool, int blockSize) throws IOException
+        {
+            InputStream stream = new FileInputStream(run.file);
+            this.input = new DataInputStream(new PrefetchInputStream(stream, pool, blockSize));
+            this.remaining = run.count;
+        }
+
+        void advance() throws IOException
+        {
+            if (remaining == 0) {
+                atEnd = true;
+                return;
+            }
+            remaining--;
+            keyLength = input.readInt();
+            if (key.length < keyLength) {
+                key = new byte[Math.max(keyLength, key.length * 2)];
+            }
+            input.readFully(key, 0, keyLength);
+            valueLength = input.readInt();
+            if (value.length < valueLength) {
+                value = new byte[Math.max(valueLength, value.length * 2)];
+            }
+            input.readFully(value, 0, valueLength);
+        }
+
+        void close()
+        {
+            if (input != null) {
+                try {
+                    input.close();
+                }
+                catch (IOException e) {
+                    // Only read from; nothing lost.
+                }
+            }
+        }
+
+        private final DataInputStream input;
+        private long remaining;
+        boolean atEnd;
+        byte[] key = new byte[64], value = new byte[256];
+        int keyLength, valueLength;
+    }
+
+    /**
+     * Input stream that reads the next block in the background while the
+     * current one is consumed. Without a pool, blocks are read on demand.
+     */
+    private static class PrefetchInputStream extends InputStream
+    {
+        PrefetchInputStream(InputStream input, ExecutorService pool, int blockSize)
+        {
+            this.input = input;
+            this.pool = pool;
+            this.current = new byte[blockSize];
+            this.next = new byte[blockSize];
+            if (pool != null) {
+                prefetch();
+            }
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if ((position >= limit) && !fill()) {
+                return -1;
+            }
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            if ((position >= limit) && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (pending != null) {
+                // Do not close underneath a read in progress.
+                try {
+                    await(pending);
+                }
+                catch (IOException | RuntimeException e) {
+                    // Closing anyway.
+                }
+                pending = null;
+            }
+            input.close();
+        }
+
+        private void prefetch()
+        {
+            final byte[] block = next;
+            pending = pool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return readBlock(block);
+                }
+            });
+        }
+
+        private boolean fill() throws IOException
+        {
+            if (eof) {
+                return false;
+            }
+            int n;
+            if (pool != null) {
+                n = await(pending);
+                pending = null;
+            }
+            else {
+                n = readBlock(next);
+            }
+            byte[] filled = next;
+            next = current;
+            current = filled;
+            position = 0;
+            limit = n;
+            // A short block is the last one.
+            eof = (n < current.length);
+            if (!eof && (pool != null)) {
+                prefetch();
+            }
+            return n > 0;
+        }
+
+        private int readBlock(byte[] block) throws IOException
+        {
+            int n = 0;
+            while (n < block.length) {
+                int r = input.read(block, n, block.length - n);
+                if (r < 0) {
+                    break;
+                }
+                n += r;
+            }
+            return n;
+        }
+
+        private final InputStream input;
+        private final ExecutorService pool;
+        private byte[] current, next;
+        private int position, limit;
+        private boolean eof;
+        private Future<Integer> pending;
+    }
+
+    // Class state
+
+    private static final int MIN_BLOCK_SIZE = 4096;
+    private static final int MAX_BLOCK_SIZE = 1024 * 1024;
+    private static final Map<Integer,ForkJoinPool> sharedPools = new HashMap<>();
+
+    // Object state
+
+    private final int parallelism;
+    private final long bufferMemory;
+    private final int blockSize;
+    private final File directory;
+    private final String prefix;
+    private final boolean suppressDuplicates;
+    private final BlockingQueue<SortBuffer> freeBuffers = new LinkedBlockingQueue<>();
+    private final List<Future<Run>> pendingRuns = new ArrayList<>();
+    private int buffersCreated;
+    private ExecutorService pool;
+    private List<Run> runs;
+}
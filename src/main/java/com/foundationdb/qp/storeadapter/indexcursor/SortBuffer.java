@@ -0,0 +1,333 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory sort buffer of (key, value) byte string entries, ordered by
+ * unsigned lexicographic comparison of the keys.
+ * <p/>
+ * Entries are copied end to end into large <code>byte[]</code> pages, so
+ * that no objects are created per entry. Each entry is located by a packed
+ * page / offset address, kept in a <code>long[]</code> alongside the first
+ * eight bytes of its key. Sorting works on these two primitive arrays and
+ * only goes to the pages when the key prefixes are equal.
+ * <p/>
+ * Entry layout in a page: key length, key bytes, value length, value bytes,
+ * with the lengths as four byte big-endian integers.
+ */
+public class SortBuffer
+{
+    public static final int DEFAULT_PAGE_SIZE = 1024 * 1024;
+
+    public SortBuffer(long memoryLimit)
+    {
+        this(memoryLimit, DEFAULT_PAGE_SIZE);
+    }
+
+    public SortBuffer(long memoryLimit, int pageSize)
+    {
+        this.memoryLimit = memoryLimit;
+        this.pageSize = pageSize;
+        this.prefixes = new long[INITIAL_ENTRIES];
+        this.addresses = new long[INITIAL_ENTRIES];
+    }
+
+    /**
+     * Add an entry. Returns <code>false</code>, without adding it, if
+     * that would exceed the memory limit. An entry is always accepted by
+     * an empty buffer.
+     */
+    public boolean add(byte[] key, int keyLength, byte[] value, int valueLength)
+    {
+        int entrySize = 8 + keyLength + valueLength;
+        if (size == prefixes.length) {
+            int nsize = size * 2;
+            if ((size > 0) && (memoryUsed() + entrySize + nsize * 8L > memoryLimit)) {
+                return false;
+            }
+            prefixes = Arrays.copyOf(prefixes, nsize);
+            addresses = Arrays.copyOf(addresses, nsize);
+        }
+        if ((currentPage == null) || (pageOffset + entrySize > currentPage.length)) {
+            if ((usedPages < pages.size()) && (pages.get(usedPages).length >= entrySize)) {
+                // Left from before clear().
+                currentPage = pages.get(usedPages);
+            }
+            else {
+                int newSize = Math.max(pageSize, entrySize);
+                if ((size > 0) && (memoryUsed() + newSize > memoryLimit)) {
+                    return false;
+                }
+                currentPage = new byte[newSize];
+                if (usedPages < pages.size()) {
+                    pageBytes -= pages.get(usedPages).length;
+                    pages.set(usedPages, currentPage);
+                }
+                else {
+                    pages.add(currentPage);
+                }
+                pageBytes += newSize;
+            }
+            currentPageIndex = usedPages++;
+            pageOffset = 0;
+        }
+        byte[] page = currentPage;
+        int offset = pageOffset;
+        prefixes[size] = prefix(key, 0, keyLength);
+        addresses[size] = ((long)currentPageIndex << 32) | offset;
+        size++;
+        putInt(page, offset, keyLength);
+        offset += 4;
+        System.arraycopy(key, 0, page, offset, keyLength);
+        offset += keyLength;
+        putInt(page, offset, valueLength);
+        offset += 4;
+        System.arraycopy(value, 0, page, offset, valueLength);
+        offset += valueLength;
+        pageOffset = offset;
+        return true;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /** Approximate heap used by the buffer. */
+    public long memoryUsed()
+    {
+        return pageBytes + prefixes.length * 16L;
+    }
+
+    /** Sort the entries added so far by key. */
+    public void sort()
+    {
+        quickSort(0, size - 1);
+    }
+
+    public int keyLength(int i)
+    {
+        long address = addresses[i];
+        return getInt(pages.get(page(address)), offset(address));
+    }
+
+    /** Copy the key of the <code>i</code>th entry into <code>dest</code>. */
+    public void getKey(int i, byte[] dest, int destPos)
+    {
+        long address = addresses[i];
+        byte[] page = pages.get(page(address));
+        int offset = offset(address);
+        System.arraycopy(page, offset + 4, dest, destPos, getInt(page, offset));
+    }
+
+    public int valueLength(int i)
+    {
+        long address = addresses[i];
+        byte[] page = pages.get(page(address));
+        int offset = offset(address);
+        return getInt(page, offset + 4 + getInt(page, offset));
+    }
+
+    /** Copy the value of the <code>i</code>th entry into <code>dest</code>. */
+    public void getValue(int i, byte[] dest, int destPos)
+    {
+        long address = addresses[i];
+        byte[] page = pages.get(page(address));
+        int offset = offset(address);
+        offset += 4 + getInt(page, offset);
+        System.arraycopy(page, offset + 4, dest, destPos, getInt(page, offset));
+    }
+
+    public int compareKeys(int i, int j)
+    {
+        return compareEntries(addresses[i], addresses[j]);
+    }
+
+    /** Write the <code>i</code>th entry in the same layout as it is held. */
+    public void write(int i, DataOutput output) throws IOException
+    {
+        long address = addresses[i];
+        byte[] page = pages.get(page(address));
+        int offset = offset(address);
+        int keyLength = getInt(page, offset);
+        int valueLength = getInt(page, offset + 4 + keyLength);
+        output.write(page, offset, 8 + keyLength + valueLength);
+    }
+
+    /** Remove all entries, keeping the pages for reuse. */
+    public void clear()
+    {
+        size = 0;
+        currentPage = null;
+        usedPages = 0;
+        pageOffset = 0;
+    }
+
+    /** Release all memory. */
+    public void release()
+    {
+        clear();
+        pages.clear();
+        pageBytes = 0;
+        prefixes = new long[INITIAL_ENTRIES];
+        addresses = new long[INITIAL_ENTRIES];
+    }
+
+    /** Unsigned lexicographic comparison of two byte strings. */
+    public static int compare(byte[] b1, int off1, int len1, byte[] b2, int off2, int len2)
+    {
+        int len = Math.min(len1, len2);
+        for (int i = 0; i < len; i++) {
+            int c = (b1[off1 + i] & 0xFF) - (b2[off2 + i] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return len1 - len2;
+    }
+
+    // For use by this class
+
+    private static int page(long address)
+    {
+        return (int)(address >>> 32);
+    }
+
+    private static int offset(long address)
+    {
+        return (int)address;
+    }
+
+    private static void putInt(byte[] b, int off, int v)
+    {
+        b[off] = (byte)(v >>> 24);
+        b[off + 1] = (byte)(v >>> 16);
+        b[off + 2] = (byte)(v >>> 8);
+        b[off + 3] = (byte)v;
+    }
+
+    private static int getInt(byte[] b, int off)
+    {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) |
+               ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    /** First eight bytes of the key, zero padded, as a big-endian long. */
+    private static long prefix(byte[] key, int off, int len)
+    {
+        long prefix = 0;
+        for (int i = 0; i < 8; i++) {
+            prefix <<= 8;
+            if (i < len) {
+                prefix |= key[off + i] & 0xFF;
+            }
+        }
+        return prefix;
+    }
+
+    private int compareEntries(long a1, long a2)
+    {
+        byte[] p1 = pages.get(page(a1));
+        byte[] p2 = pages.get(page(a2));
+        int o1 = offset(a1), o2 = offset(a2);
+        return compare(p1, o1 + 4, getInt(p1, o1), p2, o2 + 4, getInt(p2, o2));
+    }
+
+    private int compareAt(int i, int j)
+    {
+        // Unsigned comparison of the prefixes first.
+        long x = prefixes[i] + Long.MIN_VALUE, y = prefixes[j] + Long.MIN_VALUE;
+        if (x != y) {
+            return (x < y) ? -1 : 1;
+        }
+        return compareEntries(addresses[i], addresses[j]);
+    }
+
+    private void swap(int i, int j)
+    {
+        long t = prefixes[i]; prefixes[i] = prefixes[j]; prefixes[j] = t;
+        t = addresses[i]; addresses[i] = addresses[j]; addresses[j] = t;
+    }
+
+    private void quickSort(int lo, int hi)
+    {
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            // Median of three as pivot, moved to lo.
+            int mid = (lo + hi) >>> 1;
+            if (compareAt(mid, lo) < 0) swap(mid, lo);
+            if (compareAt(hi, lo) < 0) swap(hi, lo);
+            if (compareAt(hi, mid) < 0) swap(hi, mid);
+            swap(lo, mid);
+            // Three way partition: [lo, lt) < pivot, [lt, i) == pivot, (gt, hi] > pivot.
+            int lt = lo, i = lo + 1, gt = hi;
+            while (i <= gt) {
+                int c = compareAt(i, lt);
+                if (c < 0) {
+                    swap(lt++, i++);
+                }
+                else if (c > 0) {
+                    swap(i, gt--);
+                }
+                else {
+                    i++;
+                }
+            }
+            // Recurse into the smaller side to bound the stack.
+            if (lt - lo < hi - gt) {
+                quickSort(lo, lt - 1);
+                lo = gt + 1;
+            }
+            else {
+                quickSort(gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; (j > lo) && (compareAt(j, j - 1) < 0); j--) {
+                swap(j, j - 1);
+            }
+        }
+    }
+
+    // Class state
+
+    private static final int INITIAL_ENTRIES = 1024;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    // Object state
+
+    private final long memoryLimit;
+    private final int pageSize;
+    private final List<byte[]> pages = new ArrayList<>();
+    private long pageBytes;
+    private byte[] currentPage;
+    private int currentPageIndex, usedPages, pageOffset;
+    private long[] prefixes, addresses;
+    private int size;
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueTargets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory hash table of rows keyed on some of their fields, as built by the
+ * hash join. Rows are divided among a fixed number of partitions by key hash.
+ * When the estimated size of the resident rows exceeds the memory budget, the
+ * largest resident partition is written to a {@link RowSpillFile} and any
+ * further rows for it go directly to that file.
+ * <p/>
+ * Lookups into a spilled partition read the partition back in, first dropping
+ * other reloaded partitions (whose files remain) to stay within budget. Since
+ * probes arrive one outer row at a time, an outer input whose keys alternate
+ * among many spilled partitions will reread them repeatedly; the budget should
+ * be large enough for the usual case.
+ * <p/>
+ * Rows with a null in any key field are never matched and so are not stored.
+ */
+public class HashTable
+{
+    public HashTable(QueryContext context, RowType rowType, int[] keyFields,
+                     List<AkCollator> collators, long memoryBudget)
+    {
+        this.context = context;
+        this.rowType = rowType;
+        this.keyFields = keyFields;
+        this.keyTypes = new TInstance[keyFields.length];
+        this.collators = new AkCollator[keyFields.length];
+        for (int i = 0; i < keyFields.length; i++) {
+            TInstance type = rowType.typeAt(keyFields[i]);
+            keyTypes[i] = type;
+            AkCollator collator = (collators == null) ? null : collators.get(i);
+            if ((collator == null) && (type.typeClass() instanceof TString)) {
+                collator = TString.getCollator(type);
+            }
+            this.collators[i] = collator;
+        }
+        this.memoryBudget = memoryBudget;
+        this.partitions = new Partition[PARTITIONS];
+        for (int i = 0; i < PARTITIONS; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /** Add a copy of <code>row</code>. */
+    public void add(Row row)
+    {
+        ValueSource[] values = new ValueSource[keyFields.length];
+        ValuesHolderRow copy = new ValuesHolderRow(rowType);
+        for (int i = 0; i < rowType.nFields(); i++) {
+            ValueTargets.copyFrom(row.value(i), copy.valueAt(i));
+        }
+        for (int i = 0; i < keyFields.length; i++) {
+            values[i] = copy.value(keyFields[i]);
+            if (values[i].isNull()) {
+                return;
+            }
+        }
+        HashKey key = new HashKey(keyTypes, values, hash(values));
+        Partition partition = partitions[partition(key.hash)];
+        rowCount++;
+        if (partition.spillFile != null) {
+            partition.spillFile.write(copy);
+            partition.memoryOnDisk += estimateSize(copy);
+        }
+        else {
+            partition.add(key, copy);
+            if (memoryUsed > memoryBudget) {
+                spillLargest();
+            }
+        }
+    }
+
+    /**
+     * Return the stored rows whose key fields are equal to <code>values</code>,
+     * which have the given types.
+     */
+    public List<Row> matchRows(ValueSource[] values, TInstance[] types)
+    {
+        assert values.length == keyFields.length;
+        for (ValueSource value : values) {
+            if (value.isNull()) {
+                return Collections.emptyList();
+            }
+        }
+        HashKey key = new HashKey(types, values, hash(values));
+        Partition partition = partitions[partition(key.hash)];
+        if (!partition.resident) {
+            reload(partition);
+        }
+        List<Row> rows = partition.rows.get(key);
+        return (rows == null) ? Collections.<Row>emptyList() : rows;
+    }
+
+    public long rowCount()
+    {
+        return rowCount;
+    }
+
+    public int spilledPartitions()
+    {
+        int count = 0;
+        for (Partition partition : partitions) {
+            if (partition.spillFile != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Release memory and delete any spill files. */
+    public void close()
+    {
+        for (Partition partition : partitions) {
+            partition.clear();
+            if (partition.spillFile != null) {
+                partition.spillFile.delete();
+                partition.spillFile = null;
+            }
+        }
+        memoryUsed = 0;
+    }
+
+    /** Rough estimate of the heap occupied by a row copy. */
+    public static long estimateSize(Row row)
+    {
+        long size = ROW_OVERHEAD;
+        for (int i = 0; i < row.rowType().nFields(); i++) {
+            ValueSource value = row.value(i);
+            size += VALUE_OVERHEAD;
+            if (value.isNull() || !value.hasRawValue()) {
+                continue;
+            }
+            switch (TInstance.underlyingType(value.getType())) {
+            case STRING:
+                size += 2 * value.getString().length();
+                break;
+            case BYTES:
+                size += value.getBytes().length;
+                break;
+            default:
+                break;
+            }
+        }
+        return size;
+    }
+
+    // For use by this class
+
+    private int hash(ValueSource[] values)
+    {
+        int h = 0;
+        for (int i = 0; i < values.length; i++) {
+            h = h * 31 + ValueSources.hash(values[i], collators[i]);
+        }
+        // Spread so that the partition and the map bucket use different bits.
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    private static int partition(int hash)
+    {
+        return (hash >>> 24) & (PARTITIONS - 1);
+    }
+
+    private void spillLargest()
+    {
+        while (memoryUsed > memoryBudget) {
+            Partition largest = null;
+            for (Partition partition : partitions) {
+                if (partition.resident && (partition.spillFile == null) &&
+                    ((largest == null) || (partition.memory > largest.memory))) {
+                    largest = partition;
+                }
+            }
+            if ((largest == null) || (largest.memory == 0)) {
+                break;
+            }
+            largest.spillFile = new RowSpillFile(context, rowType, "hash");
+            for (List<Row> rows : largest.rows.values()) {
+                for (Row row : rows) {
+                    largest.spillFile.write(row);
+                }
+            }
+            largest.memoryOnDisk = largest.memory;
+            largest.clear();
+            largest.resident = false;
+            LOG.debug("Spilled hash partition to {}", largest.spillFile);
+        }
+    }
+
+    private void reload(Partition target)
+    {
+        // Only partitions that came from a file can be dropped again, since
+        // memory-only partitions have no other copy.
+        for (Partition partition : partitions) {
+            if (memoryUsed + target.memoryOnDisk <= memoryBudget) {
+                break;
+            }
+            if (partition.resident && (partition.spillFile != null)) {
+                partition.clear();
+                partition.resident = false;
+            }
+        }
+        RowSpillFile file = target.spillFile;
+        file.startReading();
+        Row row;
+        while ((row = file.read()) != null) {
+            ValueSource[] values = new ValueSource[keyFields.length];
+            for (int i = 0; i < keyFields.length; i++) {
+                values[i] = row.value(keyFields[i]);
+            }
+            target.add(new HashKey(keyTypes, values, hash(values)), row);
+        }
+        target.resident = true;
+    }
+
+    // Class state
+
+    private static final Logger LOG = LoggerFactory.getLogger(HashTable.class);
+    private static final int PARTITIONS = 64; // Power of 2
+    private static final long ROW_OVERHEAD = 64;
+    private static final long VALUE_OVERHEAD = 48;
+
+    // Object state
+
+    private final QueryContext context;
+    private final RowType rowType;
+    private final int[] keyFields;
+    private final TInstance[] keyTypes;
+    private final AkCollator[] collators;
+    private final long memoryBudget;
+    private final Partition[] partitions;
+    private long memoryUsed;
+    private long rowCount;
+
+    // Inner classes
+
+    private class Partition
+    {
+        void add(HashKey key, Row row)
+        {
+            List<Row> list = rows.get(key);
+            if (list == null) {
+                list = new ArrayList<>(1);
+                rows.put(key, list);
+            }
+            list.add(row);
+            long size = estimateSize(row);
+            memory += size;
+            memoryUsed += size;
+        }
+
+        void clear()
+        {
+            rows.clear();
+            memoryUsed -= memory;
+            memory = 0;
+        }
+
+        final Map<HashKey, List<Row>> rows = new HashMap<>();
+        long memory, memoryOnDisk;
+        boolean resident = true;
+        RowSpillFile spillFile;
+    }
+
+    private class HashKey
+    {
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof HashKey)) {
+                return false;
+            }
+            HashKey other = (HashKey)obj;
+            if (hash != other.hash) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                int c;
+                if (collators[i] != null) {
+                    c = collators[i].compare(values[i], other.values[i]);
+                }
+                else {
+                    c = TClass.compare(types[i], values[i], other.types[i], other.values[i]);
+                }
+                if (c != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        HashKey(TInstance[] types, ValueSource[] values, int hash)
+        {
+            this.types = types;
+            this.values = values;
+            this.hash = hash;
+        }
+
+        private final TInstance[] types;
+        private final ValueSource[] values;
+        private final int hash;
+    }
+}
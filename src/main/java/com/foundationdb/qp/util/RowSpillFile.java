@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.qp.util;
+
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.PersistitValueValueSource;
+import com.foundationdb.server.PersistitValueValueTarget;
+import com.foundationdb.server.error.TempFileIOException;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.ValueSource;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import com.persistit.exception.ConversionException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A sequential file of rows of a single row type, used by operators that have to
+ * move part of their working set out of memory. Rows are written in the same
+ * Persistit value encoding used by the merge sorter, each prefixed by its
+ * length, into a file under <code>fdbsql.tmp_dir</code>.
+ * <p/>
+ * A file is written completely, then read back any number of times with
+ * {@link #startReading} / {@link #read}. Rows returned by {@link #read} are
+ * fresh copies.
+ */
+public class RowSpillFile
+{
+    public RowSpillFile(QueryContext context, RowType rowType, String prefix)
+    {
+        this.rowType = rowType;
+        this.types = new TInstance[rowType.nFields()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = rowType.typeAt(i);
+        }
+        File directory = new File(context.getServiceManager().getConfigurationService().getProperty("fdbsql.tmp_dir"));
+        try {
+            file = File.createTempFile(prefix + "-" + context.getSessionId() + "-", ".tmp", directory);
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+        catch (IOException e) {
+            throw new TempFileIOException(e);
+        }
+        value = new Value((Persistit)null);
+        valueTarget = new PersistitValueValueTarget();
+        valueSource = new PersistitValueValueSource();
+    }
+
+    public RowType rowType()
+    {
+        return rowType;
+    }
+
+    public long rowCount()
+    {
+        return rowCount;
+    }
+
+    public void write(Row row)
+    {
+        assert output != null : "not writing";
+        valueTarget.attach(value);
+        while (true) {
+            try {
+                value.clear();
+                value.setStreamMode(true);
+                for (int i = 0; i < types.length; i++) {
+                    ValueSource field = row.value(i);
+                    if (field.isNull()) {
+                        valueTarget.putNull();
+                    } else {
+                        types[i].writeCanonical(field, valueTarget);
+                    }
+                }
+                break;
+            }
+            catch (ConversionException e) {
+                if (value.getMaximumSize() == Value.MAXIMUM_SIZE) {
+                    throw e;
+                }
+                value.setMaximumSize(Math.min(value.getMaximumSize() * 2, Value.MAXIMUM_SIZE));
+            }
+        }
+        try {
+            output.writeInt(value.getEncodedSize());
+            output.write(value.getEncodedBytes(), 0, value.getEncodedSize());
+        }
+        catch (IOException e) {
+            throw new TempFileIOException(e);
+        }
+        rowCount++;
+    }
+
+    /** Finish writing (if still doing so) and position at the first row. */
+    public void startReading()
+    {
+        try {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+            if (input != null) {
+                input.close();
+            }
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        catch (IOException e) {
+            throw new TempFileIOException(e);
+        }
+    }
+
+    /** Return the next row, or <code>null</code> at the end of the file. */
+    public Row read()
+    {
+        assert input != null : "not reading";
+        try {
+            int size;
+            try {
+                size = input.readInt();
+            }
+            catch (EOFException e) {
+                input.close();
+                input = null;
+                return null;
+            }
+            value.clear();
+            if (size > value.getMaximumSize()) {
+                value.setMaximumSize(size);
+            }
+            value.ensureFit(size);
+            input.readFully(value.getEncodedBytes(), 0, size);
+            value.setEncodedSize(size);
+        }
+        catch (IOException e) {
+            throw new TempFileIOException(e);
+        }
+        ValuesHolderRow row = new ValuesHolderRow(rowType);
+        valueSource.attach(value);
+        for (int i = 0; i < types.length; i++) {
+            valueSource.getReady(types[i]);
+            if (valueSource.isNull()) {
+                row.valueAt(i).putNull();
+            } else {
+                types[i].writeCanonical(valueSource, row.valueAt(i));
+            }
+        }
+        return row;
+    }
+
+    public void delete()
+    {
+        try {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+            if (input != null) {
+                input.close();
+                input = null;
+            }
+        }
+        catch (IOException e) {
+            throw new TempFileIOException(e);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s(%s, %d rows)", getClass().getSimpleName(), file, rowCount);
+    }
+
+    // Object state
+
+    private final RowType rowType;
+    private final TInstance[] types;
+    private final File file;
+    private final Value value;
+    private final PersistitValueValueTarget valueTarget;
+    private final PersistitValueValueSource valueSource;
+    private DataOutputStream output;
+    private DataInputStream input;
+    private long rowCount;
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.rest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Collects response output into chunks of a fixed size, each written and
+ * flushed to the servlet's stream as soon as it is full. The container
+ * sends those on as they come instead of holding the whole response, and
+ * a client that reads slowly blocks the writer rather than letting the
+ * response pile up in memory.
+ */
+class ChunkedOutputStream extends FilterOutputStream
+{
+    private final byte[] buffer;
+    private int count;
+
+    public ChunkedOutputStream(OutputStream out, int chunkSize) {
+        super(out);
+        this.buffer = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[count++] = (byte)b;
+        if (count == buffer.length) {
+            writeChunk();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == buffer.length) {
+                writeChunk();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeChunk();
+        }
+        else {
+            out.flush();
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        out.write(buffer, 0, count);
+        out.flush();
+        count = 0;
+    }
+}
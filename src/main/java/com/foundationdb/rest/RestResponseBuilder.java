@@ -25,13 +25,18 @@ import com.foundationdb.server.error.ErrorCode;
 import com.foundationdb.server.error.InvalidOperationException;
 import com.foundationdb.server.error.NoSuchRoutineException;
 import com.foundationdb.server.error.NoSuchTableException;
+import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.util.AkibanAppender;
+import com.foundationdb.util.JsonUtils;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -42,12 +47,22 @@ import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 public class RestResponseBuilder {
     public interface BodyGenerator {
         public void write(PrintWriter writer) throws Exception;
     }
 
+    /** Writes the body as UTF-8 bytes, with no intermediate character stream. */
+    public interface JsonBodyGenerator {
+        public void write(JsonGenerator generator) throws Exception;
+    }
+
+    public static final String OUTPUT_CHUNK_SIZE_PROPERTY = "fdbsql.rest.outputChunkSize";
+    public static final String GZIP_PROPERTY = "fdbsql.rest.gzip";
+    private static final String GZIP = "gzip";
+
     private static final Charset UTF8 = Charset.forName("UTF-8");
     private static final Map<Class,Response.Status> EXCEPTION_STATUS_MAP = buildExceptionStatusMap();
     private static final Logger LOG = LoggerFactory.getLogger(RestResponseBuilder.class.getName());
@@ -55,10 +70,14 @@ public class RestResponseBuilder {
     private final HttpServletRequest request;
     private final boolean isJsonp;
     private BodyGenerator outputGenerator;
+    private JsonBodyGenerator jsonGenerator;
     private String outputBody;
     private String jsonp;
     private int status;
     private MediaType type;
+    private int chunkSize;
+    private boolean gzip;
+    private boolean varyEncoding;
 
 
     public RestResponseBuilder(HttpServletRequest request, String jsonp) {
@@ -85,6 +104,7 @@ public class RestResponseBuilder {
     public RestResponseBuilder body(String outputBody) {
         this.outputBody = outputBody;
         this.outputGenerator = null;
+        this.jsonGenerator = null;
         return this;
     }
 
@@ -96,11 +116,33 @@ public class RestResponseBuilder {
     public RestResponseBuilder body(BodyGenerator outputGenerator) {
         this.outputBody = null;
         this.outputGenerator = outputGenerator;
+        this.jsonGenerator = null;
+        return this;
+    }
+
+    public RestResponseBuilder body(JsonBodyGenerator jsonGenerator) {
+        this.outputBody = null;
+        this.outputGenerator = null;
+        this.jsonGenerator = jsonGenerator;
+        return this;
+    }
+
+    /**
+     * Send the body in chunks as it is generated and, if configured and the
+     * client accepts it, gzip compressed. For results that may be large.
+     */
+    public RestResponseBuilder streamed(ConfigurationService configService) {
+        this.chunkSize = Integer.parseInt(configService.getProperty(OUTPUT_CHUNK_SIZE_PROPERTY));
+        if (Boolean.parseBoolean(configService.getProperty(GZIP_PROPERTY))) {
+            this.varyEncoding = true;
+            String accept = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            this.gzip = (accept != null) && accept.toLowerCase().contains(GZIP);
+        }
         return this;
     }
 
     public Response build() {
-        if(outputBody == null && outputGenerator == null && jsonp == null) {
+        if(outputBody == null && outputGenerator == null && jsonGenerator == null && jsonp == null) {
             status(Response.Status.NO_CONTENT);
         }
         if (isJsonp) {
@@ -111,6 +153,13 @@ public class RestResponseBuilder {
             builder = Response.status(status).type((MediaType)null);
         } else {
             builder = Response.status(status).entity(createStreamingOutput());
+            if (gzip) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+            if (varyEncoding) {
+                // Caches must not give the compressed body to other clients.
+                builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
         }
         if(isJsonp) {
             builder.type(ResourceHelper.APPLICATION_JAVASCRIPT_TYPE);
@@ -176,6 +225,16 @@ public class RestResponseBuilder {
             @Override
             public void write(OutputStream output)  {
                 try {
+                    if (chunkSize > 0) {
+                        output = new ChunkedOutputStream(output, chunkSize);
+                    }
+                    if (gzip) {
+                        output = new GZIPOutputStream(output);
+                    }
+                    if (jsonGenerator != null) {
+                        writeJson(output);
+                        return;
+                    }
                     PrintWriter writer = new PrintWriter(new OutputStreamWriter(output, UTF8), false);
                     if(isJsonp) {
                         writer.write(jsonp);
@@ -199,6 +258,20 @@ public class RestResponseBuilder {
         };
     }
 
+    private void writeJson(OutputStream output) throws Exception {
+        JsonGenerator generator = JsonUtils.createJsonGenerator(output, JsonEncoding.UTF8);
+        if(isJsonp) {
+            generator.writeRaw(jsonp);
+            generator.writeRaw('(');
+        }
+        jsonGenerator.write(generator);
+        if(isJsonp) {
+            generator.writeRaw(')');
+        }
+        generator.writeRaw('\n');
+        generator.close();
+    }
+
     private static Map<Class, Response.Status> buildExceptionStatusMap() {
         Map<Class, Response.Status> map = new HashMap<>();
         map.put(NoSuchTableException.class, Response.Status.NOT_FOUND);
@@ -20,6 +20,7 @@ package com.foundationdb.rest.resources;
 import com.foundationdb.ais.model.TableName;
 import com.foundationdb.rest.ResourceRequirements;
 import com.foundationdb.rest.RestResponseBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import javax.servlet.http.HttpServletRequest;
@@ -38,10 +39,13 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.io.PrintWriter;
 
+import static com.foundationdb.rest.resources.ResourceHelper.APPLICATION_NDJSON_TYPE;
 import static com.foundationdb.rest.resources.ResourceHelper.IDENTIFIERS_MULTI;
 import static com.foundationdb.rest.resources.ResourceHelper.MEDIATYPE_JSON_JAVASCRIPT;
+import static com.foundationdb.rest.resources.ResourceHelper.MEDIATYPE_JSON_JAVASCRIPT_NDJSON;
 import static com.foundationdb.rest.resources.ResourceHelper.checkTableAccessible;
 import static com.foundationdb.rest.resources.ResourceHelper.getPKString;
+import static com.foundationdb.rest.resources.ResourceHelper.isNDJSON;
 import static com.foundationdb.rest.resources.ResourceHelper.parseTableName;
 import static com.foundationdb.util.JsonUtils.readTree;
 
@@ -57,18 +61,23 @@ public class EntityResource {
     }
 
     @GET
-    @Produces(MEDIATYPE_JSON_JAVASCRIPT)
+    @Produces(MEDIATYPE_JSON_JAVASCRIPT_NDJSON)
     public Response retrieveEntity(@Context HttpServletRequest request,
                                    @PathParam("entity") String entity,
-                                   @QueryParam("depth") final Integer depth) {
+                                   @QueryParam("depth") final Integer depth,
+                                   @QueryParam("limit") final Integer limit,
+                                   @QueryParam("format") String format) {
         final TableName tableName = parseTableName(request, entity);
         checkTableAccessible(reqs.securityService, request, tableName);
+        final boolean lines = isNDJSON(request, format);
         return RestResponseBuilder
                 .forRequest(request)
-                .body(new RestResponseBuilder.BodyGenerator() {
+                .streamed(reqs.configService)
+                .type(lines ? APPLICATION_NDJSON_TYPE : null)
+                .body(new RestResponseBuilder.JsonBodyGenerator() {
                     @Override
-                    public void write(PrintWriter writer) throws Exception {
-                        reqs.restDMLService.getAllEntities(writer, tableName, depth);
+                    public void write(JsonGenerator generator) throws Exception {
+                        reqs.restDMLService.getAllEntities(generator, tableName, depth, limit, lines);
                     }
                 })
                 .build();
@@ -76,19 +85,24 @@ public class EntityResource {
 
     @GET
     @Path("/" + IDENTIFIERS_MULTI)
-    @Produces(MEDIATYPE_JSON_JAVASCRIPT)
+    @Produces(MEDIATYPE_JSON_JAVASCRIPT_NDJSON)
     public Response retrieveEntity(@Context HttpServletRequest request,
                                    @PathParam("entity") String entity,
                                    @QueryParam("depth") final Integer depth,
+                                   @QueryParam("limit") final Integer limit,
+                                   @QueryParam("format") String format,
                                    @Context final UriInfo uri) {
         final TableName tableName = parseTableName(request, entity);
         checkTableAccessible(reqs.securityService, request, tableName);
+        final boolean lines = isNDJSON(request, format);
         return RestResponseBuilder
                 .forRequest(request)
-                .body(new RestResponseBuilder.BodyGenerator() {
+                .streamed(reqs.configService)
+                .type(lines ? APPLICATION_NDJSON_TYPE : null)
+                .body(new RestResponseBuilder.JsonBodyGenerator() {
                     @Override
-                    public void write(PrintWriter writer) throws Exception {
-                        reqs.restDMLService.getEntities(writer, tableName, depth, getPKString(uri));
+                    public void write(JsonGenerator generator) throws Exception {
+                        reqs.restDMLService.getEntities(generator, tableName, depth, getPKString(uri), limit, lines);
                     }
                 })
                 .build();
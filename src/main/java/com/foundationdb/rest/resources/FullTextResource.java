@@ -51,7 +51,8 @@ public class FullTextResource {
                                @PathParam("index") String index,
                                @QueryParam("q") final String query,
                                @QueryParam("depth") final Integer depth,
-                               @QueryParam("size") final Integer limit) throws Exception {
+                               @QueryParam("size") final Integer limit,
+                               @QueryParam("offset") final Integer offset) throws Exception {
         final IndexName indexName = new IndexName(ResourceHelper.parseTableName(request, table), index);
         ResourceHelper.checkSchemaAccessible(reqs.securityService, request, indexName.getSchemaName());
         return RestResponseBuilder
@@ -59,7 +60,7 @@ public class FullTextResource {
                 .body(new RestResponseBuilder.BodyGenerator() {
                     @Override
                     public void write(PrintWriter writer) throws Exception {
-                        reqs.restDMLService.fullTextSearch(writer, indexName, depth, query, limit);
+                        reqs.restDMLService.fullTextSearch(writer, indexName, depth, query, limit, offset);
                     }
                 })
                 .build();
@@ -22,6 +22,7 @@ import com.foundationdb.server.service.security.SecurityService;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
@@ -33,12 +34,18 @@ public class ResourceHelper {
     // Standard but not otherwise defined
     public static final String APPLICATION_JAVASCRIPT = "application/javascript";
     public static final MediaType APPLICATION_JAVASCRIPT_TYPE = MediaType.valueOf(APPLICATION_JAVASCRIPT);
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON_TYPE = MediaType.valueOf(APPLICATION_NDJSON);
 
     // For @Produces argument
     public static final String MEDIATYPE_JSON_JAVASCRIPT = MediaType.APPLICATION_JSON + "," + APPLICATION_JAVASCRIPT;
+    public static final String MEDIATYPE_JSON_JAVASCRIPT_NDJSON = MEDIATYPE_JSON_JAVASCRIPT + "," + APPLICATION_NDJSON;
 
     public static final String JSONP_ARG_NAME = "callback";
 
+    /** Value of the <code>format</code> argument for one JSON object per line. */
+    public static final String FORMAT_NDJSON = "ndjson";
+
     public static final String IDENTIFIERS_MULTI = "{identifiers:.*}";
 
     public static String getSchema(HttpServletRequest request) {
@@ -61,6 +68,23 @@ public class ResourceHelper {
         }
     }
 
+    /**
+     * Whether to write one object per line, which does not apply to JSONP.
+     * Asked for by <code>format</code> or, without it, by accepting only that type.
+     */
+    public static boolean isNDJSON(HttpServletRequest request, String format) {
+        if(request.getParameter(JSONP_ARG_NAME) != null) {
+            return false;
+        }
+        if(format != null) {
+            return FORMAT_NDJSON.equalsIgnoreCase(format);
+        }
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return (accept != null) &&
+               accept.contains(APPLICATION_NDJSON) &&
+               !accept.contains(MediaType.APPLICATION_JSON);
+    }
+
     /** Expected to be used along with {@link #IDENTIFIERS_MULTI} */
     public static String getPKString(UriInfo uri) {
         String pks[] = uri.getPath(false).split("/");
@@ -21,9 +21,12 @@ import com.foundationdb.rest.ResourceRequirements;
 import com.foundationdb.rest.RestResponseBuilder;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
@@ -49,6 +52,7 @@ public class SQLResource {
                           @QueryParam("q") final String query) {
         return RestResponseBuilder
                 .forRequest(request)
+                .streamed(reqs.configService)
                 .body(new RestResponseBuilder.BodyGenerator() {
                     @Override
                     public void write(PrintWriter writer) throws Exception {
@@ -58,18 +62,20 @@ public class SQLResource {
                 .build();
     }
 
-    /** Explain a single SQL statement specified by the 'q' query parameter. */
+    /** Explain a single SQL statement specified by the 'q' query parameter.
+     * With 'analyze', the query is also run and the plan includes actual figures. */
     @GET
     @Path("/explain")
     @Produces(MEDIATYPE_JSON_JAVASCRIPT)
     public Response explain(@Context final HttpServletRequest request,
-                            @QueryParam("q") final String query) {
+                            @QueryParam("q") final String query,
+                            @QueryParam("analyze") final boolean analyze) {
         return RestResponseBuilder
                 .forRequest(request)
                 .body(new RestResponseBuilder.BodyGenerator() {
                     @Override
                     public void write(PrintWriter writer) throws Exception {
-                        reqs.restDMLService.explainSQL(writer, request, query);
+                        reqs.restDMLService.explainSQL(writer, request, query, analyze);
                     }
                 })
                 .build();
@@ -85,6 +91,7 @@ public class SQLResource {
         final String[] statements = input.split(";");
         return RestResponseBuilder
                 .forRequest(request)
+                .streamed(reqs.configService)
                 .body(new RestResponseBuilder.BodyGenerator() {
                     @Override
                     public void write(PrintWriter writer) throws Exception {
@@ -93,4 +100,76 @@ public class SQLResource {
                 })
                 .build();
     }
+
+    /** Prepare the SQL statement in the PUT body under a name, for later runs by this user. */
+    @PUT
+    @Path("/prepared/{name}")
+    @Produces(MEDIATYPE_JSON_JAVASCRIPT)
+    public Response prepare(@Context final HttpServletRequest request,
+                            @PathParam("name") final String name,
+                            final byte[] postBytes) {
+        final String sql = new String(postBytes);
+        return RestResponseBuilder
+                .forRequest(request)
+                .body(new RestResponseBuilder.BodyGenerator() {
+                    @Override
+                    public void write(PrintWriter writer) throws Exception {
+                        reqs.restDMLService.prepareSQL(writer, request, name, sql);
+                    }
+                })
+                .build();
+    }
+
+    /** Describe a named prepared statement. */
+    @GET
+    @Path("/prepared/{name}")
+    @Produces(MEDIATYPE_JSON_JAVASCRIPT)
+    public Response describePrepared(@Context final HttpServletRequest request,
+                                     @PathParam("name") final String name) {
+        return RestResponseBuilder
+                .forRequest(request)
+                .body(new RestResponseBuilder.BodyGenerator() {
+                    @Override
+                    public void write(PrintWriter writer) throws Exception {
+                        reqs.restDMLService.describePreparedSQL(writer, request, name);
+                    }
+                })
+                .build();
+    }
+
+    /** Run a named prepared statement with the parameters in the JSON array POST body. */
+    @POST
+    @Path("/prepared/{name}")
+    @Produces(MEDIATYPE_JSON_JAVASCRIPT)
+    public Response executePrepared(@Context final HttpServletRequest request,
+                                    @PathParam("name") final String name,
+                                    final byte[] postBytes) {
+        final String params = new String(postBytes);
+        return RestResponseBuilder
+                .forRequest(request)
+                .streamed(reqs.configService)
+                .body(new RestResponseBuilder.BodyGenerator() {
+                    @Override
+                    public void write(PrintWriter writer) throws Exception {
+                        reqs.restDMLService.executePreparedSQL(writer, request, name, params);
+                    }
+                })
+                .build();
+    }
+
+    /** Remove a named prepared statement. */
+    @DELETE
+    @Path("/prepared/{name}")
+    public Response deallocatePrepared(@Context final HttpServletRequest request,
+                                       @PathParam("name") final String name) {
+        try {
+            reqs.restDMLService.deallocatePreparedSQL(request, name);
+            return RestResponseBuilder
+                    .forRequest(request)
+                    .status(Response.Status.NO_CONTENT)
+                    .build();
+        } catch (Exception e) {
+            throw RestResponseBuilder.forRequest(request).wrapException(e);
+        }
+    }
 }
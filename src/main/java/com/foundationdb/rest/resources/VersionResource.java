@@ -20,6 +20,7 @@ package com.foundationdb.rest.resources;
 import com.foundationdb.ais.model.TableName;
 import com.foundationdb.rest.ResourceRequirements;
 import com.foundationdb.rest.RestResponseBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
@@ -27,7 +28,6 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
-import java.io.PrintWriter;
 
 import static com.foundationdb.rest.resources.ResourceHelper.MEDIATYPE_JSON_JAVASCRIPT;
 
@@ -50,10 +50,10 @@ public class VersionResource {
     public Response getVersion(@Context HttpServletRequest request) {
         return RestResponseBuilder
                 .forRequest(request)
-                .body(new RestResponseBuilder.BodyGenerator() {
+                .body(new RestResponseBuilder.JsonBodyGenerator() {
                     @Override
-                    public void write(PrintWriter writer) throws Exception {
-                        reqs.restDMLService.getAllEntities(writer, TABLE_NAME, DEPTH);
+                    public void write(JsonGenerator generator) throws Exception {
+                        reqs.restDMLService.getAllEntities(generator, TABLE_NAME, DEPTH, null, false);
                     }
                 })
                 .build();
@@ -39,6 +39,16 @@ public enum Label
     // COST
     //--------------------------------------------------------------------------
     COST(Category.COST),
+    // Actual figures, from EXPLAIN ANALYZE
+    ROWS_IN(Category.COST),
+    ROWS_OUT(Category.COST),
+    OPEN_CALLS(Category.COST),
+    NEXT_CALLS(Category.COST),
+    ELAPSED_TIME(Category.COST), // milliseconds
+    STORAGE_READS(Category.COST),
+    FILTER_PROBES(Category.COST),
+    FILTER_PASSES(Category.COST),
+    FILTER_FALSE_POSITIVES(Category.COST),
     
     // DESCRIPTION (may or may not needed)
     //--------------------------------------------------------------------------
@@ -50,6 +60,7 @@ public enum Label
     INDEX(Category.DESCRIPTION),
     PIPELINE(Category.DESCRIPTION),
     DEPTH(Category.DESCRIPTION),
+    ESTIMATED_COUNT(Category.DESCRIPTION),
     
     // IDENTIFIER
     //--------------------------------------------------------------------------
@@ -65,6 +65,8 @@ public enum Type
     BLOOM_FILTER(GeneralType.OPERATOR),
     BUFFER_OPERATOR(GeneralType.OPERATOR),
     HKEY_OPERATOR(GeneralType.OPERATOR),
+    HASH_TABLE(GeneralType.OPERATOR),
+    EXCHANGE(GeneralType.OPERATOR),
     
     // PROCEDURE    
     //--------------------------------------------------------------------------
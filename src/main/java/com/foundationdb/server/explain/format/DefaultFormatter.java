@@ -272,17 +272,27 @@ public class DefaultFormatter
         case HKEY_OPERATOR:
             appendHKeyOperator(name, atts);
             break;
+        case HASH_TABLE:
+            appendHashTableOperator(name, atts);
+            break;
+        case EXCHANGE:
+            appendExchangeOperator(name, atts);
+            break;
         default:
             throw new UnsupportedOperationException("Formatter does not recognize " + 
                                                     explainer.getType());
         }
         sb.append(')');
-        if ((levelOfDetail == LevelOfDetail.VERBOSE) &&
+        // Estimates are always shown next to the actual figures.
+        if (((levelOfDetail == LevelOfDetail.VERBOSE) || atts.containsKey(Label.ROWS_OUT)) &&
             atts.containsKey(Label.COST)) {
             sb.append(" (");
             sb.append((String)atts.getValue(Label.COST));
             sb.append(")");
         }
+        if (atts.containsKey(Label.ROWS_OUT)) {
+            appendStatistics(atts);
+        }
         if (atts.containsKey(Label.INPUT_OPERATOR)) {
             for (Explainer input : atts.get(Label.INPUT_OPERATOR)) {
                 newRow();
@@ -777,6 +787,45 @@ public class DefaultFormatter
         }
     }
 
+    protected void appendHashTableOperator(String name, Attributes atts) {
+        if (levelOfDetail != LevelOfDetail.BRIEF) {
+            if (atts.containsKey(Label.EXPRESSIONS)) {
+                for (Explainer ex : atts.get(Label.EXPRESSIONS)) {
+                    append(ex);
+                    sb.append(", ");
+                }
+                sb.setLength(sb.length() - 2);
+            }
+        }
+    }
+
+    protected void appendExchangeOperator(String name, Attributes atts) {
+        if (levelOfDetail != LevelOfDetail.BRIEF) {
+            sb.append(atts.get(Label.INPUT_OPERATOR).size());
+            if ("ORDERED".equals(atts.getValue(Label.ORDERING))) {
+                sb.append(", ORDERED");
+            }
+        }
+    }
+
+    protected void appendStatistics(Attributes atts) {
+        sb.append(" (actual ");
+        if (atts.containsKey(Label.ROWS_IN)) {
+            sb.append("rows in = ").append(atts.getValue(Label.ROWS_IN)).append(", ");
+        }
+        sb.append("rows = ").append(atts.getValue(Label.ROWS_OUT));
+        sb.append(", opens = ").append(atts.getValue(Label.OPEN_CALLS));
+        sb.append(", nexts = ").append(atts.getValue(Label.NEXT_CALLS));
+        sb.append(String.format(", time = %.3f ms", (Double)atts.getValue(Label.ELAPSED_TIME)));
+        sb.append(", reads = ").append(atts.getValue(Label.STORAGE_READS));
+        if (atts.containsKey(Label.FILTER_PROBES)) {
+            sb.append(", filter probes = ").append(atts.getValue(Label.FILTER_PROBES));
+            sb.append(", passes = ").append(atts.getValue(Label.FILTER_PASSES));
+            sb.append(", false positives = ").append(atts.getValue(Label.FILTER_FALSE_POSITIVES));
+        }
+        sb.append(")");
+    }
+
     protected void appendProcedure(CompoundExplainer explainer, int depth) {
         sb.append("CALL ");
         Attributes atts = explainer.get();
@@ -180,6 +180,40 @@ public class Space
         return z | mask;
     }
 
+    /**
+     * Returns true if the given z-value has the maximum resolution for this space, i.e. it covers a single point.
+     * @param z A z-value
+     * @return true if z covers a single point.
+     */
+    public boolean isPoint(long z)
+    {
+        return zLength(z) == zBits;
+    }
+
+    /**
+     * The z-value covering the half of the region covered by z whose next interleaved bit is 0.
+     * @param z A z-value that is not a point.
+     * @return The z-value of the left half of z's region.
+     */
+    public long leftChild(long z)
+    {
+        int length = zLength(z);
+        if (length == zBits) {
+            throw new IllegalArgumentException(Long.toString(z));
+        }
+        return (z & ~LENGTH_MASK) | (length + 1);
+    }
+
+    /**
+     * The z-value covering the half of the region covered by z whose next interleaved bit is 1.
+     * @param z A z-value that is not a point.
+     * @return The z-value of the right half of z's region.
+     */
+    public long rightChild(long z)
+    {
+        return leftChild(z) | (1L << (62 - zLength(z)));
+    }
+
     public Space(long[] lo, long[] hi)
     {
         this(lo, hi, null);
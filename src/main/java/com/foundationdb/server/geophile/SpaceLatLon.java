@@ -72,6 +72,36 @@ public class SpaceLatLon extends Space
         return lon.scaleByPowerOfTen(LOG_SCALE).longValue();
     }
 
+    /**
+     * Compute the square of the distance from a point to the nearest point of the region covered by a z-value,
+     * or 0 if the point lies in the region. Distance is measured as by DISTANCE_LAT_LON: planar, with longitude
+     * wrapping around. For a z-value of maximum resolution, this is the distance between two points.
+     * @param lat Scaled latitude of the point (see scaleLat).
+     * @param lon Scaled longitude of the point (see scaleLon).
+     * @param z A z-value.
+     * @return The squared distance, in scaled units.
+     */
+    public long distanceSquared(long lat, long lon, long z)
+    {
+        long[] lo = new long[2];
+        long[] hi = new long[2];
+        unshuffle(zLo(z), lo);
+        unshuffle(zHi(z), hi);
+        // The space extends beyond the valid coordinates, so clip the region before measuring.
+        long latLo = lo[0];
+        long latHi = Math.min(hi[0], MAX_LAT_SCALED);
+        long lonLo = lo[1];
+        long lonHi = Math.min(hi[1], MAX_LON_SCALED);
+        long dLat =
+            lat < latLo ? latLo - lat :
+            lat > latHi ? lat - latHi : 0;
+        long dLon =
+            lon >= lonLo && lon <= lonHi
+            ? 0
+            : Math.min(lonDistance(lon, lonLo), lonDistance(lon, lonHi));
+        return dLat * dLat + dLon * dLon;
+    }
+
     public static SpaceLatLon create()
     {
         long[] lo = new long[]{-90 * SCALE, -180 * SCALE};
@@ -93,9 +123,15 @@ public class SpaceLatLon extends Space
         assert xBits[1] == 29;
     }
 
+    private static long lonDistance(long a, long b)
+    {
+        long d = Math.abs(a - b);
+        return d > CIRCLE / 2 ? CIRCLE - d : d;
+    }
+
     public static final int MAX_DECOMPOSITION_Z_VALUES = 4;
     private static final long SCALE = 1000L * 1000L; // 10^6 (see derivation above)
-    private static final int LOG_SCALE = 6; // log10(scale)
+    public static final int LOG_SCALE = 6; // log10(scale)
     static final long MIN_LAT_SCALED = -90 * SCALE;
     static final long MAX_LAT_SCALED = 90 * SCALE;
     static final long MIN_LON_SCALED = -180 * SCALE;
@@ -17,6 +17,7 @@
 
 package com.foundationdb.server.service.dxl;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -101,6 +102,10 @@ public class BasicDDLFunctions extends ClientAPIBase implements DDLFunctions {
 
     private final static String FEATURE_DDL_WITH_DML_PROP = "fdbsql.feature.ddl_with_dml_on";
     private final static String FEATURE_SPATIAL_INDEX_PROP = "fdbsql.feature.spatial_index_on";
+    private final static String INDEX_BUILD_SORTED_PROP = "fdbsql.index_build.sorted";
+    private final static String INDEX_BUILD_MEMORY_PROP = "fdbsql.index_build.memory";
+    private final static String INDEX_BUILD_PARALLELISM_PROP = "fdbsql.index_build.parallelism";
+    private final static String TMP_DIR_PROP = "fdbsql.tmp_dir";
 
     private final IndexStatisticsService indexStatisticsService;
     private final TransactionService txnService;
@@ -772,6 +777,27 @@ public class BasicDDLFunctions extends ClientAPIBase implements DDLFunctions {
         this.withSpatialIndexes = Boolean.parseBoolean(configService.getProperty(FEATURE_SPATIAL_INDEX_PROP));
         boolean withConcurrentDML = Boolean.parseBoolean(configService.getProperty(FEATURE_DDL_WITH_DML_PROP));
         this.onlineHelper = new OnlineHelper(txnService, schemaManager, store, typesRegistry, withConcurrentDML);
+        // Entries held back for sorting would not see concurrent changes to their rows.
+        if(!withConcurrentDML && Boolean.parseBoolean(configService.getProperty(INDEX_BUILD_SORTED_PROP))) {
+            int parallelism = Integer.parseInt(configService.getProperty(INDEX_BUILD_PARALLELISM_PROP));
+            if(parallelism <= 0) {
+                parallelism = Runtime.getRuntime().availableProcessors();
+            }
+            onlineHelper.setSortedIndexBuild(parallelism,
+                                             Long.parseLong(configService.getProperty(INDEX_BUILD_MEMORY_PROP)),
+                                             new File(configService.getProperty(TMP_DIR_PROP)),
+                                             new OnlineDDLMonitor() {
+                                                 @Override
+                                                 public void at(Stage stage) {
+                                                     onlineAt(stage);
+                                                 }
+
+                                                 @Override
+                                                 public void progress(Progress progress, long count) {
+                                                     onlineProgress(progress, count);
+                                                 }
+                                             });
+        }
         listenerService.registerRowListener(onlineHelper);
     }
 
@@ -1108,6 +1134,12 @@ public class BasicDDLFunctions extends ClientAPIBase implements DDLFunctions {
         }
     }
 
+    private synchronized void onlineProgress(OnlineDDLMonitor.Progress progress, long count) {
+        if(onlineDDLMonitor != null) {
+            onlineDDLMonitor.progress(progress, count);
+        }
+    }
+
     private static boolean isIdentitySequence(Collection<Table> tables, Sequence s) {
         // Must search as there is no back-reference Sequence to owning Colum.
         for(Table t : tables) {
@@ -550,9 +550,7 @@ class BasicDMLFunctions extends ClientAPIBase implements DMLFunctions {
     @Override
     public void writeRows(Session session, List<RowData> rows) {
         logger.trace("writing {} rows", rows.size());
-        for(RowData rowData : rows) {
-            store().writeRow(session, rowData);
-        }
+        store().writeRows(session, rows);
     }
 
     @Override
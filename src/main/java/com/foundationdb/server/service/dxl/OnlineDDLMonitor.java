@@ -28,5 +28,13 @@ public interface OnlineDDLMonitor
         POST_FINAL
     }
 
+    /** Counts reported while indexes are built by sorting their entries. */
+    enum Progress {
+        INDEX_ROWS_SCANNED,
+        INDEX_ENTRIES_LOADED
+    }
+
     void at(Stage stage);
+
+    void progress(Progress progress, long count);
 }
@@ -23,6 +23,7 @@ import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.service.session.Session;
+import com.foundationdb.util.AkibanAppender;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -40,6 +41,17 @@ public interface ExternalDataService {
                        String schemaName, String tableName,
                        int depth, boolean withTransaction);
 
+    /**
+     * Dump entire group, as above, directly to <code>appender</code>.
+     *
+     * @param limit Maximum number of rows of the given table to dump, each with its descendants: -1 = all.
+     * @param lines If <code>true</code>, write each of those on a line of its own (NDJSON) rather than in an array.
+     */
+    void dumpAllAsJson(Session session, AkibanAppender appender,
+                       String schemaName, String tableName,
+                       int depth, boolean withTransaction,
+                       long limit, boolean lines);
+
     /**
      * Dump selected branches, identified by a list of PRIMARY KEY files, in JSON format.
      *
@@ -52,6 +64,18 @@ public interface ExternalDataService {
                           List<List<String>> keys, int depth,
                           boolean withTransaction);
 
+    /**
+     * Dump selected branches, as above, directly to <code>appender</code>.
+     *
+     * @param limit Maximum number of rows of the given table to dump, each with its descendants: -1 = all.
+     * @param lines If <code>true</code>, write each of those on a line of its own (NDJSON) rather than in an array.
+     */
+    void dumpBranchAsJson(Session session, AkibanAppender appender,
+                          String schemaName, String tableName,
+                          List<List<String>> keys, int depth,
+                          boolean withTransaction,
+                          long limit, boolean lines);
+
     /**
      * Dump selected branches, given a generator of branch rows.
      */
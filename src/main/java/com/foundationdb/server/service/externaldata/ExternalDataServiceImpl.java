@@ -68,6 +68,9 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     
     private static final Logger logger = LoggerFactory.getLogger(ExternalDataServiceImpl.class);
 
+    /** Loaded rows are written in batches of this many. */
+    static final int WRITE_BATCH_SIZE = 1024;
+
     public static final CacheValueGenerator<PlanGenerator> CACHED_PLAN_GENERATOR =
             new CacheValueGenerator<PlanGenerator>() {
                 @Override
@@ -109,13 +112,15 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     }
 
     private void dumpAsJson(Session session,
-                            PrintWriter writer,
+                            AkibanAppender appender,
                             Table table,
                             List<List<String>> keys,
                             int depth,
                             boolean withTransaction,
                             Schema schema,
-                            Operator plan) {
+                            Operator plan,
+                            long limit,
+                            boolean lines) {
         StoreAdapter adapter = getAdapter(session, table, schema);
         QueryContext queryContext = new SimpleQueryContext(adapter) {
                 @Override
@@ -125,8 +130,10 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
             };
         QueryBindings queryBindings = queryContext.createBindings();
         JsonRowWriter json = new JsonRowWriter(new TableRowTracker(table, depth));
+        json.setRowLimit(limit);
+        if (lines)
+            json.setRowSeparator("\n");
         WriteTableRow rowWriter = new WriteTableRow();
-        AkibanAppender appender = AkibanAppender.of(writer);
         boolean transaction = false;
         Cursor cursor = null;
         try {
@@ -135,26 +142,31 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                 transaction = true;
             }
             cursor = API.cursor(plan, queryContext, queryBindings);
-            appender.append("[");
+            if (!lines)
+                appender.append("[");
             boolean begun = false;
 
             if (keys == null) {
-                begun = json.writeRows(cursor, appender, "\n", rowWriter);
+                begun = json.writeRows(cursor, appender, lines ? "" : "\n", rowWriter);
             } else {
                 TypesTranslator typesTranslator = getTypesTranslator(session);
                 Value value = new Value(typesTranslator.typeForString());
                 for (List<String> key : keys) {
+                    if (json.isRowLimitReached())
+                        break;
                     for (int i = 0; i < key.size(); i++) {
                         String akey = key.get(i);
                         value.putString(akey, null);
                         queryBindings.setValue(i, value);
                     }
-                    if (json.writeRows(cursor, appender, begun ? ",\n" : "\n", rowWriter))
+                    String prefix = lines ? (begun ? "\n" : "") : (begun ? ",\n" : "\n");
+                    if (json.writeRows(cursor, appender, prefix, rowWriter))
                         begun = true;
                 }
             }
 
-            appender.append(begun ? "\n]" : "]");
+            if (!lines)
+                appender.append(begun ? "\n]" : "]");
             if (withTransaction) {
                 transactionService.commitTransaction(session);
                 transaction = false;
@@ -174,12 +186,21 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     public void dumpAllAsJson(Session session, PrintWriter writer,
                               String schemaName, String tableName,
                               int depth, boolean withTransaction) {
+        dumpAllAsJson(session, AkibanAppender.of(writer), schemaName, tableName,
+                      depth, withTransaction, -1, false);
+    }
+
+    @Override
+    public void dumpAllAsJson(Session session, AkibanAppender appender,
+                              String schemaName, String tableName,
+                              int depth, boolean withTransaction,
+                              long limit, boolean lines) {
         AkibanInformationSchema ais = dxlService.ddlFunctions().getAIS(session);
         Table table = getTable(ais, schemaName, tableName);
         logger.debug("Writing all of {}", table);
         PlanGenerator generator = ais.getCachedValue(this, CACHED_PLAN_GENERATOR);
         Operator plan = generator.generateScanPlan(table);
-        dumpAsJson(session, writer, table, null, depth, withTransaction, generator.getSchema(), plan);
+        dumpAsJson(session, appender, table, null, depth, withTransaction, generator.getSchema(), plan, limit, lines);
     }
 
     @Override
@@ -187,12 +208,22 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                                  String schemaName, String tableName, 
                                  List<List<String>> keys, int depth,
                                  boolean withTransaction) {
+        dumpBranchAsJson(session, AkibanAppender.of(writer), schemaName, tableName,
+                         keys, depth, withTransaction, -1, false);
+    }
+
+    @Override
+    public void dumpBranchAsJson(Session session, AkibanAppender appender,
+                                 String schemaName, String tableName,
+                                 List<List<String>> keys, int depth,
+                                 boolean withTransaction,
+                                 long limit, boolean lines) {
         AkibanInformationSchema ais = dxlService.ddlFunctions().getAIS(session);
         Table table = getTable(ais, schemaName, tableName);
         logger.debug("Writing from {}: {}", table, keys);
         PlanGenerator generator = ais.getCachedValue(this, CACHED_PLAN_GENERATOR);
         Operator plan = generator.generateBranchPlan(table);
-        dumpAsJson(session, writer, table, keys, depth, withTransaction, generator.getSchema(), plan);
+        dumpAsJson(session, appender, table, keys, depth, withTransaction, generator.getSchema(), plan, limit, lines);
     }
 
     @Override
@@ -205,7 +236,7 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
         logger.debug("Writing from {}: {}", table, scan);
         PlanGenerator generator = ais.getCachedValue(this, CACHED_PLAN_GENERATOR);
         Operator plan = generator.generateBranchPlan(table, scan, scanType);
-        dumpAsJson(session, writer, table, Collections.singletonList(Collections.<String>emptyList()), depth, withTransaction, generator.getSchema(), plan);
+        dumpAsJson(session, AkibanAppender.of(writer), table, Collections.singletonList(Collections.<String>emptyList()), depth, withTransaction, generator.getSchema(), plan, -1, false);
     }
 
     @Override
@@ -246,6 +277,7 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
         List<RowData> rowDatas = null;
         if (maxRetries > 1)
             rowDatas = new ArrayList<>();
+        List<RowData> batch = new ArrayList<>();
         boolean transaction = false;
         try {
             NewRow row;
@@ -257,14 +289,11 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                 row = reader.nextRow();
                 if (row != null) {
                     logger.trace("Read row: {}", row);
-                    if (rowDatas == null)
-                        dml.writeRow(session, row);
-                    else {
-                        // Make a copy now so that what we keep is compacter.
-                        RowData rowData = row.toRowData().copy();
+                    // Make a copy now so that what we keep is compacter.
+                    RowData rowData = row.toRowData().copy();
+                    batch.add(rowData);
+                    if (rowDatas != null)
                         rowDatas.add(rowData);
-                        store.writeRow(session, rowData);
-                    }
                     total++;
                     pending++;
                 }
@@ -272,12 +301,17 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                 if (row == null) {
                     commit = true;
                 }
-                else {
-                    if (commitFrequency == COMMIT_FREQUENCY_PERIODICALLY) {
-                        transactionService.periodicallyCommit(session);
+                else if ((commitFrequency != COMMIT_FREQUENCY_PERIODICALLY) &&
+                         (commitFrequency != COMMIT_FREQUENCY_NEVER)) {
+                    commit = (pending >= commitFrequency);
+                }
+                if (commit || (batch.size() >= WRITE_BATCH_SIZE)) {
+                    if (!batch.isEmpty()) {
+                        dml.writeRows(session, batch);
+                        batch.clear();
                     }
-                    else if (commitFrequency != COMMIT_FREQUENCY_NEVER) {
-                        commit = (pending >= commitFrequency);
+                    if (!commit && (commitFrequency == COMMIT_FREQUENCY_PERIODICALLY)) {
+                        transactionService.periodicallyCommit(session);
                     }
                 }
                 if (commit) {
@@ -300,9 +334,7 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                                 }
                                 else {
                                     logger.debug("Retry #{}", i);
-                                    for (RowData rowData : rowDatas) {
-                                        store.writeRow(session, rowData);
-                                    }
+                                    store.writeRows(session, rowDatas);
                                }
                             }
                         }
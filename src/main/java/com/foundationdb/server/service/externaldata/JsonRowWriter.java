@@ -37,11 +37,34 @@ public class JsonRowWriter
     private static final Logger logger = LoggerFactory.getLogger(JsonRowWriter.class);
 
     private final RowTracker tracker;
+    private long rowLimit = -1;
+    private long rowCount;
+    private String rowSeparator = ",";
 
     public JsonRowWriter(RowTracker tracker) {
         this.tracker = tracker;
     }
 
+    /**
+     * Stop after this many top level rows have been written, across all
+     * calls. -1 = no limit.
+     */
+    public void setRowLimit(long rowLimit) {
+        this.rowLimit = rowLimit;
+    }
+
+    public boolean isRowLimitReached() {
+        return (rowLimit >= 0) && (rowCount >= rowLimit);
+    }
+
+    /**
+     * Written between top level rows, instead of a comma. A newline gives
+     * one row per line, without an enclosing array, for NDJSON.
+     */
+    public void setRowSeparator(String rowSeparator) {
+        this.rowSeparator = rowSeparator;
+    }
+
     public boolean writeRows(Cursor cursor, AkibanAppender appender, String prefix, WriteRow rowWriter) {
         try {
             cursor.openTopLevel();
@@ -62,6 +85,11 @@ public class JsonRowWriter
             logger.trace("Row {}", row);
             tracker.beginRow(row);
             int rowDepth = tracker.getRowDepth();
+            if (rowDepth == minDepth) {
+                if (isRowLimitReached())
+                    break;
+                rowCount++;
+            }
             boolean begun = false;
             if (depth >= rowDepth) {
                 if (tracker.isSameRowType())
@@ -78,7 +106,10 @@ public class JsonRowWriter
             depth = rowDepth;
             tracker.pushRowType();
             if (begun) {
-                appender.append(',');
+                if (depth == minDepth)
+                    appender.append(rowSeparator);
+                else
+                    appender.append(',');
             }
             else if (depth > minDepth) {
                 appender.append(",\"");
@@ -0,0 +1,230 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.service.restdml;
+
+import com.foundationdb.server.service.dxl.DXLService;
+import com.foundationdb.server.util.LRUCacheMap;
+import com.foundationdb.sql.embedded.EmbeddedJDBCService;
+import com.foundationdb.sql.embedded.JDBCConnection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.Principal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Embedded connections for REST requests, kept open between requests for the
+ * same user, each with a cache of the statements it has prepared. Repeated
+ * requests then neither start a new session nor parse and plan the same SQL again.
+ * <p/>
+ * A connection is returned to the pool when its {@link PooledConnection} is
+ * closed, unless it is still in a transaction, as after an error part way through
+ * reading results. Then it is closed instead.
+ */
+public class RestConnectionPool
+{
+    private static final Logger logger = LoggerFactory.getLogger(RestConnectionPool.class);
+
+    private final EmbeddedJDBCService jdbcService;
+    private final DXLService dxlService;
+    private final int maxIdle;
+    private final int statementCacheCapacity;
+    private final ConcurrentMap<String,Deque<PooledConnection>> idleConnections = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param maxIdle most connections kept per user; 0 to close them after each request
+     * @param statementCacheCapacity most prepared statements kept by each connection, at least 1
+     */
+    public RestConnectionPool(EmbeddedJDBCService jdbcService, DXLService dxlService,
+                              int maxIdle, int statementCacheCapacity) {
+        this.jdbcService = jdbcService;
+        this.dxlService = dxlService;
+        this.maxIdle = maxIdle;
+        this.statementCacheCapacity = Math.max(statementCacheCapacity, 1);
+    }
+
+    /** The user whose connections are shared by requests with the given principal. */
+    public static String userKey(Principal principal) {
+        return (principal == null) ? "" : principal.getName();
+    }
+
+    /** Get an idle connection for this user, or open a new one. */
+    public PooledConnection take(Principal principal) throws SQLException {
+        String key = userKey(principal);
+        Deque<PooledConnection> idle = idleConnections.get(key);
+        if (idle != null) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                // Most recently used first, as it is the most likely to have the statement.
+                pooled = idle.pollFirst();
+            }
+            if (pooled != null)
+                return pooled;
+        }
+        JDBCConnection connection = (JDBCConnection)jdbcService.newConnection(new Properties(), principal);
+        return new PooledConnection(key, connection);
+    }
+
+    /** Close all idle connections and any returned from now on. */
+    public void close() {
+        closed = true;
+        for (Deque<PooledConnection> idle : idleConnections.values()) {
+            while (true) {
+                PooledConnection pooled;
+                synchronized (idle) {
+                    pooled = idle.pollFirst();
+                }
+                if (pooled == null) break;
+                pooled.closeConnection();
+            }
+        }
+    }
+
+    protected void release(PooledConnection pooled) {
+        if (!closed && (maxIdle > 0) && pooled.reset()) {
+            Deque<PooledConnection> idle = idleConnections.get(pooled.userKey);
+            if (idle == null) {
+                idle = new ArrayDeque<>(maxIdle);
+                Deque<PooledConnection> prev = idleConnections.putIfAbsent(pooled.userKey, idle);
+                if (prev != null)
+                    idle = prev;
+            }
+            synchronized (idle) {
+                if (idle.size() < maxIdle) {
+                    idle.offerFirst(pooled);
+                    return;
+                }
+            }
+        }
+        pooled.closeConnection();
+    }
+
+    public class PooledConnection implements AutoCloseable
+    {
+        private final String userKey;
+        private final JDBCConnection connection;
+        private final String defaultSchemaName;
+        private final Map<String,PreparedStatement> statements;
+        private long aisGeneration = -1;
+
+        protected PooledConnection(String userKey, JDBCConnection connection) {
+            this.userKey = userKey;
+            this.connection = connection;
+            this.defaultSchemaName = connection.getDefaultSchemaName();
+            this.statements = new LRUCacheMap<String,PreparedStatement>(statementCacheCapacity) {
+                @Override
+                public boolean removeEldestEntry(Map.Entry entry) {
+                    boolean evict = super.removeEldestEntry(entry);
+                    if (evict)
+                        closeStatement((PreparedStatement)entry.getValue());
+                    return evict;
+                }
+            };
+        }
+
+        public JDBCConnection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Get a statement for <code>sql</code>, prepared earlier on this
+         * connection if possible, with no parameters set. The statement
+         * belongs to the cache and must not be closed by the caller.
+         */
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            long generation = dxlService.ddlFunctions().getAIS(connection.getSession()).getGeneration();
+            if (generation != aisGeneration) {
+                // Plans may refer to tables that have since changed.
+                closeStatements();
+                aisGeneration = generation;
+            }
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            }
+            else {
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        /** Return to the pool. */
+        @Override
+        public void close() {
+            release(this);
+        }
+
+        /** Undo any changes a request made to the connection, if possible. */
+        protected boolean reset() {
+            try {
+                if (connection.isClosed() || connection.isTransactionActive())
+                    return false;
+                if (!connection.getAutoCommit())
+                    connection.setAutoCommit(true);
+                if (!Objects.equals(defaultSchemaName, connection.getDefaultSchemaName())) {
+                    if (defaultSchemaName == null)
+                        return false;
+                    connection.setProperty("database", defaultSchemaName);
+                }
+                connection.clearWarnings();
+                return true;
+            }
+            catch (SQLException | RuntimeException ex) {
+                logger.debug("Not reusing connection", ex);
+                return false;
+            }
+        }
+
+        protected void closeConnection() {
+            closeStatements();
+            try {
+                connection.close();
+            }
+            catch (SQLException ex) {
+                logger.warn("Error closing connection", ex);
+            }
+        }
+
+        private void closeStatements() {
+            for (PreparedStatement stmt : statements.values()) {
+                closeStatement(stmt);
+            }
+            statements.clear();
+        }
+
+        private void closeStatement(PreparedStatement stmt) {
+            try {
+                stmt.close();
+            }
+            catch (SQLException ex) {
+                logger.warn("Error closing statement", ex);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.foundationdb.server.service.restdml;
 
 import com.foundationdb.ais.model.IndexName;
 import com.foundationdb.ais.model.TableName;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import javax.servlet.http.HttpServletRequest;
@@ -31,8 +32,8 @@ import java.util.Map;
 import com.foundationdb.server.service.session.Session;
 
 public interface RestDMLService {
-    public void getAllEntities(PrintWriter writer, TableName tableName, Integer depth);
-    public void getEntities(PrintWriter writer, TableName tableName, Integer depth, String pks);
+    public void getAllEntities(JsonGenerator generator, TableName tableName, Integer depth, Integer limit, boolean lines);
+    public void getEntities(JsonGenerator generator, TableName tableName, Integer depth, String pks, Integer limit, boolean lines);
     public void insert(PrintWriter writer, TableName tableName, JsonNode node);
     public void delete(TableName tableName, String pks);
     public void update(PrintWriter writer, TableName tableName, String values, JsonNode node);
@@ -44,10 +45,15 @@ public interface RestDMLService {
     public void runSQL(PrintWriter writer, HttpServletRequest request, String sql, String schema) throws SQLException;
     public void runSQL(PrintWriter writer, HttpServletRequest request, List<String> sql) throws SQLException;
     public void runSQLParameter(PrintWriter writer,HttpServletRequest request, String SQL, List<String> parameters) throws SQLException;
-    public void explainSQL(PrintWriter writer, HttpServletRequest request, String sql) throws IOException, SQLException;
+    public void explainSQL(PrintWriter writer, HttpServletRequest request, String sql, boolean analyze) throws IOException, SQLException;
+
+    public void prepareSQL(PrintWriter writer, HttpServletRequest request, String name, String sql) throws IOException, SQLException;
+    public void describePreparedSQL(PrintWriter writer, HttpServletRequest request, String name) throws IOException, SQLException;
+    public void executePreparedSQL(PrintWriter writer, HttpServletRequest request, String name, String jsonParams) throws SQLException;
+    public void deallocatePreparedSQL(HttpServletRequest request, String name);
 
     public void callProcedure(PrintWriter writer, HttpServletRequest request, String jsonpArgName,
                               TableName procName, Map<String,List<String>> queryParams, String content) throws SQLException;
 
-    public void fullTextSearch(PrintWriter writer, IndexName indexName, Integer depth, String query, Integer limit);
+    public void fullTextSearch(PrintWriter writer, IndexName indexName, Integer depth, String query, Integer limit, Integer offset);
 }
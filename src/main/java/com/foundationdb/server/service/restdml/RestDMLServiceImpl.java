@@ -23,15 +23,20 @@ import com.foundationdb.ais.model.IndexName;
 import com.foundationdb.ais.model.Routine;
 import com.foundationdb.ais.model.Table;
 import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.server.Quote;
 import com.foundationdb.server.error.AkibanInternalException;
 import com.foundationdb.server.error.InvalidArgumentTypeException;
+import com.foundationdb.server.error.NoSuchPreparedStatementException;
 import com.foundationdb.server.error.WrongExpressionArityException;
 import com.foundationdb.server.explain.format.JsonFormatter;
 import com.foundationdb.server.service.Service;
+import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.dxl.DXLService;
 import com.foundationdb.server.service.externaldata.ExternalDataService;
 import com.foundationdb.server.service.externaldata.JsonRowWriter;
+import com.foundationdb.server.service.restdml.RestConnectionPool.PooledConnection;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.session.SessionService;
 import com.foundationdb.server.service.text.FullTextIndexService;
@@ -39,6 +44,7 @@ import com.foundationdb.server.service.text.FullTextQueryBuilder;
 import com.foundationdb.server.service.transaction.TransactionService;
 import com.foundationdb.server.store.Store;
 import com.foundationdb.server.types.service.TypesRegistryService;
+import com.foundationdb.server.util.LRUCacheMap;
 import com.foundationdb.sql.embedded.EmbeddedJDBCService;
 import com.foundationdb.sql.embedded.JDBCCallableStatement;
 import com.foundationdb.sql.embedded.JDBCConnection;
@@ -61,11 +67,14 @@ import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.foundationdb.server.service.transaction.TransactionService.CloseableTransaction;
 import static com.foundationdb.util.JsonUtils.createJsonGenerator;
@@ -82,6 +91,11 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
     private final UpdateProcessor updateProcessor;
     private final UpsertProcessor upsertProcessor;
     private final FullTextIndexService fullTextService;
+    private final ConfigurationService configService;
+    private RestConnectionPool connectionPool;
+    // SQL of named statements, by user and then by name, least recently used dropped.
+    private final ConcurrentMap<String,Map<String,String>> namedStatements = new ConcurrentHashMap<>();
+    private int namedStatementCapacity;
     private static final InOutTap ENTITY_GET = Tap.createTimer("rest: entity GET");
     private static final InOutTap ENTITY_POST = Tap.createTimer("rest: entity POST");
     private static final InOutTap ENTITY_PUT = Tap.createTimer("rest: entity PUT");
@@ -90,10 +104,14 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
     private static final InOutTap ENTITY_SQL = Tap.createTimer("rest: entity sql");
     private static final InOutTap ENTITY_EXPLAIN = Tap.createTimer("rest: entity explain");
     private static final InOutTap ENTITY_PARAM = Tap.createTimer("rest: entity sql parameter");
+    private static final InOutTap ENTITY_PREPARED = Tap.createTimer("rest: entity sql prepared");
     
     private static final InOutTap ENTITY_TEXT = Tap.createTimer("rest: entity text");
     private static final InOutTap ENTITY_CALL = Tap.createTimer("rest: entity call");
 
+    public static final String CONNECTION_POOL_SIZE_PROPERTY = "fdbsql.rest.connectionPoolSize";
+    public static final String STATEMENT_CACHE_CAPACITY_PROPERTY = "fdbsql.rest.statementCacheCapacity";
+
 
     @Inject
     public RestDMLServiceImpl(SessionService sessionService,
@@ -103,13 +121,15 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
                               EmbeddedJDBCService jdbcService,
                               FullTextIndexService fullTextService,
                               Store store,
-                              TypesRegistryService registryService) {
+                              TypesRegistryService registryService,
+                              ConfigurationService configService) {
         this.sessionService = sessionService;
         this.dxlService = dxlService;
         this.transactionService = transactionService;
         this.extDataService = extDataService;
         this.jdbcService = jdbcService;
         this.fullTextService = fullTextService;
+        this.configService = configService;
         this.insertProcessor = new InsertProcessor (store, registryService);
         this.deleteProcessor = new DeleteProcessor (store, registryService);
         this.updateProcessor = new UpdateProcessor (store, registryService, deleteProcessor, insertProcessor);
@@ -120,40 +140,51 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
 
     @Override
     public void start() {
-        // None
+        namedStatementCapacity = Integer.parseInt(configService.getProperty(STATEMENT_CACHE_CAPACITY_PROPERTY));
+        connectionPool = new RestConnectionPool(jdbcService, dxlService,
+                                                Integer.parseInt(configService.getProperty(CONNECTION_POOL_SIZE_PROPERTY)),
+                                                namedStatementCapacity);
     }
 
     @Override
     public void stop() {
-        // None
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+        namedStatements.clear();
    }
 
     @Override
     public void crash() {
-        //None
+        stop();
     }
 
     /* RestDMLService */
 
     @Override
-    public void getAllEntities(PrintWriter writer, TableName tableName, Integer depth) {
+    public void getAllEntities(JsonGenerator generator, TableName tableName, Integer depth, Integer limit, boolean lines) {
         int realDepth = (depth != null) ? Math.max(depth, 0) : -1;
+        long realLimit = (limit != null) ? Math.max(limit, 0) : -1;
         ENTITY_GET.in();
         try (Session session = sessionService.createSession()) {
             extDataService.dumpAllAsJson(session,
-                    writer,
+                    AkibanAppender.of(generator),
                     tableName.getSchemaName(),
                     tableName.getTableName(),
                     realDepth,
-                    true);
+                    true,
+                    realLimit,
+                    lines);
         } finally {
             ENTITY_GET.out();
         }
     }
 
     @Override
-    public void getEntities(PrintWriter writer, TableName tableName, Integer depth, String identifiers) {
+    public void getEntities(JsonGenerator generator, TableName tableName, Integer depth, String identifiers, Integer limit, boolean lines) {
         int realDepth = (depth != null) ? Math.max(depth, 0) : -1;
+        long realLimit = (limit != null) ? Math.max(limit, 0) : -1;
         ENTITY_GET.in();
         try (Session session = sessionService.createSession();
              CloseableTransaction txn = transactionService.beginCloseableTransaction(session)) {
@@ -161,12 +192,14 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
             Index pkIndex = table.getPrimaryKeyIncludingInternal().getIndex();
             List<List<String>> pks = PrimaryKeyParser.parsePrimaryKeys(identifiers, pkIndex);
             extDataService.dumpBranchAsJson(session,
-                    writer,
+                    AkibanAppender.of(generator),
                     tableName.getSchemaName(),
                     tableName.getTableName(),
                     pks,
                     realDepth,
-                    false);
+                    false,
+                    realLimit,
+                    lines);
             txn.commit();
         } finally {
             ENTITY_GET.out();
@@ -256,15 +289,83 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
     }
 
     @Override
-    public void explainSQL(PrintWriter writer, HttpServletRequest request, String sql) throws IOException, SQLException {
+    public void explainSQL(PrintWriter writer, HttpServletRequest request, String sql, boolean analyze) throws IOException, SQLException {
         ENTITY_EXPLAIN.in();
-        try (JDBCConnection conn = jdbcConnection(request)) {
-            new JsonFormatter().format(conn.explain(sql), writer);
+        try (PooledConnection pooled = connectionPool.take(request.getUserPrincipal())) {
+            new JsonFormatter().format(pooled.getConnection().explain(sql, analyze), writer);
         } finally {
             ENTITY_EXPLAIN.out();
         }
     }
 
+    @Override
+    public void prepareSQL(PrintWriter writer, HttpServletRequest request, String name, String sql) throws IOException, SQLException {
+        ENTITY_PREPARED.in();
+        try (PooledConnection pooled = connectionPool.take(request.getUserPrincipal())) {
+            // Preparing checks the SQL, and leaves the plan cached on this connection.
+            PreparedStatement s = pooled.prepareStatement(sql);
+            String userKey = RestConnectionPool.userKey(request.getUserPrincipal());
+            Map<String,String> statements = namedStatements.get(userKey);
+            if (statements == null) {
+                statements = Collections.synchronizedMap(new LRUCacheMap<String,String>(Math.max(namedStatementCapacity, 1)));
+                Map<String,String> prev = namedStatements.putIfAbsent(userKey, statements);
+                if (prev != null)
+                    statements = prev;
+            }
+            statements.put(name, sql);
+            writeNamedStatement(writer, name, null, s);
+        } finally {
+            ENTITY_PREPARED.out();
+        }
+    }
+
+    @Override
+    public void describePreparedSQL(PrintWriter writer, HttpServletRequest request, String name) throws IOException, SQLException {
+        ENTITY_PREPARED.in();
+        String sql = namedStatementSQL(request, name);
+        try (PooledConnection pooled = connectionPool.take(request.getUserPrincipal())) {
+            writeNamedStatement(writer, name, sql, pooled.prepareStatement(sql));
+        } finally {
+            ENTITY_PREPARED.out();
+        }
+    }
+
+    @Override
+    public void executePreparedSQL(PrintWriter writer, HttpServletRequest request, String name, String jsonParams) throws SQLException {
+        ENTITY_PREPARED.in();
+        String sql = namedStatementSQL(request, name);
+        try (PooledConnection pooled = connectionPool.take(request.getUserPrincipal())) {
+            PreparedStatement s = pooled.prepareStatement(sql);
+            if ((jsonParams != null) && !jsonParams.trim().isEmpty()) {
+                JsonNode parsed;
+                try {
+                    parsed = jsonParser(jsonParams).readValueAsTree();
+                }
+                catch (IOException ex) {
+                    throw new AkibanInternalException("Error reading from string", ex);
+                }
+                if (!parsed.isArray()) {
+                    throw new InvalidArgumentTypeException("JSON must be array");
+                }
+                int index = 1;
+                for (JsonNode value : parsed) {
+                    setParameter(s, index++, value);
+                }
+            }
+            runPreparedStatement(pooled.getConnection(), writer, s, OutputType.ARRAY, CommitMode.AUTO);
+        } finally {
+            ENTITY_PREPARED.out();
+        }
+    }
+
+    @Override
+    public void deallocatePreparedSQL(HttpServletRequest request, String name) {
+        Map<String,String> statements = namedStatements.get(RestConnectionPool.userKey(request.getUserPrincipal()));
+        if ((statements == null) || (statements.remove(name) == null)) {
+            throw new NoSuchPreparedStatementException(name);
+        }
+    }
+
     @Override
     public void callProcedure(PrintWriter writer, HttpServletRequest request, String jsonpArgName,
                                  TableName procName, Map<String,List<String>> queryParams, String content) throws SQLException {
@@ -414,35 +515,93 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
                                     HttpServletRequest request, String sql, List<String> params,
                                     OutputType outputType, CommitMode commitMode) throws SQLException {
         ENTITY_PARAM.in();
-        try (Connection conn = jdbcConnection(request);
-                final PreparedStatement s = conn.prepareStatement(sql)) {
+        try (PooledConnection pooled = connectionPool.take(request.getUserPrincipal())) {
+            PreparedStatement s = pooled.prepareStatement(sql);
             int index = 1;
             for (String param : params) {
                 s.setString(index++, param);
             }
-            processSQL (conn, writer, outputType, commitMode,
-                    new ProcessStatement() {
-                    @Override
-                    public Statement processStatement(int index) throws SQLException {
-                        if (index == 0) {
-                            s.execute();
-                            return s;
-                        } else {
-                            return null;
-                        }
-                    }
-            });
+            runPreparedStatement(pooled.getConnection(), writer, s, outputType, commitMode);
         } finally {
             ENTITY_PARAM.out();
         }
     }
 
+    private void runPreparedStatement(Connection conn, PrintWriter writer,
+                                      final PreparedStatement s,
+                                      OutputType outputType, CommitMode commitMode) throws SQLException {
+        processSQL (conn, writer, outputType, commitMode,
+                new ProcessStatement() {
+                @Override
+                public Statement processStatement(int index) throws SQLException {
+                    if (index == 0) {
+                        s.execute();
+                        return s;
+                    } else {
+                        return null;
+                    }
+                }
+        });
+    }
+
+    private String namedStatementSQL(HttpServletRequest request, String name) {
+        Map<String,String> statements = namedStatements.get(RestConnectionPool.userKey(request.getUserPrincipal()));
+        String sql = (statements == null) ? null : statements.get(name);
+        if (sql == null) {
+            throw new NoSuchPreparedStatementException(name);
+        }
+        return sql;
+    }
+
+    private static void writeNamedStatement(PrintWriter writer, String name, String sql,
+                                            PreparedStatement s) throws IOException, SQLException {
+        ParameterMetaData md = s.getParameterMetaData();
+        JsonGenerator jg = createJsonGenerator(writer);
+        jg.writeStartObject();
+        jg.writeStringField("name", name);
+        if (sql != null) {
+            jg.writeStringField("sql", sql);
+        }
+        jg.writeNumberField("parameters", (md == null) ? 0 : md.getParameterCount());
+        jg.writeEndObject();
+        jg.flush();
+    }
+
+    private static void setParameter(PreparedStatement s, int index, JsonNode value) throws SQLException {
+        if (value.isNull()) {
+            s.setNull(index, Types.NULL);
+        }
+        else if (value.isBigDecimal()) {
+            s.setBigDecimal(index, value.decimalValue());
+        }
+        else if (value.isBoolean()) {
+            s.setBoolean(index, value.asBoolean());
+        }
+        else if (value.isDouble()) {
+            s.setDouble(index, value.asDouble());
+        }
+        else if (value.isInt()) {
+            s.setInt(index, value.asInt());
+        }
+        else if (value.isLong()) {
+            s.setLong(index, value.asLong());
+        }
+        else if (value.isValueNode()) {
+            s.setString(index, value.asText());
+        }
+        else {
+            // Nested arrays and objects are passed as their JSON text.
+            s.setString(index, value.toString());
+        }
+    }
+
     private void runSQLFlat(PrintWriter writer,
             HttpServletRequest request, final List<String> sqlList, String schema,
             OutputType outputType, CommitMode commitMode) throws SQLException {
         ENTITY_SQL.in();
-        try (JDBCConnection conn = jdbcConnection(request);
-              final Statement s = conn.createStatement()) {
+        try (PooledConnection pooled = connectionPool.take(request.getUserPrincipal());
+             final Statement s = pooled.getConnection().createStatement()) {
+            JDBCConnection conn = pooled.getConnection();
             if (schema != null)
                 conn.setProperty("database", schema);
             processSQL (conn, writer, outputType, commitMode,
@@ -532,10 +691,6 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
         cursor.close();
     }
 
-    private JDBCConnection jdbcConnection(HttpServletRequest request) throws SQLException {
-        return (JDBCConnection) jdbcService.newConnection(new Properties(), request.getUserPrincipal());
-    }
-
     private JDBCConnection jdbcConnection(HttpServletRequest request, String schemaName) throws SQLException {
         // TODO: This is to make up for test situations where the
         // request is not authenticated.
@@ -584,19 +739,31 @@ public class RestDMLServiceImpl implements Service, RestDMLService {
     }
 
     @Override
-    public void fullTextSearch(PrintWriter writer, IndexName indexName, Integer depth, String query, Integer limit) {
+    public void fullTextSearch(PrintWriter writer, IndexName indexName, Integer depth, String query, Integer limit, Integer offset) {
         int realDepth = (depth != null) ? Math.max(depth, 0) : -1;
         int realLimit = (limit != null) ? limit.intValue() : -1;
+        int realOffset = (offset != null) ? Math.max(offset, 0) : 0;
         ENTITY_TEXT.in();
         FullTextQueryBuilder builder = new FullTextQueryBuilder(indexName, 
                                                                 fullTextService);
         try (Session session = sessionService.createSession();
              CloseableTransaction txn = transactionService.beginCloseableTransaction(session)) {
+            Operator plan;
+            if (realOffset > 0) {
+                // The hits are read a page at a time, so those skipped
+                // are not all held at once.
+                plan = builder.scanOperator(query, (realLimit > 0) ? realOffset + realLimit : -1);
+                plan = API.limit_Default(plan, realOffset, false,
+                                         (realLimit > 0) ? realLimit : Integer.MAX_VALUE, false);
+            }
+            else {
+                plan = builder.scanOperator(query, realLimit);
+            }
             extDataService.dumpBranchAsJson(session,
                                             writer,
                                             indexName.getSchemaName(),
                                             indexName.getTableName(),
-                                            builder.scanOperator(query, realLimit),
+                                            plan,
                                             fullTextService.searchRowType(session, indexName),
                                             realDepth,
                                             false);
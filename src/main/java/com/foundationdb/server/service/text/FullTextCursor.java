@@ -34,6 +34,7 @@ import com.persistit.Key;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
@@ -44,6 +45,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 
+/** The hits of a query, best first. All pages are read from the same
+ * searcher, held from creation until {@link #destroy}, so that they see
+ * the same version of the index.
+ */
 public class FullTextCursor implements RowCursor
 {
     private final QueryContext context;
@@ -55,6 +60,18 @@ public class FullTextCursor implements RowCursor
     private IndexSearcher searcher;
     private TopDocs results;
     private int position;
+    private int remaining;
+    private int pageSize;
+    private ScoreDoc lastDoc;
+
+    /* Hits are read a page at a time, each search starting after the
+     * last hit of the one before. Pages start small, so that a cursor
+     * that is only partly read does not collect every hit up to the
+     * limit, and double, so that one that is read to the end does not
+     * search too many times.
+     */
+    public static final int INITIAL_PAGE_SIZE = 64;
+    public static final int MAX_PAGE_SIZE = 8192;
 
     public static final Sort SORT = new Sort(SortField.FIELD_SCORE,
                                              new SortField(IndexedField.KEY_FIELD,
@@ -81,12 +98,10 @@ public class FullTextCursor implements RowCursor
             results = null;
         }
         else {
-            try {
-                results = searcher.search(query, limit, SORT);
-            }
-            catch (IOException ex) {
-                throw new AkibanInternalException("Error searching index", ex);
-            }
+            remaining = limit;
+            pageSize = INITIAL_PAGE_SIZE;
+            lastDoc = null;
+            results = nextPage();
         }
         position = 0;
     }
@@ -97,8 +112,12 @@ public class FullTextCursor implements RowCursor
         if (results == null)
             return null;
         if (position >= results.scoreDocs.length) {
-            results = null;
-            return null;
+            results = nextPage();
+            position = 0;
+            if ((results == null) || (results.scoreDocs.length == 0)) {
+                results = null;
+                return null;
+            }
         }
         Document doc;
         try {
@@ -154,6 +173,36 @@ public class FullTextCursor implements RowCursor
         throw new UnsupportedOperationException();
     }
 
+    /* Search for the next page of hits, or return <code>null</code>
+     * if there cannot be any more. */
+    protected TopDocs nextPage() {
+        int n = Math.min(pageSize, remaining);
+        if (n <= 0) {
+            return null;
+        }
+        TopDocs page;
+        try {
+            if (lastDoc == null) {
+                page = searcher.search(query, n, SORT);
+            }
+            else {
+                page = searcher.searchAfter(lastDoc, query, n, SORT);
+            }
+        }
+        catch (IOException ex) {
+            throw new AkibanInternalException("Error searching index", ex);
+        }
+        if (page.scoreDocs.length < n) {
+            remaining = 0;
+        }
+        else {
+            remaining -= n;
+            lastDoc = page.scoreDocs[n - 1];
+        }
+        pageSize = Math.min(pageSize * 2, MAX_PAGE_SIZE);
+        return page;
+    }
+
     /* Allocate a new <code>PersistitHKey</code> and copy the given
      * key bytes into it. */
     protected HKey hkey(String encoded) {
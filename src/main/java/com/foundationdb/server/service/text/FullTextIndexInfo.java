@@ -41,6 +41,8 @@ import java.util.*;
 
 public class FullTextIndexInfo
 {
+    private static final int LOOKAHEAD_QUANTUM = 16;
+
     private final FullTextIndexShared shared;
     private FullTextIndex index;
     private Schema schema;
@@ -55,6 +57,10 @@ public class FullTextIndexInfo
         this.shared = shared;
     }
 
+    public FullTextIndexShared getShared() {
+        return shared;
+    }
+
     public void init(AkibanInformationSchema ais) {
         IndexName name = shared.getName();
         Table table = ais.getTable(name.getFullTableName());
@@ -179,7 +185,8 @@ public class FullTextIndexInfo
                                            hKeyRowType,
                                            indexedRowType,
                                            API.InputPreservationOption.DISCARD_INPUT,
-                                           0);
+                                           0,
+                                           LOOKAHEAD_QUANTUM);
             if (!ancestors.isEmpty())
             {
                 
@@ -188,7 +195,7 @@ public class FullTextIndexInfo
                                               indexedRowType, 
                                               ancestors, 
                                               API.InputPreservationOption.KEEP_INPUT,
-                                              1);
+                                              LOOKAHEAD_QUANTUM);
             }
         }
         else
@@ -198,13 +205,15 @@ public class FullTextIndexInfo
             ret = API.ancestorLookup_Nested(group,
                                             hKeyRowType,
                                             ancestors,
-                                            0, 1);
+                                            0, LOOKAHEAD_QUANTUM);
         }
           
         return ret;
     }
     /**
-     * @return the operator plan to get to every row related to this index row
+     * @return the operator plan to get to every row related to this index row,
+     * bound at position 0. Updates bind a block of them at once, so the plan
+     * looks ahead that many.
      */
     public Operator getOperator()
     {
@@ -239,7 +248,7 @@ public class FullTextIndexInfo
         synchronized (shared) {
             searcher = shared.getSearcher();
             if (searcher == null) {
-                searcher = new Searcher(shared, getAnalyzer());
+                searcher = new Searcher(shared, getIndexer().getWriter());
             }
             shared.setSearcher(searcher);
         }
@@ -273,8 +282,19 @@ public class FullTextIndexInfo
         shared.getIndexer().getWriter().commit();
     }
 
+    /** Make what has been written visible to searches, committed or not. */
+    public void refreshSearcher() throws IOException {
+        getSearcher().refresh();
+    }
+
     public void rollbackIndexer() throws IOException {
         synchronized (shared) {
+            Searcher searcher = shared.getSearcher();
+            if(searcher != null) {
+                // Reads from the writer.
+                shared.setSearcher(null);
+                searcher.close();
+            }
             Indexer indexer = shared.getIndexer();
             if(indexer != null) {
                 try {
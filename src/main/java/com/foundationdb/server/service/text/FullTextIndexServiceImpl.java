@@ -31,6 +31,7 @@ import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.Cursor;
 import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryBindingsCursor;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.operator.RowCursor;
 import com.foundationdb.qp.operator.SimpleQueryContext;
@@ -70,10 +71,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements FullTextIndexService, Service, TableListener, RowListener
 {
@@ -81,6 +90,8 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
 
     public static final String INDEX_PATH_PROPERTY = "fdbsql.text.indexpath";
     public static final String BACKGROUND_INTERVAL_PROPERTY = "fdbsql.text.backgroundInterval";
+    public static final String UPDATE_THREADS_PROPERTY = "fdbsql.text.updateThreads";
+    public static final String COMMIT_INTERVAL_PROPERTY = "fdbsql.text.commitInterval";
 
     private static final TableName CHANGES_TABLE = new TableName(TableName.INFORMATION_SCHEMA, "full_text_changes");
     private static final TableName BACKGROUND_WAIT_PROC_NAME = new TableName(TableName.SYS_SCHEMA, "full_text_background_wait");
@@ -93,10 +104,12 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
     private final Store store;
     private final TransactionService transactionService;
     private final Object BACKGROUND_CHANGE_LOCK = new Object();
-    private final Object BACKGROUND_UPDATE_LOCK = new Object();
 
     private BackgroundRunner backgroundUpdate;
+    private ExecutorService updateWorkers;
     private long backgroundInterval;
+    private int updateThreads;
+    private long commitInterval;
     private File indexPath;
 
 
@@ -121,8 +134,8 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
 
     private void dropIndex(Session session, FullTextIndex index) {
         logger.trace("Delete {}", index.getIndexName());
-        synchronized(BACKGROUND_UPDATE_LOCK) {
-            FullTextIndexInfo info = getIndex(session, index.getIndexName(), index.getIndexedTable().getAIS());
+        FullTextIndexInfo info = getIndex(session, index.getIndexName(), index.getIndexedTable().getAIS());
+        synchronized(info.getShared().getUpdateLock()) {
             try {
                 info.close();
             } catch(IOException e) {
@@ -170,6 +183,11 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
         listenerService.registerRowListener(this);
 
         backgroundInterval = Long.parseLong(configService.getProperty(BACKGROUND_INTERVAL_PROPERTY));
+        updateThreads = Integer.parseInt(configService.getProperty(UPDATE_THREADS_PROPERTY));
+        if(updateThreads <= 0) {
+            updateThreads = Runtime.getRuntime().availableProcessors();
+        }
+        commitInterval = Long.parseLong(configService.getProperty(COMMIT_INTERVAL_PROPERTY));
         enableUpdateWorker();
     }
 
@@ -192,6 +210,8 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
         }
 
         backgroundInterval = 0;
+        updateThreads = 0;
+        commitInterval = 0;
         indexPath = null;
     }
 
@@ -235,6 +255,7 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
                 public void run(Session session, long timestamp) {
                     try {
                         indexInfo.commitIndexer();
+                        indexInfo.refreshSearcher();
                     } catch(IOException e) {
                         logger.error("Error committing index {}", indexInfo.getIndex().getIndexName(), e);
                     }
@@ -257,24 +278,21 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
         }
     }
 
-    private void updateIndex(Session session, FullTextIndexInfo indexInfo, Iterable<byte[]> rows) throws IOException {
+    private void updateIndex(Session session, FullTextIndexInfo indexInfo, List<byte[]> hkeys) throws IOException {
         StoreAdapter adapter = store.createAdapter(session, indexInfo.getSchema());
         QueryContext queryContext = new SimpleQueryContext(adapter);
-        QueryBindings queryBindings = queryContext.createBindings();
+        List<HKeyRow> hkeyRows = new ArrayList<>(hkeys.size());
+        for(byte[] hkey : hkeys) {
+            hkeyRows.add(toHKeyRow(hkey, indexInfo.getHKeyRowType(), adapter));
+        }
 
+        // One cursor for the whole block, so that the lookups can run ahead.
         Cursor cursor = null;
         IndexWriter writer = indexInfo.getIndexer().getWriter();
         try(RowIndexer rowIndexer = new RowIndexer(indexInfo, writer, true)) {
-            Operator operator = indexInfo.getOperator();
-            Iterator<byte[]> it = rows.iterator();
-            while(it.hasNext()) {
-                byte[] row = it.next();
-                HKeyRow hkeyRow = toHKeyRow(row, indexInfo.getHKeyRowType(), adapter);
-                queryBindings.setRow(0, hkeyRow);
-                cursor = API.cursor(operator, queryContext, queryBindings);
-                rowIndexer.updateDocument(cursor, row);
-                it.remove();
-            }
+            cursor = API.cursor(indexInfo.getOperator(), queryContext,
+                                new HKeyBindingsCursor(queryContext, hkeyRows));
+            rowIndexer.updateDocuments(cursor, hkeys);
         } finally {
             if(cursor != null) {
                 cursor.destroy();
@@ -363,12 +381,24 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
             assert backgroundUpdate != null;
             backgroundUpdate.toFinished();
             backgroundUpdate = null;
+            updateWorkers.shutdown();
+            updateWorkers = null;
         }
     }
 
     public void enableUpdateWorker() {
         synchronized(BACKGROUND_CHANGE_LOCK) {
             assert backgroundUpdate == null;
+            updateWorkers = Executors.newFixedThreadPool(updateThreads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FullText_Update_Worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
             backgroundUpdate = new BackgroundRunner("FullText_Update", backgroundInterval, new Runnable() {
                 @Override
                 public void run() {
@@ -388,51 +418,165 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
     }
     
     private void runUpdate() {
-        // Consume and commit updates to each index in distinct blocks to keep r/w window small-ish
-        for(;;) {
+        // Sort the changes by index, in one short transaction, and then
+        // update the indexes concurrently, each in a transaction of its own.
+        Map<IndexName,IndexChanges> changes = new HashMap<>();
+        Map<FullTextIndexShared,List<String>> removed = new HashMap<>();
+        try(Session session = sessionService.createSession();
+            CloseableTransaction txn = transactionService.beginCloseableTransaction(session)) {
+            // Quick exit if we won't see any
+            if(changesRowCount(session) == 0) {
+                return;
+            }
+            readChanges(session, changes, removed);
+            txn.commit();
+        }
+        for(Map.Entry<FullTextIndexShared,List<String>> entry : removed.entrySet()) {
+            entry.getKey().changesRemoved(entry.getValue());
+        }
+        List<Future<?>> futures = new ArrayList<>(changes.size());
+        for(final IndexChanges indexChanges : changes.values()) {
+            if(indexChanges.shared == null) {
+                continue;
+            }
+            if(indexChanges.hkeys.isEmpty() && !indexChanges.shared.hasAppliedChanges()) {
+                continue;
+            }
+            futures.add(updateWorkers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    updateIndex(indexChanges);
+                }
+            }));
+        }
+        // Wait for all of them, so that a cycle is complete when this returns.
+        Throwable failure = null;
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(ExecutionException e) {
+                if(failure == null) {
+                    failure = e.getCause();
+                }
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if(failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        }
+        if(failure != null) {
+            throw new AkibanInternalException("Error updating index", failure);
+        }
+    }
+
+    /**
+     * Apply the new changes for one index to its writer and make them
+     * visible to searches. The writer commits only every
+     * <code>commitInterval</code>; the change rows stay in the changes
+     * table until it has, so that nothing is lost if it never does.
+     */
+    private void updateIndex(IndexChanges changes) {
+        FullTextIndexShared shared = changes.shared;
+        // Only interact with FullTextIndexInfo under lock as to not fight concurrent DROP
+        synchronized(shared.getUpdateLock()) {
+            FullTextIndexInfo indexInfo;
             try(Session session = sessionService.createSession();
                 CloseableTransaction txn = transactionService.beginCloseableTransaction(session)) {
-                // Quick exit if we won't see any
-                if(changesRowCount(session) == 0) {
-                    break;
+                indexInfo = getIndexIfExists(session, changes.indexName, null);
+                if((indexInfo == null) || (indexInfo.getShared() != shared)) {
+                    // Index has been dropped since the changes were read.
+                    return;
                 }
-                // Only interact with FullTextIndexInfo under lock as to not fight concurrent DROP
-                synchronized(BACKGROUND_UPDATE_LOCK) {
-                    FullTextIndexInfo indexInfo = null;
-                    try(HKeyBytesStream rows = new HKeyBytesStream(session)) {
-                        if(rows.hasStream()) {
-                            IndexName name = rows.getIndexName();
-                            indexInfo = getIndexIfExists(session, name, null);
-                            if(indexInfo == null) {
-                                // Index has been deleted. Will conflict on so give up.
-                                break;
-                            } else {
-                                updateIndex(session, indexInfo, rows);
-                            }
-                        }
-                        txn.commit();
-                        // Only commit changes to Lucene after successful iteration
-                        // and removal of pending update rows
-                        if(indexInfo != null) {
-                            indexInfo.commitIndexer();
-                            indexInfo = null;
-                        }
-                    } catch(IOException e) {
-                        throw new AkibanInternalException("Error updating index", e);
-                    } finally {
-                        if(indexInfo != null) {
-                            try {
-                                indexInfo.rollbackIndexer();
-                            } catch(IOException e) {
-                                logger.warn( "Error rolling back update to {}", indexInfo.getIndex().getIndexName(), e);
-                            }
-                        }
+                if(!changes.hkeys.isEmpty()) {
+                    // If this fails, what was written is written again
+                    // from the same changes next time.
+                    updateIndex(session, indexInfo, changes.hkeys);
+                }
+                txn.commit();
+            } catch(IOException e) {
+                throw new AkibanInternalException("Error updating index", e);
+            }
+            try {
+                if(!changes.hkeys.isEmpty()) {
+                    shared.changesApplied(changes.changeKeys);
+                    indexInfo.refreshSearcher();
+                }
+                long now = System.currentTimeMillis();
+                if(shared.hasAppliedChanges() && (now - shared.getLastCommitTime() >= commitInterval)) {
+                    indexInfo.commitIndexer();
+                    shared.changesCommitted(now);
+                }
+            } catch(IOException e) {
+                throw new AkibanInternalException("Error committing index " + changes.indexName, e);
+            }
+        }
+    }
+
+    /**
+     * Sort the rows of the changes table by index. Rows for indexes that
+     * no longer exist and rows whose changes have been committed by their
+     * index are deleted; those for the latter are added to
+     * <code>removed</code>.
+     */
+    private void readChanges(Session session,
+                             Map<IndexName,IndexChanges> changes,
+                             Map<FullTextIndexShared,List<String>> removed) {
+        AkibanInformationSchema ais = getAIS(session);
+        Table changesTable = ais.getTable(CHANGES_TABLE);
+        Operator plan = API.groupScan_Default(changesTable.getGroup());
+        StoreAdapter adapter = store.createAdapter(session, SchemaCache.globalSchema(ais));
+        QueryContext context = new SimpleQueryContext(adapter);
+        Cursor cursor = API.cursor(plan, context, context.createBindings());
+        cursor.openTopLevel();
+        try {
+            Row row;
+            while((row = cursor.next()) != null) {
+                IndexName name = new IndexName(new TableName(row.value(0).getString(), row.value(1).getString()),
+                                               row.value(2).getString());
+                int indexID = row.value(3).getInt32();
+                IndexChanges indexChanges = changes.get(name);
+                if(indexChanges == null) {
+                    indexChanges = new IndexChanges(session, ais, name);
+                    changes.put(name, indexChanges);
+                }
+                if(indexID != indexChanges.indexID) {
+                    // May have been deleted or recreated
+                    store.deleteRow(session, ((AbstractRow)row).rowData(), false);
+                    continue;
+                }
+                FullTextIndexShared shared = indexChanges.shared;
+                if(shared == null) {
+                    // Not in use yet.
+                    continue;
+                }
+                String changeKey = changeKey(row);
+                if(shared.isChangeCommitted(changeKey)) {
+                    store.deleteRow(session, ((AbstractRow)row).rowData(), false);
+                    List<String> keys = removed.get(shared);
+                    if(keys == null) {
+                        keys = new ArrayList<>();
+                        removed.put(shared, keys);
                     }
+                    keys.add(changeKey);
+                }
+                else if(!shared.isChangePending(changeKey)) {
+                    indexChanges.hkeys.add(row.value(4).getBytes());
+                    indexChanges.changeKeys.add(changeKey);
                 }
             }
+        } finally {
+            cursor.destroy();
         }
     }
 
+    /** Identify a row of the changes table by its own hkey. */
+    private static String changeKey(Row row) {
+        Key key = ((PersistitHKey)row.hKey()).key();
+        return RowIndexer.encodeBytes(key.getEncodedBytes(), 0, key.getEncodedSize());
+    }
+
     private HKeyRow toHKeyRow(byte rowBytes[], HKeyRowType hKeyRowType, StoreAdapter store)
     {
         PersistitHKey hkey = store.newHKey(hKeyRowType.hKey());
@@ -442,121 +586,60 @@ public class FullTextIndexServiceImpl extends FullTextIndexInfosImpl implements
         return new HKeyRow(hKeyRowType, hkey, new HKeyCache<>(store));
     }
 
-    private class HKeyBytesStream implements Iterable<byte[]>, Closeable
+    /** The new changes read for one index. */
+    private class IndexChanges
     {
-        private IndexName indexName;
-        private int indexID;
-        private final Session session;
-        private Cursor cursor;
-        private Row row;
-
-        private HKeyBytesStream(Session session) {
-            this.session = session;
-            AkibanInformationSchema ais = getAIS(session);
-            Table changesTable = ais.getTable(CHANGES_TABLE);
-            Operator plan = API.groupScan_Default(changesTable.getGroup());
-            StoreAdapter adapter = store.createAdapter(session, SchemaCache.globalSchema(ais));
-            QueryContext context = new SimpleQueryContext(adapter);
-            this.cursor = API.cursor(plan, context, context.createBindings());
-            cursor.open();
-            findNextIndex();
-        }
-
-        private void findNextIndex() {
-            indexName = null;
-            while((row = cursor.next()) != null) {
-                String schema = row.value(0).getString();
-                String tableName = row.value(1).getString();
-                String iName = row.value(2).getString();
-                indexName = new IndexName(new TableName(schema, tableName), iName);
-                indexID = row.value(3).getInt32();
-
-                Table table = getAIS(session).getTable(indexName.getFullTableName());
-                Index index = (table != null) ? table.getFullTextIndex(indexName.getName()) : null;
-                // May have been deleted or recreated
-                if(index != null && index.getIndexId() == indexID) {
-                    break;
-                }
+        private final IndexName indexName;
+        private final int indexID;
+        private final FullTextIndexShared shared;
+        private final List<byte[]> hkeys = new ArrayList<>();
+        private final List<String> changeKeys = new ArrayList<>();
 
-                store.deleteRow(session, ((AbstractRow)row).rowData(), false);
-                indexName = null;
-                row = null;
-            }
+        private IndexChanges(Session session, AkibanInformationSchema ais, IndexName indexName) {
+            this.indexName = indexName;
+            Table table = ais.getTable(indexName.getFullTableName());
+            Index index = (table != null) ? table.getFullTextIndex(indexName.getName()) : null;
+            this.indexID = (index != null) ? index.getIndexId() : -1;
+            FullTextIndexInfo indexInfo = (index != null) ? getIndexIfExists(session, indexName, ais) : null;
+            this.shared = (indexInfo != null) ? indexInfo.getShared() : null;
         }
+    }
+
+    /** One set of bindings for each of a list of hkey rows, at position 0. */
+    private static class HKeyBindingsCursor implements QueryBindingsCursor
+    {
+        private final QueryContext context;
+        private final List<HKeyRow> hkeyRows;
+        private int position;
 
-        public boolean hasStream() {
-            return indexName != null;
+        private HKeyBindingsCursor(QueryContext context, List<HKeyRow> hkeyRows) {
+            this.context = context;
+            this.hkeyRows = hkeyRows;
         }
 
-        public IndexName getIndexName() {
-            return indexName;
+        @Override
+        public void openBindings() {
+            position = 0;
         }
 
         @Override
-        public void close() {
-            if(cursor != null) {
-                cursor.close();
-                cursor = null;
-                row = null;
-                indexName = null;
+        public QueryBindings nextBindings() {
+            if(position >= hkeyRows.size()) {
+                return null;
             }
+            QueryBindings bindings = context.createBindings();
+            bindings.setRow(0, hkeyRows.get(position++));
+            return bindings;
         }
 
         @Override
-        public Iterator<byte[]> iterator() {
-            return new StreamIterator(hasStream(), row);
+        public void closeBindings() {
+            position = hkeyRows.size();
         }
 
-        private class StreamIterator implements Iterator<byte[]> {
-            private Boolean hasNext;
-            private Row row;
-
-            private StreamIterator(boolean hasNext, Row row) {
-                this.hasNext = hasNext;
-                this.row = row;
-            }
-
-            private void advance() {
-                row = cursor.next();
-                if(row != null &&
-                   indexName.getSchemaName().equals(row.value(0).getString()) &&
-                   indexName.getTableName().equals(row.value(1).getString()) &&
-                   indexName.getName().equals(row.value(2).getString()) &&
-                   indexID == row.value(3).getInt32()) {
-                    hasNext = true;
-                } else {
-                    hasNext = false;
-                    row = null;
-                }
-            }
-
-            @Override
-            public boolean hasNext() {
-                if(hasNext == null) {
-                    advance();
-                }
-                return hasNext;
-            }
-
-            @Override
-            public byte[] next() {
-                if(hasNext == null) {
-                    advance();
-                }
-                if(!hasNext) {
-                    throw new NoSuchElementException();
-                }
-                hasNext = null;
-                return row.value(4).getBytes();
-            }
-
-            @Override
-            public void remove() {
-                if(row == null) {
-                    throw new IllegalStateException();
-                }
-                store.deleteRow(session, ((AbstractRow)row).rowData(), false);
-            }
+        @Override
+        public void cancelBindings(QueryBindings bindings) {
+            // All at the same depth: none are within another.
         }
     }
 
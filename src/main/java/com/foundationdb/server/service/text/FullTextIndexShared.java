@@ -28,6 +28,8 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
 import java.io.*;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Set;
 
 public class FullTextIndexShared implements CacheValueGenerator<FullTextIndexInfo>, Closeable
@@ -41,6 +43,12 @@ public class FullTextIndexShared implements CacheValueGenerator<FullTextIndexInf
     private StandardQueryParser parser;
     private Indexer indexer;
     private Searcher searcher;
+    private final Object updateLock = new Object();
+    // Rows of the changes table, by their hkey there, that have been
+    // applied to the writer, and that it has then committed.
+    private final Set<String> appliedChanges = new HashSet<>();
+    private final Set<String> committedChanges = new HashSet<>();
+    private long lastCommitTime;
 
     public FullTextIndexShared(IndexName name) {
         this.name = name;
@@ -86,14 +94,14 @@ public class FullTextIndexShared implements CacheValueGenerator<FullTextIndexInf
 
     @Override
     public synchronized void close() throws IOException {
-        if (indexer != null) {
-            indexer.close();
-            indexer = null;
-        }
         if (searcher != null) {
             searcher.close();
             searcher = null;
         }
+        if (indexer != null) {
+            indexer.close();
+            indexer = null;
+        }
         if (directory != null) {
             directory.close();
             directory = null;
@@ -143,4 +151,41 @@ public class FullTextIndexShared implements CacheValueGenerator<FullTextIndexInf
         this.searcher = searcher;
     }
 
+    /** Held while the index is being updated or dropped. */
+    public Object getUpdateLock() {
+        return updateLock;
+    }
+
+    public synchronized boolean isChangePending(String changeKey) {
+        return appliedChanges.contains(changeKey) || committedChanges.contains(changeKey);
+    }
+
+    public synchronized boolean isChangeCommitted(String changeKey) {
+        return committedChanges.contains(changeKey);
+    }
+
+    public synchronized boolean hasAppliedChanges() {
+        return !appliedChanges.isEmpty();
+    }
+
+    public synchronized void changesApplied(Collection<String> changeKeys) {
+        appliedChanges.addAll(changeKeys);
+    }
+
+    /** The writer has committed all the applied changes. */
+    public synchronized void changesCommitted(long time) {
+        committedChanges.addAll(appliedChanges);
+        appliedChanges.clear();
+        lastCommitTime = time;
+    }
+
+    /** The committed changes have been removed from the changes table. */
+    public synchronized void changesRemoved(Collection<String> changeKeys) {
+        committedChanges.removeAll(changeKeys);
+    }
+
+    public synchronized long getLastCommitTime() {
+        return lastCommitTime;
+    }
+
 }
@@ -18,6 +18,7 @@
 package com.foundationdb.server.service.text;
 
 import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.rowtype.TableRowType;
 import com.foundationdb.qp.storeadapter.PersistitHKey;
 import com.foundationdb.qp.row.Row;
@@ -133,12 +134,41 @@ public class RowIndexer implements Closeable
     {
         if (indexRows(cursor) == 0)
         {
-            String encoded = encodeBytes(hkeyBytes, 0, hkeyBytes.length);
-            writer.deleteDocuments(new Term(IndexedField.KEY_FIELD, encoded));
-            logger.debug("Deleted documents with encoded byptes: " + encoded);
+            deleteDocuments(hkeyBytes);
         }
     }
 
+    /** Update the documents for a block of hkeys, <code>cursor</code>
+     * having one set of bindings for each of them in turn.
+     */
+    protected void updateDocuments(Cursor cursor, List<byte[]> hkeys) throws IOException
+    {
+        cursor.openBindings();
+        for (byte[] hkeyBytes : hkeys) {
+            QueryBindings bindings = cursor.nextBindings();
+            assert (bindings != null) : "Fewer bindings than hkeys";
+            documentCount = 0;
+            cursor.open();
+            Row row;
+            do {
+                row = cursor.next();
+                indexRow(row);
+            } while (row != null);
+            cursor.close();
+            if (documentCount == 0) {
+                deleteDocuments(hkeyBytes);
+            }
+        }
+        cursor.closeBindings();
+    }
+
+    protected void deleteDocuments(byte hkeyBytes[]) throws IOException
+    {
+        String encoded = encodeBytes(hkeyBytes, 0, hkeyBytes.length);
+        writer.deleteDocuments(new Term(IndexedField.KEY_FIELD, encoded));
+        logger.debug("Deleted documents with encoded byptes: " + encoded);
+    }
+
     protected void addDocument() throws IOException {
         if (currentDocument != null) {
             if (updating) {
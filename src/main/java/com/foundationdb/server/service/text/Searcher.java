@@ -24,6 +24,7 @@ import com.foundationdb.qp.rowtype.HKeyRowType;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
@@ -40,19 +41,26 @@ public class Searcher implements Closeable
     private final FullTextIndexShared index;
     private final SearcherManager searcherManager;
 
-    public Searcher(FullTextIndexShared index, Analyzer analyzer) throws IOException {
+    /** Search what has been written by <code>writer</code>, whether or
+     * not it has committed it yet.
+     */
+    public Searcher(FullTextIndexShared index, IndexWriter writer) throws IOException {
         this.index = index;
-        this.searcherManager = new SearcherManager(index.open(), new SearcherFactory());
+        this.searcherManager = new SearcherManager(writer, true, new SearcherFactory());
     }
 
     public RowCursor search(QueryContext context, HKeyRowType rowType,
                             Query query, int limit)
             throws IOException {
-        searcherManager.maybeRefresh(); // TODO: Move to better place.
         if (limit <= 0) limit = DEFAULT_LIMIT;
         return new FullTextCursor(context, rowType, searcherManager, query, limit);
     }
 
+    /** Make changes written since the last refresh visible to new searches. */
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
     @Override
     public void close() throws IOException {
         searcherManager.close();
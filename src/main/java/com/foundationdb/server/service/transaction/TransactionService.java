@@ -75,6 +75,16 @@ public interface TransactionService extends Service {
     /** Rollback the current transaction if open, otherwise do nothing. */
     void rollbackTransactionIfOpen(Session session);
 
+    /**
+     * Make the current thread the one running the session's transaction, if any, and any later one.
+     * For threads that serve several sessions in turn, each of which may leave a transaction open
+     * between them. Returns {@code false} if it already was, in which case there is nothing to detach.
+     */
+    boolean attachToThread(Session session);
+
+    /** Undo {@link #attachToThread}, restoring the thread's own state. */
+    void detachFromThread(Session session);
+
     /** Commit the transaction if this is a good time. Returns {@code true} if a commit was performed. */
     boolean periodicallyCommit(Session session);
 
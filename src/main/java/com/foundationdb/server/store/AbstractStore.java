@@ -74,11 +74,13 @@ import com.foundationdb.sql.optimizer.rule.PlanGenerator;
 import com.foundationdb.util.tap.InOutTap;
 import com.foundationdb.util.tap.PointTap;
 import com.foundationdb.util.tap.Tap;
+import com.google.common.primitives.UnsignedBytes;
 import com.persistit.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
@@ -456,6 +458,65 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
         }
     }
 
+    @Override
+    public void writeRows(Session session, List<RowData> rows) {
+        int start = 0;
+        while(start < rows.size()) {
+            RowData first = rows.get(start);
+            int end = start + 1;
+            while((end < rows.size()) && (rows.get(end).getRowDefId() == first.getRowDefId())) {
+                ++end;
+            }
+            writeRows(session, getGlobalRowDef(session, first), rows.subList(start, end), null, null);
+            start = end;
+        }
+    }
+
+    @Override
+    public void writeRows(Session session, RowDef rowDef, List<RowData> rows, TableIndex[] tableIndexes, Collection<GroupIndex> groupIndexes) {
+        if(rows.size() == 1) {
+            writeRow(session, rowDef, rows.get(0), tableIndexes, groupIndexes);
+            return;
+        }
+        Table table = rowDef.table();
+        trackTableWrite(session, table);
+        // Unless a row could satisfy its constraints by means of another in the batch,
+        // check them all up front, each distinct key once.
+        boolean checkEach = !constraintHandler.handleInsert(session, table, rows);
+        if(tableIndexes == null) {
+            tableIndexes = rowDef.getIndexes();
+        }
+        SDType storeData = createStoreData(session, rowDef.getGroup());
+        try {
+            for(RowData rowData : orderForWrite(session, storeData, rowDef, rows)) {
+                if(checkEach) {
+                    constraintHandler.handleInsert(session, table, rowData);
+                }
+                WRITE_ROW_TAP.in();
+                try {
+                    fillHiddenPK(session, rowDef, rowData);
+                    lock(session, storeData, rowDef, rowData);
+                    writeRowInternal(session, storeData, rowDef, rowData, tableIndexes, null, true);
+                } finally {
+                    WRITE_ROW_TAP.out();
+                }
+            }
+        } finally {
+            releaseStoreData(session, storeData);
+        }
+        WRITE_ROW_GI_TAP.in();
+        try {
+            maintainGroupIndexes(session,
+                                 table,
+                                 groupIndexes,
+                                 rows,
+                                 StoreGIHandler.forTable(this, session, table),
+                                 StoreGIHandler.Action.STORE);
+        } finally {
+            WRITE_ROW_GI_TAP.out();
+        }
+    }
+
     @Override
     public void deleteRow(Session session, RowData rowData, boolean cascadeDelete) {
         RowDef rowDef = getGlobalRowDef(session, rowData);
@@ -486,6 +547,54 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
         deleteRow(session, rowDef, rowData, cascadeDelete, null, true);
     }
 
+    @Override
+    public void deleteRows(Session session, RowDef rowDef, List<RowData> rows) {
+        if(rows.size() == 1) {
+            deleteRow(session, rowDef, rows.get(0), false);
+            return;
+        }
+        Table table = rowDef.table();
+        trackTableWrite(session, table);
+        // Unless a row could be referenced by another in the batch,
+        // handle constraints for them all up front, each distinct key once.
+        if(!constraintHandler.handleDelete(session, table, rows)) {
+            for(RowData rowData : rows) {
+                deleteRow(session, rowDef, rowData, false);
+            }
+            return;
+        }
+        StoreGIHandler giHandler = StoreGIHandler.forTable(this, session, table);
+        SDType storeData = createStoreData(session, rowDef.getGroup());
+        try {
+            for(RowData rowData : rows) {
+                // Each row's group index maintenance must see the rows deleted
+                // before it: a LEFT group index gets its (parent, null) entry
+                // back only when the last sibling goes.
+                DELETE_ROW_GI_TAP.in();
+                try {
+                    maintainGroupIndexes(session,
+                                         table,
+                                         table.getGroupIndexes(),
+                                         rowData,
+                                         null,
+                                         giHandler,
+                                         StoreGIHandler.Action.DELETE);
+                } finally {
+                    DELETE_ROW_GI_TAP.out();
+                }
+                DELETE_ROW_TAP.in();
+                try {
+                    lock(session, storeData, rowDef, rowData);
+                    deleteRowInternal(session, storeData, rowDef, rowData, false, null, true);
+                } finally {
+                    DELETE_ROW_TAP.out();
+                }
+            }
+        } finally {
+            releaseStoreData(session, storeData);
+        }
+    }
+
 
     @Override
     public void updateRow(Session session, RowData oldRow, RowData newRow, ColumnSelector selector) {
@@ -1072,6 +1181,45 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
         }
     }
 
+    /** Maintain group indexes for several written or deleted rows of the same table. */
+    private void maintainGroupIndexes(Session session,
+                                      Table table,
+                                      Collection<GroupIndex> groupIndexes,
+                                      List<RowData> rows,
+                                      StoreGIHandler handler,
+                                      StoreGIHandler.Action action) {
+        if(canSkipGIMaintenance(table)) {
+            return;
+        }
+        if(groupIndexes == null) {
+            groupIndexes = table.getGroupIndexes();
+        }
+        if(groupIndexes.isEmpty()) {
+            return;
+        }
+        // Same as for a single row, but with the plans and adapter looked up only once.
+        StoreAdapter adapter = createAdapter(session, SchemaCache.globalSchema(table.getAIS()));
+        StoreGIMaintenancePlans allPlans = StoreGIMaintenancePlans.forAis(table.getAIS());
+        List<StoreGIMaintenance> plans = new ArrayList<>(groupIndexes.size());
+        for(GroupIndex groupIndex : groupIndexes) {
+            plans.add(allPlans.forRowType(groupIndex, adapter.schema().tableRowType(table)));
+        }
+        SDType storeData = createStoreData(session, table.getGroup());
+        try {
+            Key hKey = getKey(session, storeData);
+            PersistitHKey persistitHKey = new PersistitHKey(createKey(), table.hKey());
+            for(RowData rowData : rows) {
+                constructHKey(session, table.rowDef(), rowData, hKey);
+                persistitHKey.copyFrom(hKey);
+                for(StoreGIMaintenance plan : plans) {
+                    plan.run(action, persistitHKey, rowData, adapter, handler);
+                }
+            }
+        } finally {
+            releaseStoreData(session, storeData);
+        }
+    }
+
     /*
      * This does the full cascading delete, updating both the group indexes for
      * each table affected and removing the rows.
@@ -1114,6 +1262,47 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
         }
     }
 
+    /**
+     * Order a batch of rows of one table for writing. The rows of a root table with a declared
+     * primary key are sorted by hKey, so that the group tree is written in key order. Any other
+     * table's hKey can depend on rows written earlier in the batch, or on a hidden primary key
+     * that is only assigned as it is written, so its rows keep their given order.
+     */
+    private List<RowData> orderForWrite(Session session, SDType storeData, RowDef rowDef, List<RowData> rows) {
+        Table table = rowDef.table();
+        if((rows.size() < 2) || (table.getParentTable() != null) || (table.getPrimaryKey() == null)) {
+            return rows;
+        }
+        Key hKey = getKey(session, storeData);
+        List<HKeyOrderedRow> ordered = new ArrayList<>(rows.size());
+        for(RowData rowData : rows) {
+            constructHKey(session, rowDef, rowData, hKey);
+            ordered.add(new HKeyOrderedRow(Arrays.copyOf(hKey.getEncodedBytes(), hKey.getEncodedSize()), rowData));
+        }
+        Collections.sort(ordered);
+        List<RowData> result = new ArrayList<>(rows.size());
+        for(HKeyOrderedRow row : ordered) {
+            result.add(row.rowData);
+        }
+        return result;
+    }
+
+    private static final class HKeyOrderedRow implements Comparable<HKeyOrderedRow> {
+        private final byte[] hKey;
+        private final RowData rowData;
+
+        public HKeyOrderedRow(byte[] hKey, RowData rowData) {
+            this.hKey = hKey;
+            this.rowData = rowData;
+        }
+
+        @Override
+        public int compareTo(HKeyOrderedRow other) {
+            // Encoded keys order as unsigned bytes.
+            return UnsignedBytes.lexicographicalComparator().compare(hKey, other.hKey);
+        }
+    }
+
     /** Be very careful using this, most methods should take it explicitly and pass it down. */
     private RowDef getGlobalRowDef(Session session, RowData rowData) {
         AkibanInformationSchema ais = getAIS(session);
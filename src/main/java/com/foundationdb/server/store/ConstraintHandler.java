@@ -36,11 +36,14 @@ import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.operator.SimpleQueryContext;
 import com.foundationdb.qp.operator.UpdateFunction;
+import com.foundationdb.qp.row.BindableRow;
 import com.foundationdb.qp.row.OverlayingRow;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.qp.rowtype.Schema;
 import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.qp.rowtype.ValuesRowType;
 import com.foundationdb.qp.util.SchemaCache;
 import com.foundationdb.server.PersistitKeyValueTarget;
 import com.foundationdb.server.api.dml.ColumnSelector;
@@ -67,6 +70,7 @@ import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.TPreptimeValue;
 import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.texpressions.TPreparedBoundField;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.server.types.texpressions.TPreparedField;
 import com.foundationdb.server.types.texpressions.TPreparedFunction;
@@ -74,9 +78,11 @@ import com.foundationdb.server.types.texpressions.TPreparedParameter;
 import com.foundationdb.server.types.texpressions.TValidatedScalar;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.util.AkibanAppender;
 import com.foundationdb.util.Strings;
 
+import com.google.common.primitives.UnsignedBytes;
 import com.persistit.Key;
 
 import org.slf4j.Logger;
@@ -125,6 +131,22 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         }
     }
 
+    /** Check a batch of rows about to be inserted into <code>table</code>.
+     * Returns <code>false</code>, having checked none of them, if a row
+     * might be made valid by another in the batch, so that each needs to be
+     * checked just before it is written instead.
+     */
+    public boolean handleInsert(Session session, Table table, List<RowData> rows) {
+        Handler th = getTableHandler(table);
+        if (th != null) {
+            if (!th.canHandleInsertBatch()) {
+                return false;
+            }
+            th.handleInsert(session, rows);
+        }
+        return true;
+    }
+
     public boolean handleUpdatePre(Session session, Table table,
                                    RowData oldRow, RowData newRow) {
         Handler th = getTableHandler(table);
@@ -151,6 +173,22 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         }
     }
 
+    /** Handle a batch of rows about to be deleted from <code>table</code>.
+     * Returns <code>false</code>, having handled none of them, if deleting
+     * one row might affect the check for another in the batch, so that each
+     * needs to be handled just before it is deleted instead.
+     */
+    public boolean handleDelete(Session session, Table table, List<RowData> rows) {
+        Handler th = getTableHandler(table);
+        if (th != null) {
+            if (!th.canHandleDeleteBatch()) {
+                return false;
+            }
+            th.handleDelete(session, rows);
+        }
+        return true;
+    }
+
     public void handleTruncate(Session session, Table table) {
         Handler th = getTableHandler(table);
         if (th != null) {
@@ -197,9 +235,13 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
 
     protected interface Handler {
         public void handleInsert(Session session, RowData row);
+        public boolean canHandleInsertBatch();
+        public void handleInsert(Session session, List<RowData> rows);
         public boolean handleUpdatePre(Session session, RowData oldRow, RowData newRow);
         public void handleUpdatePost(Session session, RowData oldRow, RowData newRow);
         public void handleDelete(Session session, RowData row);
+        public boolean canHandleDeleteBatch();
+        public void handleDelete(Session session, List<RowData> rows);
         public void handleTruncate(Session session);
     }
 
@@ -217,6 +259,23 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             }
         }
 
+        @Override
+        public boolean canHandleInsertBatch() {
+            for (Handler handler : handlers) {
+                if (!handler.canHandleInsertBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void handleInsert(Session session, List<RowData> rows) {
+            for (Handler handler : handlers) {
+                handler.handleInsert(session, rows);
+            }
+        }
+
         @Override
         public boolean handleUpdatePre(Session session, RowData oldRow, RowData newRow) {
             boolean anyPost = false;
@@ -243,6 +302,23 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             }
         }
 
+        @Override
+        public boolean canHandleDeleteBatch() {
+            for (Handler handler : handlers) {
+                if (!handler.canHandleDeleteBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void handleDelete(Session session, List<RowData> rows) {
+            for (Handler handler : handlers) {
+                handler.handleDelete(session, rows);
+            }
+        }
+
         @Override
         public void handleTruncate(Session session) {
             for (Handler handler : handlers) {
@@ -301,6 +377,19 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             }
         }
 
+        @Override 
+        public boolean canHandleInsertBatch() {
+            // A self-reference can be to another row of the same batch.
+            return !(referencing && referenced);
+        }
+
+        @Override 
+        public void handleInsert(Session session, List<RowData> rows) {
+            if (referencing) {
+                checkReferencing(session, rows, foreignKey, crossReferencingColumns, "insert into");
+            }
+        }
+
         @Override 
         public boolean handleUpdatePre(Session session, RowData oldRow, RowData newRow) {
             boolean needPost = false;
@@ -351,6 +440,26 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             }
         }
 
+        @Override 
+        public boolean canHandleDeleteBatch() {
+            // A self-reference can be from another row of the same batch.
+            return !(referencing && referenced);
+        }
+
+        @Override 
+        public void handleDelete(Session session, List<RowData> rows) {
+            if (referenced) {
+                switch (foreignKey.getDeleteAction()) {
+                case NO_ACTION:
+                case RESTRICT:
+                    checkNotReferenced(session, rows, foreignKey, crossReferencedColumns, "delete from");
+                    break;
+                default:
+                    runOperatorPlan(getDeletePlan(), session, rows, foreignKey, crossReferencedColumns);
+                }
+            }
+        }
+
         @Override 
         public void handleTruncate(Session session) {
             if (referenced) {
@@ -361,7 +470,7 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
                 switch (foreignKey.getDeleteAction()) {
                 case NO_ACTION:
                 case RESTRICT:
-                    checkNotReferenced(session, null, foreignKey, crossReferencedColumns, "truncate");
+                    checkNotReferenced(session, (RowData)null, foreignKey, crossReferencedColumns, "truncate");
                     break;
                 default:
                     runOperatorPlan(getTruncatePlan(), session, null, null);
@@ -425,6 +534,80 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         }
     }
 
+    /** Check several rows, probing the referenced index for each distinct key once, in key order. */
+    protected void checkReferencing(Session session, List<RowData> rows,
+                                    ForeignKey foreignKey, List<Column> columns,
+                                    String action) {
+        Index index = foreignKey.getReferencedIndex();
+        SDType storeData = (SDType)store.createStoreData(session, index);
+        Key key = store.getKey(session, storeData);
+        try {
+            List<ReferencingKey> keys = new ArrayList<>(rows.size());
+            for (RowData row : rows) {
+                boolean anyNull = crossReferenceKey(session, key, row, columns);
+                if (!anyNull) {
+                    assert index.isUnique();
+                    if (index.isUniqueAndMayContainNulls()) {
+                        key.append(0L);
+                    }
+                    keys.add(new ReferencingKey(Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize()), row));
+                }
+            }
+            for (ReferencingKey referencingKey : sortedDistinct(keys)) {
+                referencingKey.copyTo(key);
+                checkReferencing(session, index, storeData, referencingKey.row, foreignKey, action);
+            }
+        }
+        finally {
+            store.releaseStoreData(session, storeData);
+        }
+    }
+
+    /** The non-null keys of <code>rows</code>, sorted and without duplicates. */
+    protected static List<ReferencingKey> sortedKeys(Session session, Key key,
+                                                     List<RowData> rows, List<Column> columns) {
+        List<ReferencingKey> keys = new ArrayList<>(rows.size());
+        for (RowData row : rows) {
+            boolean anyNull = crossReferenceKey(session, key, row, columns);
+            if (!anyNull) {
+                keys.add(new ReferencingKey(Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize()), row));
+            }
+        }
+        return sortedDistinct(keys);
+    }
+
+    protected static List<ReferencingKey> sortedDistinct(List<ReferencingKey> keys) {
+        Collections.sort(keys);
+        int n = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            if ((n == 0) || !Arrays.equals(keys.get(n - 1).key, keys.get(i).key)) {
+                keys.set(n++, keys.get(i));
+            }
+        }
+        return keys.subList(0, n);
+    }
+
+    protected static final class ReferencingKey implements Comparable<ReferencingKey> {
+        protected final byte[] key;
+        protected final RowData row;
+
+        public ReferencingKey(byte[] key, RowData row) {
+            this.key = key;
+            this.row = row;
+        }
+
+        public void copyTo(Key into) {
+            into.clear();
+            System.arraycopy(key, 0, into.getEncodedBytes(), 0, key.length);
+            into.setEncodedSize(key.length);
+        }
+
+        @Override
+        public int compareTo(ReferencingKey other) {
+            return UnsignedBytes.lexicographicalComparator().compare(key, other.key);
+        }
+    }
+
     protected abstract void checkReferencing(Session session, Index index, SDType storeData,
                                              RowData row, ForeignKey foreignKey, String action);
 
@@ -455,6 +638,25 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         }
     }
 
+    /** Check several rows, probing the referencing index for each distinct key once, in key order. */
+    protected void checkNotReferenced(Session session, List<RowData> rows,
+                                      ForeignKey foreignKey, List<Column> columns,
+                                      String action) {
+        Index index = foreignKey.getReferencingIndex();
+        SDType storeData = (SDType)store.createStoreData(session, index);
+        Key key = store.getKey(session, storeData);
+        try {
+            List<ReferencingKey> keys = sortedKeys(session, key, rows, columns);
+            for (ReferencingKey referencingKey : keys) {
+                referencingKey.copyTo(key);
+                checkNotReferenced(session, index, storeData, referencingKey.row, foreignKey, action);
+            }
+        }
+        finally {
+            store.releaseStoreData(session, storeData);
+        }
+    }
+
     protected abstract void checkNotReferenced(Session session, Index index, SDType storeData,
                                                RowData row, ForeignKey foreignKey, String action);
     
@@ -554,6 +756,23 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         boolean bindNewRow;
         ValueSource[] bindValues;
         int[] updatePositions;
+        TableRowType tableRowType;
+        boolean deleteReferencing;
+        // For a batch of old rows.
+        ValuesRowType keysRowType;
+        int keysBindingPosition;
+        Operator batchInput;
+
+        UpdatePlannable takeAction(Operator input) {
+            if (deleteReferencing) {
+                return API.delete_Default(input);
+            }
+            if (bindOldRow) {
+                // Halloween vulnerability
+                input = API.buffer_Default(input, tableRowType);
+            }
+            return API.update_Default(input, this);
+        }
 
         /* ColumnSelector */
         
@@ -598,8 +817,6 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             for (int i = 0; i < plan.ncols; i++) {
                 plan.referencedFields[i] = referencedColumns.get(i).getFieldDef();
             }
-            Index index = foreignKey.getReferencingIndex();
-            IndexRowType indexRowType = plan.schema.indexRowType(index);
             List<TPreparedExpression> vars = new ArrayList<>(plan.ncols);
             for (int i = 0; i < plan.ncols; i++) {
                 // Convert from index column position to parameter number.
@@ -607,14 +824,24 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
                 int fkpos = referencedColumns.indexOf(indexedColumn);
                 vars.add(new TPreparedParameter(fkpos, indexedColumn.getType()));
             }
-            UnboundExpressions indexExprs = new RowBasedUnboundExpressions(indexRowType, vars);
-            IndexBound indexBound = new IndexBound(indexExprs, plan);
-            IndexKeyRange indexKeyRange = IndexKeyRange.bounded(indexRowType, indexBound, true, indexBound, true);
-            input = API.indexScan_Default(indexRowType, indexKeyRange, 1);
-            input = API.groupLookup_Default(input, group, indexRowType,
-                                            Collections.singletonList(tableRowType),
-                                            API.InputPreservationOption.DISCARD_INPUT,
-                                            groupLookupPipelineQuantum);
+            input = referencingLookup(plan, foreignKey, tableRowType, vars);
+            if (!hasNewRow) {
+                // VALUES (old keys) MAP referencing WHERE fk = keys.fk AND...
+                // for deleting a batch of rows at once.
+                TInstance[] keyTypes = new TInstance[plan.ncols];
+                for (int i = 0; i < plan.ncols; i++) {
+                    keyTypes[i] = referencedColumns.get(i).getType();
+                }
+                plan.keysRowType = plan.schema.newValuesType(keyTypes);
+                // After old keys and new values.
+                plan.keysBindingPosition = plan.ncols * 2;
+                List<TPreparedExpression> fields = new ArrayList<>(plan.ncols);
+                for (int i = 0; i < plan.ncols; i++) {
+                    int fkpos = referencedColumns.indexOf(crossReferencedColumns.get(i));
+                    fields.add(new TPreparedBoundField(plan.keysRowType, plan.keysBindingPosition, fkpos));
+                }
+                plan.batchInput = referencingLookup(plan, foreignKey, tableRowType, fields);
+            }
         }
         else {
             // referencing WHERE fk IS NOT NULL AND...
@@ -642,6 +869,7 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             input = API.filter_Default(input, Collections.singletonList(tableRowType));
             input = API.select_HKeyOrdered(input, tableRowType, predicate);
         }
+        plan.tableRowType = tableRowType;
         ForeignKey.Action action;
         takeAction: {
             if (hasNewRow) {
@@ -651,7 +879,8 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
                 action = foreignKey.getDeleteAction();
                 if (action == ForeignKey.Action.CASCADE) {
                     // DELETE FROM referencing ...
-                    plan.plannable = API.delete_Default(input);
+                    plan.deleteReferencing = true;
+                    plan.plannable = plan.takeAction(input);
                     break takeAction;
                 }
             }
@@ -674,15 +903,11 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
             default:
                 assert false : action;
             }
-            if (hasOldRow) {
-                // Halloween vulnerability
-                input = API.buffer_Default(input, tableRowType);
-            }
             plan.updatePositions = new int[plan.ncols];
             for (int i = 0; i < plan.ncols; i++) {
                 plan.updatePositions[i] = foreignKey.getReferencingColumns().get(i).getPosition();
             }
-            plan.plannable = API.update_Default(input, plan);
+            plan.plannable = plan.takeAction(input);
         }
         if (LOG.isDebugEnabled()) {
             ExplainContext context = new ExplainContext();
@@ -709,6 +934,20 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         return plan;
     }
 
+    protected Operator referencingLookup(Plan plan, ForeignKey foreignKey, TableRowType tableRowType,
+                                         List<TPreparedExpression> vars) {
+        Index index = foreignKey.getReferencingIndex();
+        IndexRowType indexRowType = plan.schema.indexRowType(index);
+        UnboundExpressions indexExprs = new RowBasedUnboundExpressions(indexRowType, vars);
+        IndexBound indexBound = new IndexBound(indexExprs, plan);
+        IndexKeyRange indexKeyRange = IndexKeyRange.bounded(indexRowType, indexBound, true, indexBound, true);
+        Operator input = API.indexScan_Default(indexRowType, indexKeyRange, 1);
+        return API.groupLookup_Default(input, foreignKey.getReferencingTable().getGroup(), indexRowType,
+                                       Collections.singletonList(tableRowType),
+                                       API.InputPreservationOption.DISCARD_INPUT,
+                                       groupLookupPipelineQuantum);
+    }
+
     protected void runOperatorPlan(Plan plan, Session session,
                                    RowData oldRow, RowData newRow) {
         QueryContext context = 
@@ -737,4 +976,46 @@ public abstract class ConstraintHandler<SType extends AbstractStore,SDType,SSDTy
         plan.plannable.run(context, bindings);
     }
 
+    /** Run the delete plan once for a batch of old rows, looking up the
+     * referencing rows for each distinct non-null key in key order.
+     */
+    protected void runOperatorPlan(Plan plan, Session session, List<RowData> oldRows,
+                                   ForeignKey foreignKey, List<Column> columns) {
+        assert (plan.batchInput != null) : foreignKey;
+        List<ReferencingKey> keys;
+        SDType storeData = (SDType)store.createStoreData(session, foreignKey.getReferencingIndex());
+        try {
+            keys = sortedKeys(session, store.getKey(session, storeData), oldRows, columns);
+        }
+        finally {
+            store.releaseStoreData(session, storeData);
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<BindableRow> keyRows = new ArrayList<>(keys.size());
+        RowDataValueSource source = new RowDataValueSource();
+        for (ReferencingKey referencingKey : keys) {
+            ValuesHolderRow keyRow = new ValuesHolderRow(plan.keysRowType);
+            for (int i = 0; i < plan.ncols; i++) {
+                source.bind(plan.referencedFields[i], referencingKey.row);
+                ValueTargets.copyFrom(source, keyRow.valueAt(i));
+            }
+            keyRows.add(BindableRow.of(keyRow));
+        }
+        Operator input = API.map_NestedLoops(API.valuesScan_Default(keyRows, plan.keysRowType),
+                                             plan.batchInput, plan.keysBindingPosition,
+                                             false, 0);
+        QueryContext context = 
+            new SimpleQueryContext(store.createAdapter(session, plan.schema),
+                                   serviceManager);
+        QueryBindings bindings = context.createBindings();
+        if (plan.bindValues != null) {
+            for (int i = 0; i < plan.ncols; i++) {
+                bindings.setValue(plan.bindValues.length + i, plan.bindValues[i]);
+            }
+        }
+        plan.takeAction(input).run(context, bindings);
+    }
+
 }
@@ -58,6 +58,7 @@ import com.foundationdb.server.types.service.OverloadResolver;
 import com.foundationdb.server.types.service.TypesRegistryService;
 import com.foundationdb.server.rowdata.RowData;
 import com.foundationdb.server.service.dxl.DelegatingContext;
+import com.foundationdb.server.service.dxl.OnlineDDLMonitor;
 import com.foundationdb.server.service.listener.RowListener;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.transaction.TransactionService;
@@ -85,6 +86,7 @@ import com.persistit.KeyState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -106,6 +108,11 @@ public class OnlineHelper implements RowListener
     private final Store store;
     private final TypesRegistryService typesRegistry;
     private final boolean withConcurrentDML;
+    // Set to build new indexes by sorting their entries.
+    private int indexBuildParallelism;
+    private long indexBuildMemory;
+    private File tmpDirectory;
+    private OnlineDDLMonitor indexBuildMonitor;
 
     public OnlineHelper(TransactionService txnService,
                         SchemaManager schemaManager,
@@ -119,6 +126,20 @@ public class OnlineHelper implements RowListener
         this.withConcurrentDML = withConcurrentDML;
     }
 
+    /**
+     * Build new indexes by sorting the entries from the group scan in
+     * <code>memory</code> shared by the indexes built by the scan, spilling
+     * to <code>tmpDirectory</code>, and then storing them in key order. Only
+     * safe if DML on the table is rejected while its indexes are built.
+     */
+    public void setSortedIndexBuild(int parallelism, long memory, File tmpDirectory, OnlineDDLMonitor monitor) {
+        assert !withConcurrentDML;
+        this.indexBuildParallelism = parallelism;
+        this.indexBuildMemory = memory;
+        this.tmpDirectory = tmpDirectory;
+        this.indexBuildMonitor = monitor;
+    }
+
     public void buildIndexes(Session session, QueryContext context) {
         LOG.debug("Building indexes");
         txnService.beginTransaction(session);
@@ -224,11 +245,20 @@ public class OnlineHelper implements RowListener
 
         AkibanInformationSchema onlineAIS = schemaManager.getOnlineAIS(session);
         StoreAdapter adapter = store.createAdapter(session, SchemaCache.globalSchema(onlineAIS));
+        boolean sorted = (indexBuildMonitor != null);
         if(!tableIndexes.isEmpty()) {
-            buildTableIndexes(session, context, adapter, transformCache, tableIndexes);
+            if(sorted) {
+                buildTableIndexesSorted(session, context, adapter, transformCache, tableIndexes);
+            } else {
+                buildTableIndexes(session, context, adapter, transformCache, tableIndexes);
+            }
         }
         if(!groupIndexes.isEmpty()) {
-            buildGroupIndexes(session, context, adapter, groupIndexes);
+            if(sorted) {
+                buildGroupIndexesSorted(session, context, adapter, groupIndexes);
+            } else {
+                buildGroupIndexes(session, context, adapter, groupIndexes);
+            }
         }
     }
 
@@ -309,6 +339,113 @@ public class OnlineHelper implements RowListener
         }
     }
 
+    private void buildTableIndexesSorted(Session session,
+                                         QueryContext context,
+                                         StoreAdapter adapter,
+                                         TransformCache transformCache,
+                                         Multimap<Group,RowType> tableIndexes) {
+        for(Entry<Group, Collection<RowType>> entry : tableIndexes.asMap().entrySet()) {
+            if(entry.getValue().isEmpty()) {
+                continue;
+            }
+            int indexCount = 0;
+            for(RowType rowType : entry.getValue()) {
+                indexCount += transformCache.get(rowType.table().getTableId()).tableIndexes.length;
+            }
+            long memory = indexBuildMemory / Math.max(indexCount, 1);
+            final Map<Integer,List<SortedIndexBuilder>> tableBuilders = new HashMap<>();
+            List<SortedIndexBuilder> builders = new ArrayList<>(indexCount);
+            try {
+                for(RowType rowType : entry.getValue()) {
+                    int tableId = rowType.table().getTableId();
+                    List<SortedIndexBuilder> forTable = new ArrayList<>();
+                    for(TableIndex index : transformCache.get(tableId).tableIndexes) {
+                        SortedIndexBuilder builder = createSortedIndexBuilder(session, index, memory);
+                        builders.add(builder);
+                        forTable.add(builder);
+                    }
+                    tableBuilders.put(tableId, forTable);
+                }
+                Operator plan = API.filter_Default(
+                    API.groupScan_Default(entry.getKey()),
+                    entry.getValue()
+                );
+                runScan(contextIfNull(context, adapter), plan, new RowHandler() {
+                    @Override
+                    public void handleRow(Row row) {
+                        RowData rowData = ((AbstractRow)row).rowData();
+                        Key hKey = ((PersistitHKey)row.hKey()).key();
+                        for(SortedIndexBuilder builder : tableBuilders.get(rowData.getRowDefId())) {
+                            builder.add(rowData, hKey);
+                        }
+                    }
+                });
+                for(SortedIndexBuilder builder : builders) {
+                    LOG.debug("Loading {} entries into {}", builder.getAdded(), builder.getIndex());
+                    builder.load(txnService, indexBuildMonitor);
+                }
+            } finally {
+                for(SortedIndexBuilder builder : builders) {
+                    builder.close();
+                }
+            }
+        }
+    }
+
+    private void buildGroupIndexesSorted(Session session,
+                                         QueryContext context,
+                                         StoreAdapter adapter,
+                                         Collection<GroupIndex> groupIndexes) {
+        for(final GroupIndex groupIndex : groupIndexes) {
+            Schema schema = adapter.schema();
+            Operator plan = StoreGIMaintenancePlans.groupIndexCreationPlan(schema, groupIndex);
+            SortedIndexBuilder builder = createSortedIndexBuilder(session, groupIndex, indexBuildMemory);
+            try {
+                final StoreGIHandler giHandler = StoreGIHandler.forSortedBuilding((AbstractStore)store, session, schema, groupIndex, builder);
+                runScan(contextIfNull(context, adapter), plan, new RowHandler() {
+                    @Override
+                    public void handleRow(Row row) {
+                        giHandler.handleRow(groupIndex, row, StoreGIHandler.Action.STORE);
+                    }
+                });
+                LOG.debug("Loading {} entries into {}", builder.getAdded(), groupIndex);
+                builder.load(txnService, indexBuildMonitor);
+            } finally {
+                builder.close();
+            }
+        }
+    }
+
+    private SortedIndexBuilder createSortedIndexBuilder(Session session, Index index, long memory) {
+        return new SortedIndexBuilder((AbstractStore)store, session, index,
+                                      indexBuildParallelism, memory, tmpDirectory);
+    }
+
+    /**
+     * Scan all of <code>plan</code> within the current transaction, reporting progress.
+     * Unlike {@link #runPlan}, there is nothing to skip or to replay after a rollback, as
+     * the handler only collects entries for a sorted index build, during which DML is rejected.
+     */
+    private void runScan(QueryContext context, Operator plan, RowHandler handler) {
+        LOG.debug("Running online scan: {}", plan);
+        QueryBindings bindings = context.createBindings();
+        Cursor cursor = API.cursor(plan, context, bindings);
+        cursor.openTopLevel();
+        try {
+            long scanned = 0;
+            Row row;
+            while((row = cursor.next()) != null) {
+                handler.handleRow(row);
+                if((++scanned % SortedIndexBuilder.PROGRESS_INTERVAL) == 0) {
+                    indexBuildMonitor.progress(OnlineDDLMonitor.Progress.INDEX_ROWS_SCANNED, scanned);
+                }
+            }
+            indexBuildMonitor.progress(OnlineDDLMonitor.Progress.INDEX_ROWS_SCANNED, scanned);
+        } finally {
+            cursor.closeTopLevel();
+        }
+    }
+
     private void concurrentDML(Session session, Table table, Key hKey, RowData oldRowData, RowData newRowData) {
         TableTransform transform = getTransformCache(session).get(table.getTableId());
         if(isTransformedTable(transform, table)) {
@@ -0,0 +1,142 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store;
+
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+import com.persistit.Exchange;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Tree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of threads that read the pages for keys a query will look
+ * up soon into the Persistit buffer pool.
+ * <p/>
+ * Lookahead cursors are all opened some time before they are read. With
+ * Persistit, opening does no I/O, so each of them would still wait for its
+ * pages in turn when read on the query thread. Instead, opening one submits
+ * its key here and a pool thread traverses to it with an exchange of its own,
+ * outside of any transaction. The value found is discarded: the point is
+ * only that the query thread then finds the pages in memory. Its own read
+ * is unchanged, so this never affects what the query sees.
+ * <p/>
+ * Requests that arrive when the queue is full are dropped, as are any
+ * errors, since the query will simply do the read itself.
+ */
+public class PersistitReadAhead
+{
+    public PersistitReadAhead(Persistit db, int threads, int queueSize)
+    {
+        this.db = db;
+        this.executor = new ThreadPoolExecutor(threads, threads,
+                                               0, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<Runnable>(queueSize),
+                                               new ThreadFactory() {
+                                                   private final AtomicInteger count = new AtomicInteger();
+
+                                                   @Override
+                                                   public Thread newThread(Runnable r) {
+                                                       Thread thread = new Thread(r, THREAD_NAME_PREFIX + count.incrementAndGet());
+                                                       thread.setDaemon(true);
+                                                       return thread;
+                                                   }
+                                               },
+                                               new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /** Read the pages for the first key from <code>key</code> in <code>direction</code>. */
+    public void readAhead(Tree tree, Key key, Key.Direction direction)
+    {
+        executor.execute(new Read(tree, Arrays.copyOf(key.getEncodedBytes(), key.getEncodedSize()), direction));
+    }
+
+    public void stop()
+    {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOG.warn("Read ahead threads still running");
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Class state
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistitReadAhead.class);
+    private static final String THREAD_NAME_PREFIX = "persistit-read-ahead-";
+    private static final PointTap READ_AHEAD_COUNT = Tap.createCount("read_ahead");
+
+    // Object state
+
+    private final Persistit db;
+    private final ThreadPoolExecutor executor;
+
+    // Inner classes
+
+    private class Read implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            if (!tree.isValid()) {
+                return;
+            }
+            Exchange exchange = null;
+            try {
+                exchange = db.getExchange(tree.getVolume(), tree.getName(), false);
+                Key key = exchange.getKey();
+                System.arraycopy(keyBytes, 0, key.getEncodedBytes(), 0, keyBytes.length);
+                key.setEncodedSize(keyBytes.length);
+                READ_AHEAD_COUNT.hit();
+                exchange.traverse(direction, true);
+            }
+            catch (Exception ex) {
+                LOG.debug("Read ahead in {} failed", tree, ex);
+            }
+            finally {
+                if (exchange != null) {
+                    db.releaseExchange(exchange);
+                }
+            }
+        }
+
+        Read(Tree tree, byte[] keyBytes, Key.Direction direction)
+        {
+            this.tree = tree;
+            this.keyBytes = keyBytes;
+            this.direction = direction;
+        }
+
+        private final Tree tree;
+        private final byte[] keyBytes;
+        private final Key.Direction direction;
+    }
+}
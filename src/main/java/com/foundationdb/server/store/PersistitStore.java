@@ -61,8 +61,13 @@ public class PersistitStore extends AbstractStore<PersistitStore,Exchange,Persis
     private static final Logger LOG = LoggerFactory.getLogger(PersistitStore.class);
 
     private static final String WRITE_LOCK_ENABLED_CONFIG = "fdbsql.write_lock_enabled";
+    private static final String READ_AHEAD_THREADS_CONFIG = "fdbsql.persistit.read_ahead.threads";
+    private static final String READ_AHEAD_QUEUE_SIZE_CONFIG = "fdbsql.persistit.read_ahead.queue_size";
+    private static final int SAMPLE_RUN_LENGTH = 100;
+    private static final int SAMPLE_SUFFIX_BYTES = 7;
 
     private boolean writeLockEnabled;
+    private PersistitReadAhead readAhead;
 
     private final ConfigurationService config;
     private final TreeService treeService;
@@ -94,12 +99,21 @@ public class PersistitStore extends AbstractStore<PersistitStore,Exchange,Persis
         cm.registerValueCoder(PersistitProtobufRow.class, protobufValueCoder = new PersistitProtobufValueCoder(this));
         if (config != null) {
             writeLockEnabled = Boolean.parseBoolean(config.getProperty(WRITE_LOCK_ENABLED_CONFIG));
+            int readAheadThreads = Integer.parseInt(config.getProperty(READ_AHEAD_THREADS_CONFIG));
+            if (readAheadThreads > 0) {
+                readAhead = new PersistitReadAhead(getDb(), readAheadThreads,
+                                                   Integer.parseInt(config.getProperty(READ_AHEAD_QUEUE_SIZE_CONFIG)));
+            }
         }
         this.constraintHandler = new PersistitConstraintHandler(this, config, typesRegistryService, serviceManager);
     }
 
     @Override
     public synchronized void stop() {
+        if (readAhead != null) {
+            readAhead.stop();
+            readAhead = null;
+        }
         getDb().getCoderManager().unregisterValueCoder(RowData.class);
         getDb().getCoderManager().unregisterKeyCoder(CString.class);
     }
@@ -118,6 +132,11 @@ public class PersistitStore extends AbstractStore<PersistitStore,Exchange,Persis
         return treeService.getDb();
     }
 
+    /** Pool for reading ahead of lookahead cursors, or <code>null</code> if not enabled. */
+    public PersistitReadAhead getReadAhead() {
+        return readAhead;
+    }
+
     public Exchange getExchange(Session session, Group group) {
         return createStoreData(session, group);
     }
@@ -484,6 +503,93 @@ public class PersistitStore extends AbstractStore<PersistitStore,Exchange,Persis
         return visitor;
     }
 
+    /**
+     * Start keys are spread at random between the first and last keys of the index by
+     * interpolating the bytes that follow the prefix those two have in common. Entries
+     * unevenly spread over that range are therefore also sampled unevenly.
+     */
+    @Override
+    public <V extends IndexVisitor<Key,Value>> V sample(Session session, Index index, V visitor, long sampleSize) {
+        Exchange exchange = getExchange(session, index);
+        try {
+            Key key = exchange.getKey();
+            if (!exchange.append(Key.BEFORE).next(true)) {
+                return visitor;
+            }
+            Key first = createKey();
+            key.copyTo(first);
+            key.clear().append(Key.AFTER);
+            exchange.previous(true);
+            int prefix = 0;
+            int maxPrefix = Math.min(first.getEncodedSize(), key.getEncodedSize());
+            while ((prefix < maxPrefix) &&
+                   (first.getEncodedBytes()[prefix] == key.getEncodedBytes()[prefix])) {
+                prefix++;
+            }
+            long low = sampleSuffix(first, prefix);
+            long high = sampleSuffix(key, prefix);
+            long[] starts = new long[(int)Math.min((sampleSize + SAMPLE_RUN_LENGTH - 1) / SAMPLE_RUN_LENGTH,
+                                                   Integer.MAX_VALUE)];
+            Random random = new Random();
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = low + (long)(random.nextDouble() * (high - low));
+            }
+            Arrays.sort(starts);
+            Key start = createKey();
+            Key visited = createKey();
+            boolean anyVisited = false;
+            long count = 0;
+            for (int i = 0; (i < starts.length) && (count < sampleSize); i++) {
+                System.arraycopy(first.getEncodedBytes(), 0, start.getEncodedBytes(), 0, prefix);
+                for (int j = 0; j < SAMPLE_SUFFIX_BYTES; j++) {
+                    start.getEncodedBytes()[prefix + j] = (byte)(starts[i] >>> (8 * (SAMPLE_SUFFIX_BYTES - 1 - j)));
+                }
+                start.setEncodedSize(prefix + SAMPLE_SUFFIX_BYTES);
+                boolean found;
+                if (anyVisited && (start.compareTo(visited) <= 0)) {
+                    // Previous run went past this start.
+                    visited.copyTo(key);
+                    found = exchange.traverse(Key.GT, true);
+                }
+                else {
+                    start.copyTo(key);
+                    found = exchange.traverse(Key.GTEQ, true);
+                }
+                int run = 0;
+                while (found) {
+                    visitor.visit(key, exchange.getValue());
+                    count++;
+                    if (++run >= SAMPLE_RUN_LENGTH) {
+                        break;
+                    }
+                    found = exchange.next(true);
+                }
+                if (!found) {
+                    break;
+                }
+                key.copyTo(visited);
+                anyVisited = true;
+            }
+        } catch(PersistitException | RollbackException e) {
+            throw PersistitAdapter.wrapPersistitException(session, e);
+        } finally {
+            releaseExchange(session, exchange);
+        }
+        return visitor;
+    }
+
+    /** The bytes after <code>prefix</code>, zero padded, as a non-negative number. */
+    private static long sampleSuffix(Key key, int prefix) {
+        long suffix = 0;
+        for (int i = 0; i < SAMPLE_SUFFIX_BYTES; i++) {
+            suffix <<= 8;
+            if (prefix + i < key.getEncodedSize()) {
+                suffix |= key.getEncodedBytes()[prefix + i] & 0xFF;
+            }
+        }
+        return suffix;
+    }
+
     @Override
     public void finishOnlineChange(Session session, Collection<ChangeSet> changeSets) {
         // None
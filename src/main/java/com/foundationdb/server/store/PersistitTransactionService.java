@@ -47,6 +47,8 @@ public class PersistitTransactionService implements TransactionService {
 
     private static final Key<Transaction> TXN_KEY = Key.named("TXN_KEY");
     private static final Key<Long> START_MILLIS_KEY = Key.named("TXN_START_MILLIS");
+    private static final Key<SessionId> SESSION_ID_KEY = Key.named("TXN_SESSION_ID");
+    private static final Key<SessionId> THREAD_SESSION_ID_KEY = Key.named("TXN_THREAD_SESSION_ID");
     private static final StackKey<Callback> PRE_COMMIT_KEY = StackKey.stackNamed("TXN_PRE_COMMIT");
     private static final StackKey<Callback> AFTER_END_KEY = StackKey.stackNamed("TXN_AFTER_END");
     private static final StackKey<Callback> AFTER_COMMIT_KEY = StackKey.stackNamed("TXN_AFTER_COMMIT");
@@ -288,6 +290,33 @@ public class PersistitTransactionService implements TransactionService {
         }
     }
 
+    @Override
+    public boolean attachToThread(Session session) {
+        // Persistit finds a thread's transaction by its SessionId, so give the
+        // session one of its own and move that.
+        SessionId sessionId = session.get(SESSION_ID_KEY);
+        if(sessionId == null) {
+            Transaction txn = session.get(TXN_KEY);
+            sessionId = (txn != null) ? txn.getSessionId() : new SessionId();
+            session.put(SESSION_ID_KEY, sessionId);
+        }
+        SessionId threadSessionId = treeService.getDb().getSessionId();
+        if(threadSessionId == sessionId) {
+            return false;
+        }
+        session.put(THREAD_SESSION_ID_KEY, threadSessionId);
+        treeService.getDb().setSessionId(sessionId);
+        return true;
+    }
+
+    @Override
+    public void detachFromThread(Session session) {
+        SessionId threadSessionId = session.remove(THREAD_SESSION_ID_KEY);
+        if(threadSessionId != null) {
+            treeService.getDb().setSessionId(threadSessionId);
+        }
+    }
+
     @Override
     public void setSessionOption(Session session, SessionOption option, String value) {
         // No specific handling.
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.store;
+
+import com.foundationdb.ais.model.GroupIndex;
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.qp.storeadapter.indexcursor.ParallelRunSorter;
+import com.foundationdb.qp.storeadapter.indexcursor.SortBuffer;
+import com.foundationdb.qp.storeadapter.indexrow.PersistitIndexRowBuffer;
+import com.foundationdb.server.error.DuplicateKeyException;
+import com.foundationdb.server.error.MergeSortIOException;
+import com.foundationdb.server.rowdata.RowData;
+import com.foundationdb.server.service.dxl.OnlineDDLMonitor;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.transaction.TransactionService;
+import com.persistit.Key;
+import com.persistit.Value;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Builds a new index from entries added in any order, such as that of a group
+ * scan, by sorting them externally and then storing them in key order. Storing
+ * in key order fills the pages of the new tree one after another, instead of
+ * splitting pages all over it.
+ * <p/>
+ * The entries are copied into {@link SortBuffer}s, which a
+ * {@link ParallelRunSorter} sorts and writes out as runs on its own threads
+ * while the scan goes on.
+ * <p/>
+ * Keys of a non-unique index always differ, as they end with the hKey. So any
+ * equal adjacent keys once sorted are duplicates in a unique index.
+ */
+class SortedIndexBuilder<SDType>
+{
+    static final int PROGRESS_INTERVAL = 10000;
+
+    private final AbstractStore<?,SDType,?> store;
+    private final Session session;
+    private final Index index;
+    private final ParallelRunSorter sorter;
+    private final PersistitIndexRowBuffer indexRow;
+    private final SDType storeData;
+    private SortBuffer buffer;
+    private long added;
+
+    SortedIndexBuilder(AbstractStore<?,SDType,?> store, Session session, Index index,
+                       int parallelism, long memory, File tmpDirectory) {
+        this.store = store;
+        this.session = session;
+        this.index = index;
+        this.sorter = new ParallelRunSorter(parallelism, memory, tmpDirectory,
+                                            "index-" + index.getIndexId() + "-", false);
+        this.indexRow = new PersistitIndexRowBuffer(store);
+        this.storeData = store.createStoreData(session, index);
+    }
+
+    public Index getIndex() {
+        return index;
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    /** Add the entry of a table index for the given row. */
+    public void add(RowData rowData, Key hKey) {
+        store.resetForWrite(storeData, index, indexRow);
+        indexRow.initialize(rowData, hKey);
+        indexRow.close(session, store, true);
+        add(store.getKey(session, storeData), indexRow.getValue());
+    }
+
+    /** Add an entry already constructed by the caller. */
+    public void add(Key key, Value value) {
+        try {
+            if(buffer == null) {
+                buffer = sorter.buffer();
+            }
+            byte[] keyBytes = key.getEncodedBytes();
+            byte[] valueBytes = value.getEncodedBytes();
+            if(!buffer.add(keyBytes, key.getEncodedSize(), valueBytes, value.getEncodedSize())) {
+                sorter.addRun(buffer);
+                buffer = sorter.buffer();
+                // Always accepted by an empty buffer.
+                buffer.add(keyBytes, key.getEncodedSize(), valueBytes, value.getEncodedSize());
+            }
+        } catch(IOException e) {
+            throw new MergeSortIOException(e);
+        }
+        ++added;
+    }
+
+    /** Store all of the entries added, in key order. Returns how many. */
+    public long load(TransactionService txnService, OnlineDDLMonitor monitor) {
+        if(buffer != null) {
+            sorter.addRun(buffer);
+            buffer = null;
+        }
+        long loaded = 0;
+        int uncounted = 0;
+        ParallelRunSorter.Merge merge = null;
+        try {
+            merge = sorter.merge();
+            byte[] lastKey = new byte[0];
+            int lastKeyLength = -1;
+            while(merge.next()) {
+                byte[] keyBytes = merge.key();
+                int keyLength = merge.keyLength();
+                if((lastKeyLength == keyLength) &&
+                   (SortBuffer.compare(lastKey, 0, lastKeyLength, keyBytes, 0, keyLength) == 0)) {
+                    throw new DuplicateKeyException(index.getIndexName(), formatKey(keyBytes, keyLength));
+                }
+                store.resetForWrite(storeData, index, indexRow);
+                Key key = store.getKey(session, storeData);
+                System.arraycopy(keyBytes, 0, key.getEncodedBytes(), 0, keyLength);
+                key.setEncodedSize(keyLength);
+                indexRow.getValue().putEncodedBytes(merge.value(), 0, merge.valueLength());
+                store.store(session, storeData);
+                if(lastKey.length < keyLength) {
+                    lastKey = new byte[keyLength];
+                }
+                System.arraycopy(keyBytes, 0, lastKey, 0, keyLength);
+                lastKeyLength = keyLength;
+                ++loaded;
+                ++uncounted;
+                if(uncounted == PROGRESS_INTERVAL) {
+                    countLoaded(uncounted);
+                    uncounted = 0;
+                    monitor.progress(OnlineDDLMonitor.Progress.INDEX_ENTRIES_LOADED, loaded);
+                    txnService.periodicallyCommit(session);
+                }
+            }
+            countLoaded(uncounted);
+            monitor.progress(OnlineDDLMonitor.Progress.INDEX_ENTRIES_LOADED, loaded);
+        } catch(IOException e) {
+            throw new MergeSortIOException(e);
+        } finally {
+            if(merge != null) {
+                merge.close();
+            }
+        }
+        return loaded;
+    }
+
+    /** Release temporary files, threads and store data. */
+    public void close() {
+        buffer = null;
+        sorter.close();
+        store.releaseStoreData(session, storeData);
+    }
+
+    // For use by this class
+
+    private void countLoaded(int count) {
+        // Table index counts are maintained separately from their entries.
+        if(index.isGroupIndex() && (count > 0)) {
+            store.sumAddGICount(session, storeData, (GroupIndex)index, count);
+        }
+    }
+
+    /** Like {@link AbstractStore#formatIndexRowString}, but from an encoded key. */
+    private String formatKey(byte[] keyBytes, int keyLength) {
+        Key key = store.createKey();
+        System.arraycopy(keyBytes, 0, key.getEncodedBytes(), 0, keyLength);
+        key.setEncodedSize(keyLength);
+        StringBuilder sb = new StringBuilder();
+        sb.append('(');
+        try {
+            key.reset();
+            for(int i = 0; i < index.getKeyColumns().size(); i++) {
+                if(i > 0) {
+                    sb.append(',');
+                }
+                sb.append(key.decode());
+            }
+        } catch(RuntimeException e) {
+            // Collated strings, for instance, cannot be decoded.
+            return key.toString();
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+}
@@ -40,6 +40,7 @@ import com.persistit.Key;
 import com.persistit.Value;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface Store extends KeyCreator {
 
@@ -51,8 +52,15 @@ public interface Store extends KeyCreator {
     void writeRow(Session session, RowData row, TableIndex[] tableIndexes, Collection<GroupIndex> groupIndexes);
     void writeRow(Session session, RowDef rowDef, RowData row, TableIndex[] tableIndexes, Collection<GroupIndex> groupIndexes);
 
+    /** Write the given rows, in order but in batches of consecutive rows of the same table. */
+    void writeRows(Session session, List<RowData> rows);
+    /** Write rows of a single table. Rows may be written in a different order than given. */
+    void writeRows(Session session, RowDef rowDef, List<RowData> rows, TableIndex[] tableIndexes, Collection<GroupIndex> groupIndexes);
+
     void deleteRow(Session session, RowData row, boolean cascadeDelete);
     void deleteRow(Session session, RowDef rowDef, RowData row, boolean cascadeDelete);
+    /** Delete rows of a single table, without cascading within its group. */
+    void deleteRows(Session session, RowDef rowDef, List<RowData> rows);
 
     /** newRow can be partial, as specified by selector, but oldRow must be fully present. */
     void updateRow(Session session, RowData oldRow, RowData newRow, ColumnSelector selector);
@@ -167,6 +175,12 @@ public interface Store extends KeyCreator {
     void traverse(Session session, Group group, TreeRecordVisitor visitor);
     <V extends IndexVisitor<Key,Value>> V traverse(Session session, Index index, V visitor, long scanTimeLimit, long sleepTime);
 
+    /**
+     * Visit, in key order, runs of consecutive index entries starting at random keys,
+     * until about <code>sampleSize</code> have been visited.
+     */
+    <V extends IndexVisitor<Key,Value>> V sample(Session session, Index index, V visitor, long sampleSize);
+
     /** Update any storage affected by a successful online change. */
     void finishOnlineChange(Session session, Collection<ChangeSet> changeSets);
 
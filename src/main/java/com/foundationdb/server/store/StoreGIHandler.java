@@ -64,13 +64,16 @@ class StoreGIHandler<SType extends AbstractStore,SDType,SSDType extends StoreSto
     private final PersistitIndexRowBuffer indexRow;
     private final Value zSource_t3 = new Value(InternalIndexTypes.LONG.instance(true));
     private final Collection<RowType> lockTypes;
+    private final SortedIndexBuilder sortedBuilder;
 
 
-    private StoreGIHandler(AbstractStore<SType,SDType,SSDType> store, Session session, Schema schema, Table sourceTable, Table lockLeaf) {
+    private StoreGIHandler(AbstractStore<SType,SDType,SSDType> store, Session session, Schema schema, Table sourceTable, Table lockLeaf,
+                           SortedIndexBuilder sortedBuilder) {
         this.store = store;
         this.session = session;
         this.indexRow = new PersistitIndexRowBuffer(store);
         this.sourceTable = sourceTable;
+        this.sortedBuilder = sortedBuilder;
         if(lockLeaf == null) {
             this.lockTypes = null;
         } else {
@@ -85,14 +88,23 @@ class StoreGIHandler<SType extends AbstractStore,SDType,SSDType extends StoreSto
                                                                                                                Session session,
                                                                                                                Table table) {
         ArgumentValidation.notNull("table", table);
-        return new StoreGIHandler<>(store, session, null, table, null);
+        return new StoreGIHandler<>(store, session, null, table, null, null);
     }
 
     public static <SType extends AbstractStore,SDType,SSDType extends StoreStorageDescription<SType,SDType>> StoreGIHandler forBuilding(AbstractStore<SType,SDType,SSDType> store,
                                                                                                                   Session session,
                                                                                                                   Schema schema,
                                                                                                                   GroupIndex groupIndex) {
-        return new StoreGIHandler<>(store, session, schema, null, groupIndex.leafMostTable());
+        return new StoreGIHandler<>(store, session, schema, null, groupIndex.leafMostTable(), null);
+    }
+
+    /** Like {@link #forBuilding}, but with stored entries going to <code>builder</code> instead. */
+    public static <SType extends AbstractStore,SDType,SSDType extends StoreStorageDescription<SType,SDType>> StoreGIHandler forSortedBuilding(AbstractStore<SType,SDType,SSDType> store,
+                                                                                                                        Session session,
+                                                                                                                        Schema schema,
+                                                                                                                        GroupIndex groupIndex,
+                                                                                                                        SortedIndexBuilder builder) {
+        return new StoreGIHandler<>(store, session, schema, null, groupIndex.leafMostTable(), builder);
     }
 
     public void handleRow(GroupIndex groupIndex, Row row, Action action) {
@@ -133,6 +145,10 @@ class StoreGIHandler<SType extends AbstractStore,SDType,SSDType extends StoreSto
             switch (action) {
                 case CASCADE_STORE:
                 case STORE:
+                    if(sortedBuilder != null) {
+                        sortedBuilder.add(store.getKey(session, storeData), indexRow.getValue());
+                        break;
+                    }
                     store.store(session, storeData);
                     store.sumAddGICount(session, storeData, groupIndex, 1);
                 break;
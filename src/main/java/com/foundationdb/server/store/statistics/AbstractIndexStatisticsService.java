@@ -37,6 +37,7 @@ import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.jmx.JmxManageable;
 import com.foundationdb.server.service.listener.ListenerService;
+import com.foundationdb.server.service.listener.RowListener;
 import com.foundationdb.server.service.listener.TableListener;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.session.SessionService;
@@ -66,8 +67,11 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-public abstract class AbstractIndexStatisticsService implements IndexStatisticsService, Service, JmxManageable, TableListener
+public abstract class AbstractIndexStatisticsService implements IndexStatisticsService, Service, JmxManageable, TableListener, RowListener
 {
     private static final Logger log = LoggerFactory.getLogger(AbstractIndexStatisticsService.class);
 
@@ -75,6 +79,10 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     private static final String BUCKET_COUNT_PROPERTY = "fdbsql.index_statistics.bucket_count";
     private static final String BUCKET_TIME_PROPERTY = "fdbsql.index_statistics.time_limit";
     private static final String BACKGROUND_TIME_PROPERTY = "fdbsql.index_statistics.background";
+    private static final String SAMPLE_SIZE_PROPERTY = "fdbsql.index_statistics.sample_size";
+    private static final String REFRESH_FRACTION_PROPERTY = "fdbsql.index_statistics.refresh_fraction";
+    /** Fewest changed rows that cause a refresh, however small the table. */
+    private static final long REFRESH_MIN_CHANGES = 1000;
     private static final long TIME_LIMIT_UNLIMITED = -1;
     private static final long TIME_LIMIT_DISABLED = -2;
 
@@ -91,6 +99,10 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     private BackgroundState backgroundState;
     private int bucketCount;
     private long scanTimeLimit, sleepTime, backgroundTimeLimit, backgroundSleepTime;
+    private long sampleSize;
+    private double refreshFraction;
+    // Rows changed in each table, by id, since its statistics were last updated.
+    private final ConcurrentMap<Integer,AtomicLong> changedRows = new ConcurrentHashMap<>();
 
     protected AbstractIndexStatisticsService(Store store,
                                              TransactionService txnService,
@@ -122,8 +134,11 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         bucketCount = Integer.parseInt(configurationService.getProperty(BUCKET_COUNT_PROPERTY));
         parseTimeLimit(BUCKET_TIME_PROPERTY, false);
         parseTimeLimit(BACKGROUND_TIME_PROPERTY, true);
+        sampleSize = Long.parseLong(configurationService.getProperty(SAMPLE_SIZE_PROPERTY));
+        refreshFraction = Double.parseDouble(configurationService.getProperty(REFRESH_FRACTION_PROPERTY));
         registerStatsTables();
         listenerService.registerTableListener(this);
+        listenerService.registerRowListener(this);
         backgroundState = new BackgroundState(backgroundTimeLimit != TIME_LIMIT_DISABLED);
     }
 
@@ -162,6 +177,8 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     @Override
     public void stop() {
         listenerService.deregisterTableListener(this);
+        listenerService.deregisterRowListener(this);
+        changedRows.clear();
         cache = null;
         storeStats = null;
         bucketCount = 0;
@@ -279,6 +296,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
             public void run(Session session, long timestamp) {
                 cache.putAll(updates);
                 backgroundState.removeAll(updates);
+                resetChangedRows(updates.keySet());
             }
         });
     }
@@ -309,7 +327,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
             sleep = sleepTime;
         }
         for (Index index : indexes) {
-            IndexStatistics indexStatistics = storeStats.computeIndexStatistics(session, index, on, sleep);
+            IndexStatistics indexStatistics = storeStats.computeIndexStatistics(session, index, on, sleep, sampleSize);
             storeStats.storeIndexStatistics(session, index, indexStatistics);
             updates.put(index, indexStatistics);
         }
@@ -353,6 +371,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
             cache.put(index, indexStatistics);
             backgroundState.remove(index);
         }
+        resetChangedRows(stats.keySet());
     }
 
     @Override
@@ -510,6 +529,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
 
     @Override
     public void onDrop(Session session, Table table) {
+        changedRows.remove(table.getTableId());
         deleteIndexStatistics(session, table.getIndexesIncludingInternal());
         deleteIndexStatistics(session, table.getGroupIndexes());
     }
@@ -530,10 +550,82 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     }
 
 
+    //
+    // RowListener
+    //
+
+    @Override
+    public void onInsertPost(Session session, Table table, Key hKey, RowData row) {
+        rowChanged(table);
+    }
+
+    @Override
+    public void onUpdatePre(Session session, Table table, Key hKey, RowData oldRow, RowData newRow) {
+        // None
+    }
+
+    @Override
+    public void onUpdatePost(Session session, Table table, Key hKey, RowData oldRow, RowData newRow) {
+        rowChanged(table);
+    }
+
+    @Override
+    public void onDeletePre(Session session, Table table, Key hKey, RowData row) {
+        rowChanged(table);
+    }
+
+
     //
     // Internal
     //
 
+    /**
+     * Count a changed row and, once more than <code>refreshFraction</code> of the table
+     * has changed, queue a background update of those of its indexes that have statistics.
+     */
+    private void rowChanged(Table table) {
+        if (refreshFraction <= 0) {
+            return;
+        }
+        AtomicLong counter = changedRows.get(table.getTableId());
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = changedRows.putIfAbsent(table.getTableId(), newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        long changed = counter.incrementAndGet();
+        long rowCount = table.rowDef().getTableStatus().getApproximateRowCount();
+        if (changed < Math.max(rowCount * refreshFraction, REFRESH_MIN_CHANGES)) {
+            return;
+        }
+        counter.set(0);
+        for (Index index : table.getIndexes()) {
+            refreshIfAnalyzed(index);
+        }
+        for (Index index : table.getGroupIndexes()) {
+            refreshIfAnalyzed(index);
+        }
+    }
+
+    private void refreshIfAnalyzed(Index index) {
+        IndexStatistics stats = cache.get(index);
+        if ((stats != null) && !stats.isInvalid()) {
+            stats.setValidity(IndexStatistics.Validity.OUTDATED);
+            backgroundState.offer(index);
+        }
+    }
+
+    private void resetChangedRows(Collection<? extends Index> indexes) {
+        for (Index index : indexes) {
+            if (index.isTableIndex()) {
+                changedRows.remove(((TableIndex)index).getTable().getTableId());
+            }
+        }
+    }
+
+
     /** Convert from new-format histogram to old for adapter. */
     protected TableStatistics.Histogram indexStatisticsToHistogram(Session session, Index index, Key key) {
         IndexStatistics stats = getIndexStatistics(session, index);
@@ -708,6 +800,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
                 log.info("Automatically updated statistics for {}", indexName);
             }
             cache.putAll(statistics);
+            resetChangedRows(statistics.keySet());
         }
     }
 }
@@ -59,8 +59,12 @@ public abstract class AbstractStoreIndexStatistics<S extends Store> {
 
     public abstract IndexStatistics loadIndexStatistics(Session session, Index index);
     public abstract void removeStatistics(Session session, Index index);
-    /** Sample index values and build statistics histograms. */
-    public abstract IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime);
+    /**
+     * Sample index values and build statistics histograms. If
+     * <code>sampleSize</code> is positive and less than the number of
+     * entries, only about that many are read, rather than the whole index.
+     */
+    public abstract IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime, long sampleSize);
     public abstract long manuallyCountEntries(Session session, Index index);
 
 
@@ -75,12 +75,20 @@ public class PersistitStoreIndexStatistics extends AbstractStoreIndexStatistics<
     }
 
     @Override
-    public IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime) {
+    public IndexStatistics computeIndexStatistics(Session session, Index index, long scanTimeLimit, long sleepTime, long sampleSize) {
         long indexRowCount = indexStatsService.countEntries(session, index);
-        IndexStatisticsVisitor<Key,Value> visitor = new IndexStatisticsVisitor<>(session, index, indexRowCount, indexRowCount, this);
+        boolean sampled = (sampleSize > 0) && (indexRowCount > sampleSize);
+        long expectedSampleCount = sampled ? sampleSize : indexRowCount;
+        IndexStatisticsVisitor<Key,Value> visitor = new IndexStatisticsVisitor<>(session, index, indexRowCount, expectedSampleCount, this);
         int bucketCount = indexStatsService.bucketCount();
         visitor.init(bucketCount);
-        getStore().traverse(session, index, visitor, scanTimeLimit, sleepTime);
+        if (sampled) {
+            // Bounded, so no need to commit part way like a full traverse.
+            getStore().sample(session, index, visitor, sampleSize);
+        }
+        else {
+            getStore().traverse(session, index, visitor, scanTimeLimit, sleepTime);
+        }
         visitor.finish(bucketCount);
         IndexStatistics indexStatistics = visitor.getIndexStatistics();
         if (logger.isDebugEnabled()) {
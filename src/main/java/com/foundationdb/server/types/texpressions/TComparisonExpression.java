@@ -60,5 +60,9 @@ public final class TComparisonExpression extends TComparisonExpressionBase {
         this.collator = collator;
     }
 
+    AkCollator getCollator() {
+        return collator;
+    }
+
     private final AkCollator collator;
 }
@@ -0,0 +1,465 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.TOverload;
+import com.foundationdb.server.types.TPreptimeValue;
+import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.common.funcs.BoolLogic;
+import com.foundationdb.server.types.mcompat.mfuncs.MArithmetic;
+import com.foundationdb.server.types.value.UnderlyingType;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTarget;
+import com.foundationdb.server.util.LRUCacheMap;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a tree of prepared expressions into a class of its own, whose
+ * single method evaluates it with primitive locals instead of going
+ * through a {@link TEvaluatableExpression} and a {@link Value} per node.
+ * <p/>
+ * Only a small, common subset is handled: fields and literals of integer,
+ * double and boolean types; comparisons between two of the same type
+ * without a collator; <code>AND</code>, <code>OR</code> and
+ * <code>NOT</code>; and <code>+</code>, <code>-</code>, <code>*</code> on
+ * <code>INT</code>, <code>BIGINT</code> and <code>DOUBLE</code>. If any
+ * part of the tree is outside of that, or the root is just a field or
+ * literal, the expression is returned unchanged and interpreted as usual.
+ * <p/>
+ * SQL three valued logic is carried in <code>int</code> locals: 1 for
+ * true, 0 for false and -1 for unknown. The generated source sticks to
+ * plain <code>if</code> statements, as Javassist's compiler does not
+ * produce verifiable code for conditional expressions in all cases.
+ * <p/>
+ * The generated classes keep no state, so one is shared by every
+ * expression that produces the same source, such as the same predicate
+ * in each new plan for a statement. Only the most recently used are
+ * kept; since each has its own loader, an evicted class is unloaded
+ * once the last plan using it is gone.
+ */
+public final class TExpressionCompiler
+{
+    /** Implemented by the generated classes. */
+    public interface Evaluator {
+        void evaluate(Row row, ValueTarget target);
+    }
+
+    /**
+     * Return an expression that evaluates <code>expression</code> with a
+     * generated class, or <code>expression</code> itself if it cannot
+     * be compiled.
+     */
+    public static TPreparedExpression compile(TPreparedExpression expression) {
+        TInstance type = expression.resultType();
+        if ((type == null) ||
+            !((expression instanceof TPreparedFunction) ||
+              (expression.getClass() == TComparisonExpression.class)))
+            return expression;
+        Generator generator = new Generator();
+        String tail;
+        switch (type.typeClass().underlyingType()) {
+        case BOOL:
+            {
+                String b = generator.bool(expression);
+                if (b == null) return expression;
+                tail = "if (" + b + " < 0) target.putNull(); else if (" + b + " > 0) target.putBool(true); " +
+                    "else target.putBool(false);";
+            }
+            break;
+        case INT_64:
+        case DOUBLE:
+            {
+                Operand o = generator.number(expression);
+                if (o == null) return expression;
+                tail = "if (" + o.isNull + ") target.putNull(); else target." +
+                    (o.isDouble ? "putDouble(" : "putInt64(") + o.value + ");";
+            }
+            break;
+        default:
+            return expression;
+        }
+        generator.body.append(tail);
+        Evaluator evaluator = define(generator.body.toString());
+        if (evaluator == null)
+            return expression;
+        return new Compiled(expression, evaluator);
+    }
+
+    private static synchronized Evaluator define(String body) {
+        Evaluator evaluator = evaluators.get(body);
+        if (evaluator == null) {
+            evaluator = generate(body);
+            if (evaluator != null)
+                evaluators.put(body, evaluator);
+        }
+        return evaluator;
+    }
+
+    private static Evaluator generate(String body) {
+        String name = TExpressionCompiler.class.getName() + "$Generated" + (++classCounter);
+        CtClass ctClass = null;
+        try {
+            ctClass = classPool.makeClass(name);
+            ctClass.addInterface(classPool.get(Evaluator.class.getName()));
+            ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+            ctClass.addMethod(CtNewMethod.make("public void evaluate(" + Row.class.getName() + " row, " +
+                                               ValueTarget.class.getName() + " target) {\n" +
+                                               body + "\n}",
+                                               ctClass));
+            byte[] bytes = ctClass.toBytecode();
+            // A loader per class, so that it can be unloaded once
+            // evicted and no longer used by any plan.
+            Class<?> clazz = new GeneratedClassLoader().define(name, bytes);
+            return (Evaluator)clazz.newInstance();
+        }
+        catch (Exception ex) {
+            logger.warn("Could not compile expression, it will be interpreted: {}", body, ex);
+            return null;
+        }
+        finally {
+            if (ctClass != null)
+                ctClass.detach();
+        }
+    }
+
+    private TExpressionCompiler() {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(TExpressionCompiler.class);
+
+    private static final ClassPool classPool = new ClassPool(true);
+    static {
+        classPool.appendClassPath(new ClassClassPath(TExpressionCompiler.class));
+    }
+    private static int classCounter;
+
+    private static final int CACHE_CAPACITY = 1024;
+    private static final Map<String,Evaluator> evaluators = new LRUCacheMap<>(CACHE_CAPACITY);
+
+    private static final Map<TOverload,String> LONG_ARITHMETIC = new IdentityHashMap<>();
+    private static final Map<TOverload,String> DOUBLE_ARITHMETIC = new IdentityHashMap<>();
+    static {
+        LONG_ARITHMETIC.put(MArithmetic.ADD_INT, "+");
+        LONG_ARITHMETIC.put(MArithmetic.ADD_BIGINT, "+");
+        LONG_ARITHMETIC.put(MArithmetic.SUBTRACT_INT, "-");
+        LONG_ARITHMETIC.put(MArithmetic.SUBTRACT_BIGINT, "-");
+        LONG_ARITHMETIC.put(MArithmetic.MULTIPLY_INT, "*");
+        LONG_ARITHMETIC.put(MArithmetic.MULTIPLY_BIGINT, "*");
+        DOUBLE_ARITHMETIC.put(MArithmetic.ADD_DOUBLE, "+");
+        DOUBLE_ARITHMETIC.put(MArithmetic.ADD_DOUBLE_P2, "+");
+        DOUBLE_ARITHMETIC.put(MArithmetic.SUBSTRACT_DOUBLE, "-");
+        DOUBLE_ARITHMETIC.put(MArithmetic.SUBSTRACT_DOUBLE_P2, "-");
+        DOUBLE_ARITHMETIC.put(MArithmetic.MULTIPLY_DOUBLE, "*");
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader() {
+            super(TExpressionCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /** Names of the locals holding a numeric result. */
+    private static final class Operand {
+        final String isNull, value;
+        final boolean isDouble;
+
+        Operand(String isNull, String value, boolean isDouble) {
+            this.isNull = isNull;
+            this.value = value;
+            this.isDouble = isDouble;
+        }
+    }
+
+    /**
+     * Appends the statements computing each node to <code>body</code>
+     * and returns the locals holding its result, or <code>null</code>
+     * if the node is not supported.
+     */
+    private static final class Generator {
+        final StringBuilder body = new StringBuilder();
+        int nlocals;
+
+        String local(String prefix) {
+            return prefix + (nlocals++);
+        }
+
+        String bool(TPreparedExpression expression) {
+            if (expression instanceof TPreparedField) {
+                if (expression.resultType().typeClass() != AkBool.INSTANCE)
+                    return null;
+                String s = local("s"), b = local("b");
+                body.append(ValueSource.class.getName()).append(' ').append(s)
+                    .append(" = row.value(").append(((TPreparedField)expression).getFieldIndex()).append(");\n");
+                body.append("int ").append(b).append(" = -1;\n");
+                body.append("if (!").append(s).append(".isNull()) { if (").append(s).append(".getBoolean()) ")
+                    .append(b).append(" = 1; else ").append(b).append(" = 0; }\n");
+                return b;
+            }
+            if (expression.getClass() == TComparisonExpression.class) {
+                TComparisonExpression comparison = (TComparisonExpression)expression;
+                TPreparedExpression left = comparison.getLeft(), right = comparison.getRight();
+                if ((comparison.getCollator() != null) ||
+                    (left.resultType() == null) || (right.resultType() == null) ||
+                    (left.resultType().typeClass() != right.resultType().typeClass()))
+                    return null;
+                Operand l = number(left);
+                if (l == null) return null;
+                Operand r = number(right);
+                if ((r == null) || (l.isDouble != r.isDouble)) return null;
+                String op = comparison.getComparison().toString();
+                String b = local("b");
+                body.append("int ").append(b).append(" = -1;\n");
+                body.append("if (!").append(l.isNull).append(" && !").append(r.isNull).append(") { if (");
+                if (l.isDouble)
+                    body.append("Double.compare(").append(l.value).append(", ").append(r.value).append(") ")
+                        .append(op).append(" 0");
+                else
+                    body.append(l.value).append(' ').append(op).append(' ').append(r.value);
+                body.append(") ").append(b).append(" = 1; else ").append(b).append(" = 0; }\n");
+                return b;
+            }
+            if (expression instanceof TPreparedFunction) {
+                TPreparedFunction function = (TPreparedFunction)expression;
+                TOverload overload = function.getOverload().getUnderlying();
+                List<? extends TPreparedExpression> inputs = function.getInputs();
+                if (overload == BoolLogic.NOT) {
+                    String c = bool(inputs.get(0));
+                    if (c == null) return null;
+                    String b = local("b");
+                    body.append("int ").append(b).append(" = -1;\n");
+                    body.append("if (").append(c).append(" >= 0) ").append(b).append(" = 1 - ").append(c).append(";\n");
+                    return b;
+                }
+                if (!(overload instanceof BoolLogic) || (inputs.size() != 2))
+                    return null;
+                // A literal operand gets special treatment at prepare time.
+                if ((inputs.get(0) instanceof TPreparedLiteral) ||
+                    (inputs.get(1) instanceof TPreparedLiteral))
+                    return null;
+                int dominant;
+                String name = overload.displayName();
+                if ("AND".equals(name))
+                    dominant = 0;
+                else if ("OR".equals(name))
+                    dominant = 1;
+                else
+                    return null;
+                // Only evaluate the right side if the left does not decide.
+                String b = local("b");
+                String l = bool(inputs.get(0));
+                if (l == null) return null;
+                body.append("int ").append(b).append(" = ").append(dominant).append(";\n");
+                body.append("if (").append(l).append(" != ").append(dominant).append(") {\n");
+                String r = bool(inputs.get(1));
+                if (r == null) return null;
+                body.append("if (").append(r).append(" != ").append(dominant).append(") { if (")
+                    .append(l).append(" < 0 || ").append(r).append(" < 0) ").append(b).append(" = -1; else ")
+                    .append(b).append(" = ").append(1 - dominant).append("; }\n");
+                body.append("}\n");
+                return b;
+            }
+            return null;
+        }
+
+        Operand number(TPreparedExpression expression) {
+            TInstance type = expression.resultType();
+            if (type == null)
+                return null;
+            UnderlyingType underlying = type.typeClass().underlyingType();
+            String getter;
+            switch (underlying) {
+            case INT_8:
+                getter = "getInt8";
+                break;
+            case INT_16:
+                getter = "getInt16";
+                break;
+            case UINT_16:
+                getter = "getUInt16";
+                break;
+            case INT_32:
+                getter = "getInt32";
+                break;
+            case INT_64:
+                getter = "getInt64";
+                break;
+            case DOUBLE:
+                getter = "getDouble";
+                break;
+            default:
+                return null;
+            }
+            boolean isDouble = (underlying == UnderlyingType.DOUBLE);
+            String kind = isDouble ? "double" : "long";
+            if (expression instanceof TPreparedField) {
+                String s = local("s"), n = local("n"), v = local("v");
+                body.append(ValueSource.class.getName()).append(' ').append(s)
+                    .append(" = row.value(").append(((TPreparedField)expression).getFieldIndex()).append(");\n");
+                body.append("boolean ").append(n).append(" = ").append(s).append(".isNull();\n");
+                body.append(kind).append(' ').append(v).append(" = ").append(isDouble ? "0.0" : "0L").append(";\n");
+                body.append("if (!").append(n).append(") ").append(v).append(" = (").append(kind).append(')')
+                    .append(s).append('.').append(getter).append("();\n");
+                return new Operand(n, v, isDouble);
+            }
+            if (expression instanceof TPreparedLiteral) {
+                ValueSource value = expression.evaluateConstant(null).value();
+                if (value.isNull())
+                    return new Operand("true", isDouble ? "0.0" : "0L", isDouble);
+                if (isDouble)
+                    return new Operand("false",
+                                       "Double.longBitsToDouble(" + Double.doubleToLongBits(value.getDouble()) + "L)",
+                                       true);
+                long l;
+                switch (underlying) {
+                case INT_8:
+                    l = value.getInt8();
+                    break;
+                case INT_16:
+                    l = value.getInt16();
+                    break;
+                case UINT_16:
+                    l = value.getUInt16();
+                    break;
+                case INT_32:
+                    l = value.getInt32();
+                    break;
+                default:
+                    l = value.getInt64();
+                    break;
+                }
+                return new Operand("false", "(" + l + "L)", false);
+            }
+            if (expression instanceof TPreparedFunction) {
+                TPreparedFunction function = (TPreparedFunction)expression;
+                TOverload overload = function.getOverload().getUnderlying();
+                String op = (isDouble ? DOUBLE_ARITHMETIC : LONG_ARITHMETIC).get(overload);
+                if (op == null)
+                    return null;
+                List<? extends TPreparedExpression> inputs = function.getInputs();
+                Operand l = number(inputs.get(0));
+                if (l == null) return null;
+                Operand r = number(inputs.get(1));
+                if ((r == null) || (l.isDouble != isDouble) || (r.isDouble != isDouble))
+                    return null;
+                String n = local("n"), v = local("v");
+                body.append("boolean ").append(n).append(" = false;\n");
+                body.append("if (").append(l.isNull).append(" || ").append(r.isNull).append(") ").append(n).append(" = true;\n");
+                body.append(kind).append(' ').append(v).append(" = ").append(isDouble ? "0.0" : "0L").append(";\n");
+                body.append("if (!").append(n).append(") {\n");
+                body.append(v).append(" = ").append(l.value).append(' ').append(op).append(' ').append(r.value).append(";\n");
+                if (overload == MArithmetic.MULTIPLY_DOUBLE)
+                    body.append("if (Double.isNaN(").append(v).append(") || Double.isInfinite(").append(v).append(")) ")
+                        .append(n).append(" = true;\n");
+                body.append("}\n");
+                return new Operand(n, v, isDouble);
+            }
+            return null;
+        }
+    }
+
+    /** The compiled expression, otherwise behaving like the original. */
+    static final class Compiled implements TPreparedExpression {
+        @Override
+        public TPreptimeValue evaluateConstant(QueryContext queryContext) {
+            return original.evaluateConstant(queryContext);
+        }
+
+        @Override
+        public TInstance resultType() {
+            return original.resultType();
+        }
+
+        @Override
+        public TEvaluatableExpression build() {
+            return new Evaluation(original.resultType(), evaluator);
+        }
+
+        @Override
+        public CompoundExplainer getExplainer(ExplainContext context) {
+            return original.getExplainer(context);
+        }
+
+        @Override
+        public String toString() {
+            return original.toString();
+        }
+
+        Compiled(TPreparedExpression original, Evaluator evaluator) {
+            this.original = original;
+            this.evaluator = evaluator;
+        }
+
+        private final TPreparedExpression original;
+        final Evaluator evaluator;
+    }
+
+    private static final class Evaluation implements TEvaluatableExpression {
+        @Override
+        public ValueSource resultValue() {
+            return value;
+        }
+
+        @Override
+        public void evaluate() {
+            evaluator.evaluate(row, value);
+        }
+
+        @Override
+        public void with(Row row) {
+            this.row = row;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+        }
+
+        Evaluation(TInstance type, Evaluator evaluator) {
+            this.value = new Value(type);
+            this.evaluator = evaluator;
+        }
+
+        private final Value value;
+        private final Evaluator evaluator;
+        private Row row;
+    }
+}
@@ -16,7 +16,12 @@
  */
 package com.foundationdb.server.types.texpressions;
 
+import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
 import com.foundationdb.server.types.LazyList;
 import com.foundationdb.server.types.TClass;
 import com.foundationdb.server.types.TComparison;
@@ -24,18 +29,54 @@ import com.foundationdb.server.types.TExecutionContext;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.TKeyComparable;
 import com.foundationdb.server.types.TOverloadResult;
+import com.foundationdb.server.types.TPreptimeValue;
 import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.common.types.StringAttribute;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.value.UnderlyingType;
+import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueTarget;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public final class TInExpression {
 
+    /** Smallest list of constants looked up in a hash set rather than compared in turn. */
+    public static final int HASH_SET_MIN_SIZE = 10;
+
     public static TPreparedExpression prepare(TPreparedExpression lhs, List<? extends TPreparedExpression> rhs,
                                               QueryContext queryContext) {
-        return prepare(lhs, rhs, null, null, queryContext);
+        TPreparedExpression in = prepare(lhs, rhs, null, null, queryContext);
+        if (rhs.size() >= HASH_SET_MIN_SIZE) {
+            TClass tClass = lhs.resultType().typeClass();
+            UnderlyingType underlying = tClass.underlyingType();
+            boolean strings = (tClass instanceof TString);
+            if (!strings && !isInteger(underlying))
+                return in;
+            AkCollator collator = null;
+            for (int i = 0; i < rhs.size(); i++) {
+                TPreparedExpression r = rhs.get(i);
+                if (!(r instanceof TPreparedLiteral || r instanceof TPreparedParameter) ||
+                    (r.resultType().typeClass() != tClass))
+                    return in;
+                if (strings) {
+                    AkCollator rCollator =
+                        TString.mergeAkCollators(StringAttribute.characterTypeAttributes(lhs.resultType()),
+                                                 StringAttribute.characterTypeAttributes(r.resultType()));
+                    if (i == 0)
+                        collator = rCollator;
+                    else if ((rCollator == null) ? (collator != null) :
+                             ((collator == null) || (rCollator.getCollationId() != collator.getCollationId())))
+                        return in;
+                }
+            }
+            return new InSetExpression(in, lhs, rhs, strings, collator);
+        }
+        return in;
     }
 
     public static TPreparedExpression prepare(TPreparedExpression lhs, List<? extends TPreparedExpression> rhs,
@@ -74,6 +115,36 @@ public final class TInExpression {
         return new TPreparedFunction(overload, AkBool.INSTANCE.instance(nullable), all, queryContext);
     }
     
+    private static boolean isInteger(UnderlyingType underlying) {
+        switch (underlying) {
+        case INT_8:
+        case INT_16:
+        case UINT_16:
+        case INT_32:
+        case INT_64:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static long getLong(ValueSource source) {
+        switch (TInstance.underlyingType(source.getType())) {
+        case INT_8:
+            return source.getInt8();
+        case INT_16:
+            return source.getInt16();
+        case UINT_16:
+            return source.getUInt16();
+        case INT_32:
+            return source.getInt32();
+        case INT_64:
+            return source.getInt64();
+        default:
+            throw new AssertionError(source.getType());
+        }
+    }
+
     static abstract class InScalarBase extends TScalarBase {
         protected abstract int doCompare(TInstance lhsInstance, ValueSource lhsSource,
                                          TInstance rhsInstance, ValueSource rhsSource);
@@ -147,4 +218,235 @@ public final class TInExpression {
             return comparison.compare(rhsInstance, rhsSource, lhsInstance, lhsSource);
         }
     }
+
+    /**
+     * An IN whose list is all literals and parameters of the same type as the operand,
+     * integer or string. The list is loaded into a hash set when first evaluated, which
+     * is once per execution, since parameters do not change within one. Explain output
+     * and constant folding are those of the ordinary IN, which is also used for any
+     * value that cannot be hashed directly.
+     */
+    static final class InSetExpression implements TPreparedExpression {
+        @Override
+        public TPreptimeValue evaluateConstant(QueryContext queryContext) {
+            return in.evaluateConstant(queryContext);
+        }
+
+        @Override
+        public TInstance resultType() {
+            return in.resultType();
+        }
+
+        @Override
+        public TEvaluatableExpression build() {
+            List<TEvaluatableExpression> rhsEvals = new ArrayList<>(rhs.size());
+            for (TPreparedExpression r : rhs) {
+                rhsEvals.add(r.build());
+            }
+            return new InSetEvaluation(in.build(), lhs.build(), rhsEvals, strings, collator, in.resultType());
+        }
+
+        @Override
+        public CompoundExplainer getExplainer(ExplainContext context) {
+            return in.getExplainer(context);
+        }
+
+        @Override
+        public String toString() {
+            return in.toString();
+        }
+
+        InSetExpression(TPreparedExpression in, TPreparedExpression lhs, List<? extends TPreparedExpression> rhs,
+                        boolean strings, AkCollator collator) {
+            this.in = in;
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.strings = strings;
+            this.collator = collator;
+        }
+
+        private final TPreparedExpression in, lhs;
+        private final List<? extends TPreparedExpression> rhs;
+        private final boolean strings;
+        private final AkCollator collator;
+    }
+
+    private static final class InSetEvaluation implements TEvaluatableExpression {
+        @Override
+        public ValueSource resultValue() {
+            return result;
+        }
+
+        @Override
+        public void evaluate() {
+            if (!loaded) {
+                load();
+            }
+            if (longSet != null || stringSet != null) {
+                lhsEval.with(row);
+                lhsEval.evaluate();
+                ValueSource lhs = lhsEval.resultValue();
+                if (lhs.isNull()) {
+                    value.putNull();
+                    result = value;
+                    return;
+                }
+                if (stringSet != null) {
+                    value.putBool(stringSet.contains(new CollatedString(AkCollator.getString(lhs, collator), collator)));
+                    result = value;
+                    return;
+                }
+                if (lhs.canGetRawValue()) {
+                    value.putBool(longSet.contains(getLong(lhs)));
+                    result = value;
+                    return;
+                }
+            }
+            in.with(row);
+            in.evaluate();
+            result = in.resultValue();
+        }
+
+        @Override
+        public void with(Row row) {
+            // Only passed on when needed, since the ordinary IN would pass it to every element.
+            this.row = row;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+            in.with(context);
+            lhsEval.with(context);
+            for (TEvaluatableExpression r : rhsEvals) {
+                r.with(context);
+            }
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+            in.with(bindings);
+            lhsEval.with(bindings);
+            for (TEvaluatableExpression r : rhsEvals) {
+                r.with(bindings);
+            }
+        }
+
+        private void load() {
+            loaded = true;
+            if (strings) {
+                Set<CollatedString> set = new HashSet<>(rhsEvals.size() * 2);
+                for (TEvaluatableExpression r : rhsEvals) {
+                    r.evaluate();
+                    ValueSource source = r.resultValue();
+                    if (!source.isNull()) {
+                        set.add(new CollatedString(AkCollator.getString(source, collator), collator));
+                    }
+                }
+                stringSet = set;
+            }
+            else {
+                LongSet set = new LongSet(rhsEvals.size());
+                for (TEvaluatableExpression r : rhsEvals) {
+                    r.evaluate();
+                    ValueSource source = r.resultValue();
+                    if (source.isNull()) {
+                        continue;
+                    }
+                    if (!source.canGetRawValue()) {
+                        return;
+                    }
+                    set.add(getLong(source));
+                }
+                longSet = set;
+            }
+        }
+
+        InSetEvaluation(TEvaluatableExpression in, TEvaluatableExpression lhsEval, List<TEvaluatableExpression> rhsEvals,
+                        boolean strings, AkCollator collator, TInstance resultType) {
+            this.in = in;
+            this.lhsEval = lhsEval;
+            this.rhsEvals = rhsEvals;
+            this.strings = strings;
+            this.collator = collator;
+            this.value = new Value(resultType);
+        }
+
+        private final TEvaluatableExpression in, lhsEval;
+        private final List<TEvaluatableExpression> rhsEvals;
+        private final boolean strings;
+        private final AkCollator collator;
+        private final Value value;
+        private ValueSource result;
+        private Row row;
+        private boolean loaded;
+        private LongSet longSet;
+        private Set<CollatedString> stringSet;
+    }
+
+    /** A string equal to others that the collator considers equal. */
+    private static final class CollatedString {
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CollatedString))
+                return false;
+            CollatedString other = (CollatedString)obj;
+            if (hash != other.hash)
+                return false;
+            return (collator == null) ? string.equals(other.string) : (collator.compare(string, other.string) == 0);
+        }
+
+        CollatedString(String string, AkCollator collator) {
+            this.string = string;
+            this.collator = collator;
+            this.hash = (collator == null) ? string.hashCode() : collator.hashCode(string);
+        }
+
+        private final String string;
+        private final AkCollator collator;
+        private final int hash;
+    }
+
+    /** Open addressing set of <code>long</code>s, sized for a known number of them. */
+    static final class LongSet {
+        public boolean contains(long value) {
+            int mask = values.length - 1;
+            for (int i = slot(value, mask); used[i]; i = (i + 1) & mask) {
+                if (values[i] == value)
+                    return true;
+            }
+            return false;
+        }
+
+        public void add(long value) {
+            int mask = values.length - 1;
+            int i = slot(value, mask);
+            while (used[i]) {
+                if (values[i] == value)
+                    return;
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            values[i] = value;
+        }
+
+        private static int slot(long value, int mask) {
+            long h = value * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32)) & mask;
+        }
+
+        LongSet(int capacity) {
+            // At most half full.
+            int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+            values = new long[size];
+            used = new boolean[size];
+        }
+
+        private final long[] values;
+        private final boolean[] used;
+    }
 }
@@ -106,6 +106,14 @@ public final class TPreparedFunction implements TPreparedExpression {
         this.preptimeContext = new TPreptimeContext(Arrays.asList(localInputTypes), resultType, queryContext, preptimeValues);
     }
 
+    TValidatedScalar getOverload() {
+        return overload;
+    }
+
+    List<? extends TPreparedExpression> getInputs() {
+        return inputs;
+    }
+
     private final TValidatedScalar overload;
     private final TInstance resultType;
     private final List<? extends TPreparedExpression> inputs;
@@ -403,6 +403,60 @@ public final class ValueSources {
         return ((int) (hash >> 32)) ^ (int) hash;
     }
 
+    /**
+     * Like {@link #hash} but keeping all 64 bits, for uses such as Bloom filters whose
+     * accuracy depends on there being few collisions.
+     */
+    public static long hash64(ValueSource source, AkCollator collator) {
+        if (source.isNull())
+            return 0;
+        switch (underlyingType(source)) {
+        case BOOL:
+            return source.getBoolean() ? 1 : 0;
+        case INT_8:
+            return source.getInt8();
+        case INT_16:
+            return source.getInt16();
+        case UINT_16:
+            return source.getUInt16();
+        case INT_32:
+            return source.getInt32();
+        case INT_64:
+            return source.getInt64();
+        case FLOAT:
+            return Float.floatToRawIntBits(source.getFloat());
+        case DOUBLE:
+            return Double.doubleToRawLongBits(source.getDouble());
+        case BYTES:
+            {
+                long hash = FNV_OFFSET_BASIS;
+                for (byte b : source.getBytes()) {
+                    hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+                }
+                return hash;
+            }
+        case STRING:
+            {
+                String stringVal = AkCollator.getString(source, collator);
+                if ((collator == null) || collator.isRecoverable()) {
+                    // Binary collation: equal strings are equal chars.
+                    long hash = FNV_OFFSET_BASIS;
+                    for (int i = 0; i < stringVal.length(); i++) {
+                        hash = (hash ^ stringVal.charAt(i)) * FNV_PRIME;
+                    }
+                    return hash;
+                }
+                return collator.hashCode(stringVal);
+            }
+        default:
+            throw new AssertionError(source.getType());
+        }
+    }
+
+    // 64 bit FNV-1a
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
     public static ValueSource getNullSource(TInstance underlying) {
         Value result = new Value(underlying);
         result.putNull();
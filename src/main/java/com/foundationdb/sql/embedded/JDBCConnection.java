@@ -30,6 +30,7 @@ import com.foundationdb.sql.server.ServerTransaction;
 
 import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.parser.CallStatementNode;
+import com.foundationdb.sql.parser.CursorNode;
 import com.foundationdb.sql.parser.DDLStatementNode;
 import com.foundationdb.sql.parser.DMLStatementNode;
 import com.foundationdb.sql.parser.SQLParser;
@@ -37,6 +38,8 @@ import com.foundationdb.sql.parser.SQLParserException;
 import com.foundationdb.sql.parser.StatementNode;
 
 import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.operator.ExecutionStatistics;
+import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.operator.StoreAdapter;
 import com.foundationdb.server.api.DDLFunctions;
@@ -217,6 +220,14 @@ public class JDBCConnection extends ServerSessionBase implements Connection {
     }
 
     public Explainer explain(String sql) {
+        return explain(sql, false);
+    }
+
+    /** Explain a statement. With <code>analyze</code>, the statement,
+     * which must be a query, is also run, so that the actual figures
+     * for each operator go with the plan.
+     */
+    public Explainer explain(String sql, boolean analyze) {
         logger.debug("Explain: {}", sql);
         sessionMonitor.startStatement(sql);
         updateAIS(new EmbeddedQueryContext(this));
@@ -246,6 +257,15 @@ public class JDBCConnection extends ServerSessionBase implements Connection {
                 explainable = compiler.compile((DMLStatementNode)sqlStmt, parser.getParameterList(), context).getPlannable();
             else
                 throw new UnsupportedSQLException("Statement not supported for EXPLAIN", sqlStmt);
+            if (analyze) {
+                if (!(sqlStmt instanceof CursorNode) || !parser.getParameterList().isEmpty())
+                    throw new UnsupportedSQLException("Statement not supported for EXPLAIN ANALYZE", sqlStmt);
+                sessionMonitor.enterStage(MonitorStage.EXECUTE);
+                EmbeddedQueryContext queryContext = new EmbeddedQueryContext(this);
+                ExecutionStatistics statistics = new ExecutionStatistics();
+                statistics.run((Operator)explainable, queryContext, queryContext.createBindings());
+                statistics.explain((Operator)explainable, context.getExplainContext());
+            }
             return explainable.getExplainer(context.getExplainContext());
         }
         finally {
@@ -46,10 +46,46 @@ public class AggregateSplitter extends BaseRule
     public void apply(PlanContext plan) {
         List<AggregateSourceState> sources = new AggregateSourceFinder(plan).find();
         for (AggregateSourceState source : sources) {
+            boolean hash = useHashAggregate(plan, source);
             split(source.aggregateSource);
+            if (hash)
+                source.aggregateSource.setImplementation(Implementation.HASH);
         }
     }
 
+    /** Should grouping be done with a hash table instead of by
+     * sorting? Only when a sort would be needed and the number of
+     * groups is estimated to be small compared to the input.
+     */
+    protected boolean useHashAggregate(PlanContext plan, AggregateSourceState state) {
+        AggregateSource source = state.aggregateSource;
+        if (!source.hasGroupBy())
+            return false;
+        Implementation implementation = source.getImplementation();
+        if ((implementation != null) &&
+            (implementation != Implementation.SORT) &&
+            (implementation != Implementation.PREAGGREGATE_RESORT))
+            return false;
+        for (AggregateFunctionExpression aggregate : source.getAggregates()) {
+            // These need their own Sort / Distinct on the input.
+            if (aggregate.isDistinct() || (aggregate.getOrderBy() != null))
+                return false;
+        }
+        SchemaRulesContext rulesContext = (SchemaRulesContext)plan.getRulesContext();
+        if (!Boolean.parseBoolean(rulesContext.getProperty("hashAggregateEnabled", "false")))
+            return false;
+        CostEstimate inputCost = state.containingQuery.getCostEstimate();
+        if (inputCost == null)
+            return false;
+        long nrows = inputCost.getRowCount();
+        long ngroups = rulesContext.getCostEstimator().estimateGroupCount(source.getGroupBy(), nrows);
+        if (ngroups < 0)
+            return false;
+        double maxRatio = Double.parseDouble(rulesContext.getProperty("hashAggregateMaxGroupRatio", "0.1"));
+        logger.debug("Estimated {} groups from {} rows", ngroups, nrows);
+        return (ngroups <= nrows * maxRatio);
+    }
+
     protected void split(AggregateSource source) {
         assert !source.isProjectSplitOff();
         if (!source.hasGroupBy() && source.getAggregates().size() == 1) {
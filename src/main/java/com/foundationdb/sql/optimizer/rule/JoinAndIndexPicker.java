@@ -25,6 +25,8 @@ import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.Sort.OrderByExpression;
 import com.foundationdb.sql.optimizer.plan.JoinNode.JoinType;
 
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.texpressions.Comparison;
 
 import com.foundationdb.server.error.AkibanInternalException;
@@ -836,6 +838,12 @@ public class JoinAndIndexPicker extends BaseRule
                 if (hashPlan != null)
                     planClass.consider(hashPlan);
             }
+            if (right instanceof GroupPlanClass) {
+                Plan loaderPlan = right.bestPlan(outsideJoins);
+                JoinPlan hashPlan = buildHashTableJoin(loaderPlan, joinPlan, joinType);
+                if (hashPlan != null)
+                    planClass.consider(hashPlan);
+            }
             planClass.consider(joinPlan);
             return planClass;
         }
@@ -938,6 +946,105 @@ public class JoinAndIndexPicker extends BaseRule
                                     JoinType.SEMI, JoinNode.Implementation.BLOOM_FILTER,
                                     joins, costEstimate, bloomFilter, hashColumns, matchColumns);
         }
+
+        public JoinPlan buildHashTableJoin(Plan loaderPlan, JoinPlan joinPlan, JoinType joinType) {
+            String prop = picker.rulesContext.getProperty("hashJoinEnabled", "false");
+            if (!Boolean.parseBoolean(prop)) return null;
+            switch (joinPlan.joinType) {
+            case INNER:
+            case LEFT:
+            case SEMI:
+            case ANTI:
+                break;
+            default:
+                return null;
+            }
+            Plan inputPlan = joinPlan.left;
+            Collection<JoinOperator> joins = joinPlan.joins;
+            List<ExpressionNode> hashColumns = new ArrayList<>();
+            List<ExpressionNode> matchColumns = new ArrayList<>();
+            for (JoinOperator join : joins) {
+                if (join.getJoinConditions() != null) {
+                    for (ConditionExpression cond : join.getJoinConditions()) {
+                        if (!(cond instanceof ComparisonCondition)) return null;
+                        ComparisonCondition ccond = (ComparisonCondition)cond;
+                        if (ccond.getOperation() != Comparison.EQ) return null;
+                        ExpressionNode left = ccond.getLeft();
+                        ExpressionNode right = ccond.getRight();
+                        if (!((left instanceof ColumnExpression) &&
+                              (right instanceof ColumnExpression)))
+                            return null;
+                        boolean leftLoaded = loaderPlan.containsColumn((ColumnExpression)left);
+                        boolean rightLoaded = loaderPlan.containsColumn((ColumnExpression)right);
+                        if (rightLoaded && !leftLoaded) {
+                            matchColumns.add(left);
+                            hashColumns.add(right);
+                        }
+                        else if (leftLoaded && !rightLoaded) {
+                            matchColumns.add(right);
+                            hashColumns.add(left);
+                        }
+                        else {
+                            return null;
+                        }
+                        if (!hashCompatible(left, right))
+                            return null;
+                    }
+                }
+            }
+            if (hashColumns.isEmpty())
+                return null;    // Not an equijoin.
+            long outputRowCount = joinPlan.costEstimate.getRowCount();
+            HashTable hashTable = new HashTable(loaderPlan.costEstimate.getRowCount());
+            CostEstimate costEstimate = picker.getCostEstimator()
+                .costHashJoin(loaderPlan.costEstimate, inputPlan.costEstimate, outputRowCount);
+            CostEstimate lookupCost = picker.getCostEstimator()
+                .costHashLookup(loaderPlan.costEstimate, inputPlan.costEstimate, outputRowCount);
+            Plan lookupPlan = new HashTableLookupPlan(hashTable, matchColumns, lookupCost);
+            return new HashJoinPlan(loaderPlan, inputPlan, lookupPlan,
+                                    joinType, JoinNode.Implementation.HASH_TABLE,
+                                    joins, costEstimate, hashTable, hashColumns, matchColumns);
+        }
+
+        /** Can the hash of the values of the two sides be relied
+         * upon to be the same when they compare equal? */
+        protected boolean hashCompatible(ExpressionNode left, ExpressionNode right) {
+            TInstance ltype = left.getType();
+            TInstance rtype = right.getType();
+            if (TClass.comparisonNeedsCasting(ltype, rtype))
+                return false;
+            switch (TInstance.underlyingType(ltype)) {
+            case STRING:
+                return (left.getCollator() == right.getCollator());
+            case BYTES:
+                // Such as DECIMAL, where the encoding depends on the scale.
+                return ltype.equalsExcludingNullable(rtype);
+            default:
+                return true;
+            }
+        }
+    }
+
+    static class HashTableLookupPlan extends Plan {
+        HashTable hashTable;
+        List<ExpressionNode> lookupExpressions;
+
+        public HashTableLookupPlan(HashTable hashTable, List<ExpressionNode> lookupExpressions,
+                                   CostEstimate costEstimate) {
+            super(costEstimate);
+            this.hashTable = hashTable;
+            this.lookupExpressions = lookupExpressions;
+        }
+
+        @Override
+        public String toString() {
+            return "HashTableLookup" + lookupExpressions;
+        }
+
+        @Override
+        public Joinable install(boolean copy) {
+            return new HashTableLookup(hashTable, lookupExpressions);
+        }
     }
     
     // Find top-level joins and note what query they come from; 
@@ -110,6 +110,9 @@ public class MapFolder extends BaseRule
             else if (n instanceof IndexScan) {
                 result.addAll(((IndexScan)n).getTables());
             }
+            else if (n instanceof HashTableLookup) {
+                result.addAll(((HashTableLookup)n).getTables());
+            }
             return true;
         }
     }
@@ -166,6 +169,14 @@ public class MapFolder extends BaseRule
     // actually doing that would mess up the depth nesting for the
     // next pass.
     protected void foldOuterMap(MapJoin map) {
+        UsingHashTable usingHashTable = null;
+        if ((map.getOuter() instanceof UsingHashTable) &&
+            (((UsingHashTable)map.getOuter()).getInput() instanceof MapJoin)) {
+            // The hash table needs to be loaded before the whole
+            // loop, which will be turned inside out.
+            usingHashTable = (UsingHashTable)map.getOuter();
+            map.setOuter(usingHashTable.getInput());
+        }
         if (map.getOuter() instanceof MapJoin) {
             MapJoin otherMap = (MapJoin)map.getOuter();
             foldOuterMap(otherMap);
@@ -176,12 +187,16 @@ public class MapFolder extends BaseRule
             otherMap.setOuter(outer);
             otherMap.setInner(inner);
         }
+        if (usingHashTable != null) {
+            wrapHashTable(map, usingHashTable);
+        }
     }    
 
     // Third pass: move things upstream of the map down into the inner (fast) side.
     // Also add Project where the nesting still needs an actual join
     // on the outer side.
     protected void fold(MapJoin map, List<MapJoinProject> mapJoinProjects) {
+        UsingHashTable usingHashTable = unwrapHashTable(map);
         PlanWithInput parent = map;
         PlanNode child;
         do {
@@ -244,6 +259,28 @@ public class MapFolder extends BaseRule
             parent.replaceInput(child, map);
             map.setInner(child);
         }
+        if (usingHashTable != null) {
+            wrapHashTable(map, usingHashTable);
+        }
+    }
+
+    // A hash table is loaded once for the whole map, so it stays
+    // outside while the map is folded and then goes back around it
+    // wherever it ends up.
+    protected UsingHashTable unwrapHashTable(MapJoin map) {
+        PlanNode output = map.getOutput();
+        if ((output instanceof UsingHashTable) &&
+            (((UsingHashTable)output).getInput() == map)) {
+            UsingHashTable usingHashTable = (UsingHashTable)output;
+            usingHashTable.getOutput().replaceInput(usingHashTable, map);
+            return usingHashTable;
+        }
+        return null;
+    }
+
+    protected void wrapHashTable(MapJoin map, UsingHashTable usingHashTable) {
+        map.getOutput().replaceInput(map, usingHashTable);
+        usingHashTable.setInput(map);
     }
 
     // A pending Project used to capture bindings inside the loop.
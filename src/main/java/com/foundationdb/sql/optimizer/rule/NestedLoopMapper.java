@@ -62,6 +62,7 @@ public class NestedLoopMapper extends BaseRule
                 switch (j.getImplementation()) {
                 case NESTED_LOOPS:
                 case BLOOM_FILTER:
+                case HASH_TABLE:
                     result.add(j);
                 }
             }
@@ -109,6 +110,18 @@ public class NestedLoopMapper extends BaseRule
                     map = new UsingBloomFilter(bf, loader, map);
                 }
                 break;
+            case HASH_TABLE:
+                {
+                    HashJoinNode hjoin = (HashJoinNode)join;
+                    HashTable ht = (HashTable)hjoin.getHashTable();
+                    PlanNode loader = hjoin.getLoader();
+                    // Rows from the lookup are those from the loader.
+                    HashTableLookup lookup = (HashTableLookup)hjoin.getCheck();
+                    lookup.setTables(new MapFolder.ColumnSourceFinder().find(loader));
+                    map = new MapJoin(join.getJoinType(), outer, inner);
+                    map = new UsingHashTable(ht, loader, map, hjoin.getHashColumns());
+                }
+                break;
             default:
                 assert false : join;
                 map = join;
@@ -56,9 +56,12 @@ import com.foundationdb.server.types.texpressions.ExistsSubqueryTExpression;
 import com.foundationdb.server.types.texpressions.ResultSetSubqueryTExpression;
 import com.foundationdb.server.types.texpressions.ScalarSubqueryTExpression;
 import com.foundationdb.server.types.texpressions.TCastExpression;
+import com.foundationdb.server.types.texpressions.TExpressionCompiler;
 import com.foundationdb.server.types.texpressions.TNullExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.server.types.texpressions.TPreparedField;
+import com.foundationdb.server.types.texpressions.TPreparedLiteral;
+import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 
 import com.foundationdb.server.error.AkibanInternalException;
@@ -100,6 +103,9 @@ public class OperatorAssembler extends BaseRule
     private static final PointTap DELETE_COUNT = Tap.createCount("sql: delete");
 
     public static final int INSERTION_SORT_MAX_LIMIT = 100;
+    /** Above {@link #INSERTION_SORT_MAX_LIMIT}, limits up to this use a heap.
+     * Overridden by the <code>heapSortMaxLimit</code> optimizer property. */
+    public static final int HEAP_SORT_MAX_LIMIT_DEFAULT = 10000;
 
     public OperatorAssembler() {
     }
@@ -122,6 +128,7 @@ public class OperatorAssembler extends BaseRule
         private final Schema schema;
         private final ExpressionAssembler expressionAssembler;
         private final Set<Table> affectedTables;
+        private boolean readOnlyStatement;
 
         public Assembler(PlanContext planContext) {
             this.planContext = planContext;
@@ -141,6 +148,7 @@ public class OperatorAssembler extends BaseRule
         }
         
         protected BasePlannable assembleStatement(BaseStatement plan) {
+            readOnlyStatement = (plan instanceof SelectQuery);
             if (plan instanceof SelectQuery) {
                 SELECT_COUNT.hit();
                 return selectQuery((SelectQuery)plan);
@@ -429,6 +437,10 @@ public class OperatorAssembler extends BaseRule
                 return assembleUsingBloomFilter((UsingBloomFilter) node);
             else if (node instanceof BloomFilterFilter)
                 return assembleBloomFilterFilter((BloomFilterFilter) node);
+            else if (node instanceof UsingHashTable)
+                return assembleUsingHashTable((UsingHashTable) node);
+            else if (node instanceof HashTableLookup)
+                return assembleHashTableLookup((HashTableLookup) node);
             else if (node instanceof FullTextScan)
                 return assembleFullTextScan((FullTextScan) node);
             else if (node instanceof InsertStatement) 
@@ -545,11 +557,16 @@ public class OperatorAssembler extends BaseRule
                 stream.rowType = indexRowType;
             }
             else if (indexScan.getConditionRange() == null) {
-                stream.operator = API.indexScan_Default(indexRowType,
-                                                        assembleIndexKeyRange(indexScan, null),
-                                                        assembleIndexOrdering(indexScan, indexRowType),
-                                                        selector,
-                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                IndexKeyRange keyRange = assembleIndexKeyRange(indexScan, null);
+                API.Ordering ordering = assembleIndexOrdering(indexScan, indexRowType);
+                if (keyRange.unbounded() && (forIntersection == IntersectionMode.NONE))
+                    stream.operator = assembleParallelIndexScan(indexScan, indexRowType, ordering, selector);
+                if (stream.operator == null)
+                    stream.operator = API.indexScan_Default(indexRowType,
+                                                            keyRange,
+                                                            ordering,
+                                                            selector,
+                                                            rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
                 stream.rowType = indexRowType;
             }
             else {
@@ -617,11 +634,16 @@ public class OperatorAssembler extends BaseRule
         }
 
         protected void explainSingleIndexScan(Operator operator, SingleIndexScan indexScan, Index index) {
+            Attributes atts = explainIndexScanColumns(indexScan);
+            explainCostEstimate(atts, indexScan.getScanCostEstimate());
+            explainContext.putExtraInfo(operator, new CompoundExplainer(Type.EXTRA_INFO, atts));
+        }
+
+        protected Attributes explainIndexScanColumns(SingleIndexScan indexScan) {
             Attributes atts = new Attributes();
             atts.put(Label.ORDER_EFFECTIVENESS, PrimitiveExplainer.getInstance(indexScan.getOrderEffectiveness().name()));
             atts.put(Label.USED_COLUMNS, PrimitiveExplainer.getInstance(indexScan.usesAllColumns() ? indexScan.getColumns().size() : indexScan.getNKeyColumns()));
-            explainCostEstimate(atts, indexScan.getScanCostEstimate());
-            explainContext.putExtraInfo(operator, new CompoundExplainer(Type.EXTRA_INFO, atts));
+            return atts;
         }
 
         protected void explainCostEstimate(Attributes atts, CostEstimate costEstimate) {
@@ -666,6 +688,76 @@ public class OperatorAssembler extends BaseRule
                 return 0;
         }
 
+        public static final int PARALLEL_SCAN_QUEUE_SIZE_DEFAULT = 1024;
+
+        /** Split a full index scan into ranges between the boundaries
+         * of its histogram, which are scanned concurrently by a
+         * gather. Or return <code>null</code> if not enabled or not
+         * possible.
+         *
+         * Only for queries, and only outside of any loop, since each
+         * time it is opened it starts them all over again. When
+         * opened in a longer transaction, the gather reads the ranges
+         * one after another in that transaction instead.
+         */
+        protected Operator assembleParallelIndexScan(SingleIndexScan indexScan,
+                                                     IndexRowType indexRowType,
+                                                     API.Ordering ordering,
+                                                     IndexScanSelector selector) {
+            int npartitions = parallelScanPartitions();
+            if ((npartitions <= 1) || !readOnlyStatement || !boundRows.isEmpty())
+                return null;
+            // A lexicographic range only applies in a single direction.
+            boolean reverse = (ordering.sortColumns() > 0) && ordering.allDescending();
+            if (!reverse && !ordering.allAscending())
+                return null;
+            Index index = indexScan.getIndex();
+            List<Value> boundaries = rulesContext.getCostEstimator().getIndexPartitionBoundaries(index, npartitions);
+            if (boundaries == null)
+                return null;
+            int lookaheadQuantum = rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum();
+            List<Operator> partitions = new ArrayList<>(boundaries.size() + 1);
+            IndexBound lo = null;
+            for (int i = 0; i <= boundaries.size(); i++) {
+                IndexBound hi = null;
+                if (i < boundaries.size()) {
+                    Value boundary = boundaries.get(i);
+                    TPreparedExpression[] pkeys = {
+                        new TPreparedLiteral(boundary.getType(), boundary)
+                    };
+                    hi = getIndexBound(index, pkeys, 1);
+                }
+                IndexKeyRange keyRange;
+                if (lo == null)
+                    keyRange = IndexKeyRange.endingAt(indexRowType, hi, false);
+                else if (hi == null)
+                    keyRange = IndexKeyRange.startingAt(indexRowType, lo, true);
+                else
+                    keyRange = IndexKeyRange.startingAtAndEndingAt(indexRowType, lo, true, hi, false);
+                partitions.add(API.indexScan_Default(indexRowType, keyRange, ordering,
+                                                     selector, lookaheadQuantum));
+                lo = hi;
+            }
+            if (reverse)
+                Collections.reverse(partitions);
+            if (explainContext != null) {
+                // Each range shows like the single scan it replaces.
+                for (Operator partition : partitions) {
+                    explainContext.putExtraInfo(partition, new CompoundExplainer(Type.EXTRA_INFO, explainIndexScanColumns(indexScan)));
+                }
+            }
+            boolean ordered = (indexScan.getOrderEffectiveness() != IndexScan.OrderEffectiveness.NONE);
+            return API.gather_Parallel(partitions, indexRowType, ordered, PARALLEL_SCAN_QUEUE_SIZE_DEFAULT);
+        }
+
+        protected int parallelScanPartitions() {
+            String prop = rulesContext.getProperty("parallelScanPartitions");
+            if (prop != null)
+                return Integer.valueOf(prop);
+            else
+                return 1;
+        }
+
         protected RowStream assembleGroupScan(GroupScan groupScan) {
             RowStream stream = new RowStream();
             Group group = groupScan.getGroup().getGroup();
@@ -733,8 +825,8 @@ public class OperatorAssembler extends BaseRule
                 }
                 stream.operator = API.select_HKeyOrdered(stream.operator,
                         rowType,
-                        assembleExpression(condition,
-                                fieldOffsets));
+                        compileExpression(assembleExpression(condition,
+                                fieldOffsets)));
             }
             return stream;
         }
@@ -1082,6 +1174,7 @@ public class OperatorAssembler extends BaseRule
             switch (impl) {
             case PRESORTED:
             case UNGROUPED:
+            case HASH:
                 break;
             case FIRST_FROM_INDEX:
                 {
@@ -1205,10 +1298,21 @@ public class OperatorAssembler extends BaseRule
             if ((maxrows >= 0) && (maxrows <= INSERTION_SORT_MAX_LIMIT))
                 stream.operator = API.sort_InsertionLimited(stream.operator, stream.rowType,
                                                             ordering, sortOption, maxrows);
+            else if ((maxrows >= 0) && (maxrows <= heapSortMaxLimit()))
+                stream.operator = API.sort_HeapLimited(stream.operator, stream.rowType,
+                                                       ordering, sortOption, maxrows);
             else
                 stream.operator = API.sort_General(stream.operator, stream.rowType, ordering, sortOption);
         }
 
+        protected int heapSortMaxLimit() {
+            String prop = rulesContext.getProperty("heapSortMaxLimit");
+            if (prop != null)
+                return Integer.valueOf(prop);
+            else
+                return HEAP_SORT_MAX_LIMIT_DEFAULT;
+        }
+
         protected void assembleSort(RowStream stream, int nkeys, PlanNode input,
                                     API.SortOption sortOption) {
             List<AkCollator> collators = findCollators(input);
@@ -1307,10 +1411,52 @@ public class OperatorAssembler extends BaseRule
             return stream;
         }
 
+        protected RowStream assembleUsingHashTable(UsingHashTable usingHashTable) {
+            HashTable hashTable = usingHashTable.getHashTable();
+            int pos = pushHashTable(hashTable);
+            RowStream lstream = assembleStream(usingHashTable.getLoader());
+            List<ExpressionNode> hashColumns = usingHashTable.getHashColumns();
+            int[] keyFields = new int[hashColumns.size()];
+            List<AkCollator> collators = new ArrayList<>(hashColumns.size());
+            for (int i = 0; i < keyFields.length; i++) {
+                ExpressionNode hashColumn = hashColumns.get(i);
+                keyFields[i] = lstream.fieldOffsets.getIndex((ColumnExpression)hashColumn);
+                if (keyFields[i] < 0)
+                    throw new AkibanInternalException("Hash column not loaded: " + hashColumn);
+                collators.add(hashColumn.getCollator());
+            }
+            hashTableLoaders.put(hashTable, lstream);
+            RowStream stream = assembleStream(usingHashTable.getInput());
+            hashTableLoaders.remove(hashTable);
+            stream.operator = API.using_HashTable(lstream.operator,
+                                                  lstream.rowType,
+                                                  keyFields,
+                                                  pos + loopBindingsOffset,
+                                                  stream.operator,
+                                                  collators);
+            popHashTable(hashTable);
+            return stream;
+        }
+
+        protected RowStream assembleHashTableLookup(HashTableLookup hashTableLookup) {
+            HashTable hashTable = hashTableLookup.getHashTable();
+            int pos = getHashTablePosition(hashTable);
+            RowStream lstream = hashTableLoaders.get(hashTable);
+            List<TPreparedExpression> tFields = assembleExpressions(hashTableLookup.getLookupExpressions(),
+                                                                    null);
+            RowStream stream = new RowStream();
+            stream.operator = API.hashTableLookup_Default(lstream.rowType,
+                                                          tFields,
+                                                          pos + loopBindingsOffset);
+            stream.rowType = lstream.rowType;
+            stream.fieldOffsets = lstream.fieldOffsets;
+            return stream;
+        }
+
         protected RowStream assembleProject(Project project) {
             RowStream stream = assembleStream(project.getInput());
             List<? extends TPreparedExpression> pExpressions;
-            pExpressions = assembleExpressions(project.getFields(), stream.fieldOffsets);
+            pExpressions = compileExpressions(assembleExpressions(project.getFields(), stream.fieldOffsets));
             stream.operator = API.project_Default(stream.operator,
                                                   stream.rowType,
                                                   pExpressions);
@@ -1510,12 +1656,11 @@ public class OperatorAssembler extends BaseRule
             List<ExpressionNode> operands = func.getOperands();
             IndexRowType indexRowType = getIndexRowType(index);
             if ("_center".equals(func.getFunction())) {
-                return IndexKeyRange.spatial(indexRowType,
+                return IndexKeyRange.nearest(indexRowType,
                                              assembleSpatialIndexPoint(index,
                                                                        operands.get(0),
                                                                        operands.get(1),
-                                                                       fieldOffsets),
-                                             null);
+                                                                       fieldOffsets));
             }
             else if ("_center_radius".equals(func.getFunction())) {
                 ExpressionNode centerY = operands.get(0);
@@ -1703,6 +1848,27 @@ public class OperatorAssembler extends BaseRule
             return result;
         }
 
+        // Compile predicates and projections to bytecode, if enabled.
+        protected TPreparedExpression compileExpression(TPreparedExpression expression) {
+            if (!compileExpressionsEnabled())
+                return expression;
+            return TExpressionCompiler.compile(expression);
+        }
+
+        protected List<TPreparedExpression> compileExpressions(List<TPreparedExpression> expressions) {
+            if (!compileExpressionsEnabled())
+                return expressions;
+            List<TPreparedExpression> result = new ArrayList<>(expressions.size());
+            for (TPreparedExpression expression : expressions) {
+                result.add(TExpressionCompiler.compile(expression));
+            }
+            return result;
+        }
+
+        protected boolean compileExpressionsEnabled() {
+            return Boolean.parseBoolean(rulesContext.getProperty("compileExpressions", "false"));
+        }
+
             // Assemble an expression against the given row offsets.
         public TPreparedExpression assembleExpression(ExpressionNode expr, ColumnExpressionToIndex fieldOffsets) {
             ColumnExpressionContext context = getColumnExpressionContext(fieldOffsets);
@@ -1878,6 +2044,7 @@ public class OperatorAssembler extends BaseRule
         protected int expressionBindingsOffset, loopBindingsOffset, nestedBindingsDepth;
         protected Stack<ColumnExpressionToIndex> boundRows = new Stack<>(); // Needs to be List<>.
         protected Map<BaseHashTable,Integer> hashTablePositions = new HashMap<>();
+        protected Map<HashTable,RowStream> hashTableLoaders = new HashMap<>();
 
         protected void computeBindingsOffsets() {
             expressionBindingsOffset = 0;
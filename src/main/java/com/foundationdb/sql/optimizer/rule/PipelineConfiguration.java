@@ -26,6 +26,7 @@ public class PipelineConfiguration
     private int groupLookupLookaheadQuantum = 1;
     private boolean unionAllOpenBoth = false;
     private boolean selectBloomFilterEnabled = false;
+    private int batchSize = 1;
 
     public PipelineConfiguration() {
     }
@@ -54,6 +55,10 @@ public class PipelineConfiguration
         return selectBloomFilterEnabled;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
     public void load(Properties properties) {
         for (String prop : properties.stringPropertyNames()) {
             String val = properties.getProperty(prop);
@@ -67,6 +72,8 @@ public class PipelineConfiguration
                 unionAllOpenBoth = Boolean.parseBoolean(val);
             else if ("selectBloomFilter.enabled".equals(prop))
                 selectBloomFilterEnabled = Boolean.parseBoolean(val);
+            else if ("batch.size".equals(prop))
+                batchSize = Integer.parseInt(val);
             else
                 throw new IllegalArgumentException("Unknown property " + prop);
         }
@@ -17,10 +17,14 @@
 
 package com.foundationdb.sql.optimizer.rule.cost;
 
+import com.foundationdb.server.PersistitKeyValueSource;
 import com.foundationdb.server.PersistitKeyValueTarget;
+import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.store.statistics.Histogram;
 import com.foundationdb.server.store.statistics.HistogramEntry;
+import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTargets;
 import com.foundationdb.sql.optimizer.rule.SchemaRulesContext;
 import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.TableGroupJoinTree.TableGroupJoinNode;
@@ -98,6 +102,97 @@ public abstract class CostEstimator implements TableRowCounts
 
     public abstract IndexStatistics getIndexStatistics(Index index);
 
+    /** Return values of the first column of the given index that split it
+     * into up to <code>npartitions</code> ranges with about the same number
+     * of rows, in ascending order. Each is the start of a range. Or return
+     * <code>null</code> if there are no statistics or the values cannot be
+     * recovered from the histogram keys.
+     */
+    public List<Value> getIndexPartitionBoundaries(Index index, int npartitions) {
+        if (index.isSpatial())
+            return null;
+        IndexStatistics indexStatistics = getIndexStatistics(index);
+        if (indexStatistics == null)
+            return null;
+        Histogram histogram = indexStatistics.getHistogram(0, 1);
+        if (histogram == null)
+            return null;
+        Column column = index.getAllColumns().get(0).getColumn();
+        AkCollator collator = column.getCollator();
+        if ((collator != null) && !collator.isRecoverable())
+            return null;
+        TInstance type = column.getType();
+        long total = 0;
+        for (HistogramEntry entry : histogram.getEntries()) {
+            total += entry.getLessCount() + entry.getEqualCount();
+        }
+        if (total == 0)
+            return null;
+        List<Value> boundaries = new ArrayList<>(npartitions - 1);
+        PersistitKeyValueSource keySource = new PersistitKeyValueSource(type);
+        // A range can start at any histogram value after the first and
+        // any NULLs. Each partition target falls between two of those;
+        // start the range at the one whose rows before it are nearer.
+        Value candidate = null;
+        long candidateBefore = 0;
+        long before = 0;
+        int next = 1;
+        for (HistogramEntry entry : histogram.getEntries()) {
+            if (next >= npartitions)
+                break;
+            before += entry.getLessCount();
+            Value value = (before > 0) ? histogramValue(entry, keySource, type) : null;
+            if (value != null) {
+                while ((next < npartitions) && (before * npartitions >= next * total)) {
+                    long target = next * total;
+                    long chosenBefore;
+                    if ((candidate != null) &&
+                        (target - candidateBefore * npartitions < before * npartitions - target)) {
+                        boundaries.add(candidate);
+                        chosenBefore = candidateBefore;
+                    }
+                    else {
+                        boundaries.add(value);
+                        chosenBefore = before;
+                        value = null;
+                    }
+                    candidate = null;
+                    next++;
+                    while ((next < npartitions) && (next * total <= chosenBefore * npartitions))
+                        next++;
+                    if (value == null)
+                        break;
+                }
+                if (value != null) {
+                    candidate = value;
+                    candidateBefore = before;
+                }
+            }
+            before += entry.getEqualCount();
+        }
+        // The last target may fall after the last value.
+        if ((next < npartitions) && (candidate != null) &&
+            (next * total - candidateBefore * npartitions < total * npartitions - next * total))
+            boundaries.add(candidate);
+        if (boundaries.isEmpty())
+            return null;
+        return boundaries;
+    }
+
+    /** The value of the histogram entry's key, or <code>null</code> if it is NULL. */
+    protected Value histogramValue(HistogramEntry entry, PersistitKeyValueSource keySource, TInstance type) {
+        byte[] keyBytes = entry.getKeyBytes();
+        key.clear();
+        System.arraycopy(keyBytes, 0, key.getEncodedBytes(), 0, keyBytes.length);
+        key.setEncodedSize(keyBytes.length);
+        keySource.attach(key, 0, type);
+        if (keySource.isNull())
+            return null;
+        Value value = new Value(type);
+        ValueTargets.copyFrom(keySource, value);
+        return value;
+    }
+
     public void getIndexColumnStatistics(Index index, Index[] indexColumnsIndexes, Histogram[] histograms) {
         List<IndexColumn> allIndexColumns = index.getAllColumns();
         IndexStatistics statsForRequestedIndex = getIndexStatistics(index);
@@ -982,6 +1077,44 @@ public abstract class CostEstimator implements TableRowCounts
                                 model.sortWithLimit((int)size, nfields));
     }
 
+    /** Estimate the number of groups that the given GROUP BY
+     * expressions form among <code>nrows</code> rows, or
+     * <code>-1</code> if there are no statistics to go by.
+     */
+    public long estimateGroupCount(List<ExpressionNode> groupBy, long nrows) {
+        double ngroups = 1.0;
+        for (ExpressionNode expr : groupBy) {
+            if (isConstant(expr))
+                continue;
+            if (!(expr instanceof ColumnExpression))
+                return -1;
+            Column column = ((ColumnExpression)expr).getColumn();
+            if (column == null)
+                return -1;
+            Histogram histogram = leadingColumnHistogram(column);
+            if ((histogram == null) || histogram.getEntries().isEmpty())
+                return -1;
+            if (mostlyDistinct(histogram))
+                return nrows;
+            ngroups *= histogram.totalDistinctCount();
+            if (ngroups >= nrows)
+                return nrows;
+        }
+        return Math.max(round(ngroups), 1);
+    }
+
+    /** Get the histogram of an analyzed table index starting with <code>column</code>. */
+    protected Histogram leadingColumnHistogram(Column column) {
+        for (TableIndex index : column.getTable().getIndexes()) {
+            if (index.getKeyColumns().get(0).getColumn() == column) {
+                IndexStatistics stats = getIndexStatistics(index);
+                if (stats != null)
+                    return stats.getHistogram(0, 1);
+            }
+        }
+        return null;
+    }
+
     /** Estimate cost of scanning the whole group. */
     // TODO: Need to account for tables actually wanted?
     public CostEstimate costGroupScan(Group group) {
@@ -1080,6 +1213,29 @@ public abstract class CostEstimator implements TableRowCounts
         return adjustCostEstimate(estimate);
     }
 
+    public CostEstimate costHashJoin(CostEstimate loaderCost,
+                                     CostEstimate inputCost,
+                                     long outputRowCount) {
+        // Scan to load plus scan input plus probe for each input row.
+        CostEstimate estimate =
+               new CostEstimate(outputRowCount,
+                                loaderCost.getCost() +
+                                inputCost.getCost() +
+                                model.hashJoin((int)loaderCost.getRowCount(),
+                                               (int)inputCost.getRowCount(),
+                                               (int)outputRowCount));
+        return adjustCostEstimate(estimate);
+    }
+
+    /** Cost of a single probe of a hash table, as the inner side of a join. */
+    public CostEstimate costHashLookup(CostEstimate loaderCost,
+                                       CostEstimate inputCost,
+                                       long outputRowCount) {
+        long inputRowCount = Math.max(inputCost.getRowCount(), 1);
+        long rowCount = Math.max(outputRowCount / inputRowCount, 1);
+        return new CostEstimate(rowCount, model.hashJoin(0, 1, (int)rowCount));
+    }
+
     protected void missingStats(Index index, Column column) {
     }
 
@@ -146,6 +146,14 @@ public abstract class CostModel
             inputRows * (BLOOM_FILTER_SCAN_PER_ROW + selectivity * BLOOM_FILTER_SCAN_SELECTIVITY_COEFFICIENT);
     }
 
+    public double hashJoin(int loadRows, int probeRows, int outputRows)
+    {
+        return
+            loadRows * HASH_TABLE_LOAD_PER_ROW +
+            probeRows * HASH_TABLE_PROBE_PER_ROW +
+            outputRows * HASH_TABLE_OUTPUT_PER_ROW;
+    }
+
     private double hKeyBoundGroupScanSingleRow(TableRowType rootTableRowType)
     {
         TreeStatistics treeStatistics = treeStatistics(rootTableRowType);
@@ -51,4 +51,9 @@ public interface CostModelMeasurements
     final double BLOOM_FILTER_LOAD_PER_ROW = 0.24;
     final double BLOOM_FILTER_SCAN_PER_ROW = 0.39;
     final double BLOOM_FILTER_SCAN_SELECTIVITY_COEFFICIENT = 7.41;
+    // Not yet measured: loading copies the row, probing evaluates the
+    // key and output is like a map.
+    final double HASH_TABLE_LOAD_PER_ROW = 1.5;
+    final double HASH_TABLE_PROBE_PER_ROW = 0.6;
+    final double HASH_TABLE_OUTPUT_PER_ROW = 0.15;
 }
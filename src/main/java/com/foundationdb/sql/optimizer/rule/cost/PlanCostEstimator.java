@@ -22,6 +22,7 @@ import com.foundationdb.sql.optimizer.rule.cost.CostEstimator.IndexIntersectionC
 import com.foundationdb.sql.optimizer.rule.cost.CostEstimator.SelectivityConditions;
 import com.foundationdb.sql.optimizer.rule.range.RangeSegment;
 import static com.foundationdb.sql.optimizer.rule.OperatorAssembler.INSERTION_SORT_MAX_LIMIT;
+import static com.foundationdb.sql.optimizer.rule.OperatorAssembler.HEAP_SORT_MAX_LIMIT_DEFAULT;
 import static com.foundationdb.sql.optimizer.rule.cost.CostEstimator.simpleRound;
 
 import com.foundationdb.sql.optimizer.plan.*;
@@ -383,6 +384,13 @@ public class PlanCostEstimator
         }
     }
 
+    /** The largest limit that is sorted by an insertion or heap limited sort. */
+    protected int limitedSortMaxLimit() {
+        String prop = costEstimator.getProperty("heapSortMaxLimit");
+        int heapSortMaxLimit = (prop != null) ? Integer.parseInt(prop) : HEAP_SORT_MAX_LIMIT_DEFAULT;
+        return Math.max(INSERTION_SORT_MAX_LIMIT, heapSortMaxLimit);
+    }
+
     protected class SortEstimator extends PlanEstimator {
         private int nfields;
 
@@ -396,8 +404,7 @@ public class PlanCostEstimator
             input.setLimit(NO_LIMIT);
             CostEstimate inputCost = inputCostEstimate();
             CostEstimate sortCost;
-            if (hasLimit() && 
-                (limit <= INSERTION_SORT_MAX_LIMIT)) {
+            if (hasLimit() && (limit <= limitedSortMaxLimit())) {
                 sortCost = costEstimator.costSortWithLimit(inputCost.getRowCount(),
                                                            Math.min(limit, inputCost.getRowCount()),
                                                            nfields);
@@ -33,8 +33,10 @@ import com.foundationdb.ais.model.*;
 import com.foundationdb.ais.model.Index.JoinType;
 import com.foundationdb.server.error.UnsupportedSQLException;
 import com.foundationdb.server.geophile.Space;
+import com.foundationdb.server.geophile.SpaceLatLon;
 import com.foundationdb.server.service.text.FullTextQueryBuilder;
 import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.DecimalAttribute;
 import com.foundationdb.server.types.texpressions.Comparison;
 import com.foundationdb.sql.types.DataTypeDescriptor;
 import com.foundationdb.sql.types.TypeId;
@@ -1655,7 +1657,8 @@ public class GroupIndexGoal implements Comparator<BaseScan>
     public boolean spatialUsable(SingleIndexScan index, int nequals) {
         // There are two cases to recognize:
         // ORDER BY znear(column_lat, column_lon, start_lat, start_lon), which
-        // means fan out from that center in Z-order.
+        // means fan out from that center, nearest first, or the same with
+        // distance_lat_lon, when the index gives exactly its order.
         // WHERE distance_lat_lon(column_lat, column_lon, start_lat, start_lon) <= radius
         
         ExpressionNode nextColumn = index.getColumns().get(nequals);
@@ -1696,8 +1699,8 @@ public class GroupIndexGoal implements Comparator<BaseScan>
             if (sortAllowed && (queryGoal.getOrdering() != null)) {
                 List<OrderByExpression> orderBy = queryGoal.getOrdering().getOrderBy();
                 if (orderBy.size() == 1) {
-                    ExpressionNode center = matchZnear(operands,
-                                                       orderBy.get(0));
+                    ExpressionNode center = matchNearest(operands,
+                                                         orderBy.get(0));
                     if (center != null) {
                         index.setLowComparand(center, true);
                         index.setOrderEffectiveness(IndexScan.OrderEffectiveness.SORTED);
@@ -1751,12 +1754,18 @@ public class GroupIndexGoal implements Comparator<BaseScan>
         return null;
     }
 
-    private ExpressionNode matchZnear(List<ExpressionNode> indexExpressions, 
-                                      OrderByExpression orderBy) {
+    private ExpressionNode matchNearest(List<ExpressionNode> indexExpressions, 
+                                        OrderByExpression orderBy) {
         if (!orderBy.isAscending()) return null;
         ExpressionNode orderExpr = orderBy.getExpression();
-        if (!((orderExpr instanceof FunctionExpression) &&
-              ((FunctionExpression)orderExpr).getFunction().equalsIgnoreCase("znear")))
+        if (!(orderExpr instanceof FunctionExpression)) return null;
+        String function = ((FunctionExpression)orderExpr).getFunction();
+        boolean exact;
+        if (function.equalsIgnoreCase("znear"))
+            exact = false;
+        else if (function.equalsIgnoreCase("distance_lat_lon"))
+            exact = true;
+        else
             return null;
         ExpressionNode col1 = indexExpressions.get(0);
         ExpressionNode col2 = indexExpressions.get(1);
@@ -1766,6 +1775,9 @@ public class GroupIndexGoal implements Comparator<BaseScan>
         ExpressionNode op2 = operands.get(1);
         ExpressionNode op3 = operands.get(2);
         ExpressionNode op4 = operands.get(3);
+        if (exact && !(withinSpatialResolution(operands) &&
+                       notNull(col1) && notNull(col2)))
+            return null;
         if (columnMatches(col1, op1) && columnMatches(col2, op2) &&
             constantOrBound(op3) && constantOrBound(op4))
             return new FunctionExpression("_center",
@@ -1779,6 +1791,44 @@ public class GroupIndexGoal implements Comparator<BaseScan>
         return null;
     }
 
+    /** The index holds coordinates to a fixed number of decimal places,
+     * so it orders by their exact distance only if none has more.
+     */
+    private static boolean withinSpatialResolution(List<ExpressionNode> operands) {
+        for (ExpressionNode operand : operands) {
+            while (operand instanceof CastExpression)
+                operand = ((CastExpression)operand).getOperand();
+            TInstance type = operand.getType();
+            if (type == null) return false;
+            switch (type.typeClass().jdbcType()) {
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                if (type.attribute(DecimalAttribute.SCALE) > SpaceLatLon.LOG_SCALE)
+                    return false;
+                break;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The nearest scan never returns rows without a location, which
+     * sort first by their NULL distance.
+     */
+    private static boolean notNull(ExpressionNode col) {
+        if (!(col instanceof ColumnExpression)) return false;
+        Column column = ((ColumnExpression)col).getColumn();
+        TInstance type = col.getType();
+        return (column != null) && !column.getNullable() &&
+            (type != null) && !type.nullability();
+    }
+
     private static boolean columnMatches(ExpressionNode col, ExpressionNode op) {
         if (op instanceof CastExpression)
             op = ((CastExpression)op).getOperand();
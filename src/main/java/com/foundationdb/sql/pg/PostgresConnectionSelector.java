@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.sql.pg;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Connection mode of {@link PostgresServer} in which idle connections do
+ * not have a thread.
+ * Between messages, a connection's channel is registered with a
+ * <code>Selector</code>. When the client sends something, the channel
+ * is switched back to blocking and the connection is handed to a
+ * bounded pool of worker threads, which processes the waiting
+ * messages and then returns it here.
+ */
+class PostgresConnectionSelector implements Runnable {
+    private static final String SELECTOR_THREAD_NAME_PREFIX = "PostgresServer_Selector-"; // Port is appended
+    private static final String WORKER_THREAD_NAME_PREFIX = "PostgresServer_Worker-"; // Port and number appended
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresConnectionSelector.class);
+
+    private final int port;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Queue<PostgresServerConnection> pendingIdle = new ConcurrentLinkedQueue<>();
+    private final Queue<PostgresServerConnection> pendingWakeup = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = false;
+    private Thread thread;
+
+    public PostgresConnectionSelector(final int port, int workerThreads) throws IOException {
+        this.port = port;
+        this.selector = Selector.open();
+        if (workerThreads <= 0)
+            workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+        this.workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, WORKER_THREAD_NAME_PREFIX + port + "-" + count.incrementAndGet());
+                }
+            });
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, SELECTOR_THREAD_NAME_PREFIX + port);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        if (thread != null) {
+            try {
+                thread.join(500);
+                if (thread.isAlive())
+                    logger.warn("Connection selector still running.");
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        workers.shutdown();
+        try {
+            // Connections have already been stopped, so this should be quick.
+            if (!workers.awaitTermination(500, TimeUnit.MILLISECONDS))
+                logger.warn("Connection workers still running.");
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Process messages from a connection on a worker thread. */
+    public void execute(final PostgresServerConnection connection) {
+        workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    connection.processReady();
+                }
+            });
+    }
+
+    /** Wait until there is another message for a connection. */
+    public void idle(PostgresServerConnection connection) {
+        pendingIdle.add(connection);
+        selector.wakeup();
+    }
+
+    /** Give a connection that is waiting for a message a chance to run
+     * anyway, as when it is being killed. */
+    public void wakeup(PostgresServerConnection connection) {
+        pendingWakeup.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        List<PostgresServerConnection> ready = new ArrayList<>();
+        try {
+            while (running) {
+                selector.select();
+                PostgresServerConnection connection;
+                while ((connection = pendingIdle.poll()) != null) {
+                    if (connection.isKilled()) {
+                        ready.add(connection);
+                        continue;
+                    }
+                    try {
+                        SocketChannel channel = connection.getChannel();
+                        channel.configureBlocking(false);
+                        channel.register(selector, SelectionKey.OP_READ, connection);
+                    }
+                    catch (IOException | RuntimeException ex) {
+                        // Only this connection is lost, not all of them.
+                        abandon(connection, ex);
+                    }
+                }
+                while ((connection = pendingWakeup.poll()) != null) {
+                    SelectionKey key = connection.getChannel().keyFor(selector);
+                    if ((key != null) && key.isValid()) {
+                        key.cancel();
+                        ready.add(connection);
+                    }
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid()) {
+                        key.cancel();
+                        ready.add((PostgresServerConnection)key.attachment());
+                    }
+                }
+                selector.selectedKeys().clear();
+                if (ready.isEmpty()) continue;
+                // Deregister cancelled keys so the channels can block again.
+                selector.selectNow();
+                selector.selectedKeys().clear();
+                for (PostgresServerConnection readyConnection : ready) {
+                    try {
+                        readyConnection.getChannel().configureBlocking(true);
+                    }
+                    catch (IOException | RuntimeException ex) {
+                        abandon(readyConnection, ex);
+                        continue;
+                    }
+                    execute(readyConnection);
+                }
+                ready.clear();
+            }
+        }
+        catch (Exception ex) {
+            if (running)
+                logger.warn("Error in connection selector", ex);
+        }
+        finally {
+            try {
+                selector.close();
+            }
+            catch (IOException ex) {
+            }
+        }
+    }
+
+    private void abandon(PostgresServerConnection connection, Exception ex) {
+        logger.debug("Closing connection that cannot wait for messages", ex);
+        connection.stop();
+        connection.closeConnection();
+    }
+}
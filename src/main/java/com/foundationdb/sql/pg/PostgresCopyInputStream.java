@@ -97,7 +97,7 @@ public class PostgresCopyInputStream extends InputStream
             case COPY_DATA_TYPE:
                 message = messenger.getRawMessage();
                 pos = 0;
-                length = message.length;
+                length = messenger.getRawMessageLength();
                 return true;
             case COPY_DONE_TYPE:
                 return false;
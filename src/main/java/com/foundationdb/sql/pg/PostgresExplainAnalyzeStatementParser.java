@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import com.foundationdb.server.error.SQLParseException;
+import com.foundationdb.server.error.SQLParserInternalException;
+import com.foundationdb.server.error.UnableToExplainException;
+import com.foundationdb.server.error.UnsupportedExplainException;
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.optimizer.OperatorCompiler;
+import com.foundationdb.sql.parser.CursorNode;
+import com.foundationdb.sql.parser.ExplainStatementNode;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SQLParserException;
+import com.foundationdb.sql.parser.StatementNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Handle <code>EXPLAIN ANALYZE</code>, which the grammar does not
+ * have, by parsing the rest as an ordinary <code>EXPLAIN</code> that
+ * will also run the query.
+ */
+public class PostgresExplainAnalyzeStatementParser implements PostgresStatementParser
+{
+    private static final Logger logger = LoggerFactory.getLogger(PostgresExplainAnalyzeStatementParser.class);
+
+    private static final Pattern EXPLAIN_ANALYZE = 
+        Pattern.compile("\\s*EXPLAIN\\s+ANALYZE\\s+(.*)", 
+                        Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    public PostgresExplainAnalyzeStatementParser(PostgresServerSession server) {
+    }
+
+    @Override
+    public PostgresStatement parse(PostgresServerSession server,
+                                   String sql, int[] paramTypes)  {
+        Matcher matcher = EXPLAIN_ANALYZE.matcher(sql);
+        if (!matcher.matches())
+            return null;
+        OperatorCompiler compiler = (OperatorCompiler)server.getAttribute("compiler");
+        if (compiler == null)
+            throw new UnsupportedExplainException();
+        SQLParser parser = server.getParser();
+        StatementNode stmt;
+        try {
+            stmt = parser.parseStatement("EXPLAIN " + matcher.group(1));
+        }
+        catch (SQLParserException ex) {
+            throw new SQLParseException(ex);
+        }
+        catch (StandardException ex) {
+            throw new SQLParserInternalException(ex);
+        }
+        ExplainStatementNode explainStmt = (ExplainStatementNode)stmt;
+        if (!(explainStmt.getStatement() instanceof CursorNode))
+            throw new UnableToExplainException();
+        logger.debug("Explain analyze: {}", explainStmt.getStatement());
+        PostgresExplainStatement pstmt = new PostgresExplainStatement(compiler);
+        pstmt.initAnalyze(explainStmt, parser.getParameterList());
+        return pstmt;
+    }
+
+    @Override
+    public void sessionChanged(PostgresServerSession server) {
+    }
+
+}
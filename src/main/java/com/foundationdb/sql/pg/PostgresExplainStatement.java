@@ -28,7 +28,12 @@ import com.foundationdb.sql.parser.ParameterNode;
 import com.foundationdb.sql.parser.StatementNode;
 import com.foundationdb.sql.server.ServerValueEncoder;
 
+import com.foundationdb.qp.operator.ExecutionStatistics;
+import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+
+import com.foundationdb.server.error.UnableToExplainException;
 
 import com.foundationdb.server.explain.Explainable;
 import com.foundationdb.server.explain.format.DefaultFormatter;
@@ -49,6 +54,9 @@ public class PostgresExplainStatement implements PostgresStatement
     private PostgresType colType;
     private long aisGeneration;
     private TClass colTClass;
+    // For EXPLAIN ANALYZE, which is only explained once it has run.
+    private ExplainStatementNode analyzeStmt;
+    private List<ParameterNode> analyzeParams;
 
     public PostgresExplainStatement(OperatorCompiler compiler) {
         this.compiler = compiler;
@@ -68,6 +76,12 @@ public class PostgresExplainStatement implements PostgresStatement
                                    colTClass.instance(maxlen, false));
     }
 
+    public void initAnalyze(ExplainStatementNode explainStmt, List<ParameterNode> params) {
+        this.analyzeStmt = explainStmt;
+        this.analyzeParams = params;
+        init(Collections.<String>emptyList());
+    }
+
     @Override
     public PostgresType[] getParameterTypes() {
         return null;
@@ -116,6 +130,9 @@ public class PostgresExplainStatement implements PostgresStatement
         PostgresServerSession server = context.getServer();
         PostgresMessenger messenger = server.getMessenger();
         ServerValueEncoder encoder = server.getValueEncoder();
+        if (analyzeStmt != null) {
+            explanation = explain(server, context, bindings, analyzeStmt, analyzeParams, null);
+        }
         int nrows = 0;
         for (String row : explanation) {
             messenger.beginMessage(PostgresMessages.DATA_ROW_TYPE.code());
@@ -154,16 +171,37 @@ public class PostgresExplainStatement implements PostgresStatement
     @Override
     public PostgresStatement finishGenerating(PostgresServerSession server, String sql, StatementNode stmt,
                                               List<ParameterNode> params, int[] paramTypes) {
+        init(explain(server, null, null, (ExplainStatementNode)stmt, params, paramTypes));
+        compiler = null;
+        return this;
+    }
+
+    /** Compile the statement and explain it. If given a query context,
+     * for <code>EXPLAIN ANALYZE</code>, run it first to get statistics
+     * to go with the plan.
+     */
+    protected List<String> explain(PostgresServerSession server,
+                                   QueryContext analyzeContext, QueryBindings bindings,
+                                   ExplainStatementNode explainStmt,
+                                   List<ParameterNode> params, int[] paramTypes) {
         ExplainPlanContext context = new ExplainPlanContext(compiler, new PostgresQueryContext(server));
-        ExplainStatementNode explainStmt = (ExplainStatementNode)stmt;
         StatementNode innerStmt = explainStmt.getStatement();
         Explainable explainable;
         if (innerStmt instanceof CallStatementNode) {
+            if (analyzeContext != null)
+                throw new UnableToExplainException();
             explainable = PostgresCallStatementGenerator.explainable(server, (CallStatementNode)innerStmt, params, paramTypes);
         }
         else {
             BasePlannable result = compiler.compile((DMLStatementNode)innerStmt, params, context);
             explainable = result.getPlannable();
+            if (analyzeContext != null) {
+                if (result.isUpdate())
+                    throw new UnableToExplainException();
+                ExecutionStatistics statistics = new ExecutionStatistics();
+                statistics.run((Operator)explainable, analyzeContext, bindings);
+                statistics.explain((Operator)explainable, context.getExplainContext());
+            }
         }
         List<String> explain;
         if (compiler instanceof PostgresJsonCompiler) {
@@ -187,9 +225,7 @@ public class PostgresExplainStatement implements PostgresStatement
             DefaultFormatter f = new DefaultFormatter(server.getDefaultSchemaName(), detail);
             explain = f.format(explainable.getExplainer(context.getExplainContext()));
         }
-        init(explain);
-        compiler = null;
-        return this;
+        return explain;
     }
 
     @Override
@@ -38,6 +38,7 @@ public interface PostgresMXBean {
     void setStatementCacheCapacity(int capacity);
     int getStatementCacheHits();
     int getStatementCacheMisses();
+    int getStatementCacheEvictions();
     void resetStatementCache();
     
     Set<Integer> getCurrentSessions();
@@ -25,6 +25,7 @@ import com.foundationdb.util.tap.Tap;
 import java.net.*;
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  * Basic implementation of Postgres wire protocol for SQL integration.
@@ -52,14 +53,28 @@ public class PostgresMessenger implements DataInput, DataOutput
 
     private static final int IDLE_INTERVAL = 100;
 
+    // Messages are gathered into the output buffer and only written
+    // to the socket when it reaches this size, or on flush().
+    private static final int OUTPUT_WRITE_SIZE = 64 * 1024;
+    // Buffers that have grown beyond these for a large message are
+    // not kept for the next one.
+    private static final int MAX_RETAINED_INPUT = 64 * 1024;
+    private static final int MAX_RETAINED_OUTPUT = 1024 * 1024;
+
     private final Socket socket;
     private final InputStream inputStream;
     private final OutputStream outputStream;
     private final DataInputStream dataInput;
+    private byte[] inputBuffer = new byte[1024];
     private byte[] rawMessageInput;
-    private DataInputStream messageInput;
-    private ByteArrayOutputStream byteOutput;
-    private DataOutputStream messageOutput;
+    private int rawMessageLength;
+    private final MessageInputStream messageBytes = new MessageInputStream();
+    private final DataInputStream messageInput = new DataInputStream(messageBytes);
+    private final MessageOutputStream byteOutput = new MessageOutputStream();
+    private final DataOutputStream messageOutput = new DataOutputStream(byteOutput);
+    private final OutputStream rawOutput = new RawOutputStream();
+    private int messageStart = -1;
+    private int flushRows, rowsSinceWrite;
     private String encoding = "UTF-8";
 
     public PostgresMessenger(Socket socket) throws SocketException, IOException {
@@ -68,17 +83,26 @@ public class PostgresMessenger implements DataInput, DataOutput
         // So, turn off kernel delay, but wrap a buffer so every
         // message isn't its own packet.
         socket.setTcpNoDelay(true);
-        inputStream = socket.getInputStream();
+        // Buffered so that a batch of pipelined messages can be seen
+        // without another read.
+        inputStream = new BufferedInputStream(socket.getInputStream());
         dataInput = new DataInputStream(inputStream);
-        outputStream = new BufferedOutputStream(socket.getOutputStream());
+        // Not buffered: whole messages are gathered in byteOutput.
+        outputStream = socket.getOutputStream();
     }
 
     InputStream getInputStream() {
         return inputStream;
     }
 
+    /** Stream for writing outside of any message, after those already sent. */
     OutputStream getOutputStream() {
-        return outputStream;
+        return rawOutput;
+    }
+
+    /** Whether some of the next message has already been received. */
+    public boolean hasBufferedInput() throws IOException {
+        return (inputStream.available() > 0);
     }
 
     /** The encoding used for strings. */
@@ -103,6 +127,15 @@ public class PostgresMessenger implements DataInput, DataOutput
         this.encoding = newEncoding;
     }
 
+    /** The number of data rows after which output is written to the
+     * client even if the output buffer is not full, or 0 for no limit. */
+    public int getFlushRows() {
+        return flushRows;
+    }
+    public void setFlushRows(int flushRows) {
+        this.flushRows = flushRows;
+    }
+
     /** Read the next message from the stream, without any type opcode. */
     protected PostgresMessages readMessage() throws IOException {
         return readMessage(true);
@@ -147,9 +180,19 @@ public class PostgresMessenger implements DataInput, DataOutput
                 throw new IOException(String.format("Implausible message length (%d) received.", len));
             len -= 4;
             try {
-                rawMessageInput = new byte[len];
+                if (len <= inputBuffer.length) {
+                    rawMessageInput = inputBuffer;
+                }
+                else if (len <= MAX_RETAINED_INPUT) {
+                    inputBuffer = new byte[Math.max(len, inputBuffer.length * 2)];
+                    rawMessageInput = inputBuffer;
+                }
+                else {
+                    rawMessageInput = new byte[len];
+                }
+                rawMessageLength = len;
                 dataInput.readFully(rawMessageInput, 0, len);
-                messageInput = new DataInputStream(new ByteArrayInputStream(rawMessageInput));
+                messageBytes.reset(rawMessageInput, len);
             } catch (OutOfMemoryError ex) {
                 throw new IOException (String.format("Unable to allocate read buffer of length (%d)", len));
             }
@@ -162,26 +205,33 @@ public class PostgresMessenger implements DataInput, DataOutput
 
     /** Begin outgoing message of given type. */
     protected void beginMessage(int type) throws IOException {
-        byteOutput = new ByteArrayOutputStream();
-        messageOutput = new DataOutputStream(byteOutput);
+        messageStart = byteOutput.size();
         messageOutput.write(type);
         messageOutput.writeInt(0);
     }
 
-    /** Send outgoing message. */
+    /** Send outgoing message.
+     * The message is only added to the output buffer, which is written
+     * when full, after <code>flushRows</code> data rows, or on {@link #flush}.
+     */
     protected void sendMessage() throws IOException {
-        messageOutput.flush();
-        byte[] msg = byteOutput.toByteArray();
+        byte[] msg = byteOutput.buffer();
+        int type = msg[messageStart];
         
         // check we're writing an allowed message. 
-        assert PostgresMessages.writeTypeCorrect((int)msg[0]) : "Invalid write message: " + (char)msg[0];
+        assert PostgresMessages.writeTypeCorrect(type) : "Invalid write message: " + (char)type;
         
-        int len = msg.length - 1;
-        msg[1] = (byte)(len >> 24);
-        msg[2] = (byte)(len >> 16);
-        msg[3] = (byte)(len >> 8);
-        msg[4] = (byte)len;
-        outputStream.write(msg);
+        int len = byteOutput.size() - messageStart - 1;
+        msg[messageStart + 1] = (byte)(len >> 24);
+        msg[messageStart + 2] = (byte)(len >> 16);
+        msg[messageStart + 3] = (byte)(len >> 8);
+        msg[messageStart + 4] = (byte)len;
+        messageStart = -1;
+        if (type == PostgresMessages.DATA_ROW_TYPE.code())
+            rowsSinceWrite++;
+        if ((byteOutput.size() >= OUTPUT_WRITE_SIZE) ||
+            ((flushRows > 0) && (rowsSinceWrite >= flushRows)))
+            writeOutput();
     }
 
     /** Send outgoing message and optionally flush stream. */
@@ -194,6 +244,7 @@ public class PostgresMessenger implements DataInput, DataOutput
     protected void flush() throws IOException {
         try {
             xmitTap.in();
+            writeOutput();
             outputStream.flush();
         }
         finally {
@@ -201,36 +252,55 @@ public class PostgresMessenger implements DataInput, DataOutput
         }
     }
 
+    /** Write complete messages in the output buffer to the socket. */
+    protected void writeOutput() throws IOException {
+        int len = (messageStart < 0) ? byteOutput.size() : messageStart;
+        if (len > 0) {
+            outputStream.write(byteOutput.buffer(), 0, len);
+            byteOutput.remove(len);
+            if (messageStart > 0)
+                messageStart = 0;
+        }
+        rowsSinceWrite = 0;
+    }
+
     /** Save whatever portion of the current message there is so that
      * something asynchronous can be sent. */
     protected Object suspendMessage() throws IOException {
-        messageOutput.flush();
-        return byteOutput;
+        if (messageStart < 0)
+            return null;
+        byte[] partial = Arrays.copyOfRange(byteOutput.buffer(), messageStart, byteOutput.size());
+        byteOutput.truncate(messageStart);
+        messageStart = -1;
+        return partial;
     }
 
     /** Restore the state from {@link #suspendMessage}. */
     protected void resumeMessage(Object state) throws IOException {
-        byteOutput = (ByteArrayOutputStream)state;
-        messageOutput = new DataOutputStream(byteOutput);
+        if (state != null) {
+            messageStart = byteOutput.size();
+            byteOutput.write((byte[])state);
+        }
     }
 
     /** Read null-terminated string. */
     public String readString() throws IOException {
-        ByteArrayOutputStream bs = new ByteArrayOutputStream();
-        while (true) {
-            int b = messageInput.read();
-            if (b < 0) throw new IOException("EOF in the middle of a string");
-            if (b == 0) break;
-            bs.write(b);
-        }
-        return bs.toString(encoding);
+        String s = messageBytes.readString(encoding);
+        if (s == null) throw new IOException("EOF in the middle of a string");
+        return s;
     }
 
-    /** Return entire message body. */
+    /** Return entire message body, which is the first
+     * <code>getRawMessageLength()</code> bytes of the array.
+     * The array may be reused by the next message. */
     public byte[] getRawMessage() {
         return rawMessageInput;
     }
 
+    public int getRawMessageLength() {
+        return rawMessageLength;
+    }
+
     /** Get the raw stream for current message. */
     public OutputStream getRawOutput() {
         return messageOutput;
@@ -356,4 +426,72 @@ public class PostgresMessenger implements DataInput, DataOutput
     public void idle() {
     }
 
+    /** The current input message, reading in place. */
+    static class MessageInputStream extends ByteArrayInputStream {
+        public MessageInputStream() {
+            super(new byte[0]);
+        }
+
+        public void reset(byte[] buf, int length) {
+            this.buf = buf;
+            this.pos = 0;
+            this.count = length;
+            this.mark = 0;
+        }
+
+        /** Read a null-terminated string, or <code>null</code> if there is no null. */
+        public String readString(String encoding) throws IOException {
+            for (int i = pos; i < count; i++) {
+                if (buf[i] == 0) {
+                    String s = new String(buf, pos, i - pos, encoding);
+                    pos = i + 1;
+                    return s;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Pending output messages, which can be updated in place. */
+    static class MessageOutputStream extends ByteArrayOutputStream {
+        public MessageOutputStream() {
+            super(8192);
+        }
+
+        public byte[] buffer() {
+            return buf;
+        }
+
+        public void truncate(int length) {
+            count = length;
+        }
+
+        /** Remove the first <code>length</code> bytes. */
+        public void remove(int length) {
+            count -= length;
+            if (count > 0)
+                System.arraycopy(buf, length, buf, 0, count);
+            else if (buf.length > MAX_RETAINED_OUTPUT)
+                buf = new byte[8192];
+        }
+    }
+
+    /** Output outside of any message, such as the SSL response. */
+    class RawOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            byteOutput.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            byteOutput.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            PostgresMessenger.this.flush();
+        }
+    }
+
 }
@@ -105,7 +105,32 @@ public class PostgresOperatorStatement extends PostgresBaseOperatorStatement
             cursor = context.startCursor(this, bindings);
             PostgresOutputter<Row> outputter = getRowOutputter(context);
             outputter.beforeData();
-            if (cursor != null) {
+            int batchSize = server.getPipelineConfiguration().getBatchSize();
+            if ((cursor instanceof BatchCursor) && (batchSize > 1)) {
+                RowBatch batch = new RowBatch(batchSize);
+                while (true) {
+                    if (maxrows > 0) {
+                        // Do not read ahead of a suspended portal.
+                        batch.setCapacity(Math.min(batchSize, maxrows - nrows));
+                    }
+                    ((BatchCursor)cursor).nextBatch(batch);
+                    for (int i = 0; i < batch.size(); i++) {
+                        Row row = batch.get(i);
+                        assert (getResultRowType() == null) || (row.rowType() == getResultRowType()) : row;
+                        outputter.output(row);
+                        nrows++;
+                    }
+                    if (batch.isEnd()) {
+                        break;
+                    }
+                    if ((maxrows > 0) && (nrows >= maxrows)) {
+                        suspended = true;
+                        break;
+                    }
+                }
+                batch.clear();
+            }
+            else if (cursor != null) {
                 Row row;
                 while ((row = cursor.next()) != null) {
                     assert (getResultRowType() == null) || (row.rowType() == getResultRowType()) : row;
@@ -30,8 +30,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -49,7 +51,8 @@ import javax.security.auth.login.LoginException;
 
 /** The PostgreSQL server.
  * Listens of a given port and spawns <code>PostgresServerConnection</code> threads
- * to process requests.
+ * to process requests, or, in NIO mode, runs them on a pool of worker
+ * threads when they have something to do.
  * Also keeps global state for shutdown and inter-connection communication like cancel.
 */
 public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
@@ -83,6 +86,9 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
     private Subject gssLogin;
     private final int slowLimit;
     private final int hardLimit;
+    private final boolean nio;
+    private final int workerThreads;
+    private volatile PostgresConnectionSelector connectionSelector;
 
     private static final Logger logger = LoggerFactory.getLogger(PostgresServer.class);
 
@@ -100,6 +106,8 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         
         slowLimit = Integer.parseInt(properties.getProperty("connection_slow_limit", "250"));
         hardLimit = Integer.parseInt(properties.getProperty("connection_hard_limit", "500"));
+        nio = Boolean.parseBoolean(properties.getProperty("nio", "false"));
+        workerThreads = Integer.parseInt(properties.getProperty("worker_threads", "0"));
     }
 
     public Properties getProperties() {
@@ -110,6 +118,11 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         return port;
     }
 
+    /** The selector for idle connections in NIO mode, else <code>null</code>. */
+    PostgresConnectionSelector getConnectionSelector() {
+        return connectionSelector;
+    }
+
     /** Called from the (Main's) main thread to start a server
         running in its own thread. */
     public void start() {
@@ -146,6 +159,11 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
             connection.stop();
         }
 
+        PostgresConnectionSelector selector = connectionSelector;
+        if (selector != null) {
+            selector.stop();
+        }
+
         if (thread != null) {
             try {
                 // Wait a bit, but don't hang up shutdown if thread is wedged.
@@ -168,7 +186,17 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
             reqs.monitor().registerServerMonitor(this);
             synchronized(this) {
                 if (!running) return;
-                socket = new ServerSocket(port);
+                if (nio) {
+                    // Accept from a channel, so that connections have channels too.
+                    ServerSocketChannel channel = ServerSocketChannel.open();
+                    socket = channel.socket();
+                    socket.bind(new InetSocketAddress(port));
+                    connectionSelector = new PostgresConnectionSelector(port, workerThreads);
+                    connectionSelector.start();
+                }
+                else {
+                    socket = new ServerSocket(port);
+                }
                 listening = true;
             }
             while (running) {
@@ -274,7 +302,7 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
         ObjectLongPair fullKey = new ObjectLongPair(key, aisGeneration);
         ServerStatementCache<PostgresStatement> statementCache;
         synchronized (statementCaches) {
-            statementCache = statementCaches.get(key);
+            statementCache = statementCaches.get(fullKey);
             if (statementCache == null) {
                 // No cache => recent DDL, reasonable time to do a little cleaning
                 cleanStatementCaches();
@@ -312,6 +340,11 @@ public class PostgresServer implements Runnable, PostgresMXBean, ServerMonitor {
     public int getStatementCacheMisses() {
         return cacheCounters.getMisses();
     }
+
+    @Override
+    public int getStatementCacheEvictions() {
+        return cacheCounters.getEvictions();
+    }
     
     @Override
     public void resetStatementCache() {
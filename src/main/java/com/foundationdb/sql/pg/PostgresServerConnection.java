@@ -53,15 +53,18 @@ import javax.security.auth.Subject;
 import javax.security.auth.login.LoginException;
 
 import java.net.*;
+import java.nio.channels.SocketChannel;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Connection to a Postgres server client.
- * Runs in its own thread; has its own Main Session.
+ * Runs in its own thread, or, in NIO mode, on a worker thread whenever
+ * there is a message from the client; has its own Main Session.
  *
  */
 public class PostgresServerConnection extends ServerSessionBase
@@ -74,7 +77,10 @@ public class PostgresServerConnection extends ServerSessionBase
     private static final String MD5_SALT = "MD5_SALT";
 
     private final PostgresServer server;
-    private boolean running = false, ignoreUntilSync = false;
+    private volatile boolean running = false;
+    private boolean ignoreUntilSync = false, startupComplete = false;
+    private volatile boolean waiting = false;
+    private final AtomicBoolean closed = new AtomicBoolean();
     private Socket socket;
     private PostgresMessenger messenger;
     private ServerValueEncoder valueEncoder;
@@ -132,8 +138,14 @@ public class PostgresServerConnection extends ServerSessionBase
 
     public void start() {
         running = true;
-        thread = new Thread(this, THREAD_NAME_PREFIX + sessionId);
-        thread.start();
+        PostgresConnectionSelector selector = server.getConnectionSelector();
+        if (selector != null) {
+            selector.execute(this);
+        }
+        else {
+            thread = new Thread(this, THREAD_NAME_PREFIX + sessionId);
+            thread.start();
+        }
     }
 
     public void stop() {
@@ -144,6 +156,10 @@ public class PostgresServerConnection extends ServerSessionBase
         }
         catch (IOException ex) {
         }
+        if (waiting) {
+            // No thread to notice.
+            closeConnection();
+        }
         if ((thread != null) && (thread != Thread.currentThread())) {
             try {
                 // Wait a bit, but don't hang up shutdown if thread is wedged.
@@ -159,8 +175,12 @@ public class PostgresServerConnection extends ServerSessionBase
     }
 
     public void run() {
+        boolean attached = false;
         try {
-            createMessenger();
+            // May be continuing a transaction from an NIO worker.
+            attached = reqs.txnService().attachToThread(session);
+            if (messenger == null)
+                createMessenger();
             topLevel();
         }
         catch (Exception ex) {
@@ -176,6 +196,92 @@ public class PostgresServerConnection extends ServerSessionBase
             }
             catch (IOException ex) {
             }
+            if (attached)
+                reqs.txnService().detachFromThread(session);
+        }
+    }
+
+    /** In NIO mode, process messages that have arrived. Called on a
+     * worker thread by the {@link PostgresConnectionSelector}.
+     */
+    protected void processReady() {
+        boolean handedOff = false;
+        boolean attached = false;
+        waiting = false;
+        try {
+            // A transaction left open by the last batch may have
+            // been run by another worker.
+            attached = reqs.txnService().attachToThread(session);
+            if (messenger == null) {
+                createMessenger();
+                logger.debug("Connect from {}", socket.getRemoteSocketAddress());
+            }
+            do {
+                processMessage();
+                // Keep the thread for the rest of a pipelined batch,
+                // but not while waiting, even inside a transaction.
+            } while (running && messenger.hasBufferedInput());
+            if (attached) {
+                // Before another thread can pick the connection up.
+                reqs.txnService().detachFromThread(session);
+                attached = false;
+            }
+            if (running) {
+                if (socket instanceof SSLSocket) {
+                    // Encrypted data can be buffered inside the
+                    // socket, where a selector cannot see it.
+                    thread = new Thread(this, THREAD_NAME_PREFIX + sessionId);
+                    thread.start();
+                }
+                else {
+                    waiting = true;
+                    server.getConnectionSelector().idle(this);
+                    if (!running) {
+                        // Stopped in the meantime and may not have seen waiting.
+                        closeConnection();
+                    }
+                }
+                handedOff = true;
+            }
+        }
+        catch (Exception ex) {
+            if (running)
+                logger.warn("Error in server", ex);
+        } catch (Throwable ex) {
+            logger.error("Error in server {}", ex);
+        }
+        finally {
+            if (!handedOff) {
+                try {
+                    socket.close();
+                }
+                catch (IOException ex) {
+                }
+                closeConnection();
+            }
+            if (attached)
+                reqs.txnService().detachFromThread(session);
+        }
+    }
+
+    protected SocketChannel getChannel() {
+        return socket.getChannel();
+    }
+
+    /** Has this connection been asked to terminate? */
+    protected boolean isKilled() {
+        return (cancelForKillReason != null);
+    }
+
+    protected void checkKilled() {
+        if (cancelForKillReason != null) {
+            String msg = cancelForKillReason;
+            cancelForKillReason = null;
+            if (cancelByUser != null) {
+                msg += " by " + cancelByUser;
+                cancelByUser = null;
+            }
+            throw new ConnectionTerminatedException(msg);
         }
     }
 
@@ -195,134 +301,145 @@ public class PostgresServerConnection extends ServerSessionBase
 
                 @Override
                 public void idle() {
-                    if (cancelForKillReason != null) {
-                        String msg = cancelForKillReason;
-                        cancelForKillReason = null;
-                        if (cancelByUser != null) {
-                            msg += " by " + cancelByUser;
-                            cancelByUser = null;
-                        }
-                        throw new ConnectionTerminatedException(msg);
-                    }
+                    checkKilled();
                 }
             };
     }
 
     protected void topLevel() throws IOException, Exception {
         logger.debug("Connect from {}" + socket.getRemoteSocketAddress());
-        boolean startupComplete = false;
         try {
             while (running) {
-                READ_MESSAGE.in();
-                PostgresMessages type;
-                try {
-                    type = messenger.readMessage(startupComplete);
-                } catch (ConnectionTerminatedException ex) {
-                    logger.debug("About to terminate", ex);
-                    notifyClient(QueryContext.NotificationLevel.WARNING,
-                                 ex.getCode(), ex.getShortMessage());
-                    stop();
-                    continue;
-                } finally {
-                    READ_MESSAGE.out();
-                }
-                PROCESS_MESSAGE.in();
-                if (ignoreUntilSync) {
-                    if ((type != PostgresMessages.EOF_TYPE) && (type != PostgresMessages.SYNC_TYPE))
-                        continue;
-                    ignoreUntilSync = false;
-                }
-                long startNsec = System.nanoTime();
-                try {
-                    switch (type) {
-                    case EOF_TYPE: // EOF
-                        stop();
-                        break;
-                    case SYNC_TYPE:
-                        readyForQuery();
-                        break;
-                    case STARTUP_MESSAGE_TYPE:
-                        startupComplete = processStartupMessage();
-                        break;
-                    case PASSWORD_MESSAGE_TYPE:
-                        processPasswordMessage();
-                        break;
-                    case QUERY_TYPE:
-                        processQuery();
-                        break;
-                    case PARSE_TYPE:
-                        processParse();
-                        break;
-                    case BIND_TYPE:
-                        processBind();
-                        break;
-                    case DESCRIBE_TYPE:
-                        processDescribe();
-                        break;
-                    case EXECUTE_TYPE:
-                        processExecute();
-                        break;
-                    case FLUSH_TYPE:
-                        processFlush();
-                        break;
-                    case CLOSE_TYPE:
-                        processClose();
-                        break;
-                    case TERMINATE_TYPE:
-                        processTerminate();
-                        break;
-                    }
-                } catch (QueryCanceledException ex) {
-                    InvalidOperationException nex = ex;
-                    boolean forKill = false;
-                    if (cancelForKillReason != null) {
-                        nex = new ConnectionTerminatedException(cancelForKillReason);
-                        nex.initCause(ex);
-                        cancelForKillReason = null;
-                        forKill = true;
-                    }
-                    logError(ErrorLogLevel.INFO, "Query {} canceled", nex);
-                    String msg = nex.getShortMessage();
-                    if (cancelByUser != null) {
-                        if (!forKill) msg = "Query canceled";
-                        msg += " by " + cancelByUser;
-                        cancelByUser = null;
-                    }
-                    sendErrorResponse(type, nex, nex.getCode(), msg);
-                    if (forKill) stop();
-                } catch (ConnectionTerminatedException ex) {
-                    logError(ErrorLogLevel.DEBUG, "Query {} terminated self", ex);
-                    sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
-                    stop();
-                } catch (InvalidOperationException ex) {
-                    logError(ErrorLogLevel.WARN, "Error in query {} => {}", ex);
-                    sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
-                } catch (Exception ex) {
-                    logError(ErrorLogLevel.WARN, "Unexpected error in query {}", ex);
-                    String message = (ex.getMessage() == null ? ex.getClass().toString() : ex.getMessage());
-                    sendErrorResponse(type, ex, ErrorCode.UNEXPECTED_EXCEPTION, message);
-                } catch (AssertionError ex) {
-                    logError(ErrorLogLevel.WARN, "Assertion in query {}", ex);
-                    throw ex;
-                }
-                finally {
-                    long stopNsec = System.nanoTime();
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Executed {}: {} usec", type, (stopNsec - startNsec) / 1000);
-                    }
-                }
-                PROCESS_MESSAGE.out();
+                processMessage();
+            }
+        }
+        finally {
+            closeConnection();
+        }
+    }
+
+    protected void processMessage() throws IOException, Exception {
+        READ_MESSAGE.in();
+        PostgresMessages type;
+        try {
+            checkKilled();
+            type = messenger.readMessage(startupComplete);
+        } catch (ConnectionTerminatedException ex) {
+            logger.debug("About to terminate", ex);
+            notifyClient(QueryContext.NotificationLevel.WARNING,
+                         ex.getCode(), ex.getShortMessage());
+            stop();
+            return;
+        } finally {
+            READ_MESSAGE.out();
+        }
+        PROCESS_MESSAGE.in();
+        if (ignoreUntilSync) {
+            if ((type != PostgresMessages.EOF_TYPE) && (type != PostgresMessages.SYNC_TYPE))
+                return;
+            ignoreUntilSync = false;
+        }
+        long startNsec = System.nanoTime();
+        try {
+            switch (type) {
+            case EOF_TYPE: // EOF
+                stop();
+                break;
+            case SYNC_TYPE:
+                readyForQuery();
+                break;
+            case STARTUP_MESSAGE_TYPE:
+                startupComplete = processStartupMessage();
+                break;
+            case PASSWORD_MESSAGE_TYPE:
+                processPasswordMessage();
+                break;
+            case QUERY_TYPE:
+                processQuery();
+                break;
+            case PARSE_TYPE:
+                processParse();
+                break;
+            case BIND_TYPE:
+                processBind();
+                break;
+            case DESCRIBE_TYPE:
+                processDescribe();
+                break;
+            case EXECUTE_TYPE:
+                processExecute();
+                break;
+            case FLUSH_TYPE:
+                processFlush();
+                break;
+            case CLOSE_TYPE:
+                processClose();
+                break;
+            case TERMINATE_TYPE:
+                processTerminate();
+                break;
+            }
+        } catch (QueryCanceledException ex) {
+            InvalidOperationException nex = ex;
+            boolean forKill = false;
+            if (cancelForKillReason != null) {
+                nex = new ConnectionTerminatedException(cancelForKillReason);
+                nex.initCause(ex);
+                cancelForKillReason = null;
+                forKill = true;
             }
+            logError(ErrorLogLevel.INFO, "Query {} canceled", nex);
+            String msg = nex.getShortMessage();
+            if (cancelByUser != null) {
+                if (!forKill) msg = "Query canceled";
+                msg += " by " + cancelByUser;
+                cancelByUser = null;
+            }
+            sendErrorResponse(type, nex, nex.getCode(), msg);
+            if (forKill) stop();
+        } catch (ConnectionTerminatedException ex) {
+            logError(ErrorLogLevel.DEBUG, "Query {} terminated self", ex);
+            sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
+            stop();
+        } catch (InvalidOperationException ex) {
+            logError(ErrorLogLevel.WARN, "Error in query {} => {}", ex);
+            sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
+        } catch (Exception ex) {
+            logError(ErrorLogLevel.WARN, "Unexpected error in query {}", ex);
+            String message = (ex.getMessage() == null ? ex.getClass().toString() : ex.getMessage());
+            sendErrorResponse(type, ex, ErrorCode.UNEXPECTED_EXCEPTION, message);
+        } catch (AssertionError ex) {
+            logError(ErrorLogLevel.WARN, "Assertion in query {}", ex);
+            throw ex;
         }
         finally {
-            if (transaction != null) {
+            long stopNsec = System.nanoTime();
+            if (logger.isTraceEnabled()) {
+                logger.trace("Executed {}: {} usec", type, (stopNsec - startNsec) / 1000);
+            }
+        }
+        PROCESS_MESSAGE.out();
+    }
+
+    /** Release the resources of a connection that has stopped. */
+    protected void closeConnection() {
+        if (!closed.compareAndSet(false, true))
+            return;
+        if (transaction != null) {
+            // An idle connection can be stopped from any thread.
+            boolean attached = reqs.txnService().attachToThread(session);
+            try {
                 transaction.abort();
-                transaction = null;
             }
-            server.removeConnection(sessionId);
-            reqs.monitor().deregisterSessionMonitor(sessionMonitor, session);
-            logger.debug("Disconnect");
+            finally {
+                if (attached)
+                    reqs.txnService().detachFromThread(session);
+            }
+            transaction = null;
         }
+        server.removeConnection(sessionId);
+        reqs.monitor().deregisterSessionMonitor(sessionMonitor, session);
+        logger.debug("Disconnect");
     }
 
     private enum ErrorLogLevel { WARN, INFO, DEBUG };
@@ -601,7 +718,7 @@ public class PostgresServerConnection extends ServerSessionBase
                     throw new AuthenticationFailedException("Protocol error: not password message");
                 }
                 byte[] token = messenger.getRawMessage(); // Note: not a String.
-                token = serverContext.acceptSecContext(token, 0, token.length);
+                token = serverContext.acceptSecContext(token, 0, messenger.getRawMessageLength());
                 if (token != null) {
                     messenger.beginMessage(PostgresMessages.AUTHENTICATION_TYPE.code());
                     messenger.writeInt(PostgresMessenger.AUTHENTICATION_GSS_CONTINUE);
@@ -944,9 +1061,15 @@ public class PostgresServerConnection extends ServerSessionBase
         if (session != null) {
             session.cancelCurrentQuery(true);
         }
-        if (thread != null) {
+        if ((thread != null) && (getChannel() == null)) {
+            // Interrupting a thread blocked on a channel would close it.
             thread.interrupt();
         }
+        if (waiting) {
+            PostgresConnectionSelector selector = server.getConnectionSelector();
+            if (selector != null)
+                selector.wakeup(this);
+        }
     }
 
     public void waitAndStop() {
@@ -1004,7 +1127,8 @@ public class PostgresServerConnection extends ServerSessionBase
 
         unparsedGenerators = new PostgresStatementParser[] {
             new PostgresEmulatedMetaDataStatementParser(this),
-            new PostgresEmulatedSessionStatementParser(this)
+            new PostgresEmulatedSessionStatementParser(this),
+            new PostgresExplainAnalyzeStatementParser(this)
         };
         parsedGenerators = new PostgresStatementGenerator[] {
             // Can be ordered by frequency so long as there is no overlap.
@@ -1022,14 +1146,23 @@ public class PostgresServerConnection extends ServerSessionBase
     }
 
     protected ServerStatementCache<PostgresStatement>  getStatementCache() {
-        // Statement cache depends on some connection settings.
+        // Statement cache depends on connection settings. Those not
+        // set by this connection are the same for all of them.
         return server.getStatementCache(Arrays.asList(parser.getFeatures(),
                                                       defaultSchemaName,
-                                                      getProperty("OutputFormat", "table"),
-                                                      getProperty("optimizerDummySetting")),
+                                                      sessionPropertiesKey()),
                                         ais.getGeneration());
     }
 
+    protected Map<String,String> sessionPropertiesKey() {
+        Map<String,String> result = new TreeMap<>();
+        for (Map.Entry<Object,Object> entry : properties.entrySet()) {
+            // Just this connection's own, not the inherited defaults.
+            result.put((String)entry.getKey(), (String)entry.getValue());
+        }
+        return result;
+    }
+
     @Override
     protected void sessionChanged() {
         if (parsedGenerators == null) return; // setAttribute() from generator's ctor.
@@ -1329,6 +1462,15 @@ public class PostgresServerConnection extends ServerSessionBase
         if ("zeroDateTimeBehavior".equals(key)) {
             valueEncoder = null; // Also depends on this.
         }
+        if ("flushRows".equals(key)) {
+            try {
+                messenger.setFlushRows((value == null) ? 0 : Integer.parseInt(value));
+            }
+            catch (NumberFormatException ex) {
+                throw new InvalidParameterValueException("invalid flushRows '" + value + "'");
+            }
+            return true;
+        }
         return super.propertySet(key, value);
     }
     
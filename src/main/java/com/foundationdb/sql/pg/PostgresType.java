@@ -58,7 +58,7 @@ public class PostgresType extends ServerType
         INT2VECTOR_TYPE_OID(22, "int2vector"),
         INT4_TYPE_OID(23, "int4", BinaryEncoding.INT_32, Types.INTEGER),
         REGPROC_TYPE_OID(24, "regproc"),
-        TEXT_TYPE_OID(25, "text"),
+        TEXT_TYPE_OID(25, "text", BinaryEncoding.STRING_BYTES, Types.LONGVARCHAR),
         OID_TYPE_OID(26, "oid"),
         TID_TYPE_OID(27, "tid"),
         XID_TYPE_OID(28, "xid"),
@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class CacheCounters {
     private final AtomicInteger hits = new AtomicInteger(0);
     private final AtomicInteger misses = new AtomicInteger(0);
+    private final AtomicInteger evictions = new AtomicInteger(0);
 
     public void incrementHits() {
         hits.incrementAndGet();
@@ -31,6 +32,10 @@ public class CacheCounters {
         misses.incrementAndGet();
     }
 
+    public void incrementEvictions() {
+        evictions.incrementAndGet();
+    }
+
     public int getHits() {
         return hits.get();
     }
@@ -39,8 +44,13 @@ public class CacheCounters {
         return misses.get();
     }
 
+    public int getEvictions() {
+        return evictions.get();
+    }
+
     public void reset() {
         hits.set(0);
         misses.set(0);
+        evictions.set(0);
     }
 }
@@ -118,6 +118,9 @@ public interface ServerSession
     /** Is a transaction marked rollback-only? */
     public boolean isTransactionRollbackPending();
 
+    /** Is the open transaction one begun just for the statement being executed? */
+    public boolean isTransactionLocal();
+
     /** Begin a new transaction. */
     public void beginTransaction();
 
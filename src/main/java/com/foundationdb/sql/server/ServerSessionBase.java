@@ -64,6 +64,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
     protected Map<StoreAdapter.AdapterType, StoreAdapter> adapters = 
         new HashMap<>();
     protected ServerTransaction transaction;
+    protected boolean transactionLocal;
     protected boolean transactionDefaultReadOnly = false;
     protected boolean transactionPeriodicallyCommit = false;
     protected ServerSessionMonitor sessionMonitor;
@@ -230,6 +231,11 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
         return ((transaction != null) && transaction.isRollbackPending());
     }
 
+    @Override
+    public boolean isTransactionLocal() {
+        return ((transaction != null) && transactionLocal);
+    }
+
     @Override
     public void beginTransaction() {
         if (transaction != null)
@@ -376,6 +382,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
             case NEW:
                 transaction = new ServerTransaction(this, true, false);
                 localTransaction = true;
+                transactionLocal = true;
                 break;
             case WRITE:
             case NEW_WRITE:
@@ -384,6 +391,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
                 transaction = new ServerTransaction(this, false, false);
                 transaction.beforeUpdate();
                 localTransaction = true;
+                transactionLocal = true;
                 break;
             }
         }
@@ -408,6 +416,7 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
                                 boolean localTransaction,
                                 boolean success) {
         if (localTransaction) {
+            transactionLocal = false;
             if (success)
                 commitTransaction();
             else
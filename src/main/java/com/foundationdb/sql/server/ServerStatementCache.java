@@ -19,30 +19,46 @@ package com.foundationdb.sql.server;
 
 import com.foundationdb.server.util.LRUCacheMap;
 
+import java.util.Map;
+
 /**
- * Cache of parsed statements.
+ * Cache of parsed statements, shared by all the sessions with the same settings.
+ * <p/>
+ * Entries are spread over several independently locked LRU segments by the hash of
+ * their SQL, so that concurrent sessions do not all contend for one lock. Small
+ * caches keep a single segment, for exact LRU behavior.
  */
 public class ServerStatementCache<T extends ServerStatement>
 {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 32;
+
     private final CacheCounters counters;
-    private final LRUCacheMap<String,T> cache;
+    private volatile int capacity;
+    private volatile Segment<T>[] segments;
 
     public ServerStatementCache(CacheCounters counters, int size) {
         this.counters = counters;
-        this.cache = new LRUCacheMap<>(size);
+        this.capacity = size;
+        this.segments = createSegments(size);
     }
 
     public int getCapacity() {
-        return cache.getCapacity();
+        return capacity;
     }
 
     public synchronized void setCapacity(int capacity) {
-        cache.setCapacity(capacity);
-        cache.clear();
+        this.capacity = capacity;
+        this.segments = createSegments(capacity);
     }
 
-    public synchronized T get(String sql) {
-        T entry = cache.get(sql);
+    public T get(String sql) {
+        String key = cacheKey(sql);
+        Segment<T> segment = segment(key);
+        T entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+        }
         if (entry != null)
             counters.incrementHits();
         else
@@ -50,17 +66,120 @@ public class ServerStatementCache<T extends ServerStatement>
         return entry;
     }
 
-    public synchronized void put(String sql, T stmt) {
+    public void put(String sql, T stmt) {
         // TODO: Count number of times this is non-null, meaning that
         // two threads computed the same statement?
-        cache.put(sql, stmt);
+        String key = cacheKey(sql);
+        Segment<T> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, stmt);
+        }
+    }
+
+    public void invalidate() {
+        clear();
+    }
+
+    public void reset() {
+        clear();
+    }
+
+    /**
+     * Normalize the SQL text for use as a key, so that statements that differ only
+     * in layout share an entry. Runs of whitespace become a single space. Text that
+     * this cannot safely tokenize here, because of comments, escapes or dollar quoting,
+     * is only trimmed.
+     */
+    protected static String cacheKey(String sql) {
+        int len = sql.length();
+        StringBuilder str = null;
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < len; i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                if (ch == quote)
+                    quote = 0;
+            }
+            else if (Character.isWhitespace(ch)) {
+                if (str == null) {
+                    // Only allocate once something needs to change.
+                    if ((i > 0) && (ch == ' ') && !Character.isWhitespace(sql.charAt(i - 1)) &&
+                        (i + 1 < len) && !Character.isWhitespace(sql.charAt(i + 1)))
+                        continue;
+                    str = new StringBuilder(len);
+                    str.append(sql, 0, i);
+                }
+                space = true;
+                continue;
+            }
+            else {
+                switch (ch) {
+                case '\\':
+                case '$':
+                    return sql.trim();
+                case '-':
+                case '/':
+                    if ((i + 1 < len) && ((sql.charAt(i + 1) == '-') || (sql.charAt(i + 1) == '*')))
+                        return sql.trim();
+                    break;
+                case '\'':
+                case '"':
+                case '`':
+                    quote = ch;
+                    break;
+                }
+            }
+            if (str != null) {
+                if (space && (str.length() > 0))
+                    str.append(' ');
+                str.append(ch);
+            }
+            space = false;
+        }
+        if (quote != 0)
+            return sql.trim();
+        return (str == null) ? sql : str.toString();
+    }
+
+    private void clear() {
+        for (Segment<T> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
     }
 
-    public synchronized void invalidate() {
-        cache.clear();
+    private Segment<T> segment(String key) {
+        Segment<T>[] segments = this.segments;
+        return segments[(key.hashCode() & Integer.MAX_VALUE) % segments.length];
     }
 
-    public synchronized void reset() {
-        cache.clear();
+    @SuppressWarnings("unchecked")
+    private Segment<T>[] createSegments(int capacity) {
+        int nsegments = Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_CAPACITY));
+        Segment<T>[] result = new Segment[nsegments];
+        for (int i = 0; i < nsegments; i++) {
+            // Spread any remainder over the first few.
+            result[i] = new Segment<>(counters, capacity / nsegments + ((i < capacity % nsegments) ? 1 : 0));
+        }
+        return result;
+    }
+
+    static class Segment<T> extends LRUCacheMap<String,T> {
+        private final CacheCounters counters;
+
+        public Segment(CacheCounters counters, int capacity) {
+            super(capacity);
+            this.counters = counters;
+        }
+
+        @Override
+        public boolean removeEldestEntry(Map.Entry entry) {
+            boolean evict = super.removeEldestEntry(entry);
+            if (evict)
+                counters.incrementEvictions();
+            return evict;
+        }
     }
 }
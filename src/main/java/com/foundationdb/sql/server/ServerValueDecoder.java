@@ -31,9 +31,11 @@ import com.foundationdb.server.types.value.ValueSources;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.sql.Types;
 import java.util.Collections;
-import java.io.*;
+import java.io.UnsupportedEncodingException;
 
 /** Decode values from external representation into query bindings. */
 public class ServerValueDecoder
@@ -86,16 +88,16 @@ public class ServerValueDecoder
                     // Go by the length sent rather than the implied type.
                     switch (encoded.length) {
                     case 1:
-                        lvalue = getDataStream(encoded).read();
+                        lvalue = encoded[0];
                         break;
                     case 2:
-                        lvalue = getDataStream(encoded).readShort();
+                        lvalue = getShort(encoded, 0);
                         break;
                     case 4:
-                        lvalue = getDataStream(encoded).readInt();
+                        lvalue = getInt(encoded, 0);
                         break;
                     case 8:
-                        lvalue = getDataStream(encoded).readLong();
+                        lvalue = getLong(encoded, 0);
                         break;
                     default:
                         throw new AkibanInternalException("Not an integer size: " + encoded);
@@ -103,10 +105,10 @@ public class ServerValueDecoder
                     lvalueType = Types.BIGINT;
                     break;
                 case FLOAT_32:
-                    value = getDataStream(encoded).readFloat();
+                    value = Float.intBitsToFloat(getInt(encoded, 0));
                     break;
                 case FLOAT_64:
-                    value = getDataStream(encoded).readDouble();
+                    value = Double.longBitsToDouble(getLong(encoded, 0));
                     break;
                 case STRING_BYTES:
                     value = new String(encoded, encoding);
@@ -116,7 +118,7 @@ public class ServerValueDecoder
                     break;
                 case TIMESTAMP_FLOAT64_SECS_2000_NOTZ:
                     {
-                        double dsecs = getDataStream(encoded).readDouble();
+                        double dsecs = Double.longBitsToDouble(getLong(encoded, 0));
                         long secs = (long)dsecs;
                         lvalue = seconds2000NoTZ(secs);
                         nanos = (int)((dsecs - secs) * 1.0e9);
@@ -125,7 +127,7 @@ public class ServerValueDecoder
                     break;
                 case TIMESTAMP_INT64_MICROS_2000_NOTZ:
                     {
-                        long micros = getDataStream(encoded).readLong();
+                        long micros = getLong(encoded, 0);
                         long secs = micros / 1000000;
                         lvalue = seconds2000NoTZ(secs);
                         nanos = (int)(micros - secs * 1000000) * 1000;
@@ -133,36 +135,27 @@ public class ServerValueDecoder
                     }
                     break;
                 case DAYS_2000:
-                    lvalue = days2000(getDataStream(encoded).readInt());
+                    lvalue = days2000(getInt(encoded, 0));
                     lvalueType = Types.DATE;
                     break;
                 case TIME_FLOAT64_SECS_NOTZ:
-                    lvalue = timeSecsNoTZ((int)getDataStream(encoded).readDouble());
+                    lvalue = timeSecsNoTZ((int)Double.longBitsToDouble(getLong(encoded, 0)));
                     lvalueType = Types.TIME;
                     break;
                 case TIME_INT64_MICROS_NOTZ:
-                    lvalue = timeSecsNoTZ((int)(getDataStream(encoded).readLong() / 1000000L));
+                    lvalue = timeSecsNoTZ((int)(getLong(encoded, 0) / 1000000L));
                     lvalueType = Types.TIME;
                     break;
                 case DECIMAL_PG_NUMERIC_VAR:
-                    {
-                        DataInputStream dstr = getDataStream(encoded);
-                        short ndigits = dstr.readShort();
-                        short[] digits = new short[ndigits + 4];
-                        digits[0] = ndigits;
-                        for (int i = 1; i < digits.length; i++) {
-                            digits[i] = dstr.readShort();
-                        }
-                        value = pgNumericVar(digits);
-                    }
+                    value = pgNumericVar(encoded);
                     break;
                 }
             }
             catch (UnsupportedEncodingException ex) {
                 throw new UnsupportedCharsetException("", "", encoding);
             }
-            catch (IOException ex) {
-                throw new AkibanInternalException("IO error reading from byte array", ex);
+            catch (ArrayIndexOutOfBoundsException ex) {
+                throw new AkibanInternalException("Binary value too short: " + encoded.length + " bytes", ex);
             }
         }
         if (lvalueType != Types.NULL) {
@@ -221,8 +214,20 @@ public class ServerValueDecoder
         bindings.setValue(index, source);
     }
 
-    private static DataInputStream getDataStream(byte[] bytes) {
-        return new DataInputStream(new ByteArrayInputStream(bytes));
+    // Network (big-endian) order, as DataInputStream would read them,
+    // but without allocating a stream for each value.
+
+    private static short getShort(byte[] bytes, int off) {
+        return (short)(((bytes[off] & 0xFF) << 8) | (bytes[off + 1] & 0xFF));
+    }
+
+    private static int getInt(byte[] bytes, int off) {
+        return ((bytes[off] & 0xFF) << 24) | ((bytes[off + 1] & 0xFF) << 16) |
+               ((bytes[off + 2] & 0xFF) << 8) | (bytes[off + 3] & 0xFF);
+    }
+
+    private static long getLong(byte[] bytes, int off) {
+        return ((long)getInt(bytes, off) << 32) | (getInt(bytes, off + 4) & 0xFFFFFFFFL);
     }
 
     private static long seconds2000NoTZ(long secs) {
@@ -247,20 +252,49 @@ public class ServerValueDecoder
     private static final short NUMERIC_POS = 0x0000;
     private static final short NUMERIC_NEG = 0x4000;
     private static final short NUMERIC_NAN = (short)0xC000;
+    private static final int NUMERIC_BASE = 10000;
+    private static final BigInteger BIG_NUMERIC_BASE = BigInteger.valueOf(NUMERIC_BASE);
 
-    private static BigDecimal pgNumericVar(short[] digits) {
-        short ndigits, weight, sign, dscale;
-        ndigits = digits[0];
-        weight = digits[1];
-        sign = digits[2];
-        dscale = digits[3];
-        BigDecimal result = BigDecimal.ZERO;
+    private static final int NUMERIC_LONG_DIGITS = 4; // 16 decimal digits < 2^63.
+
+    /** Decode <code>numeric</code> binary format: ndigits, weight, sign and
+     * display scale followed by base 10000 digits, most significant first.
+     * Package-private for testing.
+     */
+    static BigDecimal pgNumericVar(byte[] encoded) {
+        int ndigits = getShort(encoded, 0);
+        int weight = getShort(encoded, 2);
+        short sign = getShort(encoded, 4);
+        int dscale = getShort(encoded, 6) & 0xFFFF;
+        if (sign == NUMERIC_NAN)
+            throw new AkibanInternalException("NaN numeric not supported");
+        if (ndigits == 0)
+            return BigDecimal.ZERO.setScale(dscale);
+        // Accumulate the unscaled value in a long while it fits.
+        long lunscaled = 0;
+        BigInteger bunscaled = null;
         for (int i = 0; i < ndigits; i++) {
-            BigDecimal digit = new BigDecimal(digits[i + 4]);
-            result = result.add(digit.scaleByPowerOfTen((weight - i) * 4));
+            int digit = getShort(encoded, 8 + i * 2);
+            if (i < NUMERIC_LONG_DIGITS) {
+                lunscaled = lunscaled * NUMERIC_BASE + digit;
+            }
+            else {
+                if (bunscaled == null)
+                    bunscaled = BigInteger.valueOf(lunscaled);
+                bunscaled = bunscaled.multiply(BIG_NUMERIC_BASE).add(BigInteger.valueOf(digit));
+            }
         }
+        // The last digit is units of 10000^(weight - ndigits + 1).
+        int scale = (ndigits - weight - 1) * 4;
+        BigDecimal result = (bunscaled == null) ?
+            BigDecimal.valueOf(lunscaled, scale) :
+            new BigDecimal(bunscaled, scale);
         if (sign == NUMERIC_NEG)
             result = result.negate();
+        if (result.scale() != dscale) {
+            // Digits past dscale are zero padding within the last group.
+            result = result.setScale(dscale, RoundingMode.DOWN);
+        }
         return result;
     }
 
@@ -31,6 +31,7 @@ import com.foundationdb.util.AkibanAppender;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Types;
 import java.util.Date;
 import java.io.*;
@@ -176,9 +177,7 @@ public class ServerValueEncoder
             // Handle unusual text encoding of binary types.
             switch (type.getBinaryEncoding()) {
             case BINARY_OCTAL_TEXT:
-                for (byte b : value.getBytes()) {
-                    printWriter.format("\\%03o", b);
-                }
+                appendOctalText(value.getBytes());
                 break;
             default:
                 type.getType().format(value, appender);
@@ -314,10 +313,36 @@ public class ServerValueEncoder
     private static final short NUMERIC_NEG = 0x4000;
     private static final short NUMERIC_NAN = (short)0xC000;
 
-    private static short[] pgNumericVar(BigDecimal n) {
+    /** Escape every byte as <code>\ooo</code>, as <code>bytea_output = escape</code> would
+     * for non-printing characters, into one <code>char[]</code>.
+     */
+    private void appendOctalText(byte[] bytes) {
+        char[] chars = new char[bytes.length * 4];
+        int pos = 0;
+        for (byte b : bytes) {
+            int i = b & 0xFF;
+            chars[pos++] = '\\';
+            chars[pos++] = (char)('0' + (i >> 6));
+            chars[pos++] = (char)('0' + ((i >> 3) & 7));
+            chars[pos++] = (char)('0' + (i & 7));
+        }
+        printWriter.write(chars);
+    }
+
+    private static final short NUMERIC_BASE = 10000;
+    private static final int NUMERIC_LONG_BITS = 49; // Room for padding to a whole digit.
+    private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000 };
+
+    // Package-private for testing.
+    static short[] pgNumericVar(BigDecimal n) {
         short ndigits, weight, sign, dscale;
         dscale = (short)n.scale();
         if (dscale < 0) dscale = 0;
+        else {
+            BigInteger unscaled = n.unscaledValue();
+            if (unscaled.bitLength() <= NUMERIC_LONG_BITS)
+                return pgNumericVar(unscaled.longValue(), dscale);
+        }
         String s = n.toPlainString();
         int lpos = 0;
         sign = NUMERIC_POS;
@@ -350,6 +375,41 @@ public class ServerValueEncoder
         return digits;
     }
 
+    /** Split the unscaled value directly into base 10000 digits,
+     * without going through the decimal string.
+     */
+    private static short[] pgNumericVar(long unscaled, short scale) {
+        short sign = NUMERIC_POS;
+        if (unscaled < 0) {
+            sign = NUMERIC_NEG;
+            unscaled = -unscaled;
+        }
+        // Align the decimal point on a digit boundary.
+        int pad = (4 - scale % 4) % 4;
+        unscaled *= POWERS_OF_TEN[pad];
+        int nfraction = (scale + pad) / 4;
+        short[] groups = new short[8]; // Least significant first.
+        int ngroups = 0;
+        while (unscaled != 0) {
+            groups[ngroups++] = (short)(unscaled % NUMERIC_BASE);
+            unscaled /= NUMERIC_BASE;
+        }
+        int low = 0;
+        while ((low < ngroups) && (groups[low] == 0)) {
+            low++;
+        }
+        int ndigits = ngroups - low;
+        short[] digits = new short[ndigits + 4];
+        digits[0] = (short)ndigits;
+        digits[1] = (short)((ndigits == 0) ? 0 : ngroups - 1 - nfraction);
+        digits[2] = sign;
+        digits[3] = scale;
+        for (int i = 0; i < ndigits; i++) {
+            digits[i + 4] = groups[ngroups - 1 - i];
+        }
+        return digits;
+    }
+
     private static short pgNumericDigit(String s, int index, 
                                         int lpos, int dposl, int dposr, 
                                         int nleft, int nright) {
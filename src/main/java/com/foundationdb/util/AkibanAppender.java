@@ -18,6 +18,7 @@
 package com.foundationdb.util;
 
 import com.foundationdb.qp.operator.Cursor;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -61,6 +62,14 @@ public abstract class AkibanAppender {
         return new AkibanAppenderOS(outputStream, printWriter, charset);
     }
 
+    /**
+     * Appends as raw text to <code>generator</code>, which encodes it
+     * straight into its output, for text that is already JSON.
+     */
+    public static AkibanAppender of(JsonGenerator generator) {
+        return new AkibanAppenderJG(generator);
+    }
+
     private static class AkibanAppenderPW extends AkibanAppender
     {
         private final PrintWriter pr;
@@ -130,6 +139,67 @@ public abstract class AkibanAppender {
         }
     }
 
+    private static class AkibanAppenderJG extends AkibanAppender
+    {
+        private final JsonGenerator generator;
+        private final Appendable appendable = new Appendable() {
+                @Override
+                public Appendable append(CharSequence csq) {
+                    AkibanAppenderJG.this.append(String.valueOf(csq));
+                    return this;
+                }
+
+                @Override
+                public Appendable append(CharSequence csq, int start, int end) {
+                    AkibanAppenderJG.this.append(String.valueOf(csq).substring(start, end));
+                    return this;
+                }
+
+                @Override
+                public Appendable append(char c) {
+                    AkibanAppenderJG.this.append(c);
+                    return this;
+                }
+            };
+
+        public AkibanAppenderJG(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public void append(Object o) {
+            append(String.valueOf(o));
+        }
+
+        @Override
+        public void append(char c) {
+            try {
+                generator.writeRaw(c);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void append(long l) {
+            append(Long.toString(l));
+        }
+
+        @Override
+        public void append(String s) {
+            try {
+                generator.writeRaw(String.valueOf(s));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Appendable getAppendable() {
+            return appendable;
+        }
+    }
+
     private static class AkibanAppenderSB extends AkibanAppender
     {
         private final StringBuilder sb;
@@ -17,84 +17,223 @@
 
 package com.foundationdb.util;
 
+import static java.lang.Math.ceil;
 import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.Math.round;
 
+/**
+ * Blocked Bloom filter over 64-bit hash values.
+ * <p/>
+ * The bits for a key are all set within one 512 bit block, the size of a cache line, picked by
+ * the high half of the (remixed) hash. The low half gives the positions within the block. So
+ * adding or probing a key touches a single cache line, rather than one per hash function.
+ * <p/>
+ * The filter is sized for an expected number of keys, but does not need that to be right. When
+ * more keys are added, another layer, four times larger and with half the error rate, is started
+ * for them. Probes check each layer, and the overall error rate stays within the one asked for.
+ * <p/>
+ * Probes and passes are counted. The caller, which can tell when a pass was wrong, reports
+ * false positives with {@link #falsePositive}.
+ */
 public class BloomFilter
 {
     public void add(int hashValue)
     {
-        for (int h = 0; h < hashFunctions; h++) {
-            int position = position(hashValue, h);
-            filter[position >> SHIFT] |= 1L << (position & MASK);
+        add((long)hashValue);
+    }
+
+    public void add(long hashValue)
+    {
+        Layer layer = layers[nlayers - 1];
+        if (layer.count >= layer.capacity) {
+            layer = grow();
         }
+        layer.add(mix(hashValue));
+        keys++;
     }
 
     public boolean maybePresent(int hashValue)
     {
-        for (int h = 0; h < hashFunctions; h++) {
-            int position = position(hashValue, h);
-            if ((filter[position >> SHIFT] & (1L << (position & MASK))) == 0) {
-                return false;
+        return maybePresent((long)hashValue);
+    }
+
+    public boolean maybePresent(long hashValue)
+    {
+        probes++;
+        long hash = mix(hashValue);
+        for (int i = nlayers - 1; i >= 0; i--) {
+            if (layers[i].contains(hash)) {
+                passes++;
+                return true;
             }
         }
-        return true;
+        return false;
+    }
+
+    /** Record that a key which passed turned out not to be present. */
+    public void falsePositive()
+    {
+        falsePositives++;
+    }
+
+    public long keys()
+    {
+        return keys;
+    }
+
+    public long probes()
+    {
+        return probes;
+    }
+
+    public long passes()
+    {
+        return passes;
+    }
+
+    public long falsePositives()
+    {
+        return falsePositives;
+    }
+
+    /** Fraction of probes for keys not present that passed, so far. */
+    public double falsePositiveRate()
+    {
+        long absent = probes - passes + falsePositives;
+        return (absent == 0) ? 0.0 : (double)falsePositives / absent;
+    }
+
+    public int layers()
+    {
+        return nlayers;
+    }
+
+    public long sizeInBytes()
+    {
+        long size = 0;
+        for (int i = 0; i < nlayers; i++) {
+            size += layers[i].bits.length * 8L;
+        }
+        return size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("BloomFilter(%d keys, %d layers, %d probes, %d passes, %d false positives)",
+                             keys, nlayers, probes, passes, falsePositives);
+    }
+
+    /** Fold the hash of another field of a key into <code>hash</code>. Depends on field order. */
+    public static long combine(long hash, long fieldHash)
+    {
+        return (hash ^ fieldHash) * GOLDEN_GAMMA;
     }
 
     public BloomFilter(long maxKeys, double errorRate)
     {
-        // Formulae from http://en.wikipedia.org/wiki/Bloom_filter.
-        double ln2 = log(2);
-        filterSize = (int) -round(maxKeys * log(errorRate) / (ln2 * ln2));
-        hashFunctions = (int) round(((double) filterSize / maxKeys) * ln2);
-        filter = new long[1 + filterSize / BITS];
+        this.errorRate = errorRate;
+        // A geometric series of layer error rates, halving from errorRate / 2, adds up to errorRate.
+        layers[0] = new Layer(max(maxKeys, MIN_CAPACITY), errorRate / 2);
+        nlayers = 1;
     }
 
     // For use by this class
 
-    private int position(int x, int h)
+    private Layer grow()
     {
-        int hash = x * PRIMES[h];
-        if (hash < 0) {
-            hash = hash == Integer.MIN_VALUE ? 0 : -hash;
+        if (nlayers == layers.length) {
+            layers = java.util.Arrays.copyOf(layers, nlayers * 2);
         }
-        return hash % filterSize;
+        Layer last = layers[nlayers - 1];
+        Layer layer = new Layer(last.capacity * GROWTH, last.errorRate / 2);
+        layers[nlayers++] = layer;
+        return layer;
+    }
+
+    // Finalizer from MurmurHash3, so that similar values, like consecutive integers, spread out.
+    private static long mix(long h)
+    {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
     }
 
     // Class state
 
-    private static final int BITS = 64;
-    private static final int SHIFT = 6; // log2(BITS)
-    private static final int MASK = (1 << SHIFT) - 1;
-
-    // First 100 primes > 1e9
-    private static int[] PRIMES = {
-        1000000007, 1000000009, 1000000021, 1000000033, 1000000087,
-        1000000093, 1000000097, 1000000103, 1000000123, 1000000181,
-        1000000207, 1000000223, 1000000241, 1000000271, 1000000289,
-        1000000297, 1000000321, 1000000349, 1000000363, 1000000403,
-        1000000409, 1000000411, 1000000427, 1000000433, 1000000439,
-        1000000447, 1000000453, 1000000459, 1000000483, 1000000513,
-        1000000531, 1000000579, 1000000607, 1000000613, 1000000637,
-        1000000663, 1000000711, 1000000753, 1000000787, 1000000801,
-        1000000829, 1000000861, 1000000871, 1000000891, 1000000901,
-        1000000919, 1000000931, 1000000933, 1000000993, 1000001011,
-        1000001021, 1000001053, 1000001087, 1000001099, 1000001137,
-        1000001161, 1000001203, 1000001213, 1000001237, 1000001263,
-        1000001269, 1000001273, 1000001279, 1000001311, 1000001329,
-        1000001333, 1000001351, 1000001371, 1000001393, 1000001413,
-        1000001447, 1000001449, 1000001491, 1000001501, 1000001531,
-        1000001537, 1000001539, 1000001581, 1000001617, 1000001621,
-        1000001633, 1000001647, 1000001663, 1000001677, 1000001699,
-        1000001759, 1000001773, 1000001789, 1000001791, 1000001801,
-        1000001803, 1000001819, 1000001857, 1000001887, 1000001917,
-        1000001927, 1000001957, 1000001963, 1000001969, 1000002043,
-    };
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_LONGS = BLOCK_BITS / 64;
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_LONGS;
+    private static final long MIN_CAPACITY = 64;
+    private static final int GROWTH = 4;
+    private static final int MAX_HASH_FUNCTIONS = 16;
+    // Blocks fill unevenly, which costs some accuracy; make up for it with more bits.
+    private static final double BLOCK_OVERHEAD = 1.2;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
 
     // Object state
 
-    private final int filterSize;
-    private final int hashFunctions;
-    private final long[] filter;
+    private final double errorRate;
+    private Layer[] layers = new Layer[4];
+    private int nlayers;
+    private long keys, probes, passes, falsePositives;
 
+    // Inner classes
+
+    private static class Layer
+    {
+        Layer(long capacity, double errorRate)
+        {
+            // Formulae from http://en.wikipedia.org/wiki/Bloom_filter.
+            double ln2 = log(2);
+            double bitsPerKey = -log(errorRate) / (ln2 * ln2);
+            this.capacity = capacity;
+            this.errorRate = errorRate;
+            this.hashFunctions = (int)max(1, min(MAX_HASH_FUNCTIONS, round(bitsPerKey * ln2)));
+            this.blocks = (int)max(1, min(MAX_BLOCKS, ceil(capacity * bitsPerKey * BLOCK_OVERHEAD / BLOCK_BITS)));
+            this.bits = new long[blocks * BLOCK_LONGS];
+        }
+
+        void add(long hash)
+        {
+            int base = block(hash);
+            for (int h = 0; h < hashFunctions; h++) {
+                hash *= GOLDEN_GAMMA;
+                int position = (int)(hash >>> 55);
+                bits[base + (position >>> 6)] |= 1L << position;
+            }
+            count++;
+        }
+
+        boolean contains(long hash)
+        {
+            int base = block(hash);
+            for (int h = 0; h < hashFunctions; h++) {
+                hash *= GOLDEN_GAMMA;
+                int position = (int)(hash >>> 55);
+                if ((bits[base + (position >>> 6)] & (1L << position)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Scale the high 32 bits to the number of blocks, avoiding a division.
+        private int block(long hash)
+        {
+            return (int)(((hash >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+        }
+
+        final long capacity;
+        final double errorRate;
+        final int hashFunctions;
+        final int blocks;
+        final long[] bits;
+        long count;
+    }
 }
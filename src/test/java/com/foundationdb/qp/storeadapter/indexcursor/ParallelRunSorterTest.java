@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelRunSorterTest {
+
+    private static final String PREFIX = "sort-test-";
+
+    private static final Comparator<byte[]> UNSIGNED = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] b1, byte[] b2) {
+            return SortBuffer.compare(b1, 0, b1.length, b2, 0, b2.length);
+        }
+    };
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = File.createTempFile(PREFIX, ".dir");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void removeDirectory() {
+        assertEquals("runs left", 0, directory.list().length);
+        directory.delete();
+    }
+
+    @Test
+    public void singleRun() throws IOException {
+        checkSort(4, 1024 * 1024, 100, false);
+    }
+
+    @Test
+    public void fewRuns() throws IOException {
+        checkSort(4, 64 * 1024, 5000, false);
+    }
+
+    @Test
+    public void severalPasses() throws IOException {
+        // Every entry is its own run: more than FAN_IN squared of them.
+        checkSort(2, 1, ParallelRunSorter.FAN_IN * ParallelRunSorter.FAN_IN + 10, false);
+    }
+
+    @Test
+    public void suppressDuplicates() throws IOException {
+        checkSort(3, 16 * 1024, 5000, true);
+    }
+
+    @Test
+    public void firstRunOfAllMemory() throws IOException {
+        checkSort(4, 64 * 1024, 20000, false, true);
+    }
+
+    @Test
+    public void noRuns() throws IOException {
+        ParallelRunSorter sorter = new ParallelRunSorter(2, 1024, directory, PREFIX, false);
+        try {
+            sorter.addRun(sorter.buffer());
+            ParallelRunSorter.Merge merge = sorter.merge();
+            assertFalse(merge.next());
+            merge.close();
+        }
+        finally {
+            sorter.close();
+        }
+    }
+
+    private void checkSort(int parallelism, long memory, int count, boolean suppressDuplicates) throws IOException {
+        checkSort(parallelism, memory, count, suppressDuplicates, false);
+    }
+
+    private void checkSort(int parallelism, long memory, int count, boolean suppressDuplicates, boolean firstRun) throws IOException {
+        Random random = new Random(count);
+        List<byte[]> expected = new ArrayList<>();
+        ParallelRunSorter sorter = new ParallelRunSorter(parallelism, memory, directory, PREFIX, suppressDuplicates);
+        try {
+            SortBuffer buffer = firstRun ? new SortBuffer(memory) : sorter.buffer();
+            boolean first = firstRun;
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[1 + random.nextInt(10)];
+                for (int j = 0; j < key.length; j++) {
+                    key[j] = (byte)(random.nextInt(4) * 0x55);
+                }
+                expected.add(key);
+                if (!buffer.add(key, key.length, key, key.length)) {
+                    if (first) {
+                        sorter.addFirstRun(buffer);
+                        first = false;
+                    }
+                    else {
+                        sorter.addRun(buffer);
+                    }
+                    buffer = sorter.buffer();
+                    assertTrue(buffer.add(key, key.length, key, key.length));
+                }
+            }
+            sorter.addRun(buffer);
+            Collections.sort(expected, UNSIGNED);
+            if (suppressDuplicates) {
+                List<byte[]> distinct = new ArrayList<>();
+                for (byte[] key : expected) {
+                    if (distinct.isEmpty() || !Arrays.equals(key, distinct.get(distinct.size() - 1))) {
+                        distinct.add(key);
+                    }
+                }
+                expected = distinct;
+            }
+            ParallelRunSorter.Merge merge = sorter.merge();
+            byte[] lastKey = null;
+            int n = 0;
+            while (merge.next()) {
+                byte[] key = Arrays.copyOf(merge.key(), merge.keyLength());
+                byte[] value = Arrays.copyOf(merge.value(), merge.valueLength());
+                assertArrayEquals("value", key, value);
+                if (suppressDuplicates && Arrays.equals(key, lastKey)) {
+                    // The same key from different runs.
+                    continue;
+                }
+                assertArrayEquals("entry " + n, expected.get(n), key);
+                lastKey = key;
+                n++;
+            }
+            assertEquals("entries", expected.size(), n);
+            merge.close();
+        }
+        finally {
+            sorter.close();
+        }
+    }
+}
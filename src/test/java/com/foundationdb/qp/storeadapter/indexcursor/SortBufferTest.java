@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.qp.storeadapter.indexcursor;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SortBufferTest {
+
+    private static final Comparator<byte[]> UNSIGNED = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] b1, byte[] b2) {
+            return SortBuffer.compare(b1, 0, b1.length, b2, 0, b2.length);
+        }
+    };
+
+    @Test
+    public void empty() {
+        SortBuffer buffer = new SortBuffer(1024);
+        buffer.sort();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void unsignedOrder() {
+        SortBuffer buffer = new SortBuffer(1024 * 1024);
+        add(buffer, new byte[] { (byte)0xFF });
+        add(buffer, new byte[] { 0x01 });
+        add(buffer, new byte[] { (byte)0x80, 0x00 });
+        add(buffer, new byte[] { (byte)0x80 });
+        add(buffer, new byte[0]);
+        buffer.sort();
+        assertEquals("[]", Arrays.toString(key(buffer, 0)));
+        assertEquals("[1]", Arrays.toString(key(buffer, 1)));
+        assertEquals("[-128]", Arrays.toString(key(buffer, 2)));
+        assertEquals("[-128, 0]", Arrays.toString(key(buffer, 3)));
+        assertEquals("[-1]", Arrays.toString(key(buffer, 4)));
+    }
+
+    @Test
+    public void randomKeys() {
+        Random random = new Random(42);
+        SortBuffer buffer = new SortBuffer(16 * 1024 * 1024, 4096);
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            // Few distinct bytes, so that many keys share long prefixes.
+            byte[] key = new byte[random.nextInt(20)];
+            for (int j = 0; j < key.length; j++) {
+                key[j] = (byte)(random.nextInt(3) * 0x7F);
+            }
+            keys.add(key);
+            byte[] value = Integer.toString(i).getBytes();
+            assertTrue(buffer.add(key, key.length, value, value.length));
+        }
+        buffer.sort();
+        Collections.sort(keys, UNSIGNED);
+        assertEquals(keys.size(), buffer.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertArrayEquals("key " + i, keys.get(i), key(buffer, i));
+        }
+    }
+
+    @Test
+    public void valuesFollowKeys() {
+        SortBuffer buffer = new SortBuffer(1024 * 1024);
+        for (int i = 9; i >= 0; i--) {
+            byte[] key = { (byte)i };
+            byte[] value = ("v" + i).getBytes();
+            buffer.add(key, key.length, value, value.length);
+        }
+        buffer.sort();
+        for (int i = 0; i < 10; i++) {
+            byte[] value = new byte[buffer.valueLength(i)];
+            buffer.getValue(i, value, 0);
+            assertEquals("v" + i, new String(value));
+        }
+    }
+
+    @Test
+    public void duplicateKeys() {
+        SortBuffer buffer = new SortBuffer(1024 * 1024);
+        add(buffer, new byte[] { 2 });
+        add(buffer, new byte[] { 1 });
+        add(buffer, new byte[] { 2 });
+        buffer.sort();
+        assertTrue(buffer.compareKeys(0, 1) < 0);
+        assertEquals(0, buffer.compareKeys(1, 2));
+    }
+
+    @Test
+    public void fullAndClear() {
+        SortBuffer buffer = new SortBuffer(64 * 1024, 1024);
+        byte[] entry = new byte[100];
+        int count = 0;
+        while (buffer.add(entry, entry.length, entry, entry.length)) {
+            count++;
+        }
+        assertTrue("some fit", count > 0);
+        assertEquals(count, buffer.size());
+        assertTrue("within limit", buffer.memoryUsed() <= 64 * 1024);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        int again = 0;
+        while (buffer.add(entry, entry.length, entry, entry.length)) {
+            again++;
+        }
+        assertEquals("pages reused", count, again);
+    }
+
+    @Test
+    public void emptyAcceptsOversized() {
+        SortBuffer buffer = new SortBuffer(10, 16);
+        byte[] entry = new byte[100];
+        assertTrue(buffer.add(entry, entry.length, entry, entry.length));
+        assertFalse(buffer.add(entry, entry.length, entry, entry.length));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void writeEntry() throws IOException {
+        SortBuffer buffer = new SortBuffer(1024);
+        byte[] key = { 1, 2 };
+        byte[] value = { 3 };
+        buffer.add(key, key.length, value, value.length);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        buffer.write(0, new DataOutputStream(bytes));
+        assertArrayEquals(new byte[] { 0, 0, 0, 2, 1, 2, 0, 0, 0, 1, 3 }, bytes.toByteArray());
+    }
+
+    private static void add(SortBuffer buffer, byte[] key) {
+        assertTrue(buffer.add(key, key.length, key, key.length));
+    }
+
+    private static byte[] key(SortBuffer buffer, int i) {
+        byte[] key = new byte[buffer.keyLength(i)];
+        buffer.getKey(i, key, 0);
+        return key;
+    }
+}
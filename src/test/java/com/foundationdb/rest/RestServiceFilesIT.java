@@ -17,6 +17,7 @@
 
 package com.foundationdb.rest;
 
+import com.foundationdb.rest.resources.ResourceHelper;
 import com.foundationdb.server.service.text.FullTextIndexService;
 import com.foundationdb.http.HttpConductor;
 import com.foundationdb.junit.NamedParameterizedRunner;
@@ -40,8 +41,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -53,6 +56,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static com.foundationdb.util.JsonUtils.readTree;
 import static org.junit.Assert.assertEquals;
@@ -72,6 +76,7 @@ public class RestServiceFilesIT extends ITBase {
         public final String requestMethod;
         public final String requestURI;
         public final String requestBody;
+        public final String requestHeader;
         public final String expectedHeader;
         public final String expectedResponse;
         public final boolean expectedIgnore;
@@ -80,13 +85,14 @@ public class RestServiceFilesIT extends ITBase {
 
         private CaseParams(String subDir, String caseName,
                            String requestMethod, String requestURI, String requestBody,
-                           String expectedHeader, String expectedResponse, boolean expectedIgnore,
+                           String requestHeader, String expectedHeader, String expectedResponse, boolean expectedIgnore,
                            String checkURI, String checkExpected) {
             this.subDir = subDir;
             this.caseName = caseName;
             this.requestMethod = requestMethod;
             this.requestURI = requestURI;
             this.requestBody = requestBody;
+            this.requestHeader = requestHeader;
             this.expectedHeader = expectedHeader;
             this.expectedResponse = expectedResponse;
             this.expectedIgnore = expectedIgnore;
@@ -118,6 +124,8 @@ public class RestServiceFilesIT extends ITBase {
     protected Map<String,String> startupConfigProperties() {
         Map<String,String> config = new HashMap<>(super.startupConfigProperties());
         config.put("fdbsql.rest.resource", "entity,fulltext,procedurecall,sql,security,version,direct,view");
+        // Small enough that most responses are sent in several chunks.
+        config.put(RestResponseBuilder.OUTPUT_CHUNK_SIZE_PROPERTY, "64");
         return config;
     }
 
@@ -160,6 +168,7 @@ public class RestServiceFilesIT extends ITBase {
                 String method = inputName.substring(dotIndex + 1).toUpperCase();
                 String uri = Strings.dumpFileToString(requestFile).trim();
                 String body = dumpFileIfExists(new File(basePath + ".body"));
+                String requestHeader = dumpFileIfExists(new File(basePath + ".request_header"));
                 String header = dumpFileIfExists(new File(basePath + ".expected_header"));
                 String expected = dumpFileIfExists(new File(basePath + ".expected"));
                 boolean expectedIgnore = new File(basePath + ".expected_ignore").exists();
@@ -177,7 +186,7 @@ public class RestServiceFilesIT extends ITBase {
                 result.add(Parameterization.create(
                         subDirName + File.separator + caseName,
                         new CaseParams(subDirName, caseName, method, uri, body,
-                                       header, expected, expectedIgnore,
+                                       requestHeader, header, expected, expectedIgnore,
                                        checkURI, checkExpected)
                 ));
             }
@@ -247,13 +256,23 @@ public class RestServiceFilesIT extends ITBase {
                 LOG.debug(caseParams.requestBody);
                 postContents(conn, caseParams.requestBody.getBytes() );
             } // else GET || DELETE
+            if (caseParams.requestHeader != null) {
+                for (String header : caseParams.requestHeader.split("\n")) {
+                    String[] nameValue = header.split(":", 2);
+                    conn.setRequestHeader(nameValue[0].trim(), nameValue[1].trim());
+                }
+            }
 
             httpClient.send(conn);
             conn.waitForDone();
             // Response
             String actual = getOutput(conn);
             if(!caseParams.expectedIgnore) {
-                compareExpected(caseParams.requestMethod + " response", caseParams.expectedResponse, actual);
+                if (isNDJSON(conn)) {
+                    compareLines(caseParams.requestMethod + " response", caseParams.expectedResponse, actual);
+                } else {
+                    compareExpected(caseParams.requestMethod + " response", caseParams.expectedResponse, actual);
+                }
             }
             if (caseParams.expectedHeader != null) {
                 compareHeaders(conn, caseParams.expectedHeader);
@@ -265,14 +284,42 @@ public class RestServiceFilesIT extends ITBase {
     }
     
     private HttpExchange openConnection(URL url, String requestMethod) throws IOException, URISyntaxException {
-        HttpExchange exchange = new ContentExchange(caseParams.expectedHeader != null);
+        // Headers kept to check them and to decode the response.
+        HttpExchange exchange = new ContentExchange(true);
         exchange.setURI(url.toURI());
         exchange.setMethod(requestMethod);
         return exchange;
     }
      
     private String getOutput(HttpExchange httpConn) throws IOException {
-        return ((ContentExchange)httpConn).getResponseContent();
+        ContentExchange exch = (ContentExchange)httpConn;
+        if ("gzip".equals(exch.getResponseFields().getStringField("Content-Encoding"))) {
+            // Not decoded by the client, so that the header can be checked.
+            InputStream in = new GZIPInputStream(new ByteArrayInputStream(exch.getResponseContentBytes()));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        }
+        return exch.getResponseContent();
+    }
+
+    private static boolean isNDJSON(HttpExchange httpConn) {
+        String type = ((ContentExchange)httpConn).getResponseFields().getStringField("Content-Type");
+        return (type != null) && type.startsWith(ResourceHelper.APPLICATION_NDJSON);
+    }
+
+    /** Compare one JSON value per line. */
+    private void compareLines(String assertMsg, String expected, String actual) throws IOException {
+        String[] expectedLines = expected.trim().split("\n");
+        String[] actualLines = actual.trim().split("\n");
+        assertEquals(assertMsg + " lines", expectedLines.length, actualLines.length);
+        for (int i = 0; i < expectedLines.length; i++) {
+            compareExpected(assertMsg + " line " + (i + 1), expectedLines[i], actualLines[i]);
+        }
     }
     
     private void compareExpected(String assertMsg, String expected, String actual) throws IOException {
@@ -169,6 +169,53 @@ public class SpaceTest
         assertEquals(space.zEncode(0x0000000000000000L,  0), space.parent(space.zEncode(0x0000000000000000L,  1)));
     }
 
+    @Test
+    public void children()
+    {
+        Space space = new Space(new long[]{0x000, 0x000},
+                                new long[]{0x3ff, 0x3ff},
+                                ints(0, 1, 0, 1, 0, 1, 0, 1, 0, 1,
+                                     0, 1, 0, 1, 0, 1, 0, 1, 0, 1));
+        long zRoot = space.zEncode(0x0000000000000000L, 0);
+        assertEquals(space.zEncode(0x0000000000000000L, 1), space.leftChild(zRoot));
+        assertEquals(space.zEncode(0x8000000000000000L, 1), space.rightChild(zRoot));
+        long z = space.zEncode(0x1234000000000000L, 14);
+        assertEquals(space.zEncode(0x1234000000000000L, 15), space.leftChild(z));
+        assertEquals(space.zEncode(0x1236000000000000L, 15), space.rightChild(z));
+        assertEquals(z, space.parent(space.leftChild(z)));
+        assertEquals(z, space.parent(space.rightChild(z)));
+        assertTrue(space.siblings(space.leftChild(z), space.rightChild(z)));
+        long zPoint = space.zEncode(0x1234500000000000L, 20);
+        assertTrue(space.isPoint(zPoint));
+        assertFalse(space.isPoint(z));
+        try {
+            space.leftChild(zPoint);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void distanceLatLon()
+    {
+        SpaceLatLon space = SpaceLatLon.create();
+        long z = space.shuffle(10 * SCALE, 20 * SCALE);
+        assertTrue(space.isPoint(z));
+        assertEquals(0L, space.distanceSquared(10 * SCALE, 20 * SCALE, z));
+        assertEquals(25 * SCALE * SCALE, space.distanceSquared(13 * SCALE, 24 * SCALE, z));
+        // Longitude wraps around
+        long zEast = space.shuffle(0, 179 * SCALE);
+        assertEquals(4 * SCALE * SCALE, space.distanceSquared(0, -179 * SCALE, zEast));
+        // Regions are no further than any point in them
+        long zRoot = space.zEncode(0x0000000000000000L, 0);
+        assertEquals(0L, space.distanceSquared(13 * SCALE, 24 * SCALE, zRoot));
+        long region = z;
+        while (region != zRoot) {
+            region = space.parent(region);
+            assertTrue(space.distanceSquared(13 * SCALE, 24 * SCALE, region) <= 25 * SCALE * SCALE);
+        }
+    }
+
     @Test
     public void contains()
     {
@@ -334,4 +381,6 @@ public class SpaceTest
         space.unshuffle(space.zEncode(shuffled, space.zBits), unshuffled);
         assertArrayEquals(x, unshuffled);
     }
+
+    private static final long SCALE = 1000L * 1000L;
 }
@@ -68,6 +68,7 @@ public class TestConfigService extends ConfigurationServiceImpl {
         ret.put(COMMIT_POLICY_KEY, UNIT_TEST_COMMIT_POLICY);
         ret.put(JOURNAL_SIZE_KEY, Long.toString(UNIT_TEST_PERSISTIT_JOURNAL_SIZE));
         ret.put(BUCKET_COUNT_KEY, BUCKET_COUNT);
+        ret.put(REFRESH_FRACTION_KEY, "0");
         ret.put(FEATURE_DDL_WITH_DML_KEY, "true");
         ret.put(FEATURE_SPATIAL_INDEX_KEY, "true");
         ret.put(FEATURE_DIRECT_ROUTINES_KEY, "true");
@@ -146,6 +147,7 @@ public class TestConfigService extends ConfigurationServiceImpl {
     private final static String UNIT_TEST_COMMIT_POLICY = "SOFT";
     private final static String BUCKET_COUNT_KEY = "fdbsql.index_statistics.bucket_count";
     private final static String BUCKET_COUNT = "32";
+    private final static String REFRESH_FRACTION_KEY = "fdbsql.index_statistics.refresh_fraction";
 
     public final static String FEATURE_DDL_WITH_DML_KEY = "fdbsql.feature.ddl_with_dml_on";
     public final static String FEATURE_SPATIAL_INDEX_KEY = "fdbsql.feature.spatial_index_on";
@@ -32,6 +32,7 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.qp.rowtype.Schema;
 import com.foundationdb.qp.util.SchemaCache;
+import com.foundationdb.util.AkibanAppender;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -178,6 +179,48 @@ public class ExternalDataServiceIT extends ITBase
         assertEquals("[]", str.toString());
     }
 
+    static final String C12d1 = "[\n" +
+        "{\"cid\":1,\"name\":\"Smith\",\"o\":[{\"oid\":101,\"cid\":1,\"order_date\":\"2012-12-12\"},{\"oid\":102,\"cid\":1,\"order_date\":\"2013-01-01\"}],\"a\":[{\"aid\":101,\"cid\":1,\"state\":\"MA\"}]}," +
+        "{\"cid\":2,\"name\":\"Jones\",\"a\":[{\"aid\":201,\"cid\":2,\"state\":\"NY\"}]}\n" +
+        "]";
+
+    @Test
+    public void dumpJsonLimit() throws IOException {
+        ExternalDataService external =
+            serviceManager().getServiceByClass(ExternalDataService.class);
+        StringWriter str = new StringWriter();
+        PrintWriter pw = new PrintWriter(str);
+        external.dumpAllAsJson(session(), AkibanAppender.of(pw), SCHEMA, "c",
+                               1,
+                               WITH_TXN,
+                               2,
+                               false);
+        pw.flush();
+        assertEquals(C12d1, str.toString());
+    }
+
+    static final String C12d0Lines =
+        "{\"cid\":1,\"name\":\"Smith\"}\n" +
+        "{\"cid\":2,\"name\":\"Jones\"}";
+
+    @Test
+    public void dumpJsonLines() throws IOException {
+        ExternalDataService external =
+            serviceManager().getServiceByClass(ExternalDataService.class);
+        StringWriter str = new StringWriter();
+        PrintWriter pw = new PrintWriter(str);
+        external.dumpBranchAsJson(session(), AkibanAppender.of(pw), SCHEMA, "c",
+                                  Arrays.asList(Collections.singletonList("1"),
+                                                Collections.singletonList("2"),
+                                                Collections.singletonList("3")),
+                                  0,
+                                  WITH_TXN,
+                                  2,
+                                  true);
+        pw.flush();
+        assertEquals(C12d0Lines, str.toString());
+    }
+
 
     static final String fooA1BarB1 = "[\n" +
             "{\"aid\":1,\"bar.b\":[{\"bid\":10,\"aid\":1}]}\n" +
@@ -18,6 +18,7 @@
 package com.foundationdb.server.service.text;
 
 import com.foundationdb.ais.model.FullTextIndex;
+import com.foundationdb.qp.operator.Cursor;
 import com.foundationdb.qp.operator.Operator;
 import static com.foundationdb.qp.operator.API.cursor;
 
@@ -31,6 +32,13 @@ import com.foundationdb.server.test.it.qp.TestRow;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Comparator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 public class FullTextIndexServiceIT extends FullTextIndexServiceITBase
 {
     public static final String SCHEMA = "test";
@@ -163,6 +171,58 @@ public class FullTextIndexServiceIT extends FullTextIndexServiceITBase
         ftScanAndCompare(builder, "flintstone", 15, expected3);
     }
 
+    @Test
+    public void testUpdateSeveralIndexes() throws InterruptedException {
+        FullTextIndex cIndex = createFullTextIndex(SCHEMA, "c", "idx_c", "name", "i.sku", "a.state");
+        FullTextIndex oIndex = createFullTextIndex(SCHEMA, "o", "idx_o", "c.name", "i.sku");
+        RowType cRowType = rowType("c");
+        RowType oRowType = rowType("o");
+        FullTextQueryBuilder cBuilder = new FullTextQueryBuilder(cIndex, ais(), queryContext);
+        FullTextQueryBuilder oBuilder = new FullTextQueryBuilder(oIndex, ais(), queryContext);
+
+        // Changes to both indexes, applied by different workers.
+        writeRow(c, 4, "Pebbles Flintstone");
+        writeRow(o, 401, 4, "2014-02-02");
+        writeRow(i, 40101, 401, "5678");
+        writeRow(i, 10103, 101, "5678");
+        waitUpdate();
+
+        ftScanAndCompare(cBuilder, "sku:5678", 15, new Row[] {
+            row(cRowType, 1L),
+            row(cRowType, 4L)
+        });
+        ftScanAndCompare(oBuilder, "sku:5678", 15, new Row[] {
+            row(oRowType, 1L, 101L),
+            row(oRowType, 4L, 401L)
+        });
+
+        // And again, for changes already applied but maybe not committed.
+        deleteRow(i, 40101, 401, "5678");
+        waitUpdate();
+
+        ftScanAndCompare(cBuilder, "sku:5678", 15, new Row[] {
+            row(cRowType, 1L)
+        });
+        ftScanAndCompare(oBuilder, "sku:5678", 15, new Row[] {
+            row(oRowType, 1L, 101L)
+        });
+    }
+
+    @Test
+    public void testManyHits() {
+        // Enough for several pages.
+        int nrows = FullTextCursor.INITIAL_PAGE_SIZE * 5;
+        for (int n = 0; n < nrows; n++) {
+            writeRow(c, 1000 + n, "Pebbles Flintstone " + n);
+        }
+        FullTextIndex index = createFullTextIndex(SCHEMA, "c", "idx_c", "name");
+        FullTextQueryBuilder builder = new FullTextQueryBuilder(index, ais(), queryContext);
+        // Both originals and all the new ones.
+        assertEquals(nrows + 2, ftScanCount(builder, "flintstone", 0));
+        assertEquals(nrows / 2, ftScanCount(builder, "flintstone", nrows / 2));
+        assertEquals(1, ftScanCount(builder, "pebbles AND 17", 0));
+    }
+
     @Test
     public void cDown() throws InterruptedException {
         FullTextIndex index = createFullTextIndex(
@@ -244,6 +304,29 @@ public class FullTextIndexServiceIT extends FullTextIndexServiceITBase
         return new TestRow(rowType, fields);
     }
 
+    /** Count the hits, checking that each is only returned once. */
+    private int ftScanCount(FullTextQueryBuilder builder, String query, int limit) {
+        Set<Row> seen = new TreeSet<>(new Comparator<Row>() {
+            @Override
+            public int compare(Row r1, Row r2) {
+                return r1.hKey().toString().compareTo(r2.hKey().toString());
+            }
+        });
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            Operator plan = builder.scanOperator(query, limit);
+            Cursor cursor = cursor(plan, queryContext, queryBindings);
+            cursor.openTopLevel();
+            Row row;
+            while ((row = cursor.next()) != null) {
+                assertTrue("Duplicate " + row, seen.add(row));
+            }
+            cursor.closeTopLevel();
+            cursor.destroy();
+            txn.commit();
+        }
+        return seen.size();
+    }
+
     private void ftScanAndCompare(FullTextQueryBuilder builder, String query, int limit, Row[] expected) {
         try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
             Operator plan = builder.scanOperator(query, limit);
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.dxl;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.server.error.DuplicateKeyException;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Indexes built by sorting their entries, with a memory limit small enough
+ * that every entry is its own run.
+ */
+public class SortedIndexBuildIT extends ITBase
+{
+    private static final String SCHEMA = "test";
+    private static final int ROW_COUNT = 100;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String, String> properties = new HashMap<>(uniqueStartupConfigProperties(getClass()));
+        properties.put("fdbsql.feature.ddl_with_dml_on", "false");
+        properties.put("fdbsql.index_build.memory", "1");
+        properties.put("fdbsql.index_build.parallelism", "2");
+        return properties;
+    }
+
+    @Test
+    public void nonUnique() {
+        int tid = createTable(SCHEMA, "t", "id int not null primary key, v int");
+        for(int id = 1; id <= ROW_COUNT; ++id) {
+            writeRow(tid, id, (ROW_COUNT - id) % 7);
+        }
+        Index index = createIndex(SCHEMA, "t", "v", "v");
+        List<Object[]> expected = new ArrayList<>();
+        for(int v = 0; v < 7; ++v) {
+            for(int id = 1; id <= ROW_COUNT; ++id) {
+                if((ROW_COUNT - id) % 7 == v) {
+                    expected.add(new Object[] { v, id });
+                }
+            }
+        }
+        compareRows(expected.toArray(new Object[expected.size()][]), index);
+    }
+
+    @Test
+    public void uniqueWithNulls() {
+        int tid = createTable(SCHEMA, "t", "id int not null primary key, v int");
+        writeRow(tid, 1, 30);
+        writeRow(tid, 2, null);
+        writeRow(tid, 3, 10);
+        writeRow(tid, 4, null);
+        writeRow(tid, 5, 20);
+        Index index = createUniqueIndex(SCHEMA, "t", "v", "v");
+        compareRows(
+            new Object[][] {
+                { null, 2 },
+                { null, 4 },
+                { 10, 3 },
+                { 20, 5 },
+                { 30, 1 },
+            },
+            index
+        );
+    }
+
+    @Test
+    public void uniqueWithDuplicates() {
+        int tid = createTable(SCHEMA, "t", "id int not null primary key, v int");
+        for(int id = 1; id <= ROW_COUNT; ++id) {
+            writeRow(tid, id, (id == ROW_COUNT) ? 1 : id);
+        }
+        try {
+            createUniqueIndex(SCHEMA, "t", "v", "v");
+            fail("DuplicateKeyException expected");
+        } catch(DuplicateKeyException e) {
+            // Expected
+        }
+        updateAISGeneration();
+        assertNull("v index exists", getTable(tid).getIndex("v"));
+        assertEquals("rows from table scan", ROW_COUNT, scanAll(scanAllRequest(tid)).size());
+    }
+
+    @Test
+    public void leftGroupIndex() {
+        int cid = createTable(SCHEMA, "c", "id int not null primary key, name varchar(32)");
+        int oid = createTable(SCHEMA, "o", "id int not null primary key, cid int, odate int",
+                              "grouping foreign key(cid) references c(id)");
+        writeRow(cid, 1, "b");
+        writeRow(oid, 10, 1, 20140102);
+        writeRow(oid, 11, 1, 20140101);
+        writeRow(cid, 2, "a");
+        writeRow(cid, 3, "b");
+        writeRow(oid, 30, 3, 20140101);
+        Index index = createLeftGroupIndex(new TableName(SCHEMA, "c"), "name_odate", "c.name", "o.odate");
+        compareRows(
+            new Object[][] {
+                { "a", null, 2, null },
+                { "b", 20140101, 1, 11 },
+                { "b", 20140101, 3, 30 },
+                { "b", 20140102, 1, 10 },
+            },
+            index
+        );
+    }
+}
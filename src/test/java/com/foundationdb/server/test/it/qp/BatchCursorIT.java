@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.BatchCursor;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.RowBatch;
+import com.foundationdb.qp.operator.RowCursor;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.ColumnSelector;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.Comparison;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+import static org.junit.Assert.assertTrue;
+
+public class BatchCursorIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        use(db);
+    }
+
+    @Test
+    public void testIndexScan()
+    {
+        Operator plan = indexScan_Default(orderSalesmanIndexRowType);
+        Row[] expected = new Row[] {
+            row(orderSalesmanIndexRowType, "david", 1L, 12L),
+            row(orderSalesmanIndexRowType, "jack", 2L, 22L),
+            row(orderSalesmanIndexRowType, "ori", 1L, 11L),
+            row(orderSalesmanIndexRowType, "tom", 2L, 21L),
+        };
+        compareRows(expected, batches(plan, 3));
+    }
+
+    @Test
+    public void testFilter()
+    {
+        Operator plan = filter_Default(groupScan_Default(coi),
+                                       Arrays.asList(customerRowType, orderRowType));
+        Row[] expected = new Row[] {
+            row(customerRowType, 1L, "xyz"),
+            row(orderRowType, 11L, 1L, "ori"),
+            row(orderRowType, 12L, 1L, "david"),
+            row(customerRowType, 2L, "abc"),
+            row(orderRowType, 21L, 2L, "tom"),
+            row(orderRowType, 22L, 2L, "jack"),
+        };
+        compareRows(expected, batches(plan, 4));
+    }
+
+    @Test
+    public void testSelect()
+    {
+        Operator plan = select_HKeyOrdered(groupScan_Default(coi),
+                                           orderRowType,
+                                           compare(field(orderRowType, 2), Comparison.EQ, literal("tom"), castResolver()));
+        Row[] expected = new Row[] {
+            row(customerRowType, 1L, "xyz"),
+            row(customerRowType, 2L, "abc"),
+            row(orderRowType, 21L, 2L, "tom"),
+            row(itemRowType, 211L, 21L),
+            row(itemRowType, 212L, 21L),
+        };
+        compareRows(expected, batches(plan, 3));
+    }
+
+    @Test
+    public void testProjectAndLimit()
+    {
+        Operator project = project_DefaultTest(filter_Default(groupScan_Default(coi),
+                                                              Arrays.asList(customerRowType, orderRowType)),
+                                               orderRowType,
+                                               Arrays.asList(field(orderRowType, 0)));
+        RowType projectedRowType = project.rowType();
+        Operator plan = limit_Default(project, 1, false, 3, false);
+        Row[] expected = new Row[] {
+            row(projectedRowType, 11L),
+            row(projectedRowType, 12L),
+            row(customerRowType, 2L, "abc"),
+        };
+        compareRows(expected, batches(plan, 2));
+    }
+
+    @Test
+    public void testAggregate()
+    {
+        // SELECT oid, COUNT(iid) FROM item GROUP BY oid, three index rows per batch,
+        // so the oid = 12 group straddles the first two input batches.
+        Operator project = project_DefaultTest(indexScan_Default(itemOidIndexRowType),
+                                               itemOidIndexRowType,
+                                               Arrays.asList(field(itemOidIndexRowType, 0),
+                                                             field(itemOidIndexRowType, 1)));
+        Operator plan = aggregate_Partial(project, project.rowType(), 1,
+                                          Collections.singletonList(MCount.INSTANCES[2]),
+                                          Collections.<TInstance>singletonList(MNumeric.BIGINT.instance(false)),
+                                          Collections.<Object>singletonList(null));
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[] {
+            row(outputRowType, 11L, 2L),
+            row(outputRowType, 12L, 2L),
+            row(outputRowType, 21L, 2L),
+            row(outputRowType, 22L, 2L),
+        };
+        compareRows(expected, batches(plan, 3));
+    }
+
+    @Test
+    public void testUnconvertedInput()
+    {
+        // Sort is read a row at a time.
+        Ordering ordering = ordering();
+        ordering.append(field(orderRowType, 2), true);
+        Operator plan = limit_Default(sort_InsertionLimited(filter_Default(groupScan_Default(coi),
+                                                                           Arrays.asList(orderRowType)),
+                                                            orderRowType,
+                                                            ordering,
+                                                            SortOption.PRESERVE_DUPLICATES,
+                                                            10),
+                                      3);
+        Row[] expected = new Row[] {
+            row(orderRowType, 12L, 1L, "david"),
+            row(orderRowType, 22L, 2L, "jack"),
+            row(orderRowType, 11L, 1L, "ori"),
+        };
+        compareRows(expected, batches(plan, 8));
+    }
+
+    // For use by this class
+
+    private RowCursor batches(Operator plan, int capacity)
+    {
+        return new BatchReader(cursor(plan, queryContext, queryBindings), capacity);
+    }
+
+    // Reads a batch at a time, but returns the rows one by one for comparison.
+    private static class BatchReader implements RowCursor
+    {
+        @Override
+        public void open()
+        {
+            cursor.openTopLevel();
+            batch.clear();
+            position = 0;
+        }
+
+        @Override
+        public Row next()
+        {
+            while (position >= batch.size()) {
+                if (batch.isEnd()) {
+                    return null;
+                }
+                ((BatchCursor)cursor).nextBatch(batch);
+                assertTrue(batch.size() <= capacity);
+                position = 0;
+            }
+            return batch.get(position++);
+        }
+
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+        {
+            cursor.closeTopLevel();
+        }
+
+        @Override
+        public void destroy()
+        {
+            cursor.destroy();
+        }
+
+        @Override
+        public boolean isIdle()
+        {
+            return cursor.isIdle();
+        }
+
+        @Override
+        public boolean isActive()
+        {
+            return cursor.isActive();
+        }
+
+        @Override
+        public boolean isDestroyed()
+        {
+            return cursor.isDestroyed();
+        }
+
+        BatchReader(Cursor cursor, int capacity)
+        {
+            this.cursor = cursor;
+            this.capacity = capacity;
+            this.batch = new RowBatch(capacity);
+        }
+
+        private final Cursor cursor;
+        private final int capacity;
+        private final RowBatch batch;
+        private int position;
+    }
+}
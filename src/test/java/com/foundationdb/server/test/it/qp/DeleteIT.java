@@ -17,11 +17,14 @@
 
 package com.foundationdb.server.test.it.qp;
 
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.ais.model.TableName;
 import com.foundationdb.qp.exec.UpdatePlannable;
 import com.foundationdb.qp.exec.UpdateResult;
 import com.foundationdb.qp.expression.IndexKeyRange;
 import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
 
 import org.junit.Test;
 
@@ -29,12 +32,27 @@ import java.util.Collections;
 
 import static com.foundationdb.qp.operator.API.cursor;
 import static com.foundationdb.qp.operator.API.delete_Default;
+import static com.foundationdb.qp.operator.API.delete_Returning;
 import static com.foundationdb.qp.operator.API.filter_Default;
 import static com.foundationdb.qp.operator.API.groupScan_Default;
 import static com.foundationdb.qp.operator.API.indexScan_Default;
 import static org.junit.Assert.assertEquals;
 
 public class DeleteIT extends OperatorITBase {
+    private IndexRowType customerNameOrderSalesmanIndexRowType;
+
+    @Override
+    protected void setupCreateSchema() {
+        super.setupCreateSchema();
+        createLeftGroupIndex(new TableName("schema", "customer"), "cname_osalesman", "customer.name", "order.salesman");
+    }
+
+    @Override
+    protected void setupPostCreateSchema() {
+        super.setupPostCreateSchema();
+        customerNameOrderSalesmanIndexRowType = groupIndexType(Index.JoinType.LEFT, "customer.name", "order.salesman");
+    }
+
     @Test
     public void deleteCustomer() {
         use(db);
@@ -90,6 +108,78 @@ public class DeleteIT extends OperatorITBase {
         ));
     }
 
+    @Test
+    public void deleteReturningOrders() {
+        use(db);
+        Row[] rows = {
+                row(orderRowType, new Object[]{22, 2, "jack"}),
+                row(orderRowType, new Object[]{11, 1, "ori"}),
+                row(orderRowType, new Object[]{21, 2, "tom"})
+        };
+        // Returned in input order after the batch is deleted.
+        compareRows(
+                array(TestRow.class,
+                      row(orderRowType, 22L, 2L, "jack"),
+                      row(orderRowType, 11L, 1L, "ori"),
+                      row(orderRowType, 21L, 2L, "tom")
+                ),
+                cursor(delete_Returning(rowsToValueScan(rows), false), queryContext, queryBindings)
+        );
+        compareRows(
+                array(Row.class,
+                      row(orderSalesmanIndexRowType, "david", 1L, 12L)
+                      ),
+                cursor(
+                indexScan_Default(
+                        orderSalesmanIndexRowType,
+                        IndexKeyRange.unbounded(orderSalesmanIndexRowType),
+                        new API.Ordering()),
+                queryContext, queryBindings
+        ));
+        // Items of deleted orders are orphans, still in the group index.
+        compareRows(
+                array(Row.class,
+                      row(customerNameItemOidIndexRowType, "abc", null, 2L, null, null),
+                      row(customerNameItemOidIndexRowType, "xyz", 12L, 1L, 12L, 121L),
+                      row(customerNameItemOidIndexRowType, "xyz", 12L, 1L, 12L, 122L)
+                ),
+                cursor(
+                indexScan_Default(
+                        customerNameItemOidIndexRowType,
+                        IndexKeyRange.unbounded(customerNameItemOidIndexRowType),
+                        new API.Ordering(),
+                        customerRowType),
+                queryContext, queryBindings
+        ));
+    }
+
+    @Test
+    public void deleteAllOrdersOfCustomerCheckLeftGroupIndex() {
+        use(db);
+        // Both of customer 2's orders in one batch.
+        Row[] rows = {
+                row(orderRowType, new Object[]{21, 2, "tom"}),
+                row(orderRowType, new Object[]{22, 2, "jack"})
+        };
+        UpdateResult result = delete_Default(rowsToValueScan(rows)).run(queryContext, queryBindings);
+        assertEquals("rows modified", rows.length, result.rowsModified());
+        // The customer is back in the LEFT group index, with no order.
+        compareRows(
+                array(Row.class,
+                      row(customerNameOrderSalesmanIndexRowType, "abc", null, 2L, null),
+                      row(customerNameOrderSalesmanIndexRowType, "xyz", "david", 1L, 12L),
+                      row(customerNameOrderSalesmanIndexRowType, "xyz", "ori", 1L, 11L)
+                ),
+                cursor(
+                indexScan_Default(
+                        customerNameOrderSalesmanIndexRowType,
+                        IndexKeyRange.unbounded(customerNameOrderSalesmanIndexRowType),
+                        new API.Ordering(),
+                        customerRowType),
+                queryContext, queryBindings
+        ));
+    }
+
     private void doDelete() {
         Row[] rows = {
                 row(customerRowType, new Object[]{2, "abc"})
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.ExecutionStatistics;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.OperatorStatistics;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.explain.Label;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ExecutionStatisticsIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        super.setupPostCreateSchema();
+        use(db);
+    }
+
+    @Test
+    public void testRowCounts()
+    {
+        Operator scan = groupScan_Default(coi);
+        Operator filter = filter_Default(scan, Arrays.asList(orderRowType));
+        Operator plan = limit_Default(filter, 3);
+        ExecutionStatistics statistics = new ExecutionStatistics();
+        assertEquals(3, statistics.run(plan, queryContext, queryBindings));
+        OperatorStatistics limitStatistics = statistics.get(plan);
+        assertEquals(1, limitStatistics.getOpens());
+        assertEquals(3, limitStatistics.getRowsOut());
+        OperatorStatistics filterStatistics = statistics.get(filter);
+        assertEquals(1, filterStatistics.getOpens());
+        assertEquals(3, filterStatistics.getRowsOut());
+        OperatorStatistics scanStatistics = statistics.get(scan);
+        assertEquals(1, scanStatistics.getOpens());
+        // customer 1, order 11, 2 items, order 12, 2 items, customer 2, order 21.
+        assertEquals(9, scanStatistics.getRowsOut());
+        assertNull(queryContext.getExecutionStatistics());
+    }
+
+    @Test
+    public void testNestedLoops()
+    {
+        Operator orders = filter_Default(groupScan_Default(coi), Arrays.asList(orderRowType));
+        Operator inner = ancestorLookup_Nested(coi, orderRowType, Collections.singleton(customerRowType), 0, 1);
+        Operator plan = map_NestedLoops(orders, inner, 0, false, 1);
+        ExecutionStatistics statistics = new ExecutionStatistics();
+        assertEquals(4, statistics.run(plan, queryContext, queryBindings));
+        // The inner side is opened once for each outer row.
+        assertEquals(4, statistics.get(inner).getOpens());
+        assertEquals(4, statistics.get(inner).getRowsOut());
+        assertEquals(4, statistics.get(orders).getRowsOut());
+    }
+
+    @Test
+    public void testExplain()
+    {
+        Operator scan = groupScan_Default(coi);
+        Operator plan = filter_Default(scan, Arrays.asList(customerRowType));
+        ExecutionStatistics statistics = new ExecutionStatistics();
+        statistics.run(plan, queryContext, queryBindings);
+        ExplainContext explainContext = new ExplainContext();
+        statistics.explain(plan, explainContext);
+        CompoundExplainer filterInfo = explainContext.getExtraInfo(plan);
+        assertNotNull(filterInfo);
+        assertEquals(2L, filterInfo.get().getValue(Label.ROWS_OUT));
+        assertEquals(14L, filterInfo.get().getValue(Label.ROWS_IN));
+        CompoundExplainer scanInfo = explainContext.getExtraInfo(scan);
+        assertNotNull(scanInfo);
+        assertEquals(14L, scanInfo.get().getValue(Label.ROWS_OUT));
+        assertNull(scanInfo.get().get(Label.ROWS_IN));
+    }
+}
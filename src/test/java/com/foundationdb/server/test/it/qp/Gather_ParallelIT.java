@@ -0,0 +1,246 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.SimpleQueryContext;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.api.dml.SetColumnSelector;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.explain.ExplainContext;
+import com.foundationdb.server.explain.format.DefaultFormatter;
+import com.foundationdb.server.service.ServiceManager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class Gather_ParallelIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "schema", "t",
+            "id int not null primary key",
+            "a int");
+        createIndex("schema", "t", "a", "a");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        schema = new Schema(ais());
+        idxRowType = indexType(t, "a");
+        db = new NewRow[ROWS];
+        for (int id = 0; id < ROWS; id++) {
+            db[id] = createNewRow(t, (long)id, (long)(id % 10));
+        }
+        adapter = newStoreAdapter(schema);
+        // As though in the statement's own transaction, so that the gather runs in parallel.
+        queryContext = new SimpleQueryContext(adapter) {
+                @Override
+                public ServiceManager getServiceManager() {
+                    return serviceManager();
+                }
+                @Override
+                public boolean isTransactionLocal() {
+                    return true;
+                }
+            };
+        queryBindings = queryContext.createBindings();
+        // The partitions read in transactions of their own, so the rows must be committed.
+        txnService().beginTransaction(session());
+        try {
+            use(db);
+            txnService().commitTransaction(session());
+        }
+        finally {
+            txnService().rollbackTransactionIfOpen(session());
+        }
+    }
+
+    @Override
+    protected boolean doAutoTransaction()
+    {
+        return false;
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNoPartitions()
+    {
+        gather_Parallel(Collections.<Operator>emptyList(), idxRowType, true, 10);
+    }
+
+    @Test
+    public void testOrderedAscending()
+    {
+        Operator plan = gather_Parallel(partitions(ASC, 3, 7), idxRowType, true, 10);
+        compareRows(expected(ASC), cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testOrderedDescending()
+    {
+        List<Operator> partitions = partitions(DESC, 3, 7);
+        Collections.reverse(partitions);
+        Operator plan = gather_Parallel(partitions, idxRowType, true, 10);
+        compareRows(expected(DESC), cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testUnordered()
+    {
+        Operator plan =
+            sort_General(
+                gather_Parallel(partitions(ASC, 2, 5, 8), idxRowType, false, 10),
+                idxRowType,
+                ordering(ASC),
+                SortOption.PRESERVE_DUPLICATES);
+        compareRows(expected(ASC), cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testEmptyPartitions()
+    {
+        Operator plan = gather_Parallel(partitions(ASC, -5, 3, 20), idxRowType, true, 10);
+        compareRows(expected(ASC), cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCloseEarly()
+    {
+        Operator plan = gather_Parallel(partitions(ASC, 3, 7), idxRowType, true, 1);
+        txnService().beginTransaction(session());
+        try {
+            Cursor cursor = cursor(plan, queryContext, queryBindings);
+            for (int i = 0; i < 2; i++) {
+                cursor.openTopLevel();
+                for (int j = 0; j < 5; j++) {
+                    assertNotNull(cursor.next());
+                }
+                cursor.closeTopLevel();
+            }
+            cursor.destroy();
+            txnService().commitTransaction(session());
+        }
+        finally {
+            txnService().rollbackTransactionIfOpen(session());
+        }
+    }
+
+    @Test
+    public void testSerialInTransaction()
+    {
+        // Not the statement's own transaction: the partitions are read one
+        // after another in it and so see its uncommitted changes.
+        QueryContext serialContext = queryContext(adapter);
+        Operator plan = gather_Parallel(partitions(ASC, 3, 7), idxRowType, true, 10);
+        txnService().beginTransaction(session());
+        try {
+            writeRows(createNewRow(t, (long)ROWS, 5L));
+            List<Row> expected = new ArrayList<>();
+            Collections.addAll(expected, expected(ASC));
+            expected.add(60, row(idxRowType, 5, ROWS));
+            compareRows(expected.toArray(new Row[expected.size()]),
+                        cursor(plan, serialContext, serialContext.createBindings()));
+        }
+        finally {
+            txnService().rollbackTransaction(session());
+        }
+    }
+
+    @Test
+    public void testExplain()
+    {
+        Operator plan = gather_Parallel(partitions(ASC, 3, 7), idxRowType, true, 10);
+        List<String> explain = new DefaultFormatter("schema").format(plan.getExplainer(new ExplainContext()));
+        assertEquals("Gather_Parallel(3, ORDERED)", explain.get(0));
+        assertEquals(4, explain.size());
+    }
+
+    // For use by this class
+
+    // Scans of the ranges of a split at the given values of a.
+    private List<Operator> partitions(boolean direction, int... boundaries)
+    {
+        List<Operator> partitions = new ArrayList<>();
+        IndexBound lo = null;
+        for (int i = 0; i <= boundaries.length; i++) {
+            IndexBound hi = null;
+            if (i < boundaries.length) {
+                hi = new IndexBound(row(idxRowType, boundaries[i]), new SetColumnSelector(0));
+            }
+            IndexKeyRange keyRange;
+            if (lo == null) {
+                keyRange = IndexKeyRange.endingAt(idxRowType, hi, false);
+            }
+            else if (hi == null) {
+                keyRange = IndexKeyRange.startingAt(idxRowType, lo, true);
+            }
+            else {
+                keyRange = IndexKeyRange.startingAtAndEndingAt(idxRowType, lo, true, hi, false);
+            }
+            partitions.add(indexScan_Default(idxRowType, keyRange, ordering(direction)));
+            lo = hi;
+        }
+        return partitions;
+    }
+
+    private Row[] expected(boolean direction)
+    {
+        List<Row> rows = new ArrayList<>();
+        for (int a = 0; a < 10; a++) {
+            for (int id = a; id < ROWS; id += 10) {
+                rows.add(row(idxRowType, a, id));
+            }
+        }
+        if (direction == DESC) {
+            Collections.reverse(rows);
+        }
+        return rows.toArray(new Row[rows.size()]);
+    }
+
+    private API.Ordering ordering(boolean direction)
+    {
+        API.Ordering ordering = API.ordering();
+        ordering.append(field(idxRowType, 0), direction);
+        ordering.append(field(idxRowType, 1), direction);
+        return ordering;
+    }
+
+    private static final int ROWS = 100;
+    private static final boolean ASC = true;
+    private static final boolean DESC = false;
+
+    private int t;
+    private IndexRowType idxRowType;
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.aggr.MSum;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+import static com.foundationdb.server.test.ExpressionGenerators.literal;
+import static org.junit.Assert.fail;
+
+public class HashAggregateIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        t = createTable(
+            "schema", "t",
+            "id int not null",
+            "g varchar(10) collate latin1_swedish_ci", // case insensitive
+            "v bigint");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        schema = new Schema(ais());
+        tRowType = schema.tableRowType(table(t));
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        ciCollator = tRowType.table().getColumn("g").getCollator();
+        db = new NewRow[]{
+            createNewRow(t, 1L, "a", 10L),
+            createNewRow(t, 2L, "A", 20L),
+            createNewRow(t, 3L, "b", null),
+            createNewRow(t, 4L, null, 5L),
+            createNewRow(t, 5L, null, 7L),
+            createNewRow(t, 6L, "c", 1L),
+            createNewRow(t, 7L, "b", 3L),
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test
+    public void testBadInputs()
+    {
+        Operator project = project();
+        RowType projectRowType = project.rowType();
+        try {
+            aggregate_Hash(null, projectRowType, 1, AGGREGATORS, TYPES, OPTIONS);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            aggregate_Hash(project, null, 1, AGGREGATORS, TYPES, OPTIONS);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            // No GROUP BY
+            aggregate_Hash(project, projectRowType, 0, AGGREGATORS, TYPES, OPTIONS);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            aggregate_Hash(project, projectRowType, 2, AGGREGATORS, TYPES, OPTIONS);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            aggregate_Hash(project, projectRowType, 1, AGGREGATORS, TYPES.subList(0, 1), OPTIONS);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // Test operator execution
+
+    @Test
+    public void testEmpty()
+    {
+        Operator project =
+            project_DefaultTest(
+                select_HKeyOrdered(
+                    groupScan_Default(group(t)),
+                    tRowType,
+                    literal(false)),
+                tRowType,
+                Arrays.asList(field(tRowType, 1), field(tRowType, 2), field(tRowType, 2)));
+        Operator plan = aggregate_Hash(project, project.rowType(), 1, AGGREGATORS, TYPES, OPTIONS);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testAggregate()
+    {
+        Operator plan = plan();
+        RowType outputRowType = plan.rowType();
+        Row[] expected = new Row[] {
+            row(outputRowType, null, 2L, 12L),
+            row(outputRowType, "a", 2L, 30L),
+            row(outputRowType, "b", 1L, 3L),
+            row(outputRowType, "c", 1L, 1L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator plan = plan();
+        final RowType outputRowType = plan.rowType();
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(outputRowType, null, 2L, 12L),
+                    row(outputRowType, "a", 2L, 30L),
+                    row(outputRowType, "b", 1L, 3L),
+                    row(outputRowType, "c", 1L, 1L),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    private Operator project()
+    {
+        return project_DefaultTest(
+            groupScan_Default(group(t)),
+            tRowType,
+            Arrays.asList(field(tRowType, 1), field(tRowType, 2), field(tRowType, 2)));
+    }
+
+    // SELECT g, COUNT(v), SUM(v) FROM t GROUP BY g, sorted on g since hash order is arbitrary.
+    private Operator plan()
+    {
+        Operator project = project();
+        Operator aggregate = aggregate_Hash(project, project.rowType(), 1, AGGREGATORS, TYPES, OPTIONS);
+        Ordering ordering = new Ordering();
+        ordering.append(field(aggregate.rowType(), 0), true, ciCollator);
+        return sort_General(aggregate, aggregate.rowType(), ordering, SortOption.PRESERVE_DUPLICATES);
+    }
+
+    private static final List<TAggregator> AGGREGATORS =
+        Arrays.asList(MCount.INSTANCES[2], // count, not counting NULL
+                      MSum.INSTANCES[2]);  // BIGINT sum
+    private static final List<TInstance> TYPES =
+        Arrays.asList(MNumeric.BIGINT.instance(false),
+                      MNumeric.BIGINT.instance(true));
+    private static final List<Object> OPTIONS = Arrays.asList(null, null);
+
+    private int t;
+    private TableRowType tRowType;
+    private AkCollator ciCollator;
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexBound;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.api.dml.SetColumnSelector;
+import com.foundationdb.server.api.dml.scan.NewRow;
+import com.foundationdb.server.test.ExpressionGenerators;
+import com.foundationdb.server.types.texpressions.Comparison;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+import static org.junit.Assert.fail;
+
+public class HashJoinIT extends OperatorITBase
+{
+    @Override
+    protected void setupCreateSchema()
+    {
+        // Tables are Driving (D) and Hashed (H). Load a hash table with the Hashed rows with a given
+        // test id. Then find Driving rows with that test id and look up the hashed rows matching a and b.
+        d = createTable(
+            "schema", "driving",
+            "test_id int not null",
+            "a int",
+            "b int");
+        h = createTable(
+            "schema", "hashed",
+            "test_id int not null",
+            "a int",
+            "b int",
+            "c varchar(10)");
+        createIndex("schema", "driving", "idx_d", "test_id", "a", "b");
+    }
+
+    @Override
+    protected void setupPostCreateSchema()
+    {
+        schema = new Schema(ais());
+        hRowType = schema.tableRowType(table(h));
+        dIndexRowType = indexType(d, "test_id", "a", "b");
+        adapter = newStoreAdapter(schema);
+        queryContext = queryContext(adapter);
+        queryBindings = queryContext.createBindings();
+        db = new NewRow[]{
+            // Test 0: No d or h rows
+            // Test 1: No h rows
+            createNewRow(d, 1L, 10L, 100L),
+            // Test 2: No d rows
+            createNewRow(h, 2L, 20L, 200L, "x"),
+            // Test 3: 1 d row, no matching h rows
+            createNewRow(d, 3L, 30L, 300L),
+            createNewRow(h, 3L, 31L, 300L, "x"),
+            createNewRow(h, 3L, 30L, 301L, "x"),
+            // Test 4: 1 d row, 1 matching h row
+            createNewRow(d, 4L, 40L, 400L),
+            createNewRow(h, 4L, 40L, 400L, "x"),
+            createNewRow(h, 4L, 41L, 400L, "y"),
+            createNewRow(h, 4L, 40L, 401L, "z"),
+            // Test 5: multiple d rows, multiple matches, some duplicated
+            createNewRow(d, 5L, 50L, 500L),
+            createNewRow(d, 5L, 51L, 501L),
+            createNewRow(d, 5L, 52L, 502L),
+            createNewRow(h, 5L, 50L, 500L, "x"),
+            createNewRow(h, 5L, 50L, 500L, "y"),
+            createNewRow(h, 5L, 52L, 502L, "z"),
+            createNewRow(h, 5L, 53L, 503L, "w"),
+            // Test 6: Null columns in d and h
+            createNewRow(d, 6L, null, null),
+            createNewRow(d, 6L, 60L, null),
+            createNewRow(h, 6L, null, null, "x"),
+            createNewRow(h, 6L, 60L, null, "y"),
+        };
+        use(db);
+    }
+
+    // Test argument validation
+
+    @Test
+    public void testBadInputs()
+    {
+        try {
+            using_HashTable(null, hRowType, new int[]{1}, 0, groupScan_Default(group(h)));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            using_HashTable(groupScan_Default(group(h)), null, new int[]{1}, 0, groupScan_Default(group(h)));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            using_HashTable(groupScan_Default(group(h)), hRowType, new int[]{}, 0, groupScan_Default(group(h)));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            using_HashTable(groupScan_Default(group(h)), hRowType, new int[]{4}, 0, groupScan_Default(group(h)));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            using_HashTable(groupScan_Default(group(h)), hRowType, new int[]{1}, -1, groupScan_Default(group(h)));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            using_HashTable(groupScan_Default(group(h)), hRowType, new int[]{1}, 0, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            hashTableLookup_Default(null, Arrays.asList(ExpressionGenerators.literal(1).getTPreparedExpression()), 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            hashTableLookup_Default(hRowType, Collections.<TPreparedExpression>emptyList(), 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            hashTableLookup_Default(hRowType, Arrays.asList(ExpressionGenerators.literal(1).getTPreparedExpression()), -1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    // Test operator execution
+
+    @Test
+    public void test0()
+    {
+        Operator plan = plan(0);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void test1()
+    {
+        Operator plan = plan(1);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void test2()
+    {
+        Operator plan = plan(2);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void test3()
+    {
+        Operator plan = plan(3);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void test4()
+    {
+        Operator plan = plan(4);
+        Row[] expected = new Row[] {
+            row(hRowType, 4L, 40L, 400L, "x"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void test5()
+    {
+        Operator plan = plan(5);
+        Row[] expected = new Row[] {
+            row(hRowType, 5L, 50L, 500L, "x"),
+            row(hRowType, 5L, 50L, 500L, "y"),
+            row(hRowType, 5L, 52L, 502L, "z"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void test6()
+    {
+        Operator plan = plan(6);
+        Row[] expected = new Row[] {
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCursor()
+    {
+        Operator plan = plan(5);
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(hRowType, 5L, 50L, 500L, "x"),
+                    row(hRowType, 5L, 50L, 500L, "y"),
+                    row(hRowType, 5L, 52L, 502L, "z"),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
+    public Operator plan(long testId)
+    {
+        // loadHashTable loads the hash table with H rows containing the given testId.
+        Operator loadHashTable =
+            select_HKeyOrdered(
+                filter_Default(
+                    groupScan_Default(group(h)),
+                    Collections.singleton(hRowType)),
+                hRowType,
+                ExpressionGenerators.compare(
+                    ExpressionGenerators.field(hRowType, 0),
+                    Comparison.EQ,
+                    ExpressionGenerators.literal(testId), castResolver()));
+        // For the index scan retrieving rows from the D(test_id) index
+        IndexBound testIdBound =
+            new IndexBound(row(dIndexRowType, testId), new SetColumnSelector(0));
+        IndexKeyRange dTestIdKeyRange =
+            IndexKeyRange.bounded(dIndexRowType, testIdBound, true, testIdBound, true);
+        // Hash H rows on (a, b). Then for each D row, look up the H rows matching D.a and D.b.
+        return
+            using_HashTable(
+                // hashInput
+                loadHashTable,
+                // hashedRowType
+                hRowType,
+                // keyFields
+                new int[]{1, 2},
+                // tableBindingPosition
+                0,
+                // joinedInput
+                map_NestedLoops(
+                    indexScan_Default(dIndexRowType, dTestIdKeyRange, new Ordering()),
+                    hashTableLookup_Default(
+                        hRowType,
+                        generateNew(Arrays.asList(
+                            ExpressionGenerators.boundField(dIndexRowType, 1, 1),
+                            ExpressionGenerators.boundField(dIndexRowType, 1, 2))),
+                        0),
+                    1, false, 1));
+    }
+
+    private int d;
+    private int h;
+    private TableRowType hRowType;
+    IndexRowType dIndexRowType;
+}
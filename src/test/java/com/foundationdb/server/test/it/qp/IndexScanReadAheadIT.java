@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+/** Run the index scan lookahead tests with the cursors read ahead in the background. */
+public class IndexScanReadAheadIT extends IndexScanLookaheadIT
+{
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        return Collections.singletonMap("fdbsql.persistit.read_ahead.threads", "2");
+    }
+
+    @Before
+    public void startReadAheadTap() {
+        ReadAheadTap.start();
+    }
+
+    @Test
+    @Override
+    public void testCursor() {
+        super.testCursor();
+        ReadAheadTap.assertReadAhead();
+    }
+
+    @Test
+    @Override
+    public void testMap() {
+        super.testMap();
+        ReadAheadTap.assertReadAhead();
+    }
+
+    @Test
+    @Override
+    public void testNested() {
+        super.testNested();
+        ReadAheadTap.assertReadAhead();
+    }
+}
@@ -21,13 +21,20 @@ import com.foundationdb.qp.exec.UpdatePlannable;
 import com.foundationdb.qp.exec.UpdateResult;
 import com.foundationdb.qp.expression.IndexKeyRange;
 import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
 import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.qp.row.BindableRow;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.test.ExpressionGenerators;
+import com.foundationdb.server.types.TPreptimeValue;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedFunction;
+import com.foundationdb.server.types.texpressions.TValidatedScalar;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -36,6 +43,9 @@ import static com.foundationdb.qp.operator.API.filter_Default;
 import static com.foundationdb.qp.operator.API.groupScan_Default;
 import static com.foundationdb.qp.operator.API.indexScan_Default;
 import static com.foundationdb.qp.operator.API.insert_Default;
+import static com.foundationdb.qp.operator.API.insert_Returning;
+import static com.foundationdb.qp.operator.API.project_Table;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -110,6 +120,95 @@ public class InsertIT extends OperatorITBase {
         ));
     }
 
+    @Test
+    public void insertReturningProjected() {
+        use(db);
+        Row[] rows = {
+                row(customerRowType, new Object[]{0, "zzz"}),
+                row(customerRowType, new Object[]{3, "jkl"}),
+                row(customerRowType, new Object[]{5, "ooo"})
+        };
+        // cid + 100, so each row is a projection of its own input.
+        TPreparedExpression field0 = ExpressionGenerators.field(customerRowType, 0).getTPreparedExpression();
+        TPreparedExpression field1 = ExpressionGenerators.field(customerRowType, 1).getTPreparedExpression();
+        TPreparedExpression literal = ExpressionGenerators.literal(100).getTPreparedExpression();
+        TValidatedScalar plus = typesRegistryService().getScalarsResolver().get(
+            "plus", asList(new TPreptimeValue(field0.resultType()), new TPreptimeValue(literal.resultType()))
+        ).getOverload();
+        TPreparedFunction prepFunc = new TPreparedFunction(
+            plus, plus.resultType().fixed(false), Arrays.asList(field0, literal), queryContext
+        );
+        Operator insert = insert_Returning(
+            project_Table(
+                rowsToValueScan(rows),
+                customerRowType,
+                customerRowType,
+                asList(prepFunc, field1)
+            )
+        );
+        // Returned after the whole batch has been written.
+        compareRows(
+                array(TestRow.class,
+                      row(customerRowType, 100L, "zzz"),
+                      row(customerRowType, 103L, "jkl"),
+                      row(customerRowType, 105L, "ooo")
+                ),
+                cursor(insert, queryContext, queryBindings)
+        );
+        compareRows(
+                array(Row.class,
+                      row(customerNameIndexRowType, "abc", 2L),
+                      row(customerNameIndexRowType, "jkl", 103L),
+                      row(customerNameIndexRowType, "ooo", 105L),
+                      row(customerNameIndexRowType, "xyz", 1L),
+                      row(customerNameIndexRowType, "zzz", 100L)
+                      ),
+                cursor(
+                indexScan_Default(
+                        customerNameIndexRowType,
+                        IndexKeyRange.unbounded(customerNameIndexRowType),
+                        new API.Ordering()),
+                queryContext, queryBindings
+        ));
+    }
+
+    @Test
+    public void insertReturningSeveralBatches() {
+        use(db);
+        final int nrows = 2500;
+        Row[] rows = new Row[nrows];
+        for (int i = 0; i < nrows; i++) {
+            // Not in key order.
+            int cid = 1000 + (i * 7919) % nrows;
+            rows[i] = row(customerRowType, new Object[]{cid, "c" + cid});
+        }
+        Cursor cursor = cursor(insert_Returning(rowsToValueScan(rows)), queryContext, queryBindings);
+        cursor.openTopLevel();
+        int nreturned = 0;
+        Row row;
+        while ((row = cursor.next()) != null) {
+            assertEquals("returned in input order", rows[nreturned].value(0).getInt32(), row.value(0).getInt32());
+            nreturned++;
+        }
+        cursor.closeTopLevel();
+        assertEquals("rows returned", nrows, nreturned);
+        Cursor scan = cursor(indexScan_Default(
+                                 customerCidIndexRowType,
+                                 IndexKeyRange.unbounded(customerCidIndexRowType),
+                                 new API.Ordering()),
+                             queryContext, queryBindings);
+        scan.openTopLevel();
+        int nscanned = 0;
+        while ((row = scan.next()) != null) {
+            if (row.value(0).getInt32() >= 1000) {
+                assertEquals(1000 + nscanned, row.value(0).getInt32());
+                nscanned++;
+            }
+        }
+        scan.closeTopLevel();
+        assertEquals("rows in index", nrows, nscanned);
+    }
+
     private void doInsert() {
         Row[] rows = {
                 row(customerRowType, new Object[]{0, "zzz"}),
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.util.tap.Tap;
+import com.foundationdb.util.tap.TapReport;
+
+import static org.junit.Assert.assertTrue;
+
+/** Watches the <code>read_ahead</code> tap, which is hit on the pool thread as each background read starts. */
+final class ReadAheadTap
+{
+    public static void start() {
+        Tap.setEnabled(TAP_PATTERN, true);
+        Tap.reset(TAP_PATTERN);
+    }
+
+    public static void assertReadAhead() {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (count() == 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        assertTrue("no pages read ahead", count() > 0);
+    }
+
+    private static long count() {
+        long count = 0;
+        for (TapReport report : Tap.getReport(TAP_PATTERN)) {
+            count += report.getInCount();
+        }
+        return count;
+    }
+
+    private ReadAheadTap() {
+    }
+
+    private static final String TAP_PATTERN = "read_ahead";
+    private static final long WAIT_MILLIS = 5000;
+}
@@ -20,7 +20,9 @@ package com.foundationdb.server.test.it.qp;
 import com.foundationdb.qp.expression.IndexBound;
 import com.foundationdb.qp.expression.IndexKeyRange;
 import com.foundationdb.qp.expression.RowBasedUnboundExpressions;
+import com.foundationdb.qp.operator.ExecutionStatistics;
 import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.OperatorStatistics;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.qp.rowtype.RowType;
@@ -36,6 +38,7 @@ import java.util.Arrays;
 import java.util.Collections;
 
 import static com.foundationdb.qp.operator.API.*;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 public class Select_BloomFilterIT extends OperatorITBase
@@ -251,6 +254,20 @@ public class Select_BloomFilterIT extends OperatorITBase
         testCursorLifecycle(plan, testCase);
     }
 
+    @Test
+    public void testStatistics()
+    {
+        Operator plan = plan(6);
+        ExecutionStatistics statistics = new ExecutionStatistics();
+        assertEquals(2, statistics.run(plan, queryContext, queryBindings));
+        // Project_Default -> Using_BloomFilter -> Select_BloomFilter
+        Operator select = plan.getInputOperators().get(0).getInputOperators().get(1);
+        OperatorStatistics selectStatistics = statistics.get(select);
+        assertEquals(4, selectStatistics.getFilterProbes());
+        // Any other passes are false positives, which are unlikely but possible.
+        assertEquals(2, selectStatistics.getFilterPasses() - selectStatistics.getFilterFalsePositives());
+    }
+
     public Operator plan(long testId)
     {
         // loadFilter loads the filter with F rows containing the given testId.
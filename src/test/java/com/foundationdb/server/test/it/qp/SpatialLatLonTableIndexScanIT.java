@@ -36,10 +36,12 @@ import com.foundationdb.server.geophile.SpaceLatLon;
 import org.junit.Test;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.*;
 
 import static com.foundationdb.qp.operator.API.cursor;
 import static com.foundationdb.qp.operator.API.indexScan_Default;
+import static com.foundationdb.qp.operator.API.limit_Default;
 import static java.lang.Math.abs;
 import static org.junit.Assert.*;
 import static org.junit.Assert.assertEquals;
@@ -592,6 +594,85 @@ public class SpatialLatLonTableIndexScanIT extends OperatorITBase
         }
     }
 
+    @Test
+    public void testNearestNeighbors()
+    {
+        loadDB();
+        final int N = 100;
+        for (int i = 0; i < N; i++) {
+            // At the resolution of the index, so that distances are exact
+            BigDecimal queryLat = randomLat().setScale(6, RoundingMode.DOWN);
+            BigDecimal queryLon = randomLon().setScale(6, RoundingMode.DOWN);
+            // Expected
+            List<Long> expectedDistances = new ArrayList<>();
+            for (int id = 0; id < lats.size(); id++) {
+                expectedDistances.add(distanceSquared(queryLat, queryLon, id));
+            }
+            Collections.sort(expectedDistances);
+            // Actual
+            IndexBound pointBound = new IndexBound(row(latLonIndexRowType, queryLat, queryLon),
+                                                   new SetColumnSelector(0, 1));
+            IndexKeyRange nearestRange = IndexKeyRange.nearest(latLonIndexRowType, pointBound);
+            Operator plan = indexScan_Default(latLonIndexRowType, nearestRange, lookaheadQuantum());
+            Cursor cursor = API.cursor(plan, queryContext, queryBindings);
+            cursor.openTopLevel();
+            Row row;
+            List<Long> actualDistances = new ArrayList<>();
+            while ((row = cursor.next()) != null) {
+                assertSame(latLonIndexRowType.physicalRowType(), row.rowType());
+                long zActual = getLong(row, 0);
+                int id = getLong(row, 1).intValue();
+                assertEquals(zs.get(id).longValue(), zActual);
+                assertEquals(expectedHKey(id), row.hKey().toString());
+                actualDistances.add(distanceSquared(queryLat, queryLon, id));
+            }
+            assertEquals(expectedDistances, actualDistances);
+        }
+    }
+
+    @Test
+    public void testHybridNearestNeighbors()
+    {
+        loadDB();
+        final int N = 100;
+        final int K = 5;
+        for (int i = 0; i < N; i++) {
+            // At the resolution of the index, so that distances are exact
+            BigDecimal queryLat = randomLat().setScale(6, RoundingMode.DOWN);
+            BigDecimal queryLon = randomLon().setScale(6, RoundingMode.DOWN);
+            for (int before = 0; before <= 2; before++) {
+                // Expected
+                List<Long> expectedDistances = new ArrayList<>();
+                for (int id = 0; id < lats.size(); id++) {
+                    if (before(id) == before) {
+                        expectedDistances.add(distanceSquared(queryLat, queryLon, id));
+                    }
+                }
+                Collections.sort(expectedDistances);
+                expectedDistances = expectedDistances.subList(0, K);
+                // Actual
+                IndexBound pointBound =
+                    new IndexBound(row(beforeLatLonIndexRowType, before, queryLat, queryLon),
+                                   new SetColumnSelector(0, 1, 2));
+                IndexKeyRange nearestRange = IndexKeyRange.nearest(beforeLatLonIndexRowType, pointBound);
+                Operator plan = limit_Default(indexScan_Default(beforeLatLonIndexRowType, nearestRange, lookaheadQuantum()),
+                                              K);
+                Cursor cursor = API.cursor(plan, queryContext, queryBindings);
+                cursor.openTopLevel();
+                Row row;
+                List<Long> actualDistances = new ArrayList<>();
+                while ((row = cursor.next()) != null) {
+                    assertSame(beforeLatLonIndexRowType.physicalRowType(), row.rowType());
+                    assertEquals(before, getLong(row, 0).intValue());
+                    int id = getLong(row, 2).intValue();
+                    assertEquals(zs.get(id).longValue(), getLong(row, 1).longValue());
+                    actualDistances.add(distanceSquared(queryLat, queryLon, id));
+                }
+                assertEquals(expectedDistances, actualDistances);
+            }
+        }
+    }
+
     @Test
     public void testLongitudeBounds()
     {
@@ -784,6 +865,17 @@ public class SpatialLatLonTableIndexScanIT extends OperatorITBase
         }
     }
 
+    // Squared distance, in scaled units, measured as by DISTANCE_LAT_LON.
+    private long distanceSquared(BigDecimal queryLat, BigDecimal queryLon, int id)
+    {
+        long dLat = SpaceLatLon.scaleLat(lats.get(id)) - SpaceLatLon.scaleLat(queryLat);
+        long dLon = abs(SpaceLatLon.scaleLon(lons.get(id)) - SpaceLatLon.scaleLon(queryLon));
+        if (dLon > SpaceLatLon.scaleLon(new BigDecimal(LON_HI))) {
+            dLon = SpaceLatLon.scaleLon(new BigDecimal(LON_RANGE)) - dLon;
+        }
+        return dLat * dLat + dLon * dLon;
+    }
+
     private BigDecimal randomLat()
     {
         return new BigDecimal(random.nextDouble() * LAT_RANGE + LAT_LO);
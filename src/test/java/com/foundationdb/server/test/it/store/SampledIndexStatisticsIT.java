@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.test.it.store;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.server.service.transaction.TransactionService.CloseableTransaction;
+import com.foundationdb.server.store.statistics.Histogram;
+import com.foundationdb.server.store.statistics.HistogramEntry;
+import com.foundationdb.server.store.statistics.IndexStatistics;
+import com.foundationdb.server.store.statistics.IndexStatisticsService;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public final class SampledIndexStatisticsIT extends ITBase {
+    private static final String SCHEMA = "test";
+    private static final int SAMPLE_SIZE = 500;
+    private static final int ROW_COUNT = 4000;
+    private static final int DISTINCT_VALUES = 10;
+
+    private int tableId;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String, String> properties = new HashMap<>(uniqueStartupConfigProperties(getClass()));
+        properties.put("fdbsql.index_statistics.sample_size", Integer.toString(SAMPLE_SIZE));
+        properties.put("fdbsql.index_statistics.refresh_fraction", "0.5");
+        return properties;
+    }
+
+    @Before
+    public void createTable() {
+        tableId = createTable(SCHEMA, "t", "id int not null primary key, v int");
+        createIndex(SCHEMA, "t", "v", "v");
+    }
+
+    @Test
+    public void largeIndexIsSampled() {
+        insertRows(0, ROW_COUNT);
+        IndexStatistics stats = analyze("v");
+        assertEquals("row count", ROW_COUNT, stats.getRowCount());
+        assertTrue("sampled count " + stats.getSampledCount(),
+                   (stats.getSampledCount() > 0) && (stats.getSampledCount() < ROW_COUNT));
+        Histogram histogram = stats.getHistogram(0, 1);
+        assertNotNull("histogram", histogram);
+        long total = 0;
+        for (HistogramEntry entry : histogram.getEntries()) {
+            total += entry.getEqualCount() + entry.getLessCount();
+        }
+        assertEquals("histogram covers sample", stats.getSampledCount(), total);
+        assertTrue("at most one bucket per value", histogram.getEntries().size() <= DISTINCT_VALUES);
+    }
+
+    @Test
+    public void smallIndexIsRead() {
+        insertRows(0, SAMPLE_SIZE);
+        IndexStatistics stats = analyze("v");
+        assertEquals("row count", SAMPLE_SIZE, stats.getRowCount());
+        assertEquals("sampled count", SAMPLE_SIZE, stats.getSampledCount());
+    }
+
+    @Test
+    public void refreshedAfterChanges() throws InterruptedException {
+        insertRows(0, ROW_COUNT);
+        analyze("v");
+        Index index = getTable(tableId).getIndex("v");
+        insertRows(ROW_COUNT, ROW_COUNT * 2);
+        long deadline = System.currentTimeMillis() + 30000;
+        IndexStatistics stats;
+        do {
+            Thread.sleep(100);
+            try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+                stats = statsService().getIndexStatistics(session(), index);
+                txn.commit();
+            }
+        } while ((stats.getRowCount() == ROW_COUNT) && (System.currentTimeMillis() < deadline));
+        assertTrue("row count refreshed " + stats.getRowCount(), stats.getRowCount() > ROW_COUNT);
+    }
+
+    private void insertRows(int from, int to) {
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            for (int id = from; id < to; id++) {
+                writeRow(tableId, id, id % DISTINCT_VALUES);
+                txnService().periodicallyCommit(session());
+            }
+            txn.commit();
+        }
+    }
+
+    private IndexStatistics analyze(String indexName) {
+        Index index = getTable(tableId).getIndex(indexName);
+        ddl().updateTableStatistics(session(), index.leafMostTable().getName(), Collections.singleton(indexName));
+        IndexStatistics stats;
+        try(CloseableTransaction txn = txnService().beginCloseableTransaction(session())) {
+            stats = statsService().getIndexStatistics(session(), index);
+            txn.commit();
+        }
+        assertNotNull("statistics", stats);
+        return stats;
+    }
+
+    private IndexStatisticsService statsService() {
+        return serviceManager().getServiceByClass(IndexStatisticsService.class);
+    }
+}
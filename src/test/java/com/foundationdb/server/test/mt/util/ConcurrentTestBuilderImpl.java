@@ -240,6 +240,10 @@ public class ConcurrentTestBuilderImpl implements ConcurrentTestBuilder
             }
         }
 
+        @Override
+        public void progress(OnlineDDLMonitor.Progress progress, long count) {
+        }
+
         private void atBarrier(String barrierName) throws BrokenBarrierException, InterruptedException {
             if(barrierName != null) {
                 CyclicBarrier barrier = barriers.get(barrierName);
@@ -92,5 +92,11 @@ public class MonitoredDDLThread extends MonitoredThread
                 mark(stage.name());
             }
         }
+
+        @Override
+        public void progress(OnlineDDLMonitor.Progress progress, long count) {
+            delegate.progress(progress, count);
+            LOG.trace("progress: {} {}", progress, count);
+        }
     }
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.RowsBuilder;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.TScalar;
+import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.common.funcs.BoolLogic;
+import com.foundationdb.server.types.mcompat.mfuncs.MArithmetic;
+import com.foundationdb.server.types.mcompat.mtypes.MApproximateNumber;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.mcompat.mtypes.MString;
+import com.foundationdb.server.types.value.ValueSources;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TExpressionCompilerTest {
+    private static final TInstance BIGINT = MNumeric.BIGINT.instance(true);
+    private static final TInstance DOUBLE = MApproximateNumber.DOUBLE.instance(true);
+    private static final TInstance BOOL = AkBool.INSTANCE.instance(true);
+    private static final TInstance VARCHAR = MString.varchar();
+
+    private final Collection<Row> rows = new RowsBuilder(BIGINT, DOUBLE, BOOL)
+        .row(10L, 1.0, true)
+        .row(3L, 1.0, false)
+        .row(10L, 3.0, null)
+        .row(null, 1.0, true)
+        .row(null, 3.0, false)
+        .row(10L, null, null)
+        .row(3L, null, true)
+        .row(Long.MAX_VALUE, 1e308, false)
+        .rows();
+
+    @Test
+    public void comparison() {
+        check(compare(field(BIGINT, 0), Comparison.GT, literal(BIGINT, 5L)));
+        check(compare(field(DOUBLE, 1), Comparison.NE, literal(DOUBLE, 1.0)));
+        check(compare(literal(BIGINT, 3L), Comparison.LE, field(BIGINT, 0)));
+    }
+
+    @Test
+    public void logic() {
+        TPreparedExpression a = compare(field(BIGINT, 0), Comparison.GT, literal(BIGINT, 5L));
+        TPreparedExpression b = compare(field(DOUBLE, 1), Comparison.LT, literal(DOUBLE, 2.0));
+        TPreparedExpression c = field(BOOL, 2);
+        check(function(BoolLogic.BINARIES[0], BOOL, a, b));
+        check(function(BoolLogic.BINARIES[1], BOOL, a, b));
+        check(function(BoolLogic.NOT, BOOL, function(BoolLogic.BINARIES[0], BOOL, c, function(BoolLogic.BINARIES[1], BOOL, a, b))));
+    }
+
+    @Test
+    public void arithmetic() {
+        check(function(MArithmetic.ADD_BIGINT, BIGINT, field(BIGINT, 0), literal(BIGINT, 1L)));
+        check(function(MArithmetic.SUBTRACT_BIGINT, BIGINT, field(BIGINT, 0), field(BIGINT, 0)));
+        check(function(MArithmetic.MULTIPLY_DOUBLE, DOUBLE, field(DOUBLE, 1), literal(DOUBLE, 10.0)));
+        check(compare(function(MArithmetic.MULTIPLY_BIGINT, BIGINT, field(BIGINT, 0), literal(BIGINT, 2L)),
+                      Comparison.EQ, literal(BIGINT, 20L)));
+    }
+
+    @Test
+    public void sameShapeShared() {
+        TPreparedExpression a = compare(field(BIGINT, 0), Comparison.GT, literal(BIGINT, 5L));
+        TPreparedExpression b = compare(field(BIGINT, 0), Comparison.GT, literal(BIGINT, 5L));
+        TPreparedExpression c = compare(field(BIGINT, 0), Comparison.GT, literal(BIGINT, 6L));
+        TExpressionCompiler.Evaluator ea = ((TExpressionCompiler.Compiled)TExpressionCompiler.compile(a)).evaluator;
+        TExpressionCompiler.Evaluator eb = ((TExpressionCompiler.Compiled)TExpressionCompiler.compile(b)).evaluator;
+        TExpressionCompiler.Evaluator ec = ((TExpressionCompiler.Compiled)TExpressionCompiler.compile(c)).evaluator;
+        assertSame(ea, eb);
+        assertNotSame(ea, ec);
+    }
+
+    @Test
+    public void unsupported() {
+        TPreparedExpression field = field(BIGINT, 0);
+        assertSame(field, TExpressionCompiler.compile(field));
+        TPreparedExpression strings = compare(field(VARCHAR, 0), Comparison.EQ, literal(VARCHAR, "abc"));
+        assertSame(strings, TExpressionCompiler.compile(strings));
+        TPreparedExpression withLiteral = function(BoolLogic.BINARIES[0], BOOL,
+                                                   field(BOOL, 2), literal(BOOL, true));
+        assertSame(withLiteral, TExpressionCompiler.compile(withLiteral));
+    }
+
+    private void check(TPreparedExpression expression) {
+        TPreparedExpression compiled = TExpressionCompiler.compile(expression);
+        assertTrue(expression.toString(), compiled instanceof TExpressionCompiler.Compiled);
+        TEvaluatableExpression expected = expression.build();
+        TEvaluatableExpression actual = compiled.build();
+        for (Row row : rows) {
+            expected.with(row);
+            expected.evaluate();
+            actual.with(row);
+            actual.evaluate();
+            assertEquals(expression + " on " + row,
+                         String.valueOf(expected.resultValue()), String.valueOf(actual.resultValue()));
+        }
+    }
+
+    private static TPreparedExpression field(TInstance type, int index) {
+        return new TPreparedField(type, index);
+    }
+
+    private static TPreparedExpression literal(TInstance type, Object value) {
+        return new TPreparedLiteral(type, ValueSources.valuefromObject(value, type));
+    }
+
+    private static TPreparedExpression compare(TPreparedExpression left, Comparison comparison, TPreparedExpression right) {
+        return new TComparisonExpression(left, comparison, right);
+    }
+
+    private static TPreparedExpression function(TScalar scalar, TInstance resultType, TPreparedExpression... inputs) {
+        return new TPreparedFunction(new TValidatedScalar(scalar), resultType, Arrays.asList(inputs), null);
+    }
+}
@@ -27,6 +27,7 @@ import com.foundationdb.qp.rowtype.Schema;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.mcompat.mtypes.MDatetimes;
 import com.foundationdb.server.types.mcompat.mtypes.MString;
+import com.foundationdb.server.types.value.Value;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -359,6 +360,46 @@ public class CostEstimatorTest
         }
     };
 
+    protected static List<String> boundaryStrings(List<Value> boundaries) {
+        if (boundaries == null)
+            return null;
+        List<String> result = new ArrayList<>(boundaries.size());
+        for (Value boundary : boundaries) {
+            result.add(boundary.getString());
+        }
+        return result;
+    }
+
+    @Test
+    public void testPartitionBoundaries() throws Exception {
+        Index index = index("addresses", "state");
+        assertEquals(Arrays.asList("IL", "ME", "NH"),
+                     boundaryStrings(costEstimator.getIndexPartitionBoundaries(index, 4)));
+        assertEquals(Arrays.asList("ME"),
+                     boundaryStrings(costEstimator.getIndexPartitionBoundaries(index, 2)));
+        assertNull(costEstimator.getIndexPartitionBoundaries(index, 1));
+    }
+
+    @Test
+    public void testPartitionBoundariesNullFirst() throws Exception {
+        // The NULLs always stay in the first range, even when that
+        // makes it larger than the rest.
+        Index index = index("addresses", "state");
+        assertEquals(Arrays.asList("CA", "CT", "IL", "MA", "ME", "MO", "NH", "NY"),
+                     boundaryStrings(costEstimator.getIndexPartitionBoundaries(index, 10)));
+    }
+
+    @Test
+    public void testPartitionBoundariesSkewed() throws Exception {
+        CostEstimator skewed = new TestCostEstimator(ais, new Schema(ais), new File(RESOURCE_DIR, "stats-skewed.yaml"), false, new Properties());
+        // A single value with most of the rows gets a range to itself
+        // and there are fewer ranges than asked for.
+        Index index = index("addresses", "state");
+        assertEquals(Arrays.asList("MA", "NY"),
+                     boundaryStrings(skewed.getIndexPartitionBoundaries(index, 4)));
+        assertNull(skewed.getIndexPartitionBoundaries(index("customers", "name"), 4));
+    }
+
     @Test
     public void testUniformPortion() {
         assertEquals(8, CostEstimator.uniformPortion("A".getBytes(),
@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+/** Test the buffered message framing of {@link PostgresMessenger}. */
+public class PostgresMessengerTest
+{
+    private Socket serverSocket, clientSocket;
+    private PostgresMessenger messenger;
+    private DataInputStream clientInput;
+    private DataOutputStream clientOutput;
+
+    @Before
+    public void connect() throws IOException {
+        ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        try {
+            clientSocket = new Socket(listener.getInetAddress(), listener.getLocalPort());
+            serverSocket = listener.accept();
+        }
+        finally {
+            listener.close();
+        }
+        clientSocket.setSoTimeout(10000);
+        messenger = new PostgresMessenger(serverSocket);
+        clientInput = new DataInputStream(clientSocket.getInputStream());
+        clientOutput = new DataOutputStream(clientSocket.getOutputStream());
+    }
+
+    @After
+    public void disconnect() throws IOException {
+        clientSocket.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void pipelinedMessages() throws IOException {
+        byte[] big = filled(5000, (byte)'x');
+        clientSend('Q', big);
+        clientSend('Q', filled(10, (byte)'y'));
+        clientOutput.flush();
+
+        assertEquals(PostgresMessages.QUERY_TYPE, messenger.readMessage());
+        assertEquals(big.length, messenger.getRawMessageLength());
+        assertArrayEquals(big, Arrays.copyOf(messenger.getRawMessage(), big.length));
+        assertTrue("second message buffered", waitForBufferedInput());
+
+        // Shorter message may be read into the same buffer.
+        assertEquals(PostgresMessages.QUERY_TYPE, messenger.readMessage());
+        assertEquals(10, messenger.getRawMessageLength());
+        for (int i = 0; i < 10; i++) {
+            assertEquals('y', messenger.readByte());
+        }
+        assertFalse(messenger.hasBufferedInput());
+    }
+
+    @Test
+    public void outputHeldUntilFlush() throws IOException {
+        sendRow(3);
+        sendCommandComplete("SELECT 1");
+        assertEquals(0, clientSocket.getInputStream().available());
+        messenger.flush();
+        checkRow(3);
+        checkCommandComplete("SELECT 1");
+    }
+
+    @Test
+    public void largeOutputWritten() throws IOException {
+        // More than the write size in total, but no single large message.
+        final int nrows = 8000;
+        for (int i = 0; i < nrows; i++) {
+            sendRow(i);
+        }
+        // Only some written so far, but those are whole messages.
+        for (int i = 0; i < 7000; i++) {
+            checkRow(i);
+        }
+        messenger.flush();
+        for (int i = 7000; i < nrows; i++) {
+            checkRow(i);
+        }
+    }
+
+    @Test
+    public void largeMessage() throws IOException {
+        byte[] big = filled(200 * 1024, (byte)'z');
+        sendRow(1);
+        messenger.beginMessage(PostgresMessages.DATA_ROW_TYPE.code());
+        messenger.write(big);
+        messenger.sendMessage(true);
+        sendRow(2);
+        messenger.flush();
+        checkRow(1);
+        assertEquals('D', clientInput.read());
+        assertEquals(4 + big.length, clientInput.readInt());
+        byte[] read = new byte[big.length];
+        clientInput.readFully(read);
+        assertArrayEquals(big, read);
+        checkRow(2);
+    }
+
+    @Test
+    public void flushRows() throws IOException {
+        messenger.setFlushRows(2);
+        sendRow(1);
+        assertEquals(0, clientSocket.getInputStream().available());
+        sendRow(2);
+        checkRow(1);
+        checkRow(2);
+        sendCommandComplete("SELECT 2");
+        sendRow(3);
+        assertEquals(0, clientSocket.getInputStream().available());
+        sendRow(4);
+        checkCommandComplete("SELECT 2");
+        checkRow(3);
+        checkRow(4);
+    }
+
+    @Test
+    public void suspendAroundAsync() throws IOException {
+        sendRow(1);
+        messenger.beginMessage(PostgresMessages.DATA_ROW_TYPE.code());
+        messenger.writeInt(2);
+        Object state = messenger.suspendMessage();
+        sendCommandComplete("NOTIFY");
+        messenger.resumeMessage(state);
+        messenger.sendMessage(true);
+        checkRow(1);
+        checkCommandComplete("NOTIFY");
+        checkRow(2);
+    }
+
+    private void clientSend(char type, byte[] body) throws IOException {
+        clientOutput.write(type);
+        clientOutput.writeInt(4 + body.length);
+        clientOutput.write(body);
+    }
+
+    private boolean waitForBufferedInput() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            if (messenger.hasBufferedInput())
+                return true;
+            try {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException ex) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void sendRow(int n) throws IOException {
+        messenger.beginMessage(PostgresMessages.DATA_ROW_TYPE.code());
+        messenger.writeInt(n);
+        messenger.sendMessage();
+    }
+
+    private void checkRow(int n) throws IOException {
+        assertEquals('D', clientInput.read());
+        assertEquals(8, clientInput.readInt());
+        assertEquals(n, clientInput.readInt());
+    }
+
+    private void sendCommandComplete(String tag) throws IOException {
+        messenger.beginMessage(PostgresMessages.COMMAND_COMPLETE_TYPE.code());
+        messenger.writeString(tag);
+        messenger.sendMessage();
+    }
+
+    private void checkCommandComplete(String tag) throws IOException {
+        byte[] expected = (tag + "\0").getBytes("UTF-8");
+        assertEquals('C', clientInput.read());
+        assertEquals(4 + expected.length, clientInput.readInt());
+        byte[] read = new byte[expected.length];
+        clientInput.readFully(read);
+        assertArrayEquals(expected, read);
+    }
+
+    private static byte[] filled(int length, byte b) {
+        byte[] result = new byte[length];
+        Arrays.fill(result, b);
+        return result;
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 import static junit.framework.Assert.*;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
@@ -102,6 +103,46 @@ public class PostgresServerCacheIT extends PostgresServerFilesITBase
         
     }
     
+    @Test
+    public void testSharedAcrossConnections() throws Exception {
+        Statement stmt = getConnection().createStatement();
+        query(stmt, 1);
+        stmt.close();
+        Connection other = openConnection();
+        try {
+            stmt = other.createStatement();
+            query(stmt, 1);
+            stmt.close();
+        }
+        finally {
+            closeConnection(other);
+        }
+        assertEquals("Cache hits matches", 1, server().getStatementCacheHits() - hitsBase);
+        assertEquals("Cache misses matches", 1, server().getStatementCacheMisses() - missesBase);
+    }
+
+    @Test
+    public void testLayout() throws Exception {
+        Statement stmt = getConnection().createStatement();
+        query(stmt, 1);
+        ResultSet rs = stmt.executeQuery("  SELECT id\n  FROM t1\tWHERE id = 1 ");
+        assertTrue("Query has results", rs.next());
+        stmt.close();
+        assertEquals("Cache hits matches", 1, server().getStatementCacheHits() - hitsBase);
+        assertEquals("Cache misses matches", 1, server().getStatementCacheMisses() - missesBase);
+    }
+
+    @Test
+    public void testEvictions() throws Exception {
+        int evictionsBase = server().getStatementCacheEvictions();
+        Statement stmt = getConnection().createStatement();
+        for (int i = 0; i < 20; i++) {
+            query(stmt, i);
+        }
+        stmt.close();
+        assertEquals("Cache evictions matches", 10, server().getStatementCacheEvictions() - evictionsBase);
+    }
+
     protected void query(Statement stmt, int n) throws Exception {
         ResultSet rs = stmt.executeQuery(String.format(QUERY, n));
         if (rs.next()) {
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import com.foundationdb.junit.NamedParameterizedRunner;
+import com.foundationdb.junit.NamedParameterizedRunner.TestParameters;
+import com.foundationdb.junit.Parameterization;
+import org.junit.runner.RunWith;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/** Run the <code>select</code> cases, whose results come from the
+ * interpreted expressions, with expressions compiled to bytecode.
+ */
+@RunWith(NamedParameterizedRunner.class)
+public class PostgresServerCompiledExpressionsIT extends PostgresServerSelectIT
+{
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        return Collections.singletonMap("optimizer.compileExpressions", "true");
+    }
+
+    @TestParameters
+    public static Collection<Parameterization> queries() throws Exception {
+        return PostgresServerSelectIT.queries();
+    }
+
+    public PostgresServerCompiledExpressionsIT(String caseName, String sql, 
+                                               String expected, String error,
+                                               String[] params) {
+        super(caseName, sql, expected, error, params);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.foundationdb.sql.pg;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PostgresServerNioIT extends PostgresServerITBase
+{
+    private static final int NCONNECTIONS = 20;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String, String> properties = new HashMap<>(super.startupConfigProperties());
+        properties.put("fdbsql.postgres.nio", "true");
+        properties.put("fdbsql.postgres.worker_threads", "2");
+        return properties;
+    }
+
+    @Before
+    public void createData() throws Exception {
+        createTable(SCHEMA_NAME, "t1", "id int not null primary key, n int");
+        Statement stmt = getConnection().createStatement();
+        stmt.executeUpdate("INSERT INTO t1 VALUES(1, 10), (2, 20), (3, 30)");
+        stmt.close();
+    }
+
+    @Test
+    public void moreConnectionsThanWorkers() throws Exception {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < NCONNECTIONS; i++) {
+                connections.add(openConnection());
+            }
+            for (int round = 0; round < 3; round++) {
+                for (Connection connection : connections) {
+                    assertEquals(60, sum(connection));
+                }
+            }
+        }
+        finally {
+            for (Connection connection : connections) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    @Test
+    public void idleTransactionsReleaseWorkers() throws Exception {
+        // More connections idle inside a transaction than there are workers.
+        List<Connection> connections = new ArrayList<>();
+        Connection other = openConnection();
+        try {
+            for (int i = 0; i < 3; i++) {
+                Connection connection = openConnection();
+                connections.add(connection);
+                connection.setAutoCommit(false);
+                Statement stmt = connection.createStatement();
+                stmt.executeUpdate("INSERT INTO t1 VALUES(" + (4 + i) + ", 1)");
+                stmt.close();
+                assertEquals(61, sum(connection));
+            }
+            // Still served, without seeing uncommitted rows.
+            assertEquals(60, sum(other));
+            // Each transaction carries on, whichever worker runs it.
+            for (Connection connection : connections) {
+                assertEquals(61, sum(connection));
+                connection.commit();
+            }
+            assertEquals(63, sum(other));
+        }
+        finally {
+            for (Connection connection : connections) {
+                closeConnection(connection);
+            }
+            closeConnection(other);
+        }
+    }
+
+    @Test
+    public void killIdleConnection() throws Exception {
+        Set<Integer> before = server().getCurrentSessions();
+        Connection connection = openConnection();
+        try {
+            assertEquals(60, sum(connection));
+            Set<Integer> sessions = new HashSet<>(server().getCurrentSessions());
+            sessions.removeAll(before);
+            assertEquals(1, sessions.size());
+            int sessionId = sessions.iterator().next();
+            server().killConnection(sessionId);
+            for (int i = 0; i < 10; i++) {
+                if (server().getConnection(sessionId) == null) break;
+                Thread.sleep(100);
+            }
+            assertNull("connection removed", server().getConnection(sessionId));
+            try {
+                sum(connection);
+                fail("killed connection still works");
+            }
+            catch (SQLException ex) {
+            }
+        }
+        finally {
+            closeConnection(connection);
+        }
+    }
+
+    protected int sum(Connection connection) throws Exception {
+        Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT SUM(n) FROM t1");
+        assertTrue(rs.next());
+        int sum = rs.getInt(1);
+        rs.close();
+        stmt.close();
+        return sum;
+    }
+}
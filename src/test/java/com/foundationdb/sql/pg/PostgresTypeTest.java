@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.pg;
+
+import com.foundationdb.sql.pg.PostgresType.TypeOid;
+import com.foundationdb.sql.server.ServerType.BinaryEncoding;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.sql.Types;
+
+public class PostgresTypeTest
+{
+    @Test
+    public void textToJDBC() {
+        assertEquals(Types.LONGVARCHAR, PostgresType.toJDBC(25));
+        assertEquals(Types.VARCHAR, PostgresType.toJDBC(1043));
+    }
+
+    @Test
+    public void unknownToJDBC() {
+        assertEquals(Types.OTHER, PostgresType.toJDBC(-1));
+        assertEquals(Types.OTHER, PostgresType.toJDBC(TypeOid.REGPROC_TYPE_OID.getOid()));
+    }
+
+    @Test
+    public void textBinaryEncoding() {
+        assertEquals(BinaryEncoding.STRING_BYTES, TypeOid.TEXT_TYPE_OID.getBinaryEncoding());
+        assertEquals(TypeOid.VARCHAR_TYPE_OID.getBinaryEncoding(), TypeOid.TEXT_TYPE_OID.getBinaryEncoding());
+    }
+}
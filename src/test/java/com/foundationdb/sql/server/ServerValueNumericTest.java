@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2009-2013 FoundationDB, LLC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.foundationdb.sql.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/** Binary <code>numeric</code> encoding in {@link ServerValueEncoder}
+ * and decoding in {@link ServerValueDecoder}. */
+public class ServerValueNumericTest
+{
+    @Test
+    public void zero() {
+        checkEncoding("0", 0, 0, 0);
+        checkEncoding("0.00", 0, 0, 2);
+        checkRoundTrip("0");
+        checkRoundTrip("0.000");
+    }
+
+    @Test
+    public void digitGroups() {
+        checkEncoding("1", 0, 0, 0, 1);
+        checkEncoding("10000", 1, 0, 0, 1);
+        checkEncoding("12345.678", 1, 0, 3, 1, 2345, 6780);
+        checkEncoding("0.0001", -1, 0, 4, 1);
+        checkEncoding("0.00001", -2, 0, 5, 1000);
+        checkEncoding("-1.5", 0, 0x4000, 1, 1, 5000);
+    }
+
+    @Test
+    public void negative() {
+        checkRoundTrip("-1");
+        checkRoundTrip("-0.5");
+        checkRoundTrip("-12345.678");
+        checkRoundTrip("-99999999.99999999");
+    }
+
+    @Test
+    public void largeScale() {
+        checkRoundTrip("0.000000000000000001");
+        checkRoundTrip("1.000000000000000001");
+        checkRoundTrip("3.14159265358979323846264338327950288");
+        checkRoundTrip("-0.10000000000000000000000000000000000");
+    }
+
+    @Test
+    public void overLongBits() {
+        // Just either side of the limit for the long path.
+        BigInteger limit = BigInteger.ONE.shiftLeft(49);
+        checkRoundTrip(new BigDecimal(limit.subtract(BigInteger.ONE)));
+        checkRoundTrip(new BigDecimal(limit));
+        checkRoundTrip(new BigDecimal(limit.negate(), 3));
+        checkRoundTrip(new BigDecimal(limit.add(BigInteger.ONE), 7));
+        checkRoundTrip("123456789012345678901234567890.123456789");
+        checkRoundTrip("-98765432109876543210");
+        checkRoundTrip("9223372036854775807");
+        checkRoundTrip("9223372036854775808.5");
+    }
+
+    @Test
+    public void longAndStringPathsAgree() {
+        // Same digits, with the unscaled value either side of 49 bits.
+        BigDecimal small = new BigDecimal("12345678.12345");
+        BigDecimal large = small.setScale(12);
+        assertTrue(large.unscaledValue().bitLength() > 49);
+        short[] sdigits = ServerValueEncoder.pgNumericVar(small);
+        short[] ldigits = ServerValueEncoder.pgNumericVar(large);
+        assertEquals(sdigits[0], ldigits[0]);
+        assertEquals(sdigits[1], ldigits[1]);
+        assertEquals(sdigits[2], ldigits[2]);
+        assertEquals(12, ldigits[3]);
+        assertArrayEquals(Arrays.copyOfRange(sdigits, 4, sdigits.length),
+                          Arrays.copyOfRange(ldigits, 4, ldigits.length));
+    }
+
+    @Test
+    public void negativeScale() {
+        BigDecimal value = new BigDecimal(BigInteger.valueOf(12), -5);
+        BigDecimal decoded = ServerValueDecoder.pgNumericVar(toBytes(ServerValueEncoder.pgNumericVar(value)));
+        assertEquals(0, value.compareTo(decoded));
+        assertEquals(0, decoded.scale());
+    }
+
+    private static void checkEncoding(String value, int weight, int sign, int dscale, int... digits) {
+        short[] expected = new short[digits.length + 4];
+        expected[0] = (short)digits.length;
+        expected[1] = (short)weight;
+        expected[2] = (short)sign;
+        expected[3] = (short)dscale;
+        for (int i = 0; i < digits.length; i++) {
+            expected[i + 4] = (short)digits[i];
+        }
+        assertArrayEquals(value, expected, ServerValueEncoder.pgNumericVar(new BigDecimal(value)));
+    }
+
+    private static void checkRoundTrip(String value) {
+        checkRoundTrip(new BigDecimal(value));
+    }
+
+    private static void checkRoundTrip(BigDecimal value) {
+        byte[] encoded = toBytes(ServerValueEncoder.pgNumericVar(value));
+        assertEquals(value.toString(), value, ServerValueDecoder.pgNumericVar(encoded));
+    }
+
+    /** As written to the wire, in network order. */
+    private static byte[] toBytes(short[] digits) {
+        byte[] bytes = new byte[digits.length * 2];
+        for (int i = 0; i < digits.length; i++) {
+            bytes[i * 2] = (byte)(digits[i] >> 8);
+            bytes[i * 2 + 1] = (byte)digits[i];
+        }
+        return bytes;
+    }
+}
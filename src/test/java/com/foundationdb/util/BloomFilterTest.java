@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class BloomFilterTest
@@ -40,6 +41,52 @@ public class BloomFilterTest
         }
     }
 
+    @Test
+    public void testUnderestimated()
+    {
+        // Ten times as many keys as the filter was sized for.
+        double errorRate = 0.001;
+        int count = 100000;
+        BloomFilter filter = new BloomFilter(count / 10, errorRate);
+        for (long key = 0; key < count; key++) {
+            filter.add(key * 7919);
+        }
+        assertTrue(filter.layers() > 1);
+        assertEquals(count, filter.keys());
+        for (long key = 0; key < count; key++) {
+            assertTrue(filter.maybePresent(key * 7919));
+        }
+        int falsePositives = 0;
+        for (long key = count; key < 2 * count; key++) {
+            if (filter.maybePresent(key * 7919)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(((double) falsePositives) / count <= errorRate * 10);
+    }
+
+    @Test
+    public void testCounters()
+    {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (long key = 0; key < 1000; key++) {
+            filter.add(BloomFilter.combine(BloomFilter.combine(0, key), -key));
+        }
+        int passes = 0;
+        for (long key = 0; key < 2000; key++) {
+            if (filter.maybePresent(BloomFilter.combine(BloomFilter.combine(0, key), -key))) {
+                passes++;
+                if (key >= 1000) {
+                    filter.falsePositive();
+                }
+            }
+        }
+        assertEquals(2000, filter.probes());
+        assertEquals(passes, filter.passes());
+        assertEquals(passes - 1000, filter.falsePositives());
+        assertEquals((passes - 1000) / 1000.0, filter.falsePositiveRate(), 1e-9);
+    }
+
     private void test(String label, double errorRate, int count, List keys, List missingKeys)
     {
         BloomFilter filter = new BloomFilter(count, errorRate);
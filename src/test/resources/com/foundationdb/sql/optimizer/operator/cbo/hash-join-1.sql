@@ -0,0 +1 @@
+SELECT i1.iid, i2.iid FROM items i1 INNER JOIN items i2 ON i1.quan = i2.quan
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT state FROM addresses ORDER BY state
\ No newline at end of file
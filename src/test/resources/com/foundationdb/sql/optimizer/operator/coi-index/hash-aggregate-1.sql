@@ -0,0 +1,3 @@
+SELECT categories.cat, COUNT(*)
+  FROM items LEFT JOIN categories ON items.quan = categories.cat
+ GROUP BY categories.cat
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT cat, COUNT(*) FROM categories GROUP BY cat
\ No newline at end of file
@@ -0,0 +1,3 @@
+SELECT city, state FROM places
+ ORDER BY distance_lat_lon(lat, lon, 42.3583, -71.0603)
+ LIMIT 10